@@ -1,43 +1,52 @@
 package com.slava.config;
 
 import com.slava.dto.UserDto;
-import com.slava.entity.User;
-import com.slava.service.UserService;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.stream.Collectors;
-
-import static java.util.Collections.emptyList;
+import java.util.List;
 
+/**
+ * Неизменяемый снимок пользователя: поля копируются из {@link UserDto} при создании, поэтому
+ * один экземпляр безопасно раздаётся из кэша в разные аутентификации. Интерфейс
+ * CredentialsContainer не реализуется намеренно, иначе Spring Security стёр бы пароль в кэшированном снимке.
+ */
 public class CustomUserDetails implements UserDetails {
 
-    private final UserDto user;
+    private static final long serialVersionUID = 1L;
 
+    private final String username;
+    private final String password;
+    private final List<GrantedAuthority> authorities;
 
     public CustomUserDetails(UserDto user) {
-        this.user = user;
+        this(user.getUsername(), user.getPassword(), user.getRoles() == null ? List.of() : user.getRoles().stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role.getName())) // Преобразуем RoleDto в String
+                .toList());
+    }
+
+    public CustomUserDetails(String username, String password, List<GrantedAuthority> authorities) {
+        this.username = username;
+        this.password = password;
+        this.authorities = List.copyOf(authorities);
     }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return user.getRoles().stream()
-                .map(role -> new SimpleGrantedAuthority(role.getName())) // Преобразуем RoleDto в String
-                .collect(Collectors.toList());
+        return authorities;
     }
 
 
     @Override
     public String getPassword() {
-        return user.getPassword();
+        return password;
     }
 
     @Override
     public String getUsername() {
-        return user.getUsername();
+        return username;
     }
 
     @Override
@@ -0,0 +1,166 @@
+package com.slava.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+@Data
+@Validated
+@ConfigurationProperties(prefix = "files")
+public class FilesProperties {
+
+    private Executor executor = new Executor();
+    private Archive archive = new Archive();
+    @Valid
+    private Batch batch = new Batch();
+    private Listing listing = new Listing();
+    private Index index = new Index();
+    private Catalog catalog = new Catalog();
+    private Cache cache = new Cache();
+    private Buckets buckets = new Buckets();
+    private Users users = new Users();
+    private Transfer transfer = new Transfer();
+    private Resilience resilience = new Resilience();
+
+    @Data
+    public static class Executor {
+        // Пул для параллельных обращений к MinIO (предзагрузка, пакетные операции)
+        private int threads = 32;
+    }
+
+    @Data
+    public static class Archive {
+        // Сколько объектов скачивается заранее, пока пишется текущая запись архива
+        private int prefetchDepth = 8;
+        // Сколько байт каждого объекта держится в памяти; остаток дочитывается потоком.
+        // Файлы крупнее буфера сжимаются параллельно
+        private int prefetchBufferSize = 1024 * 1024;
+        private int compressionLevel = 6;
+        private int parallelBlockSize = 256 * 1024;
+        // 0 — по числу ядер
+        private int compressionThreads = 0;
+    }
+
+    @Data
+    public static class Batch {
+        // S3 multi-delete принимает не больше 1000 ключей за запрос, большее значение не даст запустить приложение
+        @Min(1)
+        @Max(1000)
+        private int deleteBatchSize = 1000;
+        private int deleteConcurrency = 4;
+        // Сколько серверных копирований выполняется одновременно при перемещении папки
+        private int copyConcurrency = 16;
+    }
+
+    @Data
+    public static class Listing {
+        private int defaultPageSize = 100;
+        private int maxPageSize = 1000;
+        // Сколько подпапок первого уровня листится одновременно при рекурсивном обходе, см. ParallelObjectLister
+        private int fanOutParallelism = 8;
+        // Потоки пула листинга, общие для всех параллельных листингов
+        private int threads = 16;
+        // Уровень папки не больше этого размера кэшируется отсортированным для страниц по размеру и дате
+        private int maxCachedLevel = 1000;
+    }
+
+    @Data
+    public static class Index {
+        // Индекс ключей активных пользователей в памяти, см. NamespaceIndex
+        private boolean enabled = true;
+        private long memoryBudget = 64L * 1024 * 1024;
+        // Через сколько индекс бакета перестраивается из MinIO
+        private Duration ttl = Duration.ofMinutes(10);
+        // Через сколько снова пробовать индексировать бакет, не поместившийся в бюджет
+        private Duration oversizedRetry = Duration.ofHours(6);
+        // Потоки фонового построения индексов
+        private int buildThreads = 1;
+        // Сколько последних изменений бакета хранится в общем журнале для догоняющих узлов
+        private int changeLogSize = 1000;
+        // Сколько узел доверяет своей версии индекса, не сверяясь с общей
+        private Duration versionCheckInterval = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Catalog {
+        // Каталог метаданных в PostgreSQL, см. ObjectCatalog
+        private boolean enabled = true;
+        // Сколько строк каталога сверяется с листингом MinIO за одну транзакцию
+        private int reconcileBatchSize = 1000;
+        // Сколько узел доверяет прочитанному признаку сверки владельца из catalog_sync
+        private Duration syncCacheTtl = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Cache {
+        // Общий для всех узлов кэш листингов папок в Redis, см. RedisListingCache
+        private boolean enabled = true;
+        private Duration ttl = Duration.ofMinutes(5);
+        // Листинги больше этого размера в JSON (символов) в кэш не пишутся
+        private int maxEntrySize = 256 * 1024;
+    }
+
+    @Data
+    public static class Buckets {
+        // Сколько бакет считается существующим после проверки, см. BucketProvisioner
+        private Duration knownTtl = Duration.ofHours(1);
+        private int maxEntries = 100_000;
+        // Делить известные бакеты между узлами через Redis
+        private boolean shared = true;
+    }
+
+    @Data
+    public static class Transfer {
+        // Неблокирующие передачи /files/async, см. AsyncTransferController.
+        // Недописанный клиенту буфер остаётся в памяти, поэтому на медленное соединение уходит до двух буферов
+        private int bufferSize = 16 * 1024;
+        // Сколько ждать медленного клиента; 0 — без ограничения
+        private Duration timeout = Duration.ofHours(1);
+        // Каталог для тела загрузок и собранных архивов; пусто — java.io.tmpdir
+        private String spoolDirectory;
+        // Потоки, собирающие ZIP-архивы во временные файлы
+        private int archiveThreads = 4;
+        // Сколько архивов ждёт свободного потока; остальные запросы получают 503
+        private int archiveQueueCapacity = 16;
+        // Предел размера загружаемого файла для всех загрузок: multipart, PUT /files/upload/stream
+        // и PUT /files/async/upload; больше — 413
+        private long maxUploadSize = 5L * 1024 * 1024 * 1024;
+    }
+
+    @Data
+    public static class Users {
+        // Кэш снимков пользователей для входа, см. UserDetailsCache
+        private boolean cacheEnabled = true;
+        private Duration cacheTtl = Duration.ofMinutes(5);
+        private int cacheMaxEntries = 10_000;
+    }
+
+    @Data
+    public static class Resilience {
+        // Повторы, автомат отключения и дублирующие запросы к MinIO, см. ResilientFileRepository.
+        // Всего попыток идемпотентного вызова вместе с первой; 1 — без повторов
+        private int maxAttempts = 3;
+        // Пауза перед повтором случайна от 0 до base * 2^(попытка - 1), но не больше max
+        private Duration retryBaseDelay = Duration.ofMillis(50);
+        private Duration retryMaxDelay = Duration.ofSeconds(1);
+        // Сколько сбоев подряд размыкает автомат и на сколько; 0 — без автомата
+        private int breakerFailureThreshold = 10;
+        private Duration breakerOpenDuration = Duration.ofSeconds(30);
+        // Дубль GET/stat уходит, если первый запрос не ответил за этот перцентиль недавних задержек
+        private boolean hedgeEnabled = true;
+        private double hedgePercentile = 0.95;
+        private Duration hedgeMinDelay = Duration.ofMillis(20);
+        // Дублей не больше этой доли от GET/stat; запас на всплеск — hedge-budget-burst дублей
+        private double hedgeBudgetRatio = 0.05;
+        private int hedgeBudgetBurst = 10;
+        // Потоки для GET/stat с дублированием; когда все заняты, запрос идёт без дубля в вызывающем потоке
+        private int hedgeMaxThreads = 64;
+        // Сколько последних задержек учитывается при расчёте перцентиля
+        private int latencyWindow = 1000;
+    }
+}
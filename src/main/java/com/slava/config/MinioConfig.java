@@ -1,51 +1,148 @@
 package com.slava.config;
 
-import io.minio.*;
+import com.slava.repository.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.minio.MinioAsyncClient;
+import io.minio.MinioClient;
+import io.minio.http.HttpUtils;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
+@EnableConfigurationProperties(MinioProperties.class)
 public class MinioConfig {
 
     private static final Logger log = LoggerFactory.getLogger(MinioConfig.class);
 
     @Bean
-    public MinioClient minioClient() {
-        log.info("Создание MinIO клиента с endpoint {}", "http://localhost:9100");
+    public OkHttpClient minioHttpClient(MinioProperties minioProperties) {
+        return buildHttpClient(minioProperties.getHttp());
+    }
+
+    @Bean
+    public MinioClient minioClient(MinioProperties minioProperties, OkHttpClient minioHttpClient) {
+        log.info("Создание MinIO клиента с endpoint {}", minioProperties.getUrl());
         return MinioClient.builder()
-                .endpoint("http://localhost:9100")
-                .credentials("minioadmin", "minioadmin")
+                .endpoint(minioProperties.getUrl())
+                .credentials(minioProperties.getAccessKey(), minioProperties.getSecretKey())
+                .httpClient(minioHttpClient)
                 .build();
     }
 
-    public void initializeUserRootFolder(MinioClient minioClient, String username) {
-        try {
-            String bucketName = username;
-            log.info("Инициализация корневой папки пользователя '{}', бакет '{}'", username, bucketName);
-
-            boolean bucketExists = minioClient.bucketExists(
-                    BucketExistsArgs.builder()
-                            .bucket(bucketName)
-                            .build()
-            );
-            log.debug("Проверка существования бакета '{}': {}", bucketName, bucketExists);
-
-            if (!bucketExists) {
-                log.info("Бакет '{}' не найден. Создаю бакет...", bucketName);
-                minioClient.makeBucket(
-                        MakeBucketArgs.builder()
-                                .bucket(bucketName)
-                                .build()
-                );
-                log.info("Бакет '{}' успешно создан", bucketName);
-            } else {
-                log.info("Бакет '{}' уже существует", bucketName);
-            }
-        } catch (Exception e) {
-            log.error("Ошибка при инициализации MinIO для пользователя '{}': {}", username, e.getMessage(), e);
-            throw new RuntimeException("Ошибка при инициализации MinIO для пользователя: " + username, e);
-        }
+    /**
+     * Асинхронный клиент для неблокирующих передач, с тем же пулом соединений.
+     */
+    @Bean
+    public MinioAsyncClient minioAsyncClient(MinioProperties minioProperties, OkHttpClient minioHttpClient) {
+        return MinioAsyncClient.builder()
+                .endpoint(minioProperties.getUrl())
+                .credentials(minioProperties.getAccessKey(), minioProperties.getSecretKey())
+                .httpClient(minioHttpClient)
+                .build();
+    }
+
+    /**
+     * Метрики загрузки пула соединений и диспетчера клиента MinIO, по ним подбирается размер пула на узле.
+     */
+    @Bean
+    public MeterBinder minioHttpClientMetrics(OkHttpClient minioHttpClient) {
+        ConnectionPool pool = minioHttpClient.connectionPool();
+        Dispatcher dispatcher = minioHttpClient.dispatcher();
+        return registry -> {
+            Gauge.builder("minio.http.connections", pool, p -> p.connectionCount() - p.idleConnectionCount())
+                    .tag("state", "active")
+                    .description("Соединения с MinIO, занятые запросами")
+                    .register(registry);
+            Gauge.builder("minio.http.connections", pool, ConnectionPool::idleConnectionCount)
+                    .tag("state", "idle")
+                    .description("Простаивающие соединения в пуле")
+                    .register(registry);
+            Gauge.builder("minio.http.calls", dispatcher, Dispatcher::runningCallsCount)
+                    .tag("state", "running")
+                    .register(registry);
+            Gauge.builder("minio.http.calls", dispatcher, Dispatcher::queuedCallsCount)
+                    .tag("state", "queued")
+                    .description("Запросы, ждущие свободного места в диспетчере")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Общий ограничитель операций с MinIO: его занимают одиночные вызовы в ConcurrencyLimitedFileRepository
+     * и отдельные запросы составных операций в MinioFileRepositoryImpl.
+     */
+    @Bean
+    public AdaptiveConcurrencyLimiter minioConcurrencyLimiter(MinioProperties minioProperties) {
+        return new AdaptiveConcurrencyLimiter(minioProperties.getLimiter());
+    }
+
+    /**
+     * Отдельная переборка для загрузок и копирований с постоянным пределом: они держат место,
+     * пока идут данные, и не должны занимать места общего ограничителя.
+     */
+    @Bean
+    public AdaptiveConcurrencyLimiter minioTransferBulkhead(MinioProperties minioProperties) {
+        return AdaptiveConcurrencyLimiter.fixed(minioProperties.getTransfers());
+    }
+
+    /**
+     * Состояние адаптивного ограничителя операций с MinIO: текущий предел, занятые места, очередь и отказы;
+     * и занятость переборки загрузок и копирований.
+     */
+    @Bean
+    public MeterBinder minioLimiterMetrics(@Qualifier("minioConcurrencyLimiter") AdaptiveConcurrencyLimiter limiter,
+                                           @Qualifier("minioTransferBulkhead") AdaptiveConcurrencyLimiter transfers) {
+        return registry -> {
+            Gauge.builder("minio.limiter.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+                    .description("Сколько операций с MinIO сейчас разрешено одновременно")
+                    .register(registry);
+            Gauge.builder("minio.limiter.in.flight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+                    .register(registry);
+            Gauge.builder("minio.limiter.queued", limiter, AdaptiveConcurrencyLimiter::queued)
+                    .description("Операции, ждущие места под ограничителем")
+                    .register(registry);
+            Gauge.builder("minio.limiter.baseline", limiter, AdaptiveConcurrencyLimiter::baselineMillis)
+                    .baseUnit("milliseconds")
+                    .description("Обычная задержка быстрых операций, от которой считаются медленные ответы")
+                    .register(registry);
+            FunctionCounter.builder("minio.limiter.rejected", limiter, AdaptiveConcurrencyLimiter::rejected)
+                    .description("Операции, отклонённые из-за перегрузки хранилища")
+                    .register(registry);
+            Gauge.builder("minio.transfers.in.flight", transfers, AdaptiveConcurrencyLimiter::inFlight)
+                    .description("Загрузки и копирования, идущие сейчас")
+                    .register(registry);
+            Gauge.builder("minio.transfers.queued", transfers, AdaptiveConcurrencyLimiter::queued)
+                    .register(registry);
+            FunctionCounter.builder("minio.transfers.rejected", transfers, AdaptiveConcurrencyLimiter::rejected)
+                    .register(registry);
+        };
+    }
+
+    static OkHttpClient buildHttpClient(MinioProperties.Http http) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(http.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(http.getMaxRequestsPerHost());
+        // Настройки клиента по умолчанию из SDK MinIO, поверх них — пул, диспетчер и протоколы
+        return HttpUtils.newDefaultHttpClient(http.getConnectTimeout().toMillis(),
+                        http.getWriteTimeout().toMillis(), http.getReadTimeout().toMillis())
+                .newBuilder()
+                .connectionPool(new ConnectionPool(http.getMaxIdleConnections(),
+                        http.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .protocols(http.isHttp2() ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+                .build();
     }
 }
@@ -0,0 +1,76 @@
+package com.slava.config;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+@Data
+@Validated
+@ConfigurationProperties(prefix = "minio")
+public class MinioProperties {
+
+    private String url = "http://localhost:9100";
+    // Без значений по умолчанию: приложение не стартует без MINIO_ACCESS_KEY и MINIO_SECRET_KEY
+    @NotBlank
+    private String accessKey;
+    @NotBlank
+    private String secretKey;
+    private Upload upload = new Upload();
+    private Http http = new Http();
+    private Limiter limiter = new Limiter();
+    private Transfers transfers = new Transfers();
+
+    @Data
+    public static class Upload {
+        // MinIO держит в памяти одну часть multipart-загрузки, минимум S3 — 5 МБ
+        private long partSize = 10 * 1024 * 1024;
+    }
+
+    @Data
+    public static class Http {
+        // Пул соединений OkHttp: сколько простаивающих соединений держать и сколько им жить
+        private int maxIdleConnections = 64;
+        private Duration keepAlive = Duration.ofMinutes(5);
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration readTimeout = Duration.ofMinutes(5);
+        private Duration writeTimeout = Duration.ofMinutes(5);
+        // HTTP/2 согласуется через ALPN только по https, по http остаётся HTTP/1.1
+        private boolean http2 = false;
+        // Клиент MinIO отправляет все запросы через диспетчер OkHttp, а у того по умолчанию
+        // не больше 5 запросов на хост — меньше, чем потоков в общем пуле
+        private int maxRequests = 256;
+        private int maxRequestsPerHost = 128;
+    }
+
+    @Data
+    public static class Limiter {
+        // Адаптивный предел одновременных операций с MinIO, см. AdaptiveConcurrencyLimiter
+        private boolean enabled = true;
+        private int initialLimit = 32;
+        private int minLimit = 4;
+        // Больше, чем пропускает диспетчер на хост, всё равно не уйдёт
+        private int maxLimit = 128;
+        // Во сколько раз сжимается предел после медленного ответа или сбоя
+        private double backoffRatio = 0.9;
+        // Ответ медленный, если дольше обычной задержки во столько раз. Обычная задержка —
+        // минимальная за последние одно-два окна
+        private double latencyTolerance = 2.0;
+        private Duration baselineWindow = Duration.ofMinutes(1);
+        // Сколько операций ждёт в очереди и как долго, прежде чем получить отказ
+        private int maxQueued = 256;
+        private Duration maxWait = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Transfers {
+        // Загрузки и копирования длятся столько, сколько идут данные, а загрузки — со скоростью клиента.
+        // Поэтому у них свой фиксированный предел, и они не занимают мест адаптивного ограничителя
+        private boolean enabled = true;
+        private int maxConcurrent = 32;
+        private int maxQueued = 256;
+        private Duration maxWait = Duration.ofSeconds(30);
+    }
+}
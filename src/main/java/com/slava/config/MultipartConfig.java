@@ -0,0 +1,32 @@
+package com.slava.config;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.boot.web.servlet.MultipartConfigFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Configuration
+public class MultipartConfig {
+
+    // Запас на остальные поля формы и заголовки частей сверх самого файла
+    static final long FORM_OVERHEAD = 1024 * 1024;
+
+    /**
+     * Части multipart-запроса пишутся на диск, а не в память, в каталог временных файлов передач.
+     * Предел файла тот же, что у потоковых загрузок, — files.transfer.max-upload-size: контейнер
+     * обрывает приём, как только файл его превысит, и диск не заполняется неограниченным телом.
+     */
+    @Bean
+    public MultipartConfigElement multipartConfigElement(FilesProperties filesProperties) {
+        FilesProperties.Transfer transfer = filesProperties.getTransfer();
+        MultipartConfigFactory factory = new MultipartConfigFactory();
+        factory.setFileSizeThreshold(DataSize.ofBytes(0));
+        factory.setMaxFileSize(DataSize.ofBytes(transfer.getMaxUploadSize()));
+        factory.setMaxRequestSize(DataSize.ofBytes(transfer.getMaxUploadSize() + FORM_OVERHEAD));
+        if (transfer.getSpoolDirectory() != null && !transfer.getSpoolDirectory().isBlank()) {
+            factory.setLocation(transfer.getSpoolDirectory());
+        }
+        return factory.createMultipartConfig();
+    }
+}
@@ -0,0 +1,124 @@
+package com.slava.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@EnableConfigurationProperties(FilesProperties.class)
+public class StorageExecutorConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageExecutorConfig.class);
+
+    /**
+     * При spring.threads.virtual.enabled=true на Java 21+ обращения к MinIO выполняются в виртуальных
+     * потоках, как и обработка запросов в Tomcat: ожидание ответа хранилища не занимает поток ОС.
+     * Параллелизм операций по-прежнему ограничен их собственными настройками и диспетчером HTTP-клиента.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService storageExecutor(FilesProperties filesProperties, Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            log.info("Обращения к MinIO выполняются в виртуальных потоках");
+            return virtualThreadExecutor("storage-");
+        }
+        if (environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            log.warn("Виртуальные потоки требуют Java 21+, текущая версия {}: используется пул из {} потоков",
+                    Runtime.version().feature(), filesProperties.getExecutor().getThreads());
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("storage-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(filesProperties.getExecutor().getThreads(), threadFactory);
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService archiveCompressionExecutor(FilesProperties filesProperties) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("archive-deflate-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(compressionThreads(filesProperties), threadFactory);
+    }
+
+    /**
+     * Сборка ZIP-архивов для неблокирующей выдачи. Отдельный пул: сборка ждёт задачи предзагрузки
+     * из storageExecutor, и в общем пуле они могли бы не дождаться свободного потока.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService archiveSpoolExecutor(FilesProperties filesProperties) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("archive-spool-");
+        threadFactory.setDaemon(true);
+        FilesProperties.Transfer transfer = filesProperties.getTransfer();
+        // Очередь ограничена: сверх неё сборка отклоняется, а не копит запросы, каждый из которых держит соединение
+        return new ThreadPoolExecutor(transfer.getArchiveThreads(), transfer.getArchiveThreads(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(transfer.getArchiveQueueCapacity()), threadFactory);
+    }
+
+    /**
+     * Запросы с дублированием из ResilientFileRepository. Пул без очереди: их ждут задачи storageExecutor,
+     * например предзагрузка архива, и в очереди они могли бы не дождаться потока. Потоков не больше
+     * hedge-max-threads; задачу сверх предела пул отклоняет, и запрос выполняется без дубля.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService storageHedgeExecutor(FilesProperties filesProperties, Environment environment) {
+        int maxThreads = filesProperties.getResilience().getHedgeMaxThreads();
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return virtualThreadExecutor("storage-hedge-", maxThreads);
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("storage-hedge-");
+        threadFactory.setDaemon(true);
+        return new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), threadFactory);
+    }
+
+    /**
+     * Задачи параллельного листинга ParallelObjectLister. Отдельный пул: задачи ждут, пока читатель
+     * разберёт очередь, а читатель может сам ждать задач storageExecutor. Размер пула — общий предел
+     * одновременных листингов подпапок для всех запросов.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService storageListingExecutor(FilesProperties filesProperties, Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return virtualThreadExecutor("storage-listing-");
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("storage-listing-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(filesProperties.getListing().getThreads(), threadFactory);
+    }
+
+    /**
+     * Фоновое построение индексов пространства имён: полный листинг бакета не выполняется в потоке запроса.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService namespaceIndexExecutor(FilesProperties filesProperties) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("namespace-index-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(filesProperties.getIndex().getBuildThreads(), threadFactory);
+    }
+
+    /**
+     * Поток на задачу: пул без ядра и очереди с фабрикой виртуальных потоков.
+     */
+    static ExecutorService virtualThreadExecutor(String threadNamePrefix) {
+        return virtualThreadExecutor(threadNamePrefix, Integer.MAX_VALUE);
+    }
+
+    static ExecutorService virtualThreadExecutor(String threadNamePrefix, int maxThreads) {
+        return new ThreadPoolExecutor(0, maxThreads, 0, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new VirtualThreadTaskExecutor(threadNamePrefix).getVirtualThreadFactory());
+    }
+
+    public static int compressionThreads(FilesProperties filesProperties) {
+        int threads = filesProperties.getArchive().getCompressionThreads();
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+}
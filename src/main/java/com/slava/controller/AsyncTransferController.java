@@ -0,0 +1,281 @@
+package com.slava.controller;
+
+import com.slava.config.FilesProperties;
+import com.slava.dto.FileMetadataDto;
+import com.slava.exception.FileNotFoundException;
+import com.slava.exception.StorageOverloadedException;
+import com.slava.exception.StorageUnavailableException;
+import com.slava.exception.UploadTooLargeException;
+import com.slava.service.AsyncFileService;
+import com.slava.service.FolderService;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Неблокирующие варианты загрузки и выдачи файлов и ZIP-архивов. Ожидание MinIO идёт через
+ * асинхронный клиент, а обмен с клиентом — через неблокирующий ввод-вывод Servlet API,
+ * поэтому медленные клиенты не занимают потоки Tomcat. Таймаут или обрыв соединения до начала
+ * ответа отменяют ожидание и удаляют временные файлы, см. {@link PendingTransfer}.
+ */
+@Controller
+@RequestMapping("/files/async")
+public class AsyncTransferController {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncTransferController.class);
+
+    private final AsyncFileService asyncFileService;
+    private final FolderService folderService;
+    private final FilesProperties.Transfer settings;
+    // Блокирующее чтение отдаваемых потоков, см. NonBlockingDownload
+    private final Executor storageExecutor;
+
+    public AsyncTransferController(AsyncFileService asyncFileService, FolderService folderService,
+                                   FilesProperties filesProperties,
+                                   @Qualifier("storageExecutor") ExecutorService storageExecutor) {
+        this.asyncFileService = asyncFileService;
+        this.folderService = folderService;
+        this.settings = filesProperties.getTransfer();
+        this.storageExecutor = storageExecutor;
+    }
+
+    /**
+     * Файл целиком или один диапазон; запрос нескольких диапазонов получает файл целиком.
+     */
+    @GetMapping("/download")
+    public void downloadFile(@RequestParam("path") String path,
+                             @RequestHeader HttpHeaders requestHeaders,
+                             @AuthenticationPrincipal UserDetails userDetails,
+                             HttpServletRequest request,
+                             HttpServletResponse response) {
+        String bucketName = userDetails.getUsername();
+        PendingTransfer transfer = startAsync(request);
+        AsyncContext asyncContext = transfer.asyncContext();
+        asyncFileService.getFileMetadata(bucketName, path)
+                .thenCompose(metadata -> open(bucketName, path, metadata, requestHeaders, response))
+                .whenComplete((source, error) -> {
+                    if (!transfer.settle()) {
+                        // Запрос уже прерван: поток из MinIO никто не прочитает
+                        closeQuietly(source);
+                    } else if (error != null) {
+                        fail(asyncContext, error);
+                    } else if (source == null) {
+                        asyncContext.complete();
+                    } else {
+                        send(asyncContext, source, null);
+                    }
+                });
+    }
+
+    private CompletableFuture<InputStream> open(String bucketName, String path, FileMetadataDto metadata,
+                                                HttpHeaders requestHeaders, HttpServletResponse response) {
+        long size = metadata.getSize();
+        String fileName = path.substring(path.lastIndexOf("/") + 1);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        if (metadata.getEtag() != null) {
+            response.setHeader(HttpHeaders.ETAG, "\"" + metadata.getEtag() + "\"");
+        }
+        if (metadata.getLastModified() != null) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, metadata.getLastModified().toInstant().toEpochMilli());
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRanges.isIfRangeSatisfied(requestHeaders, metadata) ? requestHeaders.getRange() : List.of();
+        } catch (IllegalArgumentException e) {
+            ranges = List.of();
+        }
+        if (ranges.size() != 1) {
+            response.setContentLengthLong(size);
+            return asyncFileService.openFile(bucketName, path);
+        }
+
+        HttpRange range = ranges.get(0);
+        if (size == 0 || !HttpRanges.isSatisfiable(range, size)) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            return CompletableFuture.completedFuture(null);
+        }
+        long start = range.getRangeStart(size);
+        long end = range.getRangeEnd(size);
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        response.setContentLengthLong(end - start + 1);
+        return asyncFileService.openFileRange(bucketName, path, start, end - start + 1);
+    }
+
+    @PutMapping("/upload")
+    public void uploadFile(@RequestParam(value = "path", required = false, defaultValue = "") String path,
+                           @RequestParam("name") String fileName,
+                           @AuthenticationPrincipal UserDetails userDetails,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+        if (fileName.isBlank()) {
+            response.sendError(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        if (request.getContentLengthLong() > settings.getMaxUploadSize()) {
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value());
+            return;
+        }
+        String bucketName = userDetails.getUsername();
+        String objectName = path + fileName;
+        String contentType = request.getContentType() != null
+                ? request.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        Path content = asyncFileService.createSpoolFile("upload-");
+        PendingTransfer transfer = startAsync(request);
+        AsyncContext asyncContext = transfer.asyncContext();
+        // Тело без Content-Length проверяется по мере приёма
+        NonBlockingUpload upload = new NonBlockingUpload(asyncContext, content, settings.getBufferSize(),
+                settings.getMaxUploadSize(),
+                received -> asyncFileService.uploadFile(bucketName, objectName, received, contentType)
+                        .whenComplete((ignored, error) -> {
+                            if (!transfer.settle()) {
+                                return;
+                            }
+                            if (error != null) {
+                                fail(asyncContext, error);
+                            } else {
+                                response.setStatus(HttpStatus.CREATED.value());
+                                asyncContext.complete();
+                            }
+                        }),
+                error -> {
+                    asyncFileService.deleteSpoolFile(content);
+                    if (transfer.settle()) {
+                        fail(asyncContext, error);
+                    }
+                });
+        // Принятое тело, уже переданное в MinIO, удалит сама загрузка
+        transfer.onAbort(() -> {
+            if (upload.abort()) {
+                asyncFileService.deleteSpoolFile(content);
+            }
+        });
+        try {
+            upload.start();
+        } catch (IOException e) {
+            asyncFileService.deleteSpoolFile(content);
+            if (transfer.settle()) {
+                fail(asyncContext, e);
+            }
+        }
+    }
+
+    /**
+     * Архив собирается во временный файл со скоростью хранилища, затем отдаётся с известным размером.
+     * Клиент не получает ни байта, пока архив не собран целиком. Если очередь сборки заполнена, ответ — 503.
+     */
+    @GetMapping("/folder/download")
+    public void downloadFolder(@RequestParam("path") String path,
+                               @AuthenticationPrincipal UserDetails userDetails,
+                               HttpServletRequest request,
+                               HttpServletResponse response) {
+        String bucketName = userDetails.getUsername();
+        String zipFileName = folderService.extractFolderName(path) + ".zip";
+        PendingTransfer transfer = startAsync(request);
+        AsyncContext asyncContext = transfer.asyncContext();
+        CompletableFuture<Path> spool = asyncFileService.spoolFolderZip(bucketName, path);
+        transfer.onAbort(() -> spool.cancel(true));
+        spool.whenComplete((archive, error) -> {
+            if (!transfer.settle()) {
+                if (archive != null) {
+                    asyncFileService.deleteSpoolFile(archive);
+                }
+                return;
+            }
+            if (error != null) {
+                fail(asyncContext, error);
+                return;
+            }
+            InputStream source;
+            try {
+                response.setContentLengthLong(Files.size(archive));
+                source = Files.newInputStream(archive);
+            } catch (IOException e) {
+                asyncFileService.deleteSpoolFile(archive);
+                fail(asyncContext, e);
+                return;
+            }
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + zipFileName + "\"");
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            send(asyncContext, source, () -> asyncFileService.deleteSpoolFile(archive));
+        });
+    }
+
+    private PendingTransfer startAsync(HttpServletRequest request) {
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(settings.getTimeout().toMillis());
+        return new PendingTransfer(asyncContext);
+    }
+
+    private static void closeQuietly(InputStream source) {
+        if (source == null) {
+            return;
+        }
+        try {
+            source.close();
+        } catch (IOException e) {
+            log.debug("Ошибка при закрытии потока прерванного запроса: {}", e.getMessage());
+        }
+    }
+
+    private void send(AsyncContext asyncContext, InputStream source, Runnable onFinish) {
+        NonBlockingDownload download = new NonBlockingDownload(asyncContext, source, storageExecutor,
+                settings.getBufferSize(), onFinish);
+        try {
+            download.start();
+        } catch (IOException e) {
+            download.onError(e);
+        }
+    }
+
+    private static HttpStatus statusOf(Throwable error) {
+        if (error instanceof FileNotFoundException) {
+            return HttpStatus.NOT_FOUND;
+        }
+        if (error instanceof StorageUnavailableException || error instanceof StorageOverloadedException) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        if (error instanceof UploadTooLargeException) {
+            return HttpStatus.PAYLOAD_TOO_LARGE;
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    private void fail(AsyncContext asyncContext, Throwable error) {
+        Throwable cause = AsyncFileService.unwrap(error);
+        HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+        try {
+            if (!response.isCommitted()) {
+                response.sendError(statusOf(cause).value());
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Не удалось отправить ошибку клиенту: {}", e.getMessage());
+        } finally {
+            asyncContext.complete();
+        }
+    }
+}
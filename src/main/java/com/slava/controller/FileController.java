@@ -1,24 +1,28 @@
 package com.slava.controller;
 
+import com.slava.config.FilesProperties;
 import com.slava.dto.*;
 import com.slava.exception.FileException;
 import com.slava.exception.FolderDownloadException;
+import com.slava.exception.UploadTooLargeException;
 import com.slava.service.FileService;
-import com.slava.service.FolderService;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,30 +31,46 @@ import java.util.List;
 public class FileController {
 
     private final FileService fileService;
-    private final FolderService folderService;
+    private final FilesProperties filesProperties;
 
-    public FileController(FileService fileService, FolderService folderService) {
+    public FileController(FileService fileService, FilesProperties filesProperties) {
         this.fileService = fileService;
-        this.folderService = folderService;
+        this.filesProperties = filesProperties;
     }
 
     @GetMapping("/list")
-    public String listFiles(@RequestParam(value = "path", required = false, defaultValue = "") String path,
+    public String listFiles(@ModelAttribute("query") ListFolderDto query,
                             @AuthenticationPrincipal UserDetails userDetails,
                             Model model) {
 
         String userName = userDetails.getUsername();
-        List<FileFolderDto> folders = folderService.listOnlyFolders(userName);
+        String path = query.getPath() == null ? "" : query.getPath();
+        FolderPageDto page = fileService.listFolderPage(userName, query);
 
         model.addAttribute("userName", userName);
-        model.addAttribute("files", fileService.listFolderContents(userName, path));
+        model.addAttribute("files", page.getItems());
+        model.addAttribute("nextPageToken", page.getNextPageToken());
         model.addAttribute("currentPath", path);
         model.addAttribute("pathSegments", fileService.getPathSegments(path));
         model.addAttribute("breadcrumbLinks", fileService.getBreadcrumbLinks(path));
-        model.addAttribute("folders", folders);
         return "files/list";
     }
 
+    @GetMapping("/api/list")
+    @ResponseBody
+    public FolderPageDto listFilesPage(@ModelAttribute ListFolderDto query,
+                                       @AuthenticationPrincipal UserDetails userDetails) {
+        return fileService.listFolderPage(userDetails.getUsername(), query);
+    }
+
+    @GetMapping("/api/search")
+    @ResponseBody
+    public List<FileFolderDto> searchFiles(@RequestParam("q") String query,
+                                           @RequestParam(value = "limit", required = false) Integer limit,
+                                           @AuthenticationPrincipal UserDetails userDetails) {
+        return fileService.search(userDetails.getUsername(), query, limit);
+    }
+
     @PostMapping("/upload")
     public String uploadFile(
             @RequestParam("file") MultipartFile file,
@@ -66,8 +86,9 @@ public class FileController {
         uploadFileDto.setBucketName(userDetails.getUsername());
         uploadFileDto.setFileName(file.getOriginalFilename());
         uploadFileDto.setContentType(file.getContentType());
+        uploadFileDto.setSize(file.getSize());
         try {
-            uploadFileDto.setContent(file.getBytes());
+            uploadFileDto.setContent(file.getInputStream());
         } catch (IOException e) {
             redirectAttributes.addFlashAttribute("errorMessage", "Error reading file content");
             return "redirect:/files/list?path=" + uploadFileDto.getSourcePath();
@@ -89,6 +110,44 @@ public class FileController {
         return "redirect:/files/list?path=" + uploadFileDto.getSourcePath();
     }
 
+    @PutMapping("/upload/stream")
+    public ResponseEntity<Void> uploadFileStream(
+            @RequestParam(value = "path", required = false, defaultValue = "") String path,
+            @RequestParam("name") String fileName,
+            HttpServletRequest request,
+            @AuthenticationPrincipal UserDetails userDetails) throws IOException {
+
+        if (fileName.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        long maxUploadSize = filesProperties.getTransfer().getMaxUploadSize();
+        if (request.getContentLengthLong() > maxUploadSize) {
+            throw new UploadTooLargeException("Файл больше " + maxUploadSize + " байт");
+        }
+
+        // Тело без Content-Length проверяется по мере приёма
+        SizeLimitedInputStream content = new SizeLimitedInputStream(request.getInputStream(), maxUploadSize);
+        UploadFileDto uploadFileDto = new UploadFileDto();
+        uploadFileDto.setBucketName(userDetails.getUsername());
+        uploadFileDto.setSourcePath(path);
+        uploadFileDto.setFileName(fileName);
+        uploadFileDto.setContentType(request.getContentType() != null
+                ? request.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        uploadFileDto.setSize(request.getContentLengthLong());
+        uploadFileDto.setContent(content);
+
+        try {
+            fileService.uploadFile(uploadFileDto);
+        } catch (FileException e) {
+            // Клиент MinIO отменяет multipart-загрузку, когда чтение тела обрывается
+            if (content.exceeded()) {
+                throw new UploadTooLargeException("Файл больше " + maxUploadSize + " байт");
+            }
+            throw e;
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).build();
+    }
+
     @PostMapping("/move")
     public String moveFile(
             @ModelAttribute @Valid MoveFileDto moveFileDto,
@@ -143,22 +202,79 @@ public class FileController {
     }
 
     @GetMapping("/download")
-    public ResponseEntity<Resource> downloadFile(@RequestParam("path") String path,
-                                                 @AuthenticationPrincipal UserDetails userDetails) {
+    public void downloadFile(@RequestParam("path") String path,
+                             @RequestHeader HttpHeaders requestHeaders,
+                             @AuthenticationPrincipal UserDetails userDetails,
+                             HttpServletResponse response) throws IOException {
+        String bucketName = userDetails.getUsername();
+        FileMetadataDto metadata = fileService.getFileMetadata(bucketName, path);
+        String fileName = path.substring(path.lastIndexOf("/") + 1);
+        long size = metadata.getSize();
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (metadata.getEtag() != null) {
+            response.setHeader(HttpHeaders.ETAG, "\"" + metadata.getEtag() + "\"");
+        }
+        if (metadata.getLastModified() != null) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, metadata.getLastModified().toInstant().toEpochMilli());
+        }
+
+        List<HttpRange> ranges;
         try {
-            String bucketName = userDetails.getUsername();
-            byte[] fileData = fileService.downloadFile(bucketName, path);
-            String fileName = path.substring(path.lastIndexOf("/") + 1);
+            ranges = HttpRanges.isIfRangeSatisfied(requestHeaders, metadata) ? requestHeaders.getRange() : List.of();
+        } catch (IllegalArgumentException e) {
+            ranges = List.of();
+        }
 
-            ByteArrayResource resource = new ByteArrayResource(fileData);
+        if (ranges.isEmpty()) {
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentLengthLong(size);
+            fileService.downloadFile(bucketName, path, response.getOutputStream());
+            return;
+        }
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                    .contentLength(fileData.length)
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(resource);
-        } catch (Exception e) {
-            throw new FileException("Error while downloading file");
+        List<long[]> bounds = new ArrayList<>();
+        for (HttpRange range : ranges) {
+            if (size == 0 || !HttpRanges.isSatisfiable(range, size)) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            bounds.add(new long[]{range.getRangeStart(size), range.getRangeEnd(size)});
+        }
+
+        bounds = HttpRanges.coalesce(bounds);
+        if (bounds.size() > HttpRanges.MAX_PARTS) {
+            // Сервер вправе проигнорировать Range: слишком дробный запрос получает файл целиком
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentLengthLong(size);
+            fileService.downloadFile(bucketName, path, response.getOutputStream());
+            return;
+        }
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        if (bounds.size() == 1) {
+            long start = bounds.get(0)[0];
+            long end = bounds.get(0)[1];
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            response.setContentLengthLong(end - start + 1);
+            fileService.downloadFileRange(bucketName, path, start, end - start + 1, response.getOutputStream());
+            return;
+        }
+
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        ServletOutputStream out = response.getOutputStream();
+        for (long[] bound : bounds) {
+            String partHeaders = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + MediaType.APPLICATION_OCTET_STREAM_VALUE + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + bound[0] + "-" + bound[1] + "/" + size + "\r\n\r\n";
+            out.write(partHeaders.getBytes(StandardCharsets.US_ASCII));
+            fileService.downloadFileRange(bucketName, path, bound[0], bound[1] - bound[0] + 1, out);
         }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
     }
 }
@@ -4,9 +4,8 @@ import com.slava.dto.*;
 import com.slava.exception.FolderDownloadException;
 import com.slava.service.FileService;
 import com.slava.service.FolderService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -15,6 +14,9 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
+import java.util.List;
+
 @Controller
 @RequestMapping("/folders")
 public class FolderController {
@@ -27,6 +29,13 @@ public class FolderController {
         this.fileService = fileService;
     }
 
+    @GetMapping("/tree")
+    @ResponseBody
+    public List<FileFolderDto> folderTree(@RequestParam(value = "path", required = false, defaultValue = "") String path,
+                                          @AuthenticationPrincipal UserDetails userDetails) {
+        return folderService.listSubfolders(userDetails.getUsername(), path);
+    }
+
     @PostMapping("/create")
     public String createFolder(
             @ModelAttribute @Valid CreateFolderDto createFolderDto,
@@ -107,25 +116,18 @@ public class FolderController {
     }
 
     @GetMapping("/download")
-    public ResponseEntity<Resource> downloadFolder(@RequestParam("path") String path,
-                                                   @AuthenticationPrincipal UserDetails userDetails) {
+    public void downloadFolder(@RequestParam("path") String path,
+                               @AuthenticationPrincipal UserDetails userDetails,
+                               HttpServletResponse response) {
+        String bucketName = userDetails.getUsername();
+        String zipFileName = folderService.extractFolderName(path) + ".zip";
+
+        // Content-Length заранее неизвестен, поэтому архив уходит chunked-ответом по мере сборки
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + zipFileName + "\"");
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
         try {
-            String bucketName = userDetails.getUsername();
-
-            byte[] zipData = folderService.downloadFolderAsZip(bucketName, path);
-
-            String folderName = folderService.extractFolderName(path);
-
-            String zipFileName = folderName + ".zip";
-
-            ByteArrayResource resource = new ByteArrayResource(zipData);
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + zipFileName + "\"")
-                    .contentLength(zipData.length)
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(resource);
-        } catch (Exception e) {
+            folderService.downloadFolderAsZip(bucketName, path, response.getOutputStream());
+        } catch (IOException e) {
             throw new FolderDownloadException("Error while downloading folder");
         }
     }
@@ -0,0 +1,68 @@
+package com.slava.controller;
+
+import com.slava.dto.FileMetadataDto;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Проверки заголовков Range и If-Range для выдачи файлов.
+ */
+final class HttpRanges {
+
+    // Больше частей multipart/byteranges не отдаётся: каждая часть — отдельный GET к MinIO
+    static final int MAX_PARTS = 16;
+
+    private HttpRanges() {
+    }
+
+    /**
+     * Сортирует диапазоны и сливает пересекающиеся и смежные, чтобы один байт не запрашивался
+     * из MinIO дважды. Границы включительные: {start, end}.
+     */
+    static List<long[]> coalesce(List<long[]> bounds) {
+        List<long[]> sorted = new ArrayList<>(bounds);
+        sorted.sort(Comparator.comparingLong(bound -> bound[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] bound : sorted) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && bound[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], bound[1]);
+            } else {
+                merged.add(new long[]{bound[0], bound[1]});
+            }
+        }
+        return merged;
+    }
+
+    static boolean isSatisfiable(HttpRange range, long size) {
+        try {
+            return range.getRangeStart(size) < size;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * If-Range: диапазон отдаётся только если файл не изменился с момента первой загрузки,
+     * иначе клиент получает файл целиком.
+     */
+    static boolean isIfRangeSatisfied(HttpHeaders requestHeaders, FileMetadataDto metadata) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return metadata.getEtag() != null && ifRange.equals("\"" + metadata.getEtag() + "\"");
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        long ifRangeDate = requestHeaders.getFirstDate(HttpHeaders.IF_RANGE);
+        return metadata.getLastModified() != null
+                && metadata.getLastModified().toEpochSecond() * 1000 == ifRangeDate;
+    }
+}
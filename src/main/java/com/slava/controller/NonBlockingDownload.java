@@ -0,0 +1,161 @@
+package com.slava.controller;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Отдаёт поток клиенту неблокирующей записью Servlet API: следующий буфер читается из источника
+ * только когда сокет клиента готов его принять, а пока клиент не читает, поток контейнера свободен.
+ * Чтение источника блокирующее (ответ MinIO, файл), поэтому идёт в {@code reader}, а не в потоке
+ * контейнера: {@link #onWritePossible()} только пишет уже прочитанный буфер и заказывает следующее чтение.
+ * Прочитанный буфер пишет тот поток, который первым застанет сокет готовым. Источник закрывается
+ * по завершении, ошибке или таймауту.
+ */
+final class NonBlockingDownload implements WriteListener, AsyncListener {
+
+    private static final Logger log = LoggerFactory.getLogger(NonBlockingDownload.class);
+
+    private final AsyncContext asyncContext;
+    private final InputStream source;
+    private final Executor reader;
+    private final byte[] buffer;
+    private final Runnable onFinish;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private ServletOutputStream out;
+    // Состояние под блокировкой this: прочитанные, но не записанные байты, идущее чтение, конец источника
+    private int pending;
+    private boolean reading;
+    private boolean endOfSource;
+
+    NonBlockingDownload(AsyncContext asyncContext, InputStream source, Executor reader, int bufferSize, Runnable onFinish) {
+        this.asyncContext = asyncContext;
+        this.source = source;
+        this.reader = reader;
+        this.buffer = new byte[bufferSize];
+        this.onFinish = onFinish;
+    }
+
+    void start() throws IOException {
+        asyncContext.addListener(this);
+        out = asyncContext.getResponse().getOutputStream();
+        out.setWriteListener(this);
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        drain();
+    }
+
+    /**
+     * Пишет прочитанный буфер, пока сокет готов, и заказывает чтение следующего. Если сокет не готов,
+     * контейнер вызовет {@link #onWritePossible()}, когда он освободится.
+     */
+    private synchronized void drain() throws IOException {
+        while (!finished.get() && out.isReady()) {
+            if (pending > 0) {
+                // Запись не блокируется: контейнер копирует буфер к себе, и его можно читать заново
+                out.write(buffer, 0, pending);
+                pending = 0;
+            } else if (endOfSource) {
+                finish();
+                return;
+            } else {
+                if (!reading) {
+                    reading = true;
+                    try {
+                        reader.execute(this::readNext);
+                    } catch (RejectedExecutionException e) {
+                        throw new IOException("Чтение источника передачи отклонено", e);
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    private void readNext() {
+        int read;
+        try {
+            read = source.read(buffer);
+        } catch (IOException e) {
+            if (!finished.get()) {
+                onError(e);
+            }
+            return;
+        }
+        try {
+            synchronized (this) {
+                reading = false;
+                if (read == -1) {
+                    endOfSource = true;
+                } else {
+                    pending = read;
+                }
+                drain();
+            }
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        log.debug("Неблокирующая передача прервана: {}", error.getMessage());
+        release();
+        asyncContext.complete();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        log.debug("Неблокирующая передача прервана по таймауту");
+        release();
+        asyncContext.complete();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        release();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        release();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    private void finish() {
+        if (release()) {
+            asyncContext.complete();
+        }
+    }
+
+    private boolean release() {
+        if (!finished.compareAndSet(false, true)) {
+            return false;
+        }
+        // Закрытие источника освобождает HTTP-соединение с MinIO
+        try {
+            source.close();
+        } catch (IOException e) {
+            log.debug("Ошибка при закрытии источника передачи: {}", e.getMessage());
+        }
+        if (onFinish != null) {
+            onFinish.run();
+        }
+        return true;
+    }
+}
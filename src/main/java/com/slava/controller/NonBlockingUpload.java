@@ -0,0 +1,110 @@
+package com.slava.controller;
+
+import com.slava.exception.UploadTooLargeException;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Принимает тело запроса неблокирующим чтением Servlet API во временный файл: пока клиент
+ * присылает данные медленно, поток контейнера свободен. Когда тело прочитано, файл передаётся дальше.
+ * Тело больше заданного предела обрывается с {@link UploadTooLargeException}.
+ */
+final class NonBlockingUpload implements ReadListener {
+
+    private static final Logger log = LoggerFactory.getLogger(NonBlockingUpload.class);
+
+    private final AsyncContext asyncContext;
+    private final Path target;
+    private final byte[] buffer;
+    private final Consumer<Path> onComplete;
+    private final Consumer<Throwable> onFailure;
+    private final long maxSize;
+    // Приём закончен: тело передано дальше, прервано или отклонено
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private ServletInputStream in;
+    private OutputStream out;
+    private long received;
+
+    NonBlockingUpload(AsyncContext asyncContext, Path target, int bufferSize, long maxSize,
+                      Consumer<Path> onComplete, Consumer<Throwable> onFailure) {
+        this.asyncContext = asyncContext;
+        this.target = target;
+        this.buffer = new byte[bufferSize];
+        this.maxSize = maxSize;
+        this.onComplete = onComplete;
+        this.onFailure = onFailure;
+    }
+
+    void start() throws IOException {
+        out = Files.newOutputStream(target);
+        in = asyncContext.getRequest().getInputStream();
+        in.setReadListener(this);
+    }
+
+    @Override
+    public void onDataAvailable() throws IOException {
+        while (!finished.get() && in.isReady() && !in.isFinished()) {
+            int read = in.read(buffer);
+            if (read == -1) {
+                return;
+            }
+            received += read;
+            if (received > maxSize) {
+                onError(new UploadTooLargeException("Файл больше " + maxSize + " байт"));
+                return;
+            }
+            out.write(buffer, 0, read);
+        }
+    }
+
+    @Override
+    public void onAllDataRead() throws IOException {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        out.close();
+        onComplete.accept(target);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        log.debug("Приём тела запроса прерван: {}", error.getMessage());
+        closeTarget();
+        onFailure.accept(error);
+    }
+
+    /**
+     * Прекращает приём, если тело ещё не передано дальше. true — временный файл больше никому не нужен.
+     */
+    boolean abort() {
+        if (!finished.compareAndSet(false, true)) {
+            return false;
+        }
+        closeTarget();
+        return true;
+    }
+
+    private void closeTarget() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.debug("Ошибка при закрытии временного файла '{}': {}", target, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.slava.controller;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Асинхронный запрос, который ещё ждёт MinIO, тело загрузки или сборку архива. Таймаут или обрыв
+ * соединения в это время отменяют работу и завершают запрос; результат, пришедший позже, освобождает
+ * тот, кто его получил. Ответ, переданный {@link NonBlockingDownload}, дальше следит за собой сам.
+ */
+final class PendingTransfer implements AsyncListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PendingTransfer.class);
+
+    private final AsyncContext asyncContext;
+    private final AtomicBoolean settled = new AtomicBoolean();
+    private volatile Runnable onAbort = () -> { };
+
+    PendingTransfer(AsyncContext asyncContext) {
+        this.asyncContext = asyncContext;
+        asyncContext.addListener(this);
+    }
+
+    AsyncContext asyncContext() {
+        return asyncContext;
+    }
+
+    /**
+     * Что отменить, если запрос прервётся раньше, чем готов ответ.
+     */
+    void onAbort(Runnable onAbort) {
+        this.onAbort = onAbort;
+    }
+
+    /**
+     * Закрепляет за вызывающим право ответить. false — запрос уже прерван или на него уже ответили,
+     * и вызывающий сам освобождает полученный результат.
+     */
+    boolean settle() {
+        return settled.compareAndSet(false, true);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        abort("таймауту");
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        abort("ошибке соединения");
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    private void abort(String reason) {
+        if (!settle()) {
+            return;
+        }
+        log.debug("Асинхронный запрос прерван по {} до начала ответа", reason);
+        try {
+            onAbort.run();
+        } finally {
+            asyncContext.complete();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.slava.controller;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Обрывает чтение тела запроса, как только прочитано больше maxSize байт. Нужен для тела без
+ * Content-Length: его размер становится известен только по ходу приёма.
+ */
+final class SizeLimitedInputStream extends FilterInputStream {
+
+    private final long maxSize;
+    private long received;
+    private boolean exceeded;
+
+    SizeLimitedInputStream(InputStream in, long maxSize) {
+        super(in);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value != -1) {
+            count(1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    boolean exceeded() {
+        return exceeded;
+    }
+
+    private void count(long bytes) throws IOException {
+        received += bytes;
+        if (received > maxSize) {
+            exceeded = true;
+            throw new IOException("Тело запроса больше " + maxSize + " байт");
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.slava.dto;
 
 import lombok.Data;
 
+import java.time.ZonedDateTime;
+
 @Data
 public class FileFolderDto {
     private String name;
@@ -9,4 +11,6 @@ public class FileFolderDto {
     private boolean isFolder;
     private long size;
     private String contentType;
+    private String etag;
+    private ZonedDateTime lastModified;
 }
@@ -0,0 +1,18 @@
+package com.slava.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileMetadataDto {
+    private String path;
+    private long size;
+    private String contentType;
+    private String etag;
+    private ZonedDateTime lastModified;
+}
@@ -0,0 +1,16 @@
+package com.slava.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FolderPageDto {
+    private List<FileFolderDto> items;
+    // null, если это последняя страница
+    private String nextPageToken;
+}
@@ -0,0 +1,21 @@
+package com.slava.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class ListFolderDto {
+
+    public enum SortField { NAME, SIZE, DATE }
+
+    public enum EntryType { ALL, FILES, FOLDERS }
+
+    private String path = "";
+    // Непрозрачный токен из nextPageToken предыдущей страницы
+    private String pageToken;
+    private Integer pageSize;
+    private SortField sort = SortField.NAME;
+    private boolean descending;
+    private EntryType type = EntryType.ALL;
+}
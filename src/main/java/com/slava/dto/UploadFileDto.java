@@ -7,6 +7,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+
 @Data
 @NoArgsConstructor
 public class UploadFileDto {
@@ -19,7 +21,9 @@ public class UploadFileDto {
     @Size(min = 1)
     private String fileName;
 
-    private byte[] content;
+    private InputStream content;
+
+    private long size;
 
     private String contentType;
 
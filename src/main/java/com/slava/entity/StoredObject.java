@@ -0,0 +1,48 @@
+package com.slava.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+
+@Entity
+@Table(name = "objects")
+@Getter
+@Setter
+@NoArgsConstructor
+public class StoredObject {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String owner;
+
+    @Column(nullable = false)
+    private String path;
+
+    @Column(nullable = false)
+    private String parent;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(name = "is_folder", nullable = false)
+    private boolean folder;
+
+    @Column(nullable = false)
+    private boolean implicit;
+
+    @Column(nullable = false)
+    private long size;
+
+    private String etag;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    private OffsetDateTime modified;
+}
@@ -0,0 +1,17 @@
+package com.slava.exception;
+
+import java.util.List;
+
+public class BatchDeleteException extends FileException {
+
+    private final List<String> failedObjects;
+
+    public BatchDeleteException(String message, List<String> failedObjects) {
+        super(message);
+        this.failedObjects = List.copyOf(failedObjects);
+    }
+
+    public List<String> getFailedObjects() {
+        return failedObjects;
+    }
+}
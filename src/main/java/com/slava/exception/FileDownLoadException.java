@@ -4,4 +4,8 @@ public class FileDownLoadException extends FileException{
     public FileDownLoadException(String message) {
         super(message);
     }
+
+    public FileDownLoadException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -1,8 +1,11 @@
 package com.slava.exception;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 @ControllerAdvice
 public class GlobalExceptionHandler {
@@ -31,6 +34,27 @@ public class GlobalExceptionHandler {
         return "error";
     }
 
+    @ExceptionHandler(StorageUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String handleStorageUnavailable(StorageUnavailableException ex, Model model) {
+        model.addAttribute("errorMessage", "Storage is temporarily unavailable: " + ex.getMessage());
+        return "error";
+    }
+
+    @ExceptionHandler(StorageOverloadedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String handleStorageOverloaded(StorageOverloadedException ex, Model model) {
+        model.addAttribute("errorMessage", "Storage is overloaded, try again later: " + ex.getMessage());
+        return "error";
+    }
+
+    @ExceptionHandler({UploadTooLargeException.class, MaxUploadSizeExceededException.class})
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public String handleUploadTooLarge(Exception ex, Model model) {
+        model.addAttribute("errorMessage", "Uploaded file is too large: " + ex.getMessage());
+        return "error";
+    }
+
     @ExceptionHandler(FileException.class)
     public String handleFileException(FileException ex, Model model) {
         model.addAttribute("errorMessage", "File operation error: " + ex.getMessage());
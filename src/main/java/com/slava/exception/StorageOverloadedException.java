@@ -0,0 +1,10 @@
+package com.slava.exception;
+
+/**
+ * Хранилище перегружено: очередь к MinIO заполнена или операция не дождалась своей очереди.
+ */
+public class StorageOverloadedException extends FileException {
+    public StorageOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package com.slava.exception;
+
+/**
+ * Хранилище не принимает запросы: автомат отключения разомкнут после серии сбоев.
+ */
+public class StorageUnavailableException extends FileException {
+    public StorageUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package com.slava.exception;
+
+/**
+ * Тело загрузки больше files.transfer.max-upload-size, отвечает 413.
+ */
+public class UploadTooLargeException extends FileException {
+    public UploadTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,6 @@
 package com.slava.listener;
 
-import com.slava.service.FileService;
+import com.slava.service.BucketProvisioner;
 import org.springframework.context.ApplicationListener;
 import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
 import org.springframework.stereotype.Component;
@@ -8,15 +8,16 @@ import org.springframework.stereotype.Component;
 @Component
 public class LoginSuccessListener implements ApplicationListener<AuthenticationSuccessEvent> {
 
-    private final FileService fileService;
+    private final BucketProvisioner bucketProvisioner;
 
-    public LoginSuccessListener(FileService fileService) {
-        this.fileService = fileService;
+    public LoginSuccessListener(BucketProvisioner bucketProvisioner) {
+        this.bucketProvisioner = bucketProvisioner;
     }
 
     @Override
     public void onApplicationEvent(AuthenticationSuccessEvent event) {
         String username = event.getAuthentication().getName();
-        fileService.ensureBucketExists(username);
+        // Бакет создаётся при регистрации, здесь только досоздаётся при необходимости — вход не ждёт MinIO
+        bucketProvisioner.ensureExistsAsync(username);
     }
 }
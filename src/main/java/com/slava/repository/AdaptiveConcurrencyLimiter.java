@@ -0,0 +1,338 @@
+package com.slava.repository;
+
+import com.slava.config.MinioProperties;
+import com.slava.exception.FileException;
+import com.slava.exception.StorageOverloadedException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Адаптивный предел одновременных операций с MinIO по схеме AIMD. Обычная задержка — минимум
+ * за последние один-два baselineWindow, как базовое RTT в TCP Vegas: очередь внутри MinIO его не
+ * поднимает, а постоянное замедление хранилища становится новой нормой через окно. Ответ дольше
+ * обычного в latencyTolerance раз или временный сбой сжимает предел в backoffRatio раз, но не чаще раза
+ * на окно из limit операций, как окно TCP. Пока ответы в норме и предел используется хотя бы
+ * наполовину, он растёт на единицу за окно.
+ * Операции сверх предела ждут в очереди до maxWait; при переполненной очереди или по истечении
+ * ожидания вызов отклоняется {@link StorageOverloadedException}.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    enum Outcome {
+        // Ответ получен, задержка учитывается
+        SUCCESS,
+        // Ответ получен, но задержка зависит от объёма данных и ничего не говорит о нагрузке
+        IGNORED,
+        // Временный сбой: такой же сигнал перегрузки, как медленный ответ
+        DROPPED
+    }
+
+    private final MinioProperties.Limiter settings;
+    private final LongSupplier nanoClock;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+    private final AtomicLong rejected = new AtomicLong();
+    // Асинхронные операции, ждущие места: им место передаётся при освобождении, поток не блокируется
+    private final Deque<CompletableFuture<Void>> asyncWaiters = new ArrayDeque<>();
+
+    private double limit;
+    private int inFlight;
+    private int queued;
+    // Минимумы задержки за текущее и предыдущее окно
+    private long windowMinNanos = Long.MAX_VALUE;
+    private long previousWindowMinNanos = Long.MAX_VALUE;
+    private long windowStartedAt;
+    private int samplesSinceDecrease;
+
+    public AdaptiveConcurrencyLimiter(MinioProperties.Limiter settings) {
+        this(settings, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(MinioProperties.Limiter settings, LongSupplier nanoClock) {
+        this.settings = settings;
+        this.nanoClock = nanoClock;
+        this.windowStartedAt = nanoClock.getAsLong();
+        this.limit = Math.max(settings.getMinLimit(), Math.min(settings.getMaxLimit(), settings.getInitialLimit()));
+        this.samplesSinceDecrease = (int) limit;
+    }
+
+    /**
+     * Ограничитель с неизменным пределом — отдельная переборка для операций, длительность которых
+     * зависит от объёма данных: предел сжимать и растить не по чему.
+     */
+    public static AdaptiveConcurrencyLimiter fixed(MinioProperties.Transfers transfers) {
+        MinioProperties.Limiter settings = new MinioProperties.Limiter();
+        settings.setEnabled(transfers.isEnabled());
+        settings.setInitialLimit(transfers.getMaxConcurrent());
+        settings.setMinLimit(transfers.getMaxConcurrent());
+        settings.setMaxLimit(transfers.getMaxConcurrent());
+        settings.setMaxQueued(transfers.getMaxQueued());
+        settings.setMaxWait(transfers.getMaxWait());
+        return new AdaptiveConcurrencyLimiter(settings);
+    }
+
+    /**
+     * Выполняет один запрос к MinIO на занятом месте. Задержка учитывается, только если measured:
+     * у загрузок, копирования и листингов она зависит от объёма. При выключенном ограничителе
+     * запрос выполняется сразу.
+     */
+    public <T> T call(boolean measured, Supplier<T> request) {
+        if (!settings.isEnabled()) {
+            return request.get();
+        }
+        acquire();
+        Outcome outcome = Outcome.DROPPED;
+        long start = nanoClock.getAsLong();
+        try {
+            T result = request.get();
+            outcome = measured ? Outcome.SUCCESS : Outcome.IGNORED;
+            return result;
+        } catch (RuntimeException e) {
+            outcome = outcomeOf(measured, e);
+            throw e;
+        } finally {
+            release(outcome, nanoClock.getAsLong() - start);
+        }
+    }
+
+    public void run(boolean measured, Runnable request) {
+        call(measured, () -> {
+            request.run();
+            return null;
+        });
+    }
+
+    /**
+     * Асинхронный вариант {@link #call}: место занято от отправки запроса до завершения его future.
+     * Если мест нет, запрос ждёт в той же очереди, но без потока — место передаётся ему при освобождении,
+     * и запрос отправляется в освободившем его потоке. Отказ приходит как future, завершённый
+     * {@link StorageOverloadedException}.
+     */
+    public <T> CompletableFuture<T> callAsync(boolean measured, Supplier<CompletableFuture<T>> request) {
+        if (!settings.isEnabled()) {
+            return request.get();
+        }
+        return acquireAsync().thenCompose(ignored -> {
+            long start = nanoClock.getAsLong();
+            CompletableFuture<T> response;
+            try {
+                response = request.get();
+            } catch (RuntimeException e) {
+                release(outcomeOf(measured, e), nanoClock.getAsLong() - start);
+                throw e;
+            }
+            return response.whenComplete((result, error) ->
+                    release(outcomeOf(measured, error), nanoClock.getAsLong() - start));
+        });
+    }
+
+    private static Outcome outcomeOf(boolean measured, Throwable error) {
+        // MinIO ответил, хоть и ошибкой: это не признак перегрузки
+        if (error != null && ResilientFileRepository.isTransient(error)) {
+            return Outcome.DROPPED;
+        }
+        return measured ? Outcome.SUCCESS : Outcome.IGNORED;
+    }
+
+    /**
+     * Занимает место под операцию; если мест нет, ждёт в очереди по порядку прихода.
+     */
+    void acquire() {
+        lock.lock();
+        try {
+            if (queued == 0 && inFlight < currentLimit()) {
+                inFlight++;
+                return;
+            }
+            if (queued >= settings.getMaxQueued()) {
+                rejected.incrementAndGet();
+                throw new StorageOverloadedException("Хранилище перегружено, очередь запросов заполнена");
+            }
+            queued++;
+            try {
+                long remaining = settings.getMaxWait().toNanos();
+                while (inFlight >= currentLimit()) {
+                    if (remaining <= 0) {
+                        rejected.incrementAndGet();
+                        throw new StorageOverloadedException("Хранилище перегружено, запрос не дождался очереди");
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FileException("Операция прервана");
+            } finally {
+                queued--;
+            }
+            inFlight++;
+            if (queued > 0 && inFlight < currentLimit()) {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Занимает место под асинхронную операцию. Future завершается, когда место занято; ожидание
+     * ограничено теми же maxQueued и maxWait, что и у {@link #acquire()}.
+     */
+    CompletableFuture<Void> acquireAsync() {
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        lock.lock();
+        try {
+            if (queued == 0 && inFlight < currentLimit()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (queued >= settings.getMaxQueued()) {
+                rejected.incrementAndGet();
+                return CompletableFuture.failedFuture(
+                        new StorageOverloadedException("Хранилище перегружено, очередь запросов заполнена"));
+            }
+            queued++;
+            asyncWaiters.addLast(waiter);
+        } finally {
+            lock.unlock();
+        }
+        CompletableFuture.delayedExecutor(settings.getMaxWait().toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            lock.lock();
+            try {
+                // Если место уже передано, ожидающего в очереди нет
+                if (!asyncWaiters.remove(waiter)) {
+                    return;
+                }
+                queued--;
+                rejected.incrementAndGet();
+            } finally {
+                lock.unlock();
+            }
+            waiter.completeExceptionally(new StorageOverloadedException("Хранилище перегружено, запрос не дождался очереди"));
+        });
+        return waiter;
+    }
+
+    /**
+     * Освобождает место и подстраивает предел по исходу операции.
+     */
+    void release(Outcome outcome, long latencyNanos) {
+        lock.lock();
+        try {
+            int inFlightBefore = inFlight--;
+            samplesSinceDecrease++;
+            if (outcome == Outcome.DROPPED) {
+                decrease();
+            } else if (outcome == Outcome.SUCCESS) {
+                updateBaseline(latencyNanos);
+                boolean slow = latencyNanos > baselineNanos() * settings.getLatencyTolerance();
+                if (slow) {
+                    decrease();
+                } else if (inFlightBefore * 2 >= limit) {
+                    limit = Math.min(settings.getMaxLimit(), limit + 1 / limit);
+                }
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        handOffToAsyncWaiter();
+    }
+
+    /**
+     * Передаёт свободное место первому асинхронному ожидающему. Future завершается вне блокировки:
+     * в нём сразу отправляется запрос.
+     */
+    private void handOffToAsyncWaiter() {
+        CompletableFuture<Void> waiter;
+        lock.lock();
+        try {
+            if (asyncWaiters.isEmpty() || inFlight >= currentLimit()) {
+                return;
+            }
+            waiter = asyncWaiters.pollFirst();
+            queued--;
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+        waiter.complete(null);
+    }
+
+    private void decrease() {
+        if (samplesSinceDecrease < limit) {
+            return;
+        }
+        limit = Math.max(settings.getMinLimit(), limit * settings.getBackoffRatio());
+        samplesSinceDecrease = 0;
+    }
+
+    private void updateBaseline(long latencyNanos) {
+        long now = nanoClock.getAsLong();
+        if (now - windowStartedAt >= settings.getBaselineWindow().toNanos()) {
+            previousWindowMinNanos = windowMinNanos;
+            windowMinNanos = Long.MAX_VALUE;
+            windowStartedAt = now;
+        }
+        windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+    }
+
+    private long baselineNanos() {
+        return Math.min(windowMinNanos, previousWindowMinNanos);
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Обычная задержка быстрых операций в миллисекундах, 0 — замеров ещё не было.
+     */
+    public double baselineMillis() {
+        lock.lock();
+        try {
+            long baseline = baselineNanos();
+            return baseline == Long.MAX_VALUE ? 0 : (double) baseline / TimeUnit.MILLISECONDS.toNanos(1);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.slava.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Блокировка между узлами на advisory lock PostgreSQL. Блокировка уровня сессии держится на отдельном
+ * соединении всё время задачи и снимается вместе с ним, если узел упадёт, так что зависших блокировок
+ * не бывает.
+ */
+@Component
+public class AdvisoryLock {
+
+    private static final Logger log = LoggerFactory.getLogger(AdvisoryLock.class);
+
+    private final DataSource dataSource;
+
+    public AdvisoryLock(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Выполняет задачу, если блокировку {@code name} не держит другой узел, и не ждёт её.
+     * Возвращает {@code false}, если задача не выполнялась.
+     */
+    public boolean runExclusively(String name, Runnable task) {
+        long key = name.hashCode();
+        try (Connection connection = dataSource.getConnection()) {
+            if (!tryLock(connection, key)) {
+                return false;
+            }
+            try {
+                task.run();
+            } finally {
+                unlock(connection, key);
+            }
+            return true;
+        } catch (SQLException e) {
+            log.error("Ошибка блокировки '{}': {}", name, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private static boolean tryLock(Connection connection, long key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, key);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getBoolean(1);
+            }
+        }
+    }
+
+    private static void unlock(Connection connection, long key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, key);
+            statement.execute();
+        }
+    }
+}
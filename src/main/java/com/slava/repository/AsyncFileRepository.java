@@ -0,0 +1,25 @@
+package com.slava.repository;
+
+import com.slava.dto.FileMetadataDto;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронный вариант передач из {@link CustomFileRepository}: ожидание ответа MinIO не занимает поток.
+ * Семантика та же — отсутствующий объект даёт пустой Optional, остальные ошибки завершают
+ * future исключением FileException.
+ */
+public interface AsyncFileRepository {
+
+    CompletableFuture<Optional<FileMetadataDto>> statObject(String bucketName, String objectName);
+    CompletableFuture<Optional<InputStream>> downloadFile(String bucketName, String objectName);
+    CompletableFuture<Optional<InputStream>> downloadFile(String bucketName, String objectName, long offset, long length);
+
+    /**
+     * Загружает готовый локальный файл, например тело запроса, принятое неблокирующим чтением.
+     */
+    CompletableFuture<Void> uploadFile(String bucketName, String objectName, Path file, String contentType);
+}
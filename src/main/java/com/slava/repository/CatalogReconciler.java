@@ -0,0 +1,229 @@
+package com.slava.repository;
+
+import com.slava.config.FilesProperties;
+import com.slava.entity.StoredObject;
+import com.slava.repository.ObjectCatalog.CatalogEntry;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Bucket;
+import io.minio.messages.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Сверяет каталог объектов с MinIO. Рекурсивный листинг бакета и строки каталога читаются
+ * в одном порядке ключей и сливаются, как при merge join: расхождения исправляются пачками,
+ * поэтому ни бакет, ни каталог целиком в память не загружаются.
+ * <p>
+ * Листинг отстаёт от операций, идущих во время сверки, поэтому строки, изменённые после её начала,
+ * не трогаются, а ключи, удалённые после начала, не возвращаются (см. метки удаления в {@link ObjectCatalog}).
+ */
+@Component
+public class CatalogReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogReconciler.class);
+
+    private static final String RECONCILE_LOCK = "files:catalog:reconcile";
+
+    private final MinioClient minioClient;
+    private final ObjectCatalog objectCatalog;
+    private final AdvisoryLock lock;
+    private final FilesProperties.Catalog settings;
+
+    public record ReconcileResult(int upserted, int deleted) {
+    }
+
+    public CatalogReconciler(MinioClient minioClient, ObjectCatalog objectCatalog, AdvisoryLock lock,
+                             FilesProperties filesProperties) {
+        this.minioClient = minioClient;
+        this.objectCatalog = objectCatalog;
+        this.lock = lock;
+        this.settings = filesProperties.getCatalog();
+    }
+
+    /**
+     * Плановая сверка всех бакетов. Расписание срабатывает на каждом узле, а сверку выполняет тот,
+     * кто взял блокировку: остальные пропускают запуск, а не сверяют те же бакеты параллельно.
+     */
+    @Scheduled(initialDelayString = "${files.catalog.reconcile-initial-delay:PT1M}",
+            fixedDelayString = "${files.catalog.reconcile-interval:PT1H}")
+    public void reconcileAll() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        if (!lock.runExclusively(RECONCILE_LOCK, this::reconcileBuckets)) {
+            log.debug("Сверку каталога выполняет другой узел, запуск пропущен");
+        }
+    }
+
+    private void reconcileBuckets() {
+        List<Bucket> buckets;
+        try {
+            buckets = minioClient.listBuckets();
+        } catch (Exception e) {
+            log.error("Ошибка при получении списка бакетов для сверки каталога: {}", e.getMessage(), e);
+            return;
+        }
+        for (Bucket bucket : buckets) {
+            try {
+                reconcile(bucket.name());
+            } catch (RuntimeException e) {
+                log.error("Ошибка сверки каталога бакета '{}': {}", bucket.name(), e.getMessage(), e);
+            }
+        }
+    }
+
+    public ReconcileResult reconcile(String owner) {
+        long start = System.currentTimeMillis();
+        int batchSize = settings.getReconcileBatchSize();
+        Iterator<CatalogEntry> expected = new ExpectedEntries(minioClient.listObjects(ListObjectsArgs.builder()
+                .bucket(owner)
+                .recursive(true)
+                .includeUserMetadata(true)
+                .build()).iterator());
+        CatalogCursor actual = new CatalogCursor(owner, batchSize);
+
+        List<CatalogEntry> upserts = new ArrayList<>();
+        List<String> deletes = new ArrayList<>();
+        int upserted = 0;
+        int deleted = 0;
+        CatalogEntry next = expected.hasNext() ? expected.next() : null;
+        StoredObject row = actual.next();
+        while (next != null || row != null) {
+            int order = next == null ? 1 : row == null ? -1 : NamespaceTrie.compareKeys(next.path(), row.getPath());
+            if (order < 0) {
+                upserts.add(next);
+                next = expected.hasNext() ? expected.next() : null;
+            } else if (order > 0) {
+                // Строки, записанные после начала сверки, могли появиться уже после прохода листинга
+                if (!modifiedSince(row, start)) {
+                    deletes.add(row.getPath());
+                }
+                row = actual.next();
+            } else {
+                // Строка, записанная после начала сверки, новее листинга
+                if (differs(next, row) && !modifiedSince(row, start)) {
+                    upserts.add(next);
+                }
+                next = expected.hasNext() ? expected.next() : null;
+                row = actual.next();
+            }
+            if (upserts.size() + deletes.size() >= batchSize) {
+                objectCatalog.apply(owner, upserts, deletes, start);
+                upserted += upserts.size();
+                deleted += deletes.size();
+                upserts.clear();
+                deletes.clear();
+            }
+        }
+        objectCatalog.apply(owner, upserts, deletes, start);
+        upserted += upserts.size();
+        deleted += deletes.size();
+        objectCatalog.markReconciled(owner);
+        objectCatalog.purgeTombstones(owner, start);
+        if (upserted > 0 || deleted > 0) {
+            log.info("Каталог бакета '{}' сверен: исправлено {}, удалено {} записей", owner, upserted, deleted);
+        }
+        return new ReconcileResult(upserted, deleted);
+    }
+
+    private static boolean modifiedSince(StoredObject row, long start) {
+        return row.getModified() != null && row.getModified().toInstant().toEpochMilli() >= start;
+    }
+
+    private boolean differs(CatalogEntry entry, StoredObject row) {
+        return entry.folder() != row.isFolder()
+                || entry.implicit() != row.isImplicit()
+                || (!entry.implicit() && (entry.size() != row.getSize() || !Objects.equals(entry.etag(), row.getEtag())
+                        || (entry.contentType() != null && !entry.contentType().equals(row.getContentType()))));
+    }
+
+    /**
+     * Строки каталога владельца по порядку ключей, страницами по keyset-пагинации.
+     */
+    private final class CatalogCursor {
+        private final String owner;
+        private final int pageSize;
+        private Iterator<StoredObject> page = Collections.emptyIterator();
+        private String lastPath = "";
+        private boolean exhausted;
+
+        CatalogCursor(String owner, int pageSize) {
+            this.owner = owner;
+            this.pageSize = pageSize;
+        }
+
+        StoredObject next() {
+            if (!page.hasNext() && !exhausted) {
+                List<StoredObject> rows = objectCatalog.page(owner, lastPath, pageSize);
+                exhausted = rows.size() < pageSize;
+                page = rows.iterator();
+            }
+            if (!page.hasNext()) {
+                return null;
+            }
+            StoredObject row = page.next();
+            lastPath = row.getPath();
+            return row;
+        }
+    }
+
+    /**
+     * Ожидаемое содержимое каталога: объекты MinIO и неявные папки-предки, в порядке ключей.
+     * Предок, которого ещё не было в цепочке папок предыдущего ключа, всегда больше этого ключа,
+     * поэтому вставка предков не нарушает сортировку.
+     */
+    static final class ExpectedEntries implements Iterator<CatalogEntry> {
+        private final Iterator<Result<Item>> items;
+        private final Deque<String> folderChain = new ArrayDeque<>();
+        private final Deque<CatalogEntry> pending = new ArrayDeque<>();
+
+        ExpectedEntries(Iterator<Result<Item>> items) {
+            this.items = items;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !pending.isEmpty() || items.hasNext();
+        }
+
+        @Override
+        public CatalogEntry next() {
+            if (pending.isEmpty()) {
+                advance();
+            }
+            return pending.poll();
+        }
+
+        private void advance() {
+            Item item;
+            try {
+                item = items.next().get();
+            } catch (Exception e) {
+                throw new IllegalStateException("Ошибка листинга MinIO: " + e.getMessage(), e);
+            }
+            String key = item.objectName();
+            while (!folderChain.isEmpty() && !key.startsWith(folderChain.peekLast())) {
+                folderChain.pollLast();
+            }
+            int covered = folderChain.isEmpty() ? 0 : folderChain.peekLast().length();
+            for (String ancestor : ObjectCatalog.ancestorsOf(key)) {
+                if (ancestor.length() > covered) {
+                    pending.add(new CatalogEntry(ancestor, true, true, 0, null, null, 0));
+                    folderChain.addLast(ancestor);
+                }
+            }
+            ObjectEntry object = ObjectEntry.of(item);
+            pending.add(new CatalogEntry(key, key.endsWith("/"), false, object.size(), object.etag(),
+                    object.contentType(), object.lastModified()));
+            if (key.endsWith("/")) {
+                folderChain.addLast(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.slava.repository;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Автомат отключения по числу сбоев подряд. Разомкнутый автомат отклоняет вызовы сразу;
+ * по истечении openDuration пропускается один пробный вызов, и его исход решает, замкнуться
+ * или снова разомкнуться. Порог 0 отключает автомат.
+ */
+final class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Можно ли выполнить вызов. Разрешение на пробный вызов выдаётся одному вызывающему,
+     * он обязан сообщить исход через {@link #onSuccess()}, {@link #onFailure()} или {@link #onIgnored()}.
+     */
+    synchronized boolean tryAcquire() {
+        if (failureThreshold <= 0) {
+            return true;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nanoClock.getAsLong() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Пропускает ли автомат запросы, не занимая пробный вызов: для ленивых потоков,
+     * исход которых становится известен только при чтении.
+     */
+    synchronized boolean isCallPermitted() {
+        return failureThreshold <= 0 || state != State.OPEN || nanoClock.getAsLong() - openedAt >= openNanos;
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Вызов завершился без сведений о хранилище; пробный вызов возвращается следующему вызывающему.
+     */
+    synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    synchronized void onFailure() {
+        if (failureThreshold <= 0) {
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+}
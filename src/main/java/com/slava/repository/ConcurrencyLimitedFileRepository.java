@@ -0,0 +1,160 @@
+package com.slava.repository;
+
+import com.slava.dto.FileMetadataDto;
+import com.slava.dto.ListFolderDto;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Каждая операция с MinIO проходит через {@link AdaptiveConcurrencyLimiter}. Стоит между
+ * {@link ResilientFileRepository} и {@link MinioFileRepositoryImpl}, поэтому место занимают и повторы,
+ * и дублирующие запросы. Задержка учитывается только у операций постоянной стоимости (stat, начало
+ * GET, удаление объекта, проверка бакета); у листингов она зависит от объёма.
+ * Загрузка идёт со скоростью клиента, а копирование — со скоростью переноса данных внутри MinIO,
+ * поэтому они занимают место не в общем ограничителе, а в отдельной переборке transfers с постоянным
+ * пределом: медленные загрузки не оставляют без мест stat, GET и листинги.
+ * Составные операции — удаление и перенос папок, пакетное удаление, перенос файла, рекурсивные
+ * и ленивые листинги, поиск — проходят насквозь: {@link MinioFileRepositoryImpl} занимает место на
+ * каждый свой запрос (страницу листинга, пачку удаления, копию), а не на всю операцию. Одно место на
+ * весь перенос папки держало бы тысячи запросов на одном слоте, а место под ленивый поток — всё время,
+ * пока его читают.
+ */
+@Repository
+public class ConcurrencyLimitedFileRepository implements CustomFileRepository {
+
+    private final CustomFileRepository delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final AdaptiveConcurrencyLimiter transfers;
+
+    public ConcurrencyLimitedFileRepository(@Qualifier("minioFileRepositoryImpl") CustomFileRepository delegate,
+                                            @Qualifier("minioConcurrencyLimiter") AdaptiveConcurrencyLimiter limiter,
+                                            @Qualifier("minioTransferBulkhead") AdaptiveConcurrencyLimiter transfers) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.transfers = transfers;
+    }
+
+    public AdaptiveConcurrencyLimiter limiter() {
+        return limiter;
+    }
+
+    public AdaptiveConcurrencyLimiter transfers() {
+        return transfers;
+    }
+
+    @Override
+    public void uploadFile(String bucketName, String objectName, InputStream fileStream, long size, String contentType) {
+        transfers.run(false, () -> delegate.uploadFile(bucketName, objectName, fileStream, size, contentType));
+    }
+
+    @Override
+    public Optional<InputStream> downloadFile(String bucketName, String objectName) {
+        return call(true, () -> delegate.downloadFile(bucketName, objectName));
+    }
+
+    @Override
+    public Optional<InputStream> downloadFile(String bucketName, String objectName, long offset, long length) {
+        return call(true, () -> delegate.downloadFile(bucketName, objectName, offset, length));
+    }
+
+    @Override
+    public Optional<FileMetadataDto> statObject(String bucketName, String objectName) {
+        return call(true, () -> delegate.statObject(bucketName, objectName));
+    }
+
+    @Override
+    public void deleteFile(String bucketName, String filePath) {
+        run(true, () -> delegate.deleteFile(bucketName, filePath));
+    }
+
+    @Override
+    public void deleteFiles(String bucketName, List<String> filePaths) {
+        delegate.deleteFiles(bucketName, filePaths);
+    }
+
+    @Override
+    public void copyFile(String bucketName, String sourceObjectName, String targetObjectName) {
+        transfers.run(false, () -> delegate.copyFile(bucketName, sourceObjectName, targetObjectName));
+    }
+
+    @Override
+    public void createFolder(String bucketName, String folderPath) {
+        run(true, () -> delegate.createFolder(bucketName, folderPath));
+    }
+
+    @Override
+    public void deleteFolder(String bucketName, String folderPath) {
+        delegate.deleteFolder(bucketName, folderPath);
+    }
+
+    @Override
+    public void moveFolder(String bucketName, String sourcePath, String targetPath) {
+        delegate.moveFolder(bucketName, sourcePath, targetPath);
+    }
+
+    @Override
+    public void moveFolder(String bucketName, String sourcePath, String targetPath, CopyProgressListener listener) {
+        delegate.moveFolder(bucketName, sourcePath, targetPath, listener);
+    }
+
+    @Override
+    public void moveFile(String bucketName, String sourcePath, String targetPath) {
+        delegate.moveFile(bucketName, sourcePath, targetPath);
+    }
+
+    @Override
+    public List<String> listObjects(String bucketName, String prefix) {
+        return delegate.listObjects(bucketName, prefix);
+    }
+
+    @Override
+    public Stream<ObjectEntry> streamObjects(String bucketName, String prefix) {
+        return delegate.streamObjects(bucketName, prefix);
+    }
+
+    @Override
+    public List<String> listChildren(String bucketName, String prefix) {
+        return call(false, () -> delegate.listChildren(bucketName, prefix));
+    }
+
+    @Override
+    public Stream<ObjectEntry> streamChildren(String bucketName, String prefix, String startAfter, int pageSize) {
+        return delegate.streamChildren(bucketName, prefix, startAfter, pageSize);
+    }
+
+    @Override
+    public List<ObjectEntry> search(String bucketName, String query, int limit) {
+        return delegate.search(bucketName, query, limit);
+    }
+
+    @Override
+    public Optional<List<ObjectEntry>> sortedChildren(String bucketName, String prefix, ListFolderDto.SortField sort,
+                                                      boolean descending, Boolean folders, long afterValue,
+                                                      String afterKey, int limit) {
+        return delegate.sortedChildren(bucketName, prefix, sort, descending, folders, afterValue, afterKey, limit);
+    }
+
+    @Override
+    public boolean bucketExists(String bucketName) {
+        return call(true, () -> delegate.bucketExists(bucketName));
+    }
+
+    @Override
+    public void createBucket(String bucketName) {
+        run(true, () -> delegate.createBucket(bucketName));
+    }
+
+    private void run(boolean measured, Runnable request) {
+        limiter.run(measured, request);
+    }
+
+    private <T> T call(boolean measured, Supplier<T> request) {
+        return limiter.call(measured, request);
+    }
+}
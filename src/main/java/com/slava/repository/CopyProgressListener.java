@@ -0,0 +1,9 @@
+package com.slava.repository;
+
+@FunctionalInterface
+public interface CopyProgressListener {
+
+    CopyProgressListener NONE = (copiedObjects, totalObjects, copiedBytes, totalBytes) -> { };
+
+    void onProgress(long copiedObjects, long totalObjects, long copiedBytes, long totalBytes);
+}
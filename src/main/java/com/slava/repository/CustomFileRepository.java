@@ -1,20 +1,47 @@
 package com.slava.repository;
 
+import com.slava.dto.FileMetadataDto;
+import com.slava.dto.ListFolderDto;
+
 import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CustomFileRepository {
 
     void uploadFile(String bucketName, String objectName, InputStream fileStream, long size, String contentType);
     Optional<InputStream> downloadFile(String bucketName, String objectName);
+    Optional<InputStream> downloadFile(String bucketName, String objectName, long offset, long length);
+    Optional<FileMetadataDto> statObject(String bucketName, String objectName);
     void deleteFile(String bucketName, String filePath);
+    void deleteFiles(String bucketName, List<String> filePaths);
     void copyFile(String bucketName, String sourceObjectName, String targetObjectName);
     void createFolder(String bucketName, String folderPath);
     void deleteFolder(String bucketName, String folderPath);
     void moveFolder(String bucketName, String sourcePath, String targetPath);
+    void moveFolder(String bucketName, String sourcePath, String targetPath, CopyProgressListener listener);
     void moveFile(String bucketName, String sourcePath, String targetPath);
     List<String> listObjects(String bucketName, String prefix);
+
+    /**
+     * Ленивый рекурсивный листинг: ключи читаются из MinIO страницами по мере потребления потока.
+     * Порядок ключей не гарантируется. Поток нужно закрывать.
+     */
+    Stream<ObjectEntry> streamObjects(String bucketName, String prefix);
+    List<String> listChildren(String bucketName, String prefix);
+    Stream<ObjectEntry> streamChildren(String bucketName, String prefix, String startAfter, int pageSize);
+    List<ObjectEntry> search(String bucketName, String query, int limit);
+
+    /**
+     * Страница уровня папки в порядке поля {@code sort} из сверенного каталога, после строки
+     * ({@code afterValue}, {@code afterKey}); {@code afterKey == null} — первая страница. {@code folders}:
+     * null — все элементы, иначе только папки или только файлы. Пустой Optional — каталог владельца
+     * не сверен, и страницу нужно собрать из листинга.
+     */
+    Optional<List<ObjectEntry>> sortedChildren(String bucketName, String prefix, ListFolderDto.SortField sort,
+                                               boolean descending, Boolean folders, long afterValue, String afterKey,
+                                               int limit);
     boolean bucketExists(String bucketName);
     void createBucket(String bucketName);
 }
@@ -0,0 +1,34 @@
+package com.slava.repository;
+
+/**
+ * Бюджет дублирующих запросов: каждый запрос добавляет долю токена, дубль тратит целый токен.
+ * Поэтому дублей не больше заданной доли от числа запросов, даже когда медленными становятся все
+ * ответы сразу и перцентиль ещё не догнал новую задержку. Запас сверху ограничен, чтобы после
+ * долгого затишья не накопилась лавина дублей.
+ */
+final class HedgeBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    HedgeBudget(double ratio, int burst) {
+        this.ratio = ratio;
+        this.maxTokens = Math.max(1, burst);
+    }
+
+    synchronized void onRequest() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    /**
+     * Списывает токен на дубль; false — бюджет исчерпан и дубль не отправляется.
+     */
+    synchronized boolean tryAcquire() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+}
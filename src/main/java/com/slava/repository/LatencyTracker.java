@@ -0,0 +1,49 @@
+package com.slava.repository;
+
+import java.util.Arrays;
+
+/**
+ * Скользящее окно последних задержек и их перцентиль. Перцентиль пересчитывается сортировкой окна
+ * не чаще раза на {@link #RECOMPUTE_EVERY} замеров, между пересчётами отдаётся прежнее значение.
+ */
+final class LatencyTracker {
+
+    // Пока замеров меньше, перцентиль не считается: по паре значений он ничего не говорит
+    static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 64;
+
+    private final long[] samples;
+    private final double percentile;
+    private int next;
+    private int count;
+    private int sinceRecompute;
+    private long cached = -1;
+
+    LatencyTracker(int window, double percentile) {
+        this.samples = new long[Math.max(window, MIN_SAMPLES)];
+        this.percentile = percentile;
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        sinceRecompute++;
+    }
+
+    /**
+     * Перцентиль задержки в наносекундах или -1, если замеров ещё мало.
+     */
+    synchronized long percentileNanos() {
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+        if (cached < 0 || sinceRecompute >= RECOMPUTE_EVERY) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            cached = sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+            sinceRecompute = 0;
+        }
+        return cached;
+    }
+}
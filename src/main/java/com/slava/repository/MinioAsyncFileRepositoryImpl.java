@@ -0,0 +1,179 @@
+package com.slava.repository;
+
+import com.slava.dto.FileMetadataDto;
+import com.slava.exception.FileDownLoadException;
+import com.slava.exception.FileException;
+import com.slava.exception.StorageOverloadedException;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.StatObjectArgs;
+import io.minio.UploadObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * {@link AsyncFileRepository} на асинхронном клиенте MinIO.
+ * <p>
+ * Повторов и автомата отключения из {@link ResilientFileRepository} здесь нет намеренно. Повтор потребовал
+ * бы отложенного перезапуска future с теми же правилами идемпотентности, а вызывающие передачи и так
+ * начинаются заново целиком: загрузка идёт из временного файла, который удаляется по завершении,
+ * а чтение ещё не отдало клиенту ни байта, пока future не завершён. Ошибка доходит до клиента,
+ * и повтор остаётся за ним. Сбои асинхронных вызовов не учитываются и автоматом отключения синхронных.
+ * <p>
+ * Места в ограничителях те же, что у синхронного репозитория: stat и начало GET занимают место
+ * в {@link AdaptiveConcurrencyLimiter} MinIO, загрузка — в переборке transfers. Место держится
+ * от отправки запроса до завершения его future, а ожидание места не занимает поток.
+ */
+@Repository
+public class MinioAsyncFileRepositoryImpl implements AsyncFileRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(MinioAsyncFileRepositoryImpl.class);
+    private static final String NO_SUCH_KEY = "NoSuchKey";
+
+    private final MinioAsyncClient minioAsyncClient;
+    private final ExecutorService storageExecutor;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final AdaptiveConcurrencyLimiter transfers;
+    private final NamespaceIndex namespaceIndex;
+    private final ObjectCatalog objectCatalog;
+
+    @FunctionalInterface
+    private interface AsyncRequest<T> {
+        CompletableFuture<T> send() throws Exception;
+    }
+
+    public MinioAsyncFileRepositoryImpl(MinioAsyncClient minioAsyncClient,
+                                        @Qualifier("storageExecutor") ExecutorService storageExecutor,
+                                        @Qualifier("minioConcurrencyLimiter") AdaptiveConcurrencyLimiter limiter,
+                                        @Qualifier("minioTransferBulkhead") AdaptiveConcurrencyLimiter transfers,
+                                        NamespaceIndex namespaceIndex, ObjectCatalog objectCatalog) {
+        this.minioAsyncClient = minioAsyncClient;
+        this.storageExecutor = storageExecutor;
+        this.limiter = limiter;
+        this.transfers = transfers;
+        this.namespaceIndex = namespaceIndex;
+        this.objectCatalog = objectCatalog;
+    }
+
+    @Override
+    public CompletableFuture<Optional<FileMetadataDto>> statObject(String bucketName, String objectName) {
+        return send(limiter, true, () -> minioAsyncClient.statObject(StatObjectArgs.builder()
+                .bucket(bucketName)
+                .object(objectName)
+                .build()))
+                .handle((stat, error) -> {
+                    if (error == null) {
+                        return Optional.of(new FileMetadataDto(objectName, stat.size(), stat.contentType(),
+                                stat.etag(), stat.lastModified()));
+                    }
+                    if (isNoSuchKey(error)) {
+                        return Optional.empty();
+                    }
+                    log.error("Ошибка при получении метаданных файла '{}' из бакета '{}': {}",
+                            objectName, bucketName, error.getMessage(), error);
+                    throw failure(error, new FileException("Ошибка при получении метаданных файла"));
+                });
+    }
+
+    @Override
+    public CompletableFuture<Optional<InputStream>> downloadFile(String bucketName, String objectName) {
+        return getObject(bucketName, objectName, GetObjectArgs.builder().bucket(bucketName).object(objectName).build());
+    }
+
+    @Override
+    public CompletableFuture<Optional<InputStream>> downloadFile(String bucketName, String objectName, long offset, long length) {
+        return getObject(bucketName, objectName, GetObjectArgs.builder()
+                .bucket(bucketName)
+                .object(objectName)
+                .offset(offset)
+                .length(length)
+                .build());
+    }
+
+    private CompletableFuture<Optional<InputStream>> getObject(String bucketName, String objectName, GetObjectArgs args) {
+        // Как и в синхронном репозитории, пустой результат только у отсутствующего объекта
+        return send(limiter, true, () -> minioAsyncClient.getObject(args))
+                .handle((stream, error) -> {
+                    if (error == null) {
+                        return Optional.<InputStream>ofNullable(stream);
+                    }
+                    if (isNoSuchKey(error)) {
+                        return Optional.empty();
+                    }
+                    log.error("Ошибка при загрузке файла '{}' из бакета '{}': {}", objectName, bucketName, error.getMessage(), error);
+                    throw failure(error, new FileDownLoadException("Ошибка при загрузке файла", unwrap(error)));
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadFile(String bucketName, String objectName, Path file, String contentType) {
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (Exception e) {
+            log.error("Ошибка при загрузке файла '{}' в бакет '{}': {}", objectName, bucketName, e.getMessage(), e);
+            return CompletableFuture.failedFuture(new FileException("Ошибка при загрузке файла"));
+        }
+        CompletableFuture<ObjectWriteResponse> response = send(transfers, false,
+                () -> minioAsyncClient.uploadObject(UploadObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .filename(file.toString())
+                        .contentType(contentType)
+                        .build()));
+        // Запись в каталог идёт в JDBC, поэтому выполняется в общем пуле, а не в потоке HTTP-клиента
+        return response.handleAsync((written, error) -> {
+            if (error != null) {
+                log.error("Ошибка при загрузке файла '{}' в бакет '{}': {}", objectName, bucketName, error.getMessage(), error);
+                throw failure(error, new FileException("Ошибка при загрузке файла"));
+            }
+            long now = System.currentTimeMillis();
+            String etag = ObjectCatalog.normalizeEtag(written != null ? written.etag() : null);
+            namespaceIndex.recordPut(bucketName, new ObjectEntry(objectName, false, size, now, etag, contentType));
+            objectCatalog.recordPut(bucketName, objectName, size, etag, contentType, now);
+            return null;
+        }, storageExecutor);
+    }
+
+    /**
+     * Отправляет запрос на месте в ограничителе. Ошибка построения запроса приходит так же, как ошибка ответа.
+     */
+    private static <T> CompletableFuture<T> send(AdaptiveConcurrencyLimiter slots, boolean measured, AsyncRequest<T> request) {
+        return slots.callAsync(measured, () -> {
+            try {
+                return request.send();
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    /**
+     * Ошибка операции для future. Отказ ограничителя отдаётся как есть: это перегрузка, а не сбой операции.
+     */
+    private static CompletionException failure(Throwable error, FileException wrapped) {
+        Throwable cause = unwrap(error);
+        return new CompletionException(cause instanceof StorageOverloadedException ? cause : wrapped);
+    }
+
+    private static boolean isNoSuchKey(Throwable error) {
+        return unwrap(error) instanceof ErrorResponseException e && NO_SUCH_KEY.equals(e.errorResponse().code());
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -1,42 +1,109 @@
 package com.slava.repository;
 
+import com.slava.config.FilesProperties;
+import com.slava.config.MinioProperties;
+import com.slava.dto.FileMetadataDto;
+import com.slava.dto.ListFolderDto;
+import com.slava.exception.BatchDeleteException;
+import com.slava.entity.StoredObject;
+import com.slava.exception.FileDownLoadException;
 import com.slava.exception.FileException;
 import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Repository
 public class MinioFileRepositoryImpl implements CustomFileRepository {
 
     private static final Logger log = LoggerFactory.getLogger(MinioFileRepositoryImpl.class);
+    private static final long MAX_MULTIPART_COUNT = 10_000;
+    private static final String NO_SUCH_KEY = "NoSuchKey";
 
     private final MinioClient minioClient;
+    private final MinioProperties minioProperties;
+    private final FilesProperties filesProperties;
+    private final ExecutorService storageExecutor;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final AdaptiveConcurrencyLimiter transfers;
+    private final ObjectCopyEngine copyEngine;
+    private final ParallelObjectLister parallelLister;
+    private final NamespaceIndex namespaceIndex;
+    private final ObjectCatalog objectCatalog;
 
-    public MinioFileRepositoryImpl(MinioClient minioClient) {
+    public MinioFileRepositoryImpl(MinioClient minioClient, MinioProperties minioProperties,
+                                   FilesProperties filesProperties,
+                                   @Qualifier("storageExecutor") ExecutorService storageExecutor,
+                                   @Qualifier("storageListingExecutor") ExecutorService listingExecutor,
+                                   @Qualifier("minioConcurrencyLimiter") AdaptiveConcurrencyLimiter limiter,
+                                   @Qualifier("minioTransferBulkhead") AdaptiveConcurrencyLimiter transfers,
+                                   NamespaceIndex namespaceIndex, ObjectCatalog objectCatalog) {
         this.minioClient = minioClient;
+        this.minioProperties = minioProperties;
+        this.filesProperties = filesProperties;
+        this.storageExecutor = storageExecutor;
+        this.limiter = limiter;
+        this.transfers = transfers;
+        this.namespaceIndex = namespaceIndex;
+        this.objectCatalog = objectCatalog;
+        this.copyEngine = new ObjectCopyEngine(minioClient, transfers, storageExecutor);
+        this.parallelLister = new ParallelObjectLister(minioClient, limiter, listingExecutor,
+                filesProperties.getListing().getFanOutParallelism(), filesProperties.getListing().getMaxPageSize());
     }
 
     @Override
     public void uploadFile(String bucketName, String objectName, InputStream fileStream, long size, String contentType) {
+        ObjectWriteResponse response;
         try {
-            minioClient.putObject(PutObjectArgs.builder()
+            response = minioClient.putObject(PutObjectArgs.builder()
                     .bucket(bucketName)
                     .object(objectName)
-                    .stream(fileStream, size, -1)
+                    .stream(fileStream, size, resolvePartSize(size))
                     .contentType(contentType)
                     .build());
         } catch (Exception e) {
             log.error("Ошибка при загрузке файла '{}' в бакет '{}': {}", objectName, bucketName, e.getMessage(), e);
             throw new FileException("Ошибка при загрузке файла");
         }
+        long storedSize = size;
+        if (storedSize < 0) {
+            // Размер потоковой загрузки без Content-Length известен только MinIO
+            try {
+                storedSize = statObject(bucketName, objectName).map(FileMetadataDto::getSize).orElse(0L);
+            } catch (FileException e) {
+                // Файл уже загружен; индекс перестроится, каталог исправит реконсилер
+                namespaceIndex.invalidate(bucketName);
+                return;
+            }
+        }
+        long now = System.currentTimeMillis();
+        String etag = ObjectCatalog.normalizeEtag(etagOf(response));
+        namespaceIndex.recordPut(bucketName, new ObjectEntry(objectName, false, storedSize, now, etag, contentType));
+        objectCatalog.recordPut(bucketName, objectName, storedSize, etag, contentType, now);
     }
 
     @Override
@@ -44,9 +111,57 @@ public class MinioFileRepositoryImpl implements CustomFileRepository {
         try {
             return Optional.ofNullable(minioClient.getObject(
                     GetObjectArgs.builder().bucket(bucketName).object(objectName).build()));
+        } catch (ErrorResponseException e) {
+            if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                return Optional.empty();
+            }
+            log.error("Ошибка при загрузке файла '{}' из бакета '{}': {}", objectName, bucketName, e.getMessage(), e);
+            throw new FileDownLoadException("Ошибка при загрузке файла", e);
         } catch (Exception e) {
             log.error("Ошибка при загрузке файла '{}' из бакета '{}': {}", objectName, bucketName, e.getMessage(), e);
-            return Optional.empty();
+            throw new FileDownLoadException("Ошибка при загрузке файла", e);
+        }
+    }
+
+    @Override
+    public Optional<InputStream> downloadFile(String bucketName, String objectName, long offset, long length) {
+        try {
+            return Optional.ofNullable(minioClient.getObject(GetObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .offset(offset)
+                    .length(length)
+                    .build()));
+        } catch (ErrorResponseException e) {
+            if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                return Optional.empty();
+            }
+            log.error("Ошибка при загрузке диапазона {}+{} файла '{}' из бакета '{}': {}",
+                    offset, length, objectName, bucketName, e.getMessage(), e);
+            throw new FileDownLoadException("Ошибка при загрузке файла", e);
+        } catch (Exception e) {
+            log.error("Ошибка при загрузке диапазона {}+{} файла '{}' из бакета '{}': {}",
+                    offset, length, objectName, bucketName, e.getMessage(), e);
+            throw new FileDownLoadException("Ошибка при загрузке файла", e);
+        }
+    }
+
+    @Override
+    public Optional<FileMetadataDto> statObject(String bucketName, String objectName) {
+        try {
+            StatObjectResponse stat = minioClient.statObject(
+                    StatObjectArgs.builder().bucket(bucketName).object(objectName).build());
+            return Optional.of(new FileMetadataDto(objectName, stat.size(), stat.contentType(),
+                    stat.etag(), stat.lastModified()));
+        } catch (ErrorResponseException e) {
+            if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                return Optional.empty();
+            }
+            log.error("Ошибка при получении метаданных файла '{}' из бакета '{}': {}", objectName, bucketName, e.getMessage(), e);
+            throw new FileException("Ошибка при получении метаданных файла", e);
+        } catch (Exception e) {
+            log.error("Ошибка при получении метаданных файла '{}' из бакета '{}': {}", objectName, bucketName, e.getMessage(), e);
+            throw new FileException("Ошибка при получении метаданных файла", e);
         }
     }
 
@@ -56,40 +171,209 @@ public class MinioFileRepositoryImpl implements CustomFileRepository {
             minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucketName).object(filePath).build());
         } catch (Exception e) {
             log.error("Ошибка при удалении файла '{}' из бакета '{}': {}", filePath, bucketName, e.getMessage(), e);
-            throw new FileException("Ошибка при удалении файла");
+            throw new FileException("Ошибка при удалении файла", e);
+        }
+        namespaceIndex.recordDelete(bucketName, List.of(filePath));
+        objectCatalog.recordDelete(bucketName, List.of(filePath));
+    }
+
+    /**
+     * Удаление через S3 multi-delete: до {@code deleteBatchSize} ключей за запрос,
+     * несколько запросов выполняются параллельно, каждый на своём месте ограничителя. Ошибки по отдельным
+     * ключам не прерывают удаление, а собираются и возвращаются одним исключением в конце.
+     */
+    @Override
+    public void deleteFiles(String bucketName, List<String> filePaths) {
+        List<String> failed = removeAll(bucketName, filePaths.iterator());
+        if (!failed.isEmpty()) {
+            log.error("Не удалось удалить {} из {} объектов в бакете '{}'", failed.size(), filePaths.size(), bucketName);
+            throw new BatchDeleteException("Не удалось удалить объектов: " + failed.size(), failed);
+        }
+    }
+
+    /**
+     * Удаляет ключи пачками multi-delete по мере чтения итератора, поэтому в памяти не больше
+     * deleteConcurrency пачек. Удалённые ключи сразу снимаются с индекса и каталога.
+     * Возвращает ключи, которые удалить не удалось.
+     */
+    private List<String> removeAll(String bucketName, Iterator<String> paths) {
+        FilesProperties.Batch batch = filesProperties.getBatch();
+        Deque<PendingDelete> inFlight = new ArrayDeque<>();
+        List<String> failed = new ArrayList<>();
+        while (paths.hasNext()) {
+            List<String> chunk = new ArrayList<>();
+            while (chunk.size() < batch.getDeleteBatchSize() && paths.hasNext()) {
+                chunk.add(paths.next());
+            }
+            inFlight.add(new PendingDelete(chunk, storageExecutor.submit(() -> removeBatch(bucketName, chunk))));
+            if (inFlight.size() >= batch.getDeleteConcurrency()) {
+                failed.addAll(completeDelete(bucketName, inFlight.poll()));
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            failed.addAll(completeDelete(bucketName, inFlight.poll()));
+        }
+        return failed;
+    }
+
+    private List<String> completeDelete(String bucketName, PendingDelete pending) {
+        List<String> failed = awaitBatch(pending.failed());
+        Set<String> failedSet = new HashSet<>(failed);
+        List<String> deleted = pending.keys().stream().filter(path -> !failedSet.contains(path)).toList();
+        namespaceIndex.recordDelete(bucketName, deleted);
+        objectCatalog.recordDelete(bucketName, deleted);
+        return failed;
+    }
+
+    private record PendingDelete(List<String> keys, Future<List<String>> failed) {
+    }
+
+    private List<String> removeBatch(String bucketName, List<String> objectNames) {
+        List<DeleteObject> objects = objectNames.stream().map(DeleteObject::new).toList();
+        try {
+            return limiter.call(false, () -> {
+                List<String> failed = new ArrayList<>();
+                try {
+                    // Запрос выполняется лениво, по мере чтения результатов
+                    for (Result<DeleteError> result : minioClient.removeObjects(RemoveObjectsArgs.builder()
+                            .bucket(bucketName)
+                            .objects(objects)
+                            .build())) {
+                        DeleteError error = result.get();
+                        log.error("Ошибка при удалении объекта '{}' из бакета '{}': {}", error.objectName(), bucketName, error.message());
+                        failed.add(error.objectName());
+                    }
+                } catch (Exception e) {
+                    throw new FileException("Ошибка пакетного удаления", e);
+                }
+                return failed;
+            });
+        } catch (RuntimeException e) {
+            log.error("Ошибка пакетного удаления {} объектов из бакета '{}': {}", objectNames.size(), bucketName, e.getMessage(), e);
+            return objectNames;
+        }
+    }
+
+    private <T> T awaitBatch(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileException("Операция прервана");
+        } catch (ExecutionException e) {
+            log.error("Ошибка пакетной операции: {}", e.getCause().getMessage(), e.getCause());
+            throw new FileException("Ошибка пакетной операции");
         }
     }
 
     @Override
     public void copyFile(String bucketName, String sourceObjectName, String targetObjectName) {
+        ObjectWriteResponse response;
         try {
-            minioClient.copyObject(CopyObjectArgs.builder()
+            response = minioClient.copyObject(CopyObjectArgs.builder()
                     .bucket(bucketName)
                     .object(targetObjectName)
                     .source(CopySource.builder().bucket(bucketName).object(sourceObjectName).build())
                     .build());
         } catch (Exception e) {
             log.error("Ошибка при копировании файла '{}' в бакете '{}': {}", sourceObjectName, bucketName, e.getMessage(), e);
-            throw new FileException("Ошибка при копировании файла");
+            throw new FileException("Ошибка при копировании файла", e);
         }
+        long now = System.currentTimeMillis();
+        String etag = ObjectCatalog.normalizeEtag(etagOf(response));
+        namespaceIndex.recordCopy(bucketName, sourceObjectName, targetObjectName, etag, now);
+        objectCatalog.recordCopy(bucketName, sourceObjectName, targetObjectName, etag, now);
     }
 
+    /**
+     * Список собирается целиком со скоростью хранилища, поэтому без индекса и каталога широкое
+     * дерево листится параллельно по подпапкам первого уровня.
+     */
     @Override
     public List<String> listObjects(String bucketName, String prefix) {
+        try (Stream<ObjectEntry> objects = indexedSubtree(bucketName, prefix)
+                .orElseGet(() -> listStorage(bucketName, prefix))) {
+            return objects.map(ObjectEntry::key).toList();
+        }
+    }
+
+    /**
+     * Поток читает вызывающий, например выгрузка ZIP со скоростью клиента. Задачи параллельного листинга
+     * ждали бы такого читателя, занимая потоки общего пула листинга всё время выгрузки, поэтому здесь
+     * без индекса и каталога MinIO листится последовательно, страница за страницей.
+     */
+    @Override
+    public Stream<ObjectEntry> streamObjects(String bucketName, String prefix) {
+        return indexedSubtree(bucketName, prefix).orElseGet(() -> scan(bucketName, prefix));
+    }
+
+    /**
+     * Листинг из самого MinIO, без индекса и каталога. По нему работают удаление и перемещение папок:
+     * объект, которого нет в отстающем индексе, иначе остался бы в хранилище. Их читатель — пакеты
+     * удаления и копирования на стороне MinIO, он идёт со скоростью хранилища, поэтому листинг
+     * можно распараллелить.
+     */
+    private Stream<ObjectEntry> listStorage(String bucketName, String prefix) {
+        if (filesProperties.getListing().getFanOutParallelism() > 1) {
+            return parallelLister.list(bucketName, prefix);
+        }
+        return scan(bucketName, prefix);
+    }
+
+    /**
+     * Один уровень папки через delimiter "/": MinIO возвращает файлы уровня и общие префиксы подпапок,
+     * не обходя вложенное дерево. Подпапки возвращаются с завершающим "/".
+     */
+    @Override
+    public List<String> listChildren(String bucketName, String prefix) {
+        Optional<List<ObjectEntry>> indexed = indexedChildren(bucketName, prefix);
+        if (indexed.isPresent()) {
+            return indexed.get().stream().map(ObjectEntry::key).toList();
+        }
         try {
             List<String> objectNames = new ArrayList<>();
             for (Result<Item> result : minioClient.listObjects(ListObjectsArgs.builder()
                     .bucket(bucketName)
                     .prefix(prefix)
-                    .recursive(true)
+                    .delimiter("/")
+                    .recursive(false)
                     .build())) {
                 objectNames.add(result.get().objectName());
             }
             return objectNames;
         } catch (Exception e) {
-            log.error("Ошибка при получении списка объектов в бакете '{}' с префиксом '{}': {}", bucketName, prefix, e.getMessage(), e);
-            throw new FileException("Ошибка при получении списка файлов");
+            log.error("Ошибка при получении содержимого папки '{}' в бакете '{}': {}", prefix, bucketName, e.getMessage(), e);
+            throw new FileException("Ошибка при получении списка файлов", e);
+        }
+    }
+
+    /**
+     * Ленивый листинг одного уровня папки в лексикографическом порядке ключей.
+     * MinIO запрашивается страницами по {@code pageSize} по мере чтения потока, каждая страница —
+     * на своём месте ограничителя, поэтому для первой страницы не нужно перебирать всю папку. Размер,
+     * дата, ETag и тип содержимого берутся из самого листинга.
+     */
+    @Override
+    public Stream<ObjectEntry> streamChildren(String bucketName, String prefix, String startAfter, int pageSize) {
+        Optional<List<ObjectEntry>> indexed = indexedChildren(bucketName, prefix);
+        if (indexed.isPresent()) {
+            return indexed.get().stream()
+                    .filter(object -> startAfter == null || NamespaceTrie.compareKeys(object.key(), startAfter) > 0);
         }
+        return PagedListing.stream(minioClient, limiter, bucketName, prefix, false, startAfter, pageSize);
+    }
+
+    @Override
+    public Optional<List<ObjectEntry>> sortedChildren(String bucketName, String prefix, ListFolderDto.SortField sort,
+                                                      boolean descending, Boolean folders, long afterValue,
+                                                      String afterKey, int limit) {
+        if (!(prefix.isEmpty() || prefix.endsWith("/")) || !objectCatalog.isReconciled(bucketName)) {
+            return Optional.empty();
+        }
+        return Optional.of(objectCatalog.sortedChildren(bucketName, prefix, sort, descending, folders, afterValue,
+                        afterKey, limit).stream()
+                .map(MinioFileRepositoryImpl::toChildEntry)
+                .toList());
     }
 
     @Override
@@ -99,7 +383,7 @@ public class MinioFileRepositoryImpl implements CustomFileRepository {
             return exists;
         } catch (Exception e) {
             log.error("Ошибка при проверке существования бакета '{}': {}", bucketName, e.getMessage(), e);
-            throw new FileException("Ошибка при проверке существования бакета: " + bucketName);
+            throw new FileException("Ошибка при проверке существования бакета: " + bucketName, e);
         }
     }
 
@@ -109,7 +393,7 @@ public class MinioFileRepositoryImpl implements CustomFileRepository {
             minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
         } catch (Exception e) {
             log.error("Ошибка при создании бакета '{}': {}", bucketName, e.getMessage(), e);
-            throw new FileException("Ошибка при создании бакета: " + bucketName);
+            throw new FileException("Ошибка при создании бакета: " + bucketName, e);
         }
     }
 
@@ -127,25 +411,184 @@ public class MinioFileRepositoryImpl implements CustomFileRepository {
     @Override
     public void deleteFolder(String bucketName, String folderPath) {
         log.info("Удаление папки '{}' из бакета '{}'", folderPath, bucketName);
-        listObjects(bucketName, folderPath).forEach(obj -> {
-            deleteFile(bucketName, obj);
-        });
+        List<String> failed;
+        // Удаление начинается с первой страницы листинга, всё дерево в память не читается
+        try (Stream<ObjectEntry> objects = listStorage(bucketName, folderPath)) {
+            failed = removeAll(bucketName, objects.map(ObjectEntry::key).iterator());
+        }
+        if (!failed.isEmpty()) {
+            log.error("Не удалось удалить {} объектов папки '{}' в бакете '{}'", failed.size(), folderPath, bucketName);
+            throw new BatchDeleteException("Не удалось удалить объектов: " + failed.size(), failed);
+        }
     }
 
     @Override
     public void moveFolder(String bucketName, String sourcePath, String targetPath) {
+        moveFolder(bucketName, sourcePath, targetPath, CopyProgressListener.NONE);
+    }
+
+    /**
+     * Папка перемещается окнами по мере листинга: объекты окна копируются на стороне MinIO параллельно,
+     * затем успешно скопированные исходники удаляются пакетами. В памяти держится одно окно, а не всё дерево.
+     * Если часть копий не удалась, их исходники остаются на месте. Общий объём в прогрессе растёт
+     * по мере чтения листинга.
+     */
+    @Override
+    public void moveFolder(String bucketName, String sourcePath, String targetPath, CopyProgressListener listener) {
         log.info("Перемещение папки в бакете '{}': с '{}' на '{}'", bucketName, sourcePath, targetPath);
-        listObjects(bucketName, sourcePath).forEach(obj -> {
-            String newTarget = targetPath + obj.substring(sourcePath.length());
-            copyFile(bucketName, obj, newTarget);
-            deleteFile(bucketName, obj);
-        });
+        int windowSize = filesProperties.getBatch().getDeleteBatchSize();
+        long listedObjects = 0;
+        long listedBytes = 0;
+        long failedCopies = 0;
+        try (Stream<ObjectEntry> objects = listStorage(bucketName, sourcePath)) {
+            // Копии внутри источника попали бы в ещё не прочитанную часть листинга
+            Iterator<ObjectEntry> iterator = targetPath.startsWith(sourcePath)
+                    ? objects.toList().iterator()
+                    : objects.iterator();
+            List<ObjectCopyEngine.CopyTask> window = new ArrayList<>(windowSize);
+            while (iterator.hasNext()) {
+                ObjectEntry object = iterator.next();
+                window.add(new ObjectCopyEngine.CopyTask(object.key(),
+                        targetPath + object.key().substring(sourcePath.length()), object.size()));
+                if (window.size() < windowSize && iterator.hasNext()) {
+                    continue;
+                }
+                long objectsBefore = listedObjects;
+                long bytesBefore = listedBytes;
+                listedObjects += window.size();
+                listedBytes += window.stream().mapToLong(ObjectCopyEngine.CopyTask::size).sum();
+                long totalObjects = listedObjects;
+                long totalBytes = listedBytes;
+                failedCopies += moveWindow(bucketName, window, (copiedObjects, windowObjects, copiedBytes, windowBytes) ->
+                        listener.onProgress(objectsBefore + copiedObjects, totalObjects, bytesBefore + copiedBytes, totalBytes));
+                window = new ArrayList<>(windowSize);
+            }
+        }
+        if (failedCopies > 0) {
+            log.error("Не удалось скопировать {} из {} объектов при перемещении '{}'", failedCopies, listedObjects, sourcePath);
+            throw new FileException("Не удалось переместить объектов: " + failedCopies);
+        }
+    }
+
+    /**
+     * Копирует окно и удаляет исходники скопированных объектов. Возвращает число неудачных копий.
+     */
+    private int moveWindow(String bucketName, List<ObjectCopyEngine.CopyTask> tasks, CopyProgressListener listener) {
+        List<String> copied = copyEngine.copyAll(bucketName, tasks,
+                filesProperties.getBatch().getCopyConcurrency(), listener);
+        Set<String> copiedSet = new HashSet<>(copied);
+        long now = System.currentTimeMillis();
+        tasks.stream()
+                .filter(task -> copiedSet.contains(task.source()))
+                .forEach(task -> {
+                    namespaceIndex.recordCopy(bucketName, task.source(), task.target(), null, now);
+                    objectCatalog.recordCopy(bucketName, task.source(), task.target(), null, now);
+                });
+        deleteFiles(bucketName, copied);
+        return tasks.size() - copied.size();
+    }
+
+    /**
+     * Поиск по имени. Без сверенного каталога имена перебираются по рекурсивному листингу.
+     */
+    @Override
+    public List<ObjectEntry> search(String bucketName, String query, int limit) {
+        if (objectCatalog.isReconciled(bucketName)) {
+            return objectCatalog.search(bucketName, query, limit).stream().map(MinioFileRepositoryImpl::toObjectEntry).toList();
+        }
+        String needle = query.toLowerCase(Locale.ROOT);
+        try (Stream<ObjectEntry> objects = streamObjects(bucketName, "")) {
+            return objects
+                    .filter(object -> ObjectCatalog.nameOf(object.key()).toLowerCase(Locale.ROOT).contains(needle))
+                    .limit(limit)
+                    .toList();
+        }
+    }
+
+    // Листинги без MinIO: сначала индекс в памяти, затем сверенный каталог в PostgreSQL
+
+    private Optional<List<ObjectEntry>> indexedChildren(String bucketName, String prefix) {
+        Optional<NamespaceTrie> index = index(bucketName);
+        if (index.isPresent()) {
+            return Optional.of(index.get().children(prefix));
+        }
+        if ((prefix.isEmpty() || prefix.endsWith("/")) && objectCatalog.isReconciled(bucketName)) {
+            return Optional.of(objectCatalog.children(bucketName, prefix).stream()
+                    .map(MinioFileRepositoryImpl::toChildEntry)
+                    .toList());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Поддерево из индекса или каталога читается страницами, как и из MinIO: в памяти одна страница,
+     * а не всё поддерево.
+     */
+    private Optional<Stream<ObjectEntry>> indexedSubtree(String bucketName, String prefix) {
+        Optional<NamespaceTrie> index = index(bucketName);
+        if (index.isPresent()) {
+            Iterator<ObjectEntry> entries = index.get().subtree(prefix, filesProperties.getListing().getMaxPageSize());
+            return Optional.of(StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(entries, Spliterator.ORDERED | Spliterator.NONNULL), false));
+        }
+        if (objectCatalog.isReconciled(bucketName)) {
+            return Optional.of(catalogSubtree(bucketName, prefix));
+        }
+        return Optional.empty();
+    }
+
+    private Optional<NamespaceTrie> index(String bucketName) {
+        return namespaceIndex.get(bucketName, () -> objectCatalog.isReconciled(bucketName)
+                ? catalogSubtree(bucketName, "")
+                : scan(bucketName, ""));
+    }
+
+    private Stream<ObjectEntry> catalogSubtree(String bucketName, String prefix) {
+        return objectCatalog.subtree(bucketName, prefix, filesProperties.getListing().getMaxPageSize())
+                .map(MinioFileRepositoryImpl::toObjectEntry);
+    }
+
+    // Подпапка уровня — как общий префикс в листинге MinIO с delimiter
+    private static ObjectEntry toChildEntry(StoredObject object) {
+        return object.isFolder() ? ObjectEntry.ofPrefix(object.getPath()) : toObjectEntry(object);
+    }
+
+    private static ObjectEntry toObjectEntry(StoredObject object) {
+        return new ObjectEntry(object.getPath(), false, object.getSize(),
+                object.getModified() != null ? object.getModified().toInstant().toEpochMilli() : 0,
+                object.getEtag(), object.getContentType());
+    }
+
+    private static String etagOf(ObjectWriteResponse response) {
+        return response != null ? response.etag() : null;
+    }
+
+    /**
+     * Ленивый рекурсивный листинг с размерами, датами изменения, ETag и типами содержимого.
+     */
+    private Stream<ObjectEntry> scan(String bucketName, String prefix) {
+        return PagedListing.stream(minioClient, limiter, bucketName, prefix, true, null,
+                filesProperties.getListing().getMaxPageSize());
+    }
+
+    /**
+     * Размер части multipart-загрузки. MinIO буферизует в памяти ровно одну часть,
+     * поэтому потребление памяти на загрузку не зависит от размера файла.
+     * Для очень больших файлов часть увеличивается, чтобы уложиться в лимит S3 на 10 000 частей.
+     */
+    private long resolvePartSize(long size) {
+        long partSize = minioProperties.getUpload().getPartSize();
+        if (size < 0) {
+            return partSize;
+        }
+        long minPartSize = (size + MAX_MULTIPART_COUNT - 1) / MAX_MULTIPART_COUNT;
+        return Math.max(partSize, minPartSize);
     }
 
     @Override
     public void moveFile(String bucketName, String sourcePath, String targetPath) {
-        copyFile(bucketName, sourcePath, targetPath);
-        deleteFile(bucketName, sourcePath);
+        transfers.run(false, () -> copyFile(bucketName, sourcePath, targetPath));
+        limiter.run(true, () -> deleteFile(bucketName, sourcePath));
         log.info("Файл успешно перемещён в бакете '{}'", bucketName);
     }
 }
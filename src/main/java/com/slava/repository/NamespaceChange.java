@@ -0,0 +1,62 @@
+package com.slava.repository;
+
+import java.util.List;
+
+/**
+ * Изменение пространства имён бакета из журнала {@link NamespaceVersions}: узлы применяют его к своему
+ * индексу вместо перестроения. Копия применяется по метаданным источника из индекса узла, поэтому
+ * в журнал попадают только ключи. {@link Type#RESET} — изменение, которое ключами не выразить:
+ * индекс бакета перестраивается.
+ */
+public record NamespaceChange(long version, Type type, ObjectEntry entry, String sourceKey, List<String> keys) {
+
+    public enum Type {
+        PUT, DELETE, COPY, RESET
+    }
+
+    static NamespaceChange put(ObjectEntry entry) {
+        return new NamespaceChange(0, Type.PUT, entry, null, null);
+    }
+
+    static NamespaceChange delete(List<String> keys) {
+        return new NamespaceChange(0, Type.DELETE, null, null, keys);
+    }
+
+    /**
+     * Копия {@code sourceKey}: у {@code target} заданы ключ, время изменения и, если известен, etag.
+     */
+    static NamespaceChange copy(String sourceKey, ObjectEntry target) {
+        return new NamespaceChange(0, Type.COPY, target, sourceKey, null);
+    }
+
+    static NamespaceChange reset() {
+        return new NamespaceChange(0, Type.RESET, null, null, null);
+    }
+
+    NamespaceChange withVersion(long version) {
+        return new NamespaceChange(version, type, entry, sourceKey, keys);
+    }
+
+    /**
+     * Применяет изменение к индексу. {@code false} — индекс нельзя привести к новому состоянию
+     * (сброс или копия неизвестного индексу источника), его нужно перестроить.
+     */
+    boolean applyTo(NamespaceTrie trie) {
+        switch (type) {
+            case PUT -> trie.put(entry);
+            case DELETE -> keys.forEach(trie::remove);
+            case COPY -> {
+                ObjectEntry source = trie.get(sourceKey);
+                if (source == null) {
+                    return false;
+                }
+                trie.put(new ObjectEntry(entry.key(), false, source.size(), entry.lastModified(),
+                        entry.etag() != null ? entry.etag() : source.etag(), source.contentType()));
+            }
+            case RESET -> {
+                return false;
+            }
+        }
+        return true;
+    }
+}
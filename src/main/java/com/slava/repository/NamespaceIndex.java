@@ -0,0 +1,346 @@
+package com.slava.repository;
+
+import com.slava.config.FilesProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Индексы пространства имён активных пользователей: по одному {@link NamespaceTrie} на бакет.
+ * Индекс строится полным листингом в фоне после первого обращения (до готовности запросы идут мимо него),
+ * затем обновляется операциями записи репозитория и перестраивается по истечении ttl (на случай изменений
+ * в обход приложения). Суммарный объём ограничен бюджетом памяти: при превышении вытесняются давно
+ * не использованные бакеты, а бакет, который сам не помещается в бюджет, не индексируется и не сканируется
+ * повторно в течение {@code oversizedRetry}.
+ * <p>
+ * Индекс держит каждый узел свой. Запись на любом узле попадает в общий журнал {@link NamespaceVersions}
+ * как изменение ключей, и остальные узлы применяют его к своему индексу, сверяясь с общей версией
+ * не чаще {@code versionCheckInterval}. Индекс перестраивается, только если журнал уже не покрывает
+ * отставание или изменение ключами не выразить. Если журнал недоступен, запрос идёт мимо индекса. Индекс служит только для чтения листингов:
+ * удаление и перемещение папок перечисляют объекты в самом хранилище.
+ */
+@Component
+public class NamespaceIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(NamespaceIndex.class);
+
+    private final FilesProperties.Index settings;
+    private final NamespaceVersions versions;
+    private final Executor buildExecutor;
+    // Бакеты, не поместившиеся в бюджет, и время проверки (System.nanoTime)
+    private final Map<String, Long> oversized = new ConcurrentHashMap<>();
+    // Порядок доступа: первым идёт давно не использованный бакет
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static final class Entry {
+        final long createdAt = System.nanoTime();
+        volatile NamespaceTrie trie;
+        // Версия бакета, которой соответствует trie
+        volatile long version;
+        // Когда версия последний раз сверялась с общей (System.nanoTime)
+        volatile long checkedAt;
+    }
+
+    public NamespaceIndex(FilesProperties filesProperties, NamespaceVersions versions,
+                          @Qualifier("namespaceIndexExecutor") Executor buildExecutor) {
+        this.settings = filesProperties.getIndex();
+        this.versions = versions;
+        this.buildExecutor = buildExecutor;
+    }
+
+    /**
+     * Индекс бакета. Если его ещё нет, построение из {@code loader} запускается в фоне.
+     * Пустой результат означает, что индекс недоступен и запрос нужно выполнить в MinIO.
+     */
+    public Optional<NamespaceTrie> get(String bucketName, Supplier<Stream<ObjectEntry>> loader) {
+        if (!settings.isEnabled() || isOversized(bucketName)) {
+            return Optional.empty();
+        }
+        Entry entry;
+        boolean created = false;
+        synchronized (this) {
+            entry = entries.get(bucketName);
+            if (entry == null || isExpired(entry)) {
+                entry = new Entry();
+                entries.put(bucketName, entry);
+                created = true;
+            }
+        }
+        if (created) {
+            scheduleBuild(bucketName, entry, loader);
+        }
+        NamespaceTrie trie = entry.trie;
+        if (trie == null) {
+            return Optional.empty();
+        }
+        return isCurrent(bucketName, entry, trie) ? Optional.of(trie) : Optional.empty();
+    }
+
+    public void recordPut(String bucketName, ObjectEntry entry) {
+        publish(bucketName, NamespaceChange.put(entry));
+    }
+
+    public void recordDelete(String bucketName, Collection<String> keys) {
+        publish(bucketName, NamespaceChange.delete(List.copyOf(keys)));
+    }
+
+    public void recordCopy(String bucketName, String sourceKey, String targetKey, String etag, long lastModified) {
+        publish(bucketName, NamespaceChange.copy(sourceKey, new ObjectEntry(targetKey, false, 0, lastModified, etag, null)));
+    }
+
+    /**
+     * Сбрасывает индекс бакета на этом узле и, через журнал, на остальных.
+     */
+    public void invalidate(String bucketName) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(bucketName);
+        }
+        if (entry != null) {
+            discard(bucketName, entry);
+        }
+        publish(bucketName, NamespaceChange.reset());
+    }
+
+    /**
+     * Записывает изменение в общий журнал и применяет его к индексу этого узла. Если между версией индекса
+     * и новой версией были чужие изменения, они дочитываются из журнала. Строящийся индекс изменение
+     * не получает: после листинга он сам догоняет журнал.
+     */
+    private void publish(String bucketName, NamespaceChange change) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(bucketName);
+        }
+        if (entry == null) {
+            publishChange(bucketName, change);
+            return;
+        }
+        // Публикация и применение под блокировкой индекса: изменения ложатся в trie в порядке версий
+        synchronized (entry) {
+            long version = publishChange(bucketName, change);
+            NamespaceTrie trie = entry.trie;
+            if (version < 0) {
+                discard(bucketName, entry);
+                return;
+            }
+            if (trie == null) {
+                return;
+            }
+            if (version == entry.version + 1) {
+                if (!change.applyTo(trie)) {
+                    discard(bucketName, entry);
+                    return;
+                }
+                entry.version = version;
+            } else if (!catchUp(bucketName, entry, trie, version)) {
+                return;
+            }
+        }
+        enforceBudget();
+    }
+
+    private long publishChange(String bucketName, NamespaceChange change) {
+        try {
+            return versions.publish(bucketName, change);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось записать изменение индекса бакета '{}', индекс на других узлах может отставать до ttl: {}",
+                    bucketName, e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Сверяет версию индекса с общей не чаще {@code versionCheckInterval}: между проверками чужие изменения
+     * могут быть не видны, свои применяются сразу. Отставший индекс догоняет журнал.
+     */
+    private boolean isCurrent(String bucketName, Entry entry, NamespaceTrie trie) {
+        if (System.nanoTime() - entry.checkedAt < settings.getVersionCheckInterval().toNanos()) {
+            return true;
+        }
+        long version;
+        try {
+            version = versions.current(bucketName);
+        } catch (RuntimeException e) {
+            log.warn("Версия индекса бакета '{}' недоступна, листинг читается из хранилища: {}", bucketName, e.getMessage());
+            return false;
+        }
+        boolean current;
+        synchronized (entry) {
+            current = catchUp(bucketName, entry, trie, version);
+        }
+        if (current) {
+            enforceBudget();
+        }
+        return current;
+    }
+
+    /**
+     * Применяет изменения журнала между версией индекса и {@code target}. Если записей в журнале уже нет
+     * или изменение не выражается ключами, индекс отбрасывается и перестраивается при следующем обращении.
+     * Вызывается под блокировкой {@code entry}.
+     */
+    private boolean catchUp(String bucketName, Entry entry, NamespaceTrie trie, long target) {
+        long applied = entry.version;
+        if (applied > target) {
+            // Общая версия меньше версии индекса: журнал в Redis потерян
+            discard(bucketName, entry);
+            return false;
+        }
+        if (applied < target) {
+            List<NamespaceChange> changes;
+            try {
+                changes = versions.changesSince(bucketName, applied, target);
+            } catch (RuntimeException e) {
+                log.warn("Журнал изменений бакета '{}' недоступен, листинг читается из хранилища: {}",
+                        bucketName, e.getMessage());
+                return false;
+            }
+            for (NamespaceChange change : changes) {
+                if (change.version() <= applied) {
+                    continue;
+                }
+                if (change.version() != applied + 1 || !change.applyTo(trie)) {
+                    break;
+                }
+                applied = change.version();
+            }
+            entry.version = applied;
+            if (applied < target) {
+                log.debug("Изменения бакета '{}' после версии {} не применить по журналу, индекс перестраивается",
+                        bucketName, applied);
+                discard(bucketName, entry);
+                return false;
+            }
+        }
+        entry.checkedAt = System.nanoTime();
+        return true;
+    }
+
+    private synchronized void discard(String bucketName, Entry entry) {
+        entries.remove(bucketName, entry);
+        // Частично обновлённый индекс больше не отдаётся, даже если его уже получили из entries
+        entry.trie = null;
+    }
+
+    synchronized long estimatedBytes() {
+        return entries.values().stream()
+                .map(entry -> entry.trie)
+                .filter(trie -> trie != null)
+                .mapToLong(NamespaceTrie::estimatedBytes)
+                .sum();
+    }
+
+    private void scheduleBuild(String bucketName, Entry entry, Supplier<Stream<ObjectEntry>> loader) {
+        try {
+            buildExecutor.execute(() -> build(bucketName, entry, loader));
+        } catch (RejectedExecutionException e) {
+            log.warn("Построение индекса бакета '{}' отклонено: {}", bucketName, e.getMessage());
+            abandon(bucketName, entry);
+        }
+    }
+
+    private void build(String bucketName, Entry entry, Supplier<Stream<ObjectEntry>> loader) {
+        long start = System.nanoTime();
+        long version;
+        NamespaceTrie trie = new NamespaceTrie();
+        try {
+            // Версия читается до листинга: изменения во время построения дочитываются из журнала
+            version = versions.current(bucketName);
+            try (Stream<ObjectEntry> objects = loader.get()) {
+                Iterator<ObjectEntry> iterator = objects.iterator();
+                while (iterator.hasNext()) {
+                    trie.put(iterator.next());
+                    if (trie.estimatedBytes() > settings.getMemoryBudget()) {
+                        log.info("Бакет '{}' не помещается в бюджет индекса ({} байт), индекс не строится",
+                                bucketName, settings.getMemoryBudget());
+                        oversized.put(bucketName, System.nanoTime());
+                        abandon(bucketName, entry);
+                        return;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Не удалось построить индекс бакета '{}': {}", bucketName, e.getMessage());
+            abandon(bucketName, entry);
+            return;
+        }
+        synchronized (entry) {
+            // Текущая версия читается под блокировкой: записи после неё уже увидят готовый trie
+            long target;
+            try {
+                target = versions.current(bucketName);
+            } catch (RuntimeException e) {
+                log.warn("Версия индекса бакета '{}' недоступна, индекс не используется: {}", bucketName, e.getMessage());
+                abandon(bucketName, entry);
+                return;
+            }
+            entry.version = version;
+            if (!catchUp(bucketName, entry, trie, target)) {
+                return;
+            }
+            synchronized (this) {
+                if (entries.get(bucketName) != entry) {
+                    return;
+                }
+                entry.trie = trie;
+            }
+        }
+        log.debug("Индекс бакета '{}' построен: {} объектов, ~{} байт, {} мс", bucketName, trie.size(),
+                trie.estimatedBytes(), (System.nanoTime() - start) / 1_000_000);
+        enforceBudget();
+    }
+
+    private synchronized void abandon(String bucketName, Entry entry) {
+        entries.remove(bucketName, entry);
+    }
+
+    private boolean isOversized(String bucketName) {
+        Long checkedAt = oversized.get(bucketName);
+        if (checkedAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - checkedAt < settings.getOversizedRetry().toNanos()) {
+            return true;
+        }
+        oversized.remove(bucketName, checkedAt);
+        return false;
+    }
+
+    private synchronized void enforceBudget() {
+        long total = estimatedBytes();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        // Самый свежий бакет не вытесняем: он только что использован
+        while (total > settings.getMemoryBudget() && entries.size() > 1 && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            NamespaceTrie trie = eldest.getValue().trie;
+            if (trie == null) {
+                continue;
+            }
+            log.debug("Индекс бакета '{}' вытеснен из памяти", eldest.getKey());
+            total -= trie.estimatedBytes();
+            eldest.getValue().trie = null;
+            iterator.remove();
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.nanoTime() - entry.createdAt > settings.getTtl().toNanos();
+    }
+}
@@ -0,0 +1,404 @@
+package com.slava.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Сжатое префиксное дерево (radix trie) ключей одного бакета с размером, временем изменения,
+ * ETag и типом содержимого.
+ * Общие префиксы путей хранятся один раз, поэтому дерево занимает заметно меньше памяти,
+ * чем набор полных ключей. Дети узла упорядочены как ключи S3 (по кодовым точкам),
+ * поэтому обход дерева выдаёт ключи в том же порядке, что и listObjects.
+ */
+public class NamespaceTrie {
+
+    // Объект узла, строка метки, ссылка в массиве детей родителя
+    private static final int NODE_OVERHEAD_BYTES = 96;
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node {
+        String label;
+        Node[] children = NO_CHILDREN;
+        boolean terminal;
+        long size;
+        long lastModified;
+        String etag;
+        String contentType;
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private final Node root = new Node("");
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int nodeCount;
+    private long labelChars;
+    private int objectCount;
+    private long metadataChars;
+    // Типов содержимого немного, поэтому каждая строка хранится в дереве один раз
+    private final Map<String, String> contentTypes = new HashMap<>();
+
+    public void put(ObjectEntry entry) {
+        lock.writeLock().lock();
+        try {
+            Node node = insert(entry.key());
+            if (!node.terminal) {
+                node.terminal = true;
+                objectCount++;
+            }
+            metadataChars += length(entry.etag()) - length(node.etag);
+            node.size = entry.size();
+            node.lastModified = entry.lastModified();
+            node.etag = entry.etag();
+            node.contentType = entry.contentType() == null ? null
+                    : contentTypes.computeIfAbsent(entry.contentType(), type -> type);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            remove(root, key, 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public ObjectEntry get(String key) {
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int depth = 0;
+            while (depth < key.length()) {
+                Node child = findChild(node, key.charAt(depth));
+                if (child == null || !key.startsWith(child.label, depth)) {
+                    return null;
+                }
+                depth += child.label.length();
+                node = child;
+            }
+            return node.terminal ? toEntry(key, node) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Все объекты с заданным префиксом в порядке ключей. Обход ленивый: ключи читаются страницами
+     * по pageSize после последнего выданного, и блокировка чтения держится только на время страницы.
+     * Изменения дерева во время обхода видны, если приходятся на ещё не прочитанную часть.
+     */
+    public Iterator<ObjectEntry> subtree(String prefix, int pageSize) {
+        return new SubtreeIterator(prefix, Math.max(1, pageSize));
+    }
+
+    /**
+     * До limit объектов с префиксом, ключи которых больше afterKey (null — с начала).
+     */
+    List<ObjectEntry> subtreePage(String prefix, String afterKey, int limit) {
+        lock.readLock().lock();
+        try {
+            List<ObjectEntry> result = new ArrayList<>();
+            StringBuilder path = new StringBuilder();
+            Node start = locate(prefix, path);
+            if (start != null) {
+                collect(start, path, afterKey, limit, result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Один уровень под префиксом, как листинг S3 с delimiter "/": объекты уровня
+     * и общие префиксы подпапок (с флагом prefix), включая папки без объекта-маркера.
+     */
+    public List<ObjectEntry> children(String prefix) {
+        lock.readLock().lock();
+        try {
+            List<ObjectEntry> result = new ArrayList<>();
+            StringBuilder path = new StringBuilder();
+            Node start = locate(prefix, path);
+            if (start != null) {
+                collectLevel(start, path, prefix.length(), result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return objectCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) nodeCount * NODE_OVERHEAD_BYTES + labelChars + metadataChars;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Node insert(String key) {
+        Node node = root;
+        int depth = 0;
+        while (depth < key.length()) {
+            Node child = findChild(node, key.charAt(depth));
+            if (child == null) {
+                Node leaf = new Node(key.substring(depth));
+                addChild(node, leaf);
+                nodeCount++;
+                labelChars += leaf.label.length();
+                return leaf;
+            }
+            int common = commonPrefixLength(child.label, key, depth);
+            if (common < child.label.length()) {
+                // Разбиваем ребро: общая часть становится промежуточным узлом
+                Node middle = new Node(child.label.substring(0, common));
+                replaceChild(node, child, middle);
+                child.label = child.label.substring(common);
+                middle.children = new Node[]{child};
+                nodeCount++;
+                child = middle;
+            }
+            depth += common;
+            node = child;
+        }
+        return node;
+    }
+
+    private boolean remove(Node node, String key, int depth) {
+        if (depth == key.length()) {
+            if (!node.terminal) {
+                return false;
+            }
+            node.terminal = false;
+            objectCount--;
+            metadataChars -= length(node.etag);
+            node.etag = null;
+            node.contentType = null;
+            return true;
+        }
+        Node child = findChild(node, key.charAt(depth));
+        if (child == null || !key.startsWith(child.label, depth)) {
+            return false;
+        }
+        if (!remove(child, key, depth + child.label.length())) {
+            return false;
+        }
+        if (!child.terminal && child.children.length == 0) {
+            removeChild(node, child);
+            nodeCount--;
+            labelChars -= child.label.length();
+        } else if (!child.terminal && child.children.length == 1) {
+            // Узел без объекта с единственным ребёнком склеивается с ним
+            Node grandChild = child.children[0];
+            grandChild.label = child.label + grandChild.label;
+            replaceChild(node, child, grandChild);
+            nodeCount--;
+        }
+        return true;
+    }
+
+    /**
+     * Находит узел, путь которого начинается с префикса; путь до узла дописывается в {@code path}.
+     * Префикс может заканчиваться посреди метки ребра.
+     */
+    private Node locate(String prefix, StringBuilder path) {
+        Node node = root;
+        int depth = 0;
+        while (depth < prefix.length()) {
+            Node child = findChild(node, prefix.charAt(depth));
+            if (child == null) {
+                return null;
+            }
+            int common = commonPrefixLength(child.label, prefix, depth);
+            if (depth + common < prefix.length() && common < child.label.length()) {
+                return null;
+            }
+            path.append(child.label);
+            depth += child.label.length();
+            node = child;
+        }
+        return node;
+    }
+
+    private void collect(Node node, StringBuilder path, String afterKey, int limit, List<ObjectEntry> result) {
+        if (node.terminal && (afterKey == null || compareKeys(path.toString(), afterKey) > 0)) {
+            result.add(toEntry(path.toString(), node));
+        }
+        for (Node child : node.children) {
+            if (result.size() >= limit) {
+                return;
+            }
+            int length = path.length();
+            path.append(child.label);
+            String childPath = afterKey == null ? null : path.toString();
+            if (afterKey == null) {
+                collect(child, path, null, limit, result);
+            } else if (afterKey.startsWith(childPath)) {
+                collect(child, path, afterKey, limit, result);
+            } else if (compareKeys(childPath, afterKey) > 0) {
+                // Все ключи поддерева больше afterKey
+                collect(child, path, null, limit, result);
+            }
+            // Иначе всё поддерево уже выдано
+            path.setLength(length);
+        }
+    }
+
+    private void collectLevel(Node node, StringBuilder path, int prefixLength, List<ObjectEntry> result) {
+        int slash = path.indexOf("/", prefixLength);
+        if (slash != -1) {
+            // Всё поддерево лежит в одной подпапке уровня
+            result.add(ObjectEntry.ofPrefix(path.substring(0, slash + 1)));
+            return;
+        }
+        if (node.terminal) {
+            result.add(toEntry(path.toString(), node));
+        }
+        for (Node child : node.children) {
+            int length = path.length();
+            path.append(child.label);
+            collectLevel(child, path, prefixLength, result);
+            path.setLength(length);
+        }
+    }
+
+    private final class SubtreeIterator implements Iterator<ObjectEntry> {
+        private final String prefix;
+        private final int pageSize;
+        private Iterator<ObjectEntry> page = Collections.emptyIterator();
+        private String lastKey;
+        private boolean exhausted;
+
+        SubtreeIterator(String prefix, int pageSize) {
+            this.prefix = prefix;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!page.hasNext() && !exhausted) {
+                List<ObjectEntry> entries = subtreePage(prefix, lastKey, pageSize);
+                exhausted = entries.size() < pageSize;
+                page = entries.iterator();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public ObjectEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ObjectEntry entry = page.next();
+            lastKey = entry.key();
+            return entry;
+        }
+    }
+
+    private static ObjectEntry toEntry(String key, Node node) {
+        return new ObjectEntry(key, false, node.size, node.lastModified, node.etag, node.contentType);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static Node findChild(Node node, char first) {
+        int index = indexOf(node.children, first);
+        return index >= 0 ? node.children[index] : null;
+    }
+
+    private static int indexOf(Node[] children, char first) {
+        int low = 0;
+        int high = children.length - 1;
+        int key = order(first);
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = order(children[mid].label.charAt(0));
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static void addChild(Node node, Node child) {
+        int insertAt = -(indexOf(node.children, child.label.charAt(0)) + 1);
+        Node[] children = Arrays.copyOf(node.children, node.children.length + 1);
+        System.arraycopy(children, insertAt, children, insertAt + 1, node.children.length - insertAt);
+        children[insertAt] = child;
+        node.children = children;
+    }
+
+    private static void replaceChild(Node node, Node oldChild, Node newChild) {
+        node.children[indexOf(node.children, oldChild.label.charAt(0))] = newChild;
+    }
+
+    private static void removeChild(Node node, Node child) {
+        int index = indexOf(node.children, child.label.charAt(0));
+        Node[] children = new Node[node.children.length - 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        System.arraycopy(node.children, index + 1, children, index, children.length - index);
+        node.children = children.length == 0 ? NO_CHILDREN : children;
+    }
+
+    private static int commonPrefixLength(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Сравнение ключей в порядке S3.
+     */
+    public static int compareKeys(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            int diff = order(a.charAt(i)) - order(b.charAt(i));
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    /**
+     * Порядок UTF-16 символов, совпадающий с порядком кодовых точек (и байт UTF-8, как в S3):
+     * суррогатные пары должны идти после символов U+E000..U+FFFF.
+     */
+    private static int order(char c) {
+        if (c < 0xD800) {
+            return c;
+        }
+        return c >= 0xE000 ? c - 0x800 : c + 0x2000;
+    }
+}
@@ -0,0 +1,70 @@
+package com.slava.repository;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Версии пространства имён бакетов и журнал изменений, общие для всех узлов. Каждое изменение бакета
+ * получает следующий номер версии; узел, чей индекс отстал, дочитывает журнал с версии своего индекса
+ * и применяет изменения по ключам. Журнал ограничен по длине: если нужных записей в нём уже нет,
+ * индекс перестраивается.
+ */
+public interface NamespaceVersions {
+
+    long current(String bucketName);
+
+    /**
+     * Записывает изменение в журнал под следующей версией бакета и возвращает её.
+     */
+    long publish(String bucketName, NamespaceChange change);
+
+    /**
+     * Изменения с версиями больше {@code afterVersion} по возрастанию версии. {@code latestVersion} —
+     * известная вызывающему текущая версия, по ней читается только нужный хвост журнала.
+     */
+    List<NamespaceChange> changesSince(String bucketName, long afterVersion, long latestVersion);
+
+    /**
+     * Версии и журнал в памяти одного узла, для тестов и запуска без Redis.
+     */
+    class Local implements NamespaceVersions {
+
+        private final int logSize;
+        private final Map<String, Deque<NamespaceChange>> logs = new HashMap<>();
+        private final Map<String, Long> versions = new HashMap<>();
+
+        public Local() {
+            this(1000);
+        }
+
+        public Local(int logSize) {
+            this.logSize = logSize;
+        }
+
+        @Override
+        public synchronized long current(String bucketName) {
+            return versions.getOrDefault(bucketName, 0L);
+        }
+
+        @Override
+        public synchronized long publish(String bucketName, NamespaceChange change) {
+            long version = versions.merge(bucketName, 1L, Long::sum);
+            Deque<NamespaceChange> log = logs.computeIfAbsent(bucketName, name -> new ArrayDeque<>());
+            log.addLast(change.withVersion(version));
+            while (log.size() > logSize) {
+                log.removeFirst();
+            }
+            return version;
+        }
+
+        @Override
+        public synchronized List<NamespaceChange> changesSince(String bucketName, long afterVersion, long latestVersion) {
+            return logs.getOrDefault(bucketName, new ArrayDeque<>()).stream()
+                    .filter(change -> change.version() > afterVersion)
+                    .toList();
+        }
+    }
+}
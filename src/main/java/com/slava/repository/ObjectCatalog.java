@@ -0,0 +1,350 @@
+package com.slava.repository;
+
+import com.slava.config.FilesProperties;
+import com.slava.dto.ListFolderDto;
+import com.slava.entity.StoredObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Каталог метаданных объектов в PostgreSQL (таблица objects). Обновляется операциями записи
+ * репозитория и сверяется с MinIO в {@link CatalogReconciler}. Отвечать на листинги каталог
+ * может только для владельцев, которых реконсилер уже сверил: если запись в каталог не удалась,
+ * владелец снова помечается несверенным, и листинги идут в MinIO до следующей сверки.
+ * Признак сверки кэшируется на узле не дольше {@code syncCacheTtl}, поэтому пометка, сделанная
+ * другим узлом, вступает в силу везде за это время.
+ * Ошибки каталога не прерывают операцию с файлами — данные в MinIO уже изменены.
+ */
+@Component
+public class ObjectCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(ObjectCatalog.class);
+    // Верхняя граница диапазона ключей с заданным префиксом
+    static final String MAX_CHAR = new String(Character.toChars(Character.MAX_CODE_POINT));
+    private static final int IN_CLAUSE_LIMIT = 1000;
+    // Границы дат для первой страницы: папки идут с датой начала эпохи, а дальше 9999 года PostgreSQL не нужен
+    private static final long EARLIEST_MODIFIED = -1;
+    private static final long LATEST_MODIFIED = 253_402_300_799_999L;
+
+    private final StoredObjectRepository storedObjectRepository;
+    private final TransactionTemplate transactionTemplate;
+    // Короткие транзакции чтения страниц поддерева
+    private final TransactionTemplate pageTemplate;
+    private final FilesProperties.Catalog settings;
+    // Сверенные владельцы и время проверки по catalog_sync (System.nanoTime)
+    private final Map<String, Long> reconciledOwners = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    public record CatalogEntry(String path, boolean folder, boolean implicit, long size, String etag, String contentType,
+                               long modified) {
+    }
+
+    @Autowired
+    public ObjectCatalog(StoredObjectRepository storedObjectRepository, PlatformTransactionManager transactionManager,
+                         FilesProperties filesProperties) {
+        this(storedObjectRepository, transactionManager, filesProperties, System::nanoTime);
+    }
+
+    ObjectCatalog(StoredObjectRepository storedObjectRepository, PlatformTransactionManager transactionManager,
+                  FilesProperties filesProperties, LongSupplier clock) {
+        this.storedObjectRepository = storedObjectRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pageTemplate = new TransactionTemplate(transactionManager);
+        this.pageTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.pageTemplate.setReadOnly(true);
+        this.settings = filesProperties.getCatalog();
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    public boolean isReconciled(String owner) {
+        if (!settings.isEnabled()) {
+            return false;
+        }
+        long now = clock.getAsLong();
+        Long checkedAt = reconciledOwners.get(owner);
+        if (checkedAt != null && now - checkedAt < settings.getSyncCacheTtl().toNanos()) {
+            return true;
+        }
+        try {
+            if (storedObjectRepository.isReconciled(owner)) {
+                reconciledOwners.put(owner, now);
+                return true;
+            }
+            reconciledOwners.remove(owner);
+        } catch (RuntimeException e) {
+            log.error("Ошибка при проверке состояния каталога владельца '{}': {}", owner, e.getMessage(), e);
+        }
+        return false;
+    }
+
+    public void recordPut(String owner, String path, long size, String etag, String contentType, long modified) {
+        write(owner, () -> {
+            storedObjectRepository.upsert(owner, path, parentOf(path), nameOf(path), path.endsWith("/"), size,
+                    normalizeEtag(etag), contentType, toOffsetDateTime(modified));
+            insertAncestors(owner, path);
+        });
+    }
+
+    public void recordCopy(String owner, String sourcePath, String targetPath, String etag, long modified) {
+        write(owner, () -> {
+            StoredObject source = storedObjectRepository.findByOwnerAndPath(owner, sourcePath)
+                    .orElseThrow(() -> new IllegalStateException("В каталоге нет объекта " + sourcePath));
+            storedObjectRepository.upsert(owner, targetPath, parentOf(targetPath), nameOf(targetPath),
+                    targetPath.endsWith("/"), source.getSize(), etag != null ? normalizeEtag(etag) : source.getEtag(),
+                    source.getContentType(), toOffsetDateTime(modified));
+            insertAncestors(owner, targetPath);
+        });
+    }
+
+    public void recordDelete(String owner, Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        write(owner, () -> {
+            List<String> list = new ArrayList<>(paths);
+            OffsetDateTime deletedAt = toOffsetDateTime(System.currentTimeMillis());
+            for (int from = 0; from < list.size(); from += IN_CLAUSE_LIMIT) {
+                List<String> chunk = list.subList(from, Math.min(list.size(), from + IN_CLAUSE_LIMIT));
+                // Метка удаления не даёт идущей сейчас сверке вернуть строку по своему листингу
+                storedObjectRepository.insertTombstones(owner, chunk, deletedAt);
+                storedObjectRepository.deleteByOwnerAndPaths(owner, chunk);
+            }
+            // Удалённый маркер папки, под которой остались файлы, становится неявной папкой
+            for (String path : list) {
+                if (path.endsWith("/") && storedObjectRepository.hasDescendants(owner, path, MAX_CHAR)) {
+                    storedObjectRepository.insertImplicitFolder(owner, path, parentOf(path), nameOf(path));
+                }
+            }
+            // Опустевшие неявные папки удаляются от глубоких к верхним
+            TreeMap<Integer, Set<String>> candidatesByDepth = new TreeMap<>(Comparator.reverseOrder());
+            for (String path : list) {
+                for (String ancestor : ancestorsOf(path)) {
+                    candidatesByDepth.computeIfAbsent(depthOf(ancestor), depth -> new HashSet<>()).add(ancestor);
+                }
+                if (path.endsWith("/")) {
+                    candidatesByDepth.computeIfAbsent(depthOf(path), depth -> new HashSet<>()).add(path);
+                }
+            }
+            for (Set<String> candidates : candidatesByDepth.values()) {
+                List<String> level = new ArrayList<>(candidates);
+                for (int from = 0; from < level.size(); from += IN_CLAUSE_LIMIT) {
+                    storedObjectRepository.deleteEmptyImplicitFolders(owner,
+                            level.subList(from, Math.min(level.size(), from + IN_CLAUSE_LIMIT)), MAX_CHAR);
+                }
+            }
+        });
+    }
+
+    /**
+     * Прямые дети папки, включая неявные подпапки.
+     */
+    public List<StoredObject> children(String owner, String parent) {
+        return storedObjectRepository.findByOwnerAndParentOrderByPath(owner, parent);
+    }
+
+    /**
+     * Страница прямых детей папки в порядке {@code sort} после строки ({@code afterValue}, {@code afterKey}),
+     * {@code afterKey == null} — первая страница. Значение сортировки — размер или время изменения
+     * в миллисекундах, у папок 0. {@code folders}: null — все дети, иначе только папки или только файлы.
+     * По имени по возрастанию страницы читаются в порядке ключей и сюда не попадают.
+     */
+    public List<StoredObject> sortedChildren(String owner, String parent, ListFolderDto.SortField sort, boolean descending,
+                                             Boolean folders, long afterValue, String afterKey, int limit) {
+        Collection<Boolean> kinds = folders == null ? List.of(true, false) : List.of(folders);
+        boolean first = afterKey == null;
+        String afterPath = first ? (descending ? MAX_CHAR : "") : afterKey;
+        return switch (sort) {
+            case SIZE -> descending
+                    ? storedObjectRepository.findChildrenBySizeDesc(owner, parent, kinds,
+                    first ? Long.MAX_VALUE : afterValue, afterPath, limit)
+                    : storedObjectRepository.findChildrenBySize(owner, parent, kinds,
+                    first ? Long.MIN_VALUE : afterValue, afterPath, limit);
+            case DATE -> descending
+                    ? storedObjectRepository.findChildrenByModifiedDesc(owner, parent, kinds,
+                    toOffsetDateTime(first ? LATEST_MODIFIED : afterValue), afterPath, limit)
+                    : storedObjectRepository.findChildrenByModified(owner, parent, kinds,
+                    toOffsetDateTime(first ? EARLIEST_MODIFIED : afterValue), afterPath, limit);
+            case NAME -> {
+                if (!descending) {
+                    throw new IllegalArgumentException("По имени по возрастанию страницы читаются в порядке ключей");
+                }
+                yield storedObjectRepository.findChildrenByPathDesc(owner, parent, kinds, afterPath, limit);
+            }
+        };
+    }
+
+    public List<StoredObject> subfolders(String owner, String parent) {
+        return storedObjectRepository.findByOwnerAndParentAndFolderTrueOrderByPath(owner, parent);
+    }
+
+    /**
+     * Все реальные объекты с префиксом, без неявных папок — как рекурсивный листинг MinIO. Строки
+     * читаются страницами по pageSize после последнего выданного пути, как в сверке. Каждая страница
+     * читается в своей транзакции: иначе EntityManager, открытый на весь HTTP-запрос, держал бы
+     * сущности всего поддерева до конца выгрузки.
+     */
+    public Stream<StoredObject> subtree(String owner, String prefix, int pageSize) {
+        Iterator<StoredObject> rows = new SubtreeCursor(owner, prefix, Math.max(1, pageSize));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    public List<StoredObject> search(String owner, String query, int limit) {
+        String pattern = "%" + query.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return storedObjectRepository.searchByName(owner, pattern, limit);
+    }
+
+    List<StoredObject> page(String owner, String afterPath, int limit) {
+        return storedObjectRepository.findByOwnerAndPathGreaterThanOrderByPath(owner, afterPath, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Применяет исправления сверки, начатой в {@code since}: объекты, удалённые через приложение
+     * после этого момента, не возвращаются.
+     */
+    void apply(String owner, List<CatalogEntry> upserts, List<String> deletes, long since) {
+        OffsetDateTime sinceTime = toOffsetDateTime(since);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (CatalogEntry entry : upserts) {
+                if (entry.implicit()) {
+                    // Бывший маркер, ставший неявной папкой, пересоздаётся
+                    storedObjectRepository.deleteByOwnerAndPaths(owner, List.of(entry.path()));
+                    storedObjectRepository.insertImplicitFolder(owner, entry.path(), parentOf(entry.path()), nameOf(entry.path()));
+                } else {
+                    storedObjectRepository.upsertUnlessDeletedSince(owner, entry.path(), parentOf(entry.path()),
+                            nameOf(entry.path()), entry.folder(), entry.size(), entry.etag(), entry.contentType(),
+                            toOffsetDateTime(entry.modified()), sinceTime);
+                }
+            }
+            for (int from = 0; from < deletes.size(); from += IN_CLAUSE_LIMIT) {
+                storedObjectRepository.deleteByOwnerAndPaths(owner, deletes.subList(from, Math.min(deletes.size(), from + IN_CLAUSE_LIMIT)));
+            }
+        });
+    }
+
+    /**
+     * Метки удалений старше начала сверки ей уже не нужны.
+     */
+    void purgeTombstones(String owner, long before) {
+        transactionTemplate.executeWithoutResult(status ->
+                storedObjectRepository.deleteTombstonesBefore(owner, toOffsetDateTime(before)));
+    }
+
+    void markReconciled(String owner) {
+        transactionTemplate.executeWithoutResult(status -> storedObjectRepository.markReconciled(owner));
+        reconciledOwners.put(owner, clock.getAsLong());
+    }
+
+    private void write(String owner, Runnable operation) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> operation.run());
+        } catch (RuntimeException e) {
+            log.error("Ошибка записи в каталог объектов владельца '{}', каталог будет сверен заново: {}",
+                    owner, e.getMessage(), e);
+            reconciledOwners.remove(owner);
+            try {
+                transactionTemplate.executeWithoutResult(status -> storedObjectRepository.markUnreconciled(owner));
+            } catch (RuntimeException ignored) {
+                // Если база недоступна, владелец и так будет сверен при следующем проходе
+            }
+        }
+    }
+
+    private final class SubtreeCursor implements Iterator<StoredObject> {
+        private final String owner;
+        private final String prefix;
+        private final int pageSize;
+        private Iterator<StoredObject> page = Collections.emptyIterator();
+        private String lastPath = "";
+        private boolean exhausted;
+
+        SubtreeCursor(String owner, String prefix, int pageSize) {
+            this.owner = owner;
+            this.prefix = prefix;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!page.hasNext() && !exhausted) {
+                List<StoredObject> rows = pageTemplate.execute(status -> storedObjectRepository.findObjectsInRange(
+                        owner, prefix, lastPath, prefix + MAX_CHAR, PageRequest.of(0, pageSize)));
+                rows = rows != null ? rows : List.of();
+                exhausted = rows.size() < pageSize;
+                page = rows.iterator();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public StoredObject next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            StoredObject row = page.next();
+            lastPath = row.getPath();
+            return row;
+        }
+    }
+
+    private void insertAncestors(String owner, String path) {
+        for (String ancestor : ancestorsOf(path)) {
+            storedObjectRepository.insertImplicitFolder(owner, ancestor, parentOf(ancestor), nameOf(ancestor));
+        }
+    }
+
+    static List<String> ancestorsOf(String path) {
+        List<String> ancestors = new ArrayList<>();
+        int slash = path.indexOf('/');
+        while (slash != -1 && slash < path.length() - 1) {
+            ancestors.add(path.substring(0, slash + 1));
+            slash = path.indexOf('/', slash + 1);
+        }
+        return ancestors;
+    }
+
+    static String parentOf(String path) {
+        String trimmed = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        return trimmed.substring(0, trimmed.lastIndexOf('/') + 1);
+    }
+
+    static String nameOf(String path) {
+        String trimmed = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        return trimmed.substring(trimmed.lastIndexOf('/') + 1);
+    }
+
+    // Ответы на запись возвращают ETag в кавычках, листинг — без
+    static String normalizeEtag(String etag) {
+        return etag == null ? null : etag.replace("\"", "");
+    }
+
+    private static int depthOf(String path) {
+        return (int) path.chars().filter(c -> c == '/').count();
+    }
+
+    private static OffsetDateTime toOffsetDateTime(long epochMillis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+}
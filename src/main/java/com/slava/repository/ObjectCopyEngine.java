@@ -0,0 +1,106 @@
+package com.slava.repository;
+
+import com.slava.exception.FileException;
+import io.minio.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Серверное копирование набора объектов внутри бакета с ограниченным параллелизмом.
+ * Данные не проходят через приложение: для объектов до 5 ГБ используется copyObject,
+ * для более крупных — composeObject, который MinIO собирает из частей по upload-part-copy.
+ * Каждая копия занимает своё место в переборке копирований и загрузок (minioTransferBulkhead).
+ */
+public class ObjectCopyEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(ObjectCopyEngine.class);
+    static final long MAX_COPY_OBJECT_SIZE = 5L * 1024 * 1024 * 1024;
+
+    private final MinioClient minioClient;
+    private final AdaptiveConcurrencyLimiter transfers;
+    private final ExecutorService executor;
+
+    public ObjectCopyEngine(MinioClient minioClient, AdaptiveConcurrencyLimiter transfers, ExecutorService executor) {
+        this.minioClient = minioClient;
+        this.transfers = transfers;
+        this.executor = executor;
+    }
+
+    public record CopyTask(String source, String target, long size) {
+    }
+
+    private record CopyResult(CopyTask task, boolean success) {
+    }
+
+    /**
+     * Копирует объекты и возвращает исходные ключи, скопированные успешно.
+     * Ошибки по отдельным объектам не прерывают остальные копирования.
+     */
+    public List<String> copyAll(String bucketName, List<CopyTask> tasks, int parallelism, CopyProgressListener listener) {
+        long totalBytes = tasks.stream().mapToLong(CopyTask::size).sum();
+        CompletionService<CopyResult> completionService = new ExecutorCompletionService<>(executor);
+        List<String> copied = new ArrayList<>(tasks.size());
+        int submitted = 0;
+        int completed = 0;
+        long copiedBytes = 0;
+        try {
+            while (completed < tasks.size()) {
+                while (submitted < tasks.size() && submitted - completed < Math.max(1, parallelism)) {
+                    CopyTask task = tasks.get(submitted++);
+                    completionService.submit(() -> new CopyResult(task, copy(bucketName, task)));
+                }
+                CopyResult result = completionService.take().get();
+                completed++;
+                if (result.success()) {
+                    copied.add(result.task().source());
+                    copiedBytes += result.task().size();
+                }
+                listener.onProgress(completed, tasks.size(), copiedBytes, totalBytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileException("Копирование прервано");
+        } catch (ExecutionException e) {
+            throw new FileException("Ошибка при копировании файлов");
+        }
+        return copied;
+    }
+
+    private boolean copy(String bucketName, CopyTask task) {
+        try {
+            transfers.run(false, () -> copyObject(bucketName, task));
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Ошибка при копировании '{}' в '{}' в бакете '{}': {}",
+                    task.source(), task.target(), bucketName, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private void copyObject(String bucketName, CopyTask task) {
+        try {
+            if (task.size() > MAX_COPY_OBJECT_SIZE) {
+                minioClient.composeObject(ComposeObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(task.target())
+                        .sources(List.of(ComposeSource.builder().bucket(bucketName).object(task.source()).build()))
+                        .build());
+            } else {
+                minioClient.copyObject(CopyObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(task.target())
+                        .source(CopySource.builder().bucket(bucketName).object(task.source()).build())
+                        .build());
+            }
+        } catch (Exception e) {
+            throw new FileException("Ошибка при копировании файла", e);
+        }
+    }
+}
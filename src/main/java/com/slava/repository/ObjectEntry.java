@@ -0,0 +1,49 @@
+package com.slava.repository;
+
+import io.minio.messages.Item;
+
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+/**
+ * Элемент листинга с метаданными прямо из ответа листинга, индекса или каталога — без statObject.
+ * Время изменения хранится в миллисекундах эпохи, чтобы не создавать объект даты на каждый ключ.
+ * У общего префикса (подпапки в листинге с delimiter) метаданных нет.
+ */
+public record ObjectEntry(String key, boolean commonPrefix, long size, long lastModified, String etag,
+                          String contentType) {
+
+    public static ObjectEntry ofPrefix(String key) {
+        return new ObjectEntry(key, true, 0, 0, null, null);
+    }
+
+    /**
+     * Элемент листинга MinIO. Тип содержимого есть только в листинге с includeUserMetadata(true):
+     * MinIO отдаёт его среди метаданных объекта, отдельный statObject не нужен.
+     */
+    static ObjectEntry of(Item item) {
+        if (item.isDir()) {
+            return ofPrefix(item.objectName());
+        }
+        ZonedDateTime lastModified = item.lastModified();
+        return new ObjectEntry(item.objectName(), false, item.size(),
+                lastModified != null ? lastModified.toInstant().toEpochMilli() : 0,
+                ObjectCatalog.normalizeEtag(item.etag()), contentTypeOf(item.userMetadata()));
+    }
+
+    public boolean isFolder() {
+        return commonPrefix || key.endsWith("/");
+    }
+
+    private static String contentTypeOf(Map<String, String> metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            if ("content-type".equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,108 @@
+package com.slava.repository;
+
+import com.slava.exception.FileException;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Листинг MinIO, в котором каждая страница — отдельная операция {@link AdaptiveConcurrencyLimiter}.
+ * Итератор клиента MinIO сам запрашивает следующую страницу, когда читатель дошёл до конца предыдущей,
+ * и место в ограничителе пришлось бы держать, пока читают весь листинг. Здесь страница читается целиком
+ * на занятом месте, а следующая запрашивается новым листингом после последнего ключа. Общий префикс
+ * в роли startAfter S3 пропускает вместе со всем содержимым, поэтому подпапки не повторяются.
+ */
+final class PagedListing implements Iterator<ObjectEntry> {
+
+    private static final Logger log = LoggerFactory.getLogger(PagedListing.class);
+
+    private final MinioClient minioClient;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final String bucketName;
+    private final String prefix;
+    private final boolean recursive;
+    private final int pageSize;
+    private String startAfter;
+    private Iterator<ObjectEntry> page = Collections.emptyIterator();
+    private boolean lastPage;
+
+    PagedListing(MinioClient minioClient, AdaptiveConcurrencyLimiter limiter, String bucketName, String prefix,
+                 boolean recursive, String startAfter, int pageSize) {
+        this.minioClient = minioClient;
+        this.limiter = limiter;
+        this.bucketName = bucketName;
+        this.prefix = prefix;
+        this.recursive = recursive;
+        this.startAfter = startAfter;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    static Stream<ObjectEntry> stream(MinioClient minioClient, AdaptiveConcurrencyLimiter limiter, String bucketName,
+                                      String prefix, boolean recursive, String startAfter, int pageSize) {
+        PagedListing listing = new PagedListing(minioClient, limiter, bucketName, prefix, recursive, startAfter, pageSize);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(listing,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!page.hasNext() && !lastPage) {
+            List<ObjectEntry> entries = limiter.call(false, this::fetchPage);
+            // Неполная страница бывает только последней: итератор MinIO дочитал бы продолжение сам
+            lastPage = entries.size() < pageSize;
+            if (!entries.isEmpty()) {
+                startAfter = entries.get(entries.size() - 1).key();
+            }
+            page = entries.iterator();
+        }
+        return page.hasNext();
+    }
+
+    @Override
+    public ObjectEntry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+    }
+
+    private List<ObjectEntry> fetchPage() {
+        ListObjectsArgs.Builder args = ListObjectsArgs.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .recursive(recursive)
+                .maxKeys(pageSize)
+                .includeUserMetadata(true);
+        if (!recursive) {
+            args.delimiter("/");
+        }
+        if (startAfter != null) {
+            args.startAfter(startAfter);
+        }
+        List<ObjectEntry> entries = new ArrayList<>();
+        try {
+            Iterator<Result<Item>> results = minioClient.listObjects(args.build()).iterator();
+            // Дальше страницы не читаем: следующую итератор MinIO запросил бы на этом же месте
+            while (entries.size() < pageSize && results.hasNext()) {
+                entries.add(ObjectEntry.of(results.next().get()));
+            }
+        } catch (Exception e) {
+            log.error("Ошибка при получении списка объектов в бакете '{}' с префиксом '{}': {}", bucketName, prefix, e.getMessage(), e);
+            throw new FileException("Ошибка при получении списка файлов", e);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,256 @@
+package com.slava.repository;
+
+import com.slava.exception.FileException;
+import com.slava.exception.StorageOverloadedException;
+import io.minio.MinioClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Рекурсивный листинг с параллельным обходом подпапок. Рекурсивный листинг MinIO — одна
+ * последовательная цепочка страниц, поэтому для широкого дерева сначала читается один уровень
+ * с delimiter, а затем каждая подпапка первого уровня листится в отдельной задаче.
+ * Если на уровне только одна подпапка, обход спускается в неё.
+ * <p>
+ * Результаты сливаются в один поток пачками через ограниченную очередь, поэтому порядок ключей
+ * не сохраняется, а память ограничена размером очереди. Поток нужно закрывать: закрытие
+ * останавливает листинги, которые ещё не дочитаны.
+ * <p>
+ * Задачи ждут медленного читателя, пока очередь полна, поэтому выполняются в собственном пуле листинга:
+ * читатель (например, сборка архива) сам ждёт задач общего пула storageExecutor, и в одном пуле
+ * они могли бы взаимно заблокироваться. Поток пула не ждёт свободного места для следующей подпапки:
+ * её листинг запускает завершившийся листинг предыдущей.
+ * <p>
+ * Листинг годится только для читателей, которые идут со скоростью хранилища (удаление и перенос папок,
+ * сбор полного списка): читатель со скоростью клиента держал бы потоки пула листинга всё время передачи.
+ * <p>
+ * Каждая страница листинга занимает своё место в {@link AdaptiveConcurrencyLimiter} только на время
+ * запроса, см. {@link PagedListing}: задача, ждущая места в очереди читателя, место не держит.
+ */
+public class ParallelObjectLister {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelObjectLister.class);
+    private static final int CHUNK_SIZE = 1000;
+    private static final int MAX_DESCENT_DEPTH = 8;
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private final MinioClient minioClient;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int pageSize;
+
+    public ParallelObjectLister(MinioClient minioClient, AdaptiveConcurrencyLimiter limiter, ExecutorService executor,
+                                int parallelism, int pageSize) {
+        this.minioClient = minioClient;
+        this.limiter = limiter;
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        this.pageSize = pageSize;
+    }
+
+    public Stream<ObjectEntry> list(String bucketName, String prefix) {
+        Listing listing = new Listing(bucketName);
+        listing.start(prefix);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(listing, Spliterator.NONNULL), false)
+                .onClose(listing::cancel);
+    }
+
+    private final class Listing implements Iterator<ObjectEntry> {
+        // Пустая пачка в очереди означает конец листинга
+        private static final List<ObjectEntry> END = List.of();
+
+        private final String bucketName;
+        private final BlockingQueue<List<ObjectEntry>> queue = new ArrayBlockingQueue<>(2 * parallelism);
+        // Подпапки первого уровня, листинг которых ещё не начат
+        private final Queue<String> folders = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+        // Читатель закрыл поток
+        private volatile boolean closed;
+        private Iterator<ObjectEntry> current = END.iterator();
+        private boolean finished;
+
+        Listing(String bucketName) {
+            this.bucketName = bucketName;
+        }
+
+        void start(String prefix) {
+            submit(() -> discover(prefix, 0));
+        }
+
+        void cancel() {
+            closed = true;
+            queue.clear();
+        }
+
+        private boolean stopped() {
+            return closed || failure.get() != null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && !finished) {
+                List<ObjectEntry> chunk;
+                try {
+                    chunk = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                    throw new FileException("Получение списка файлов прервано");
+                }
+                if (chunk == END) {
+                    finished = true;
+                    if (failure.get() instanceof StorageOverloadedException overloaded) {
+                        throw overloaded;
+                    }
+                    if (failure.get() != null) {
+                        throw new FileException("Ошибка при получении списка файлов", failure.get());
+                    }
+                } else {
+                    current = chunk.iterator();
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public ObjectEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        /**
+         * Один уровень с delimiter: файлы уровня отдаются сразу, подпапки листятся параллельно.
+         */
+        private void discover(String prefix, int depth) throws Exception {
+            List<ObjectEntry> files = new ArrayList<>();
+            List<String> folders = new ArrayList<>();
+            Iterator<ObjectEntry> level = new PagedListing(minioClient, limiter, bucketName, prefix, false, null, pageSize);
+            while (level.hasNext()) {
+                if (stopped()) {
+                    return;
+                }
+                ObjectEntry entry = level.next();
+                if (entry.commonPrefix()) {
+                    folders.add(entry.key());
+                } else {
+                    files.add(entry);
+                    if (files.size() == CHUNK_SIZE) {
+                        publish(files);
+                        files = new ArrayList<>();
+                    }
+                }
+            }
+            publish(files);
+            if (folders.size() == 1 && depth < MAX_DESCENT_DEPTH) {
+                discover(folders.get(0), depth + 1);
+                return;
+            }
+            this.folders.addAll(folders);
+            // Не больше parallelism листингов подпапок одновременно: каждый по завершении запускает следующий
+            for (int i = 0; i < parallelism; i++) {
+                scanNext();
+            }
+        }
+
+        private void scanNext() {
+            if (stopped()) {
+                return;
+            }
+            String folder = folders.poll();
+            if (folder != null) {
+                submit(() -> {
+                    scan(folder);
+                    scanNext();
+                });
+            }
+        }
+
+        private void scan(String prefix) throws Exception {
+            List<ObjectEntry> chunk = new ArrayList<>();
+            Iterator<ObjectEntry> objects = new PagedListing(minioClient, limiter, bucketName, prefix, true, null, pageSize);
+            while (objects.hasNext()) {
+                if (stopped()) {
+                    return;
+                }
+                chunk.add(objects.next());
+                if (chunk.size() == CHUNK_SIZE) {
+                    publish(chunk);
+                    chunk = new ArrayList<>();
+                }
+            }
+            publish(chunk);
+        }
+
+        private void submit(ListingTask task) {
+            pending.incrementAndGet();
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                    log.error("Ошибка при получении списка объектов в бакете '{}': {}", bucketName, e.getMessage(), e);
+                    failure.compareAndSet(null, e);
+                } finally {
+                    if (pending.decrementAndGet() == 0) {
+                        finish();
+                    }
+                }
+            });
+        }
+
+        private void publish(List<ObjectEntry> chunk) throws InterruptedException {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            while (!stopped()) {
+                if (queue.offer(chunk, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        }
+
+        private void finish() {
+            if (failure.get() != null) {
+                // Остаток листинга после ошибки не нужен: читатель сразу получает исключение
+                queue.clear();
+            }
+            try {
+                while (!closed) {
+                    if (queue.offer(END, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ListingTask {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,93 @@
+package com.slava.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.slava.config.FilesProperties;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Версии пространства имён и журнал изменений в Redis. Версия и запись журнала меняются одним скриптом,
+ * так что номер в журнале совпадает с версией. Журнал — список строк {@code "<версия>:<json>"},
+ * обрезанный до {@code files.index.change-log-size} записей и живущий не дольше ttl индекса:
+ * более старый индекс всё равно перестраивается.
+ */
+@Component
+public class RedisNamespaceVersions implements NamespaceVersions {
+
+    private static final String KEY_PREFIX = "files:namespace:v:";
+    private static final String LOG_PREFIX = "files:namespace:log:";
+
+    private static final RedisScript<Long> PUBLISH = new DefaultRedisScript<>("""
+            local version = redis.call('INCR', KEYS[1])
+            redis.call('RPUSH', KEYS[2], version .. ':' .. ARGV[1])
+            redis.call('LTRIM', KEYS[2], -tonumber(ARGV[2]), -1)
+            redis.call('PEXPIRE', KEYS[2], ARGV[3])
+            return version
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    // ObjectEntry сериализуется с вычисляемым полем folder, при чтении оно не нужно
+    private final ObjectReader changeReader;
+    private final FilesProperties.Index settings;
+
+    public RedisNamespaceVersions(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                                  FilesProperties filesProperties) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.changeReader = objectMapper.readerFor(NamespaceChange.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.settings = filesProperties.getIndex();
+    }
+
+    @Override
+    public long current(String bucketName) {
+        String version = redisTemplate.opsForValue().get(KEY_PREFIX + bucketName);
+        return version != null ? Long.parseLong(version) : 0;
+    }
+
+    @Override
+    public long publish(String bucketName, NamespaceChange change) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(change);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        Long version = redisTemplate.execute(PUBLISH, List.of(KEY_PREFIX + bucketName, LOG_PREFIX + bucketName),
+                json, String.valueOf(settings.getChangeLogSize()), String.valueOf(settings.getTtl().toMillis()));
+        return version != null ? version : 0;
+    }
+
+    @Override
+    public List<NamespaceChange> changesSince(String bucketName, long afterVersion, long latestVersion) {
+        // Нужен только хвост журнала; если он длиннее журнала, читается весь
+        long count = Math.min(Math.max(latestVersion - afterVersion, 1), settings.getChangeLogSize());
+        List<String> records = redisTemplate.opsForList().range(LOG_PREFIX + bucketName, -count, -1);
+        if (records == null) {
+            return List.of();
+        }
+        return records.stream()
+                .map(this::parse)
+                .filter(change -> change.version() > afterVersion)
+                .toList();
+    }
+
+    private NamespaceChange parse(String record) {
+        int separator = record.indexOf(':');
+        try {
+            NamespaceChange change = changeReader.readValue(record.substring(separator + 1));
+            return change.withVersion(Long.parseLong(record.substring(0, separator)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
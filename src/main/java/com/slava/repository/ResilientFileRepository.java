@@ -0,0 +1,394 @@
+package com.slava.repository;
+
+import com.slava.config.FilesProperties;
+import com.slava.dto.FileMetadataDto;
+import com.slava.dto.ListFolderDto;
+import com.slava.exception.FileException;
+import com.slava.exception.StorageOverloadedException;
+import com.slava.exception.StorageUnavailableException;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.ServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Обращения к MinIO с защитой от его деградации, поверх {@link ConcurrencyLimitedFileRepository}.
+ * Идемпотентные вызовы повторяются при временных сбоях (сеть, 5xx, SlowDown) с паузой со случайным
+ * разбросом, чтобы повторы разных запросов не приходили одновременно. После серии сбоев подряд
+ * автомат отключения отклоняет вызовы сразу, не дожидаясь таймаутов. GET и stat, не ответившие за
+ * перцентиль недавних задержек, дублируются, и побеждает первый ответ. Дублей не больше доли
+ * hedge-budget-ratio от запросов, и их нет, пока ограничитель держит очередь или автомат не замкнут:
+ * дубль тогда только добавляет нагрузку хранилищу, которое и так не справляется.
+ * Загрузка, пакетное удаление, удаление и перенос папок, перенос файла и создание бакета не повторяются:
+ * они не идемпотентны или сами состоят из многих запросов. Создание папки — один PUT пустого объекта,
+ * поэтому повторяется. Ленивые листинги только проверяют автомат. Отказ ограничителя при перегрузке
+ * не повторяется и не влияет на автомат: хранилище отвечает, просто медленно.
+ */
+@Primary
+@Repository
+public class ResilientFileRepository implements CustomFileRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(ResilientFileRepository.class);
+
+    // Коды S3, после которых запрос имеет смысл повторить
+    private static final Set<String> TRANSIENT_CODES = Set.of(
+            "InternalError", "ServiceUnavailable", "SlowDown", "RequestTimeout", "XMinioServerNotInitialized");
+
+    private final CustomFileRepository delegate;
+    private final FilesProperties.Resilience settings;
+    private final ExecutorService hedgeExecutor;
+    private final CircuitBreaker breaker;
+    private final LatencyTracker downloadLatency;
+    private final LatencyTracker statLatency;
+    private final HedgeBudget hedgeBudget;
+    // Ограничитель держит очередь: дубль встал бы в неё же
+    private final BooleanSupplier storageQueueing;
+
+    @Autowired
+    public ResilientFileRepository(ConcurrencyLimitedFileRepository delegate,
+                                   FilesProperties filesProperties,
+                                   @Qualifier("storageHedgeExecutor") ExecutorService hedgeExecutor) {
+        this(delegate, filesProperties, hedgeExecutor, () -> delegate.limiter().queued() > 0, System::nanoTime);
+    }
+
+    ResilientFileRepository(CustomFileRepository delegate, FilesProperties filesProperties,
+                            ExecutorService hedgeExecutor, BooleanSupplier storageQueueing, LongSupplier nanoClock) {
+        this.delegate = delegate;
+        this.settings = filesProperties.getResilience();
+        this.hedgeExecutor = hedgeExecutor;
+        this.storageQueueing = storageQueueing;
+        this.hedgeBudget = new HedgeBudget(settings.getHedgeBudgetRatio(), settings.getHedgeBudgetBurst());
+        this.breaker = new CircuitBreaker(settings.getBreakerFailureThreshold(), settings.getBreakerOpenDuration(), nanoClock);
+        this.downloadLatency = new LatencyTracker(settings.getLatencyWindow(), settings.getHedgePercentile());
+        this.statLatency = new LatencyTracker(settings.getLatencyWindow(), settings.getHedgePercentile());
+    }
+
+    @Override
+    public void uploadFile(String bucketName, String objectName, InputStream fileStream, long size, String contentType) {
+        run("uploadFile", false, () -> delegate.uploadFile(bucketName, objectName, fileStream, size, contentType));
+    }
+
+    @Override
+    public Optional<InputStream> downloadFile(String bucketName, String objectName) {
+        return call("downloadFile", true, () -> hedged("downloadFile", downloadLatency,
+                () -> delegate.downloadFile(bucketName, objectName), ResilientFileRepository::closeQuietly));
+    }
+
+    @Override
+    public Optional<InputStream> downloadFile(String bucketName, String objectName, long offset, long length) {
+        return call("downloadFile", true, () -> hedged("downloadFile", downloadLatency,
+                () -> delegate.downloadFile(bucketName, objectName, offset, length), ResilientFileRepository::closeQuietly));
+    }
+
+    @Override
+    public Optional<FileMetadataDto> statObject(String bucketName, String objectName) {
+        return call("statObject", true, () -> hedged("statObject", statLatency,
+                () -> delegate.statObject(bucketName, objectName), metadata -> { }));
+    }
+
+    @Override
+    public void deleteFile(String bucketName, String filePath) {
+        run("deleteFile", true, () -> delegate.deleteFile(bucketName, filePath));
+    }
+
+    @Override
+    public void deleteFiles(String bucketName, List<String> filePaths) {
+        run("deleteFiles", false, () -> delegate.deleteFiles(bucketName, filePaths));
+    }
+
+    @Override
+    public void copyFile(String bucketName, String sourceObjectName, String targetObjectName) {
+        run("copyFile", true, () -> delegate.copyFile(bucketName, sourceObjectName, targetObjectName));
+    }
+
+    @Override
+    public void createFolder(String bucketName, String folderPath) {
+        run("createFolder", true, () -> delegate.createFolder(bucketName, folderPath));
+    }
+
+    @Override
+    public void deleteFolder(String bucketName, String folderPath) {
+        run("deleteFolder", false, () -> delegate.deleteFolder(bucketName, folderPath));
+    }
+
+    @Override
+    public void moveFolder(String bucketName, String sourcePath, String targetPath) {
+        run("moveFolder", false, () -> delegate.moveFolder(bucketName, sourcePath, targetPath));
+    }
+
+    @Override
+    public void moveFolder(String bucketName, String sourcePath, String targetPath, CopyProgressListener listener) {
+        run("moveFolder", false, () -> delegate.moveFolder(bucketName, sourcePath, targetPath, listener));
+    }
+
+    @Override
+    public void moveFile(String bucketName, String sourcePath, String targetPath) {
+        run("moveFile", false, () -> delegate.moveFile(bucketName, sourcePath, targetPath));
+    }
+
+    @Override
+    public List<String> listObjects(String bucketName, String prefix) {
+        return call("listObjects", true, () -> delegate.listObjects(bucketName, prefix));
+    }
+
+    @Override
+    public Stream<ObjectEntry> streamObjects(String bucketName, String prefix) {
+        checkPermitted();
+        return delegate.streamObjects(bucketName, prefix);
+    }
+
+    @Override
+    public List<String> listChildren(String bucketName, String prefix) {
+        return call("listChildren", true, () -> delegate.listChildren(bucketName, prefix));
+    }
+
+    @Override
+    public Stream<ObjectEntry> streamChildren(String bucketName, String prefix, String startAfter, int pageSize) {
+        checkPermitted();
+        return delegate.streamChildren(bucketName, prefix, startAfter, pageSize);
+    }
+
+    @Override
+    public List<ObjectEntry> search(String bucketName, String query, int limit) {
+        return call("search", true, () -> delegate.search(bucketName, query, limit));
+    }
+
+    @Override
+    public Optional<List<ObjectEntry>> sortedChildren(String bucketName, String prefix, ListFolderDto.SortField sort,
+                                                      boolean descending, Boolean folders, long afterValue,
+                                                      String afterKey, int limit) {
+        // Запрос к каталогу в PostgreSQL, а не к MinIO
+        return delegate.sortedChildren(bucketName, prefix, sort, descending, folders, afterValue, afterKey, limit);
+    }
+
+    @Override
+    public boolean bucketExists(String bucketName) {
+        return call("bucketExists", true, () -> delegate.bucketExists(bucketName));
+    }
+
+    @Override
+    public void createBucket(String bucketName) {
+        run("createBucket", false, () -> delegate.createBucket(bucketName));
+    }
+
+    CircuitBreaker.State breakerState() {
+        return breaker.state();
+    }
+
+    private void run(String operation, boolean idempotent, Runnable request) {
+        call(operation, idempotent, () -> {
+            request.run();
+            return null;
+        });
+    }
+
+    /**
+     * Вызов через автомат отключения; идемпотентный вызов повторяется при временных сбоях.
+     * Ошибки, которые не говорят о неисправности хранилища (нет объекта, отказ в доступе),
+     * считаются для автомата успешным ответом и не повторяются.
+     */
+    private <T> T call(String operation, boolean idempotent, Supplier<T> request) {
+        int attempts = idempotent ? Math.max(1, settings.getMaxAttempts()) : 1;
+        for (int attempt = 1; ; attempt++) {
+            if (!breaker.tryAcquire()) {
+                log.warn("Хранилище недоступно, вызов {} отклонён автоматом отключения", operation);
+                throw new StorageUnavailableException("Хранилище временно недоступно");
+            }
+            T result;
+            try {
+                result = request.get();
+            } catch (StorageOverloadedException e) {
+                breaker.onIgnored();
+                throw e;
+            } catch (RuntimeException e) {
+                if (!isTransient(e)) {
+                    onSuccess();
+                    throw e;
+                }
+                onFailure(operation);
+                if (attempt >= attempts) {
+                    throw e;
+                }
+                log.warn("Временный сбой MinIO в {}, попытка {} из {}: {}", operation, attempt, attempts, e.getMessage());
+                pause(retryDelayNanos(attempt));
+                continue;
+            }
+            onSuccess();
+            return result;
+        }
+    }
+
+    private void onSuccess() {
+        if (breaker.state() != CircuitBreaker.State.CLOSED) {
+            log.info("Хранилище снова отвечает, автомат отключения замкнут");
+        }
+        breaker.onSuccess();
+    }
+
+    private void onFailure(String operation) {
+        boolean wasOpen = breaker.state() == CircuitBreaker.State.OPEN;
+        breaker.onFailure();
+        if (!wasOpen && breaker.state() == CircuitBreaker.State.OPEN) {
+            log.error("Автомат отключения MinIO разомкнут на {} после сбоя в {}", settings.getBreakerOpenDuration(), operation);
+        }
+    }
+
+    private void checkPermitted() {
+        if (!breaker.isCallPermitted()) {
+            throw new StorageUnavailableException("Хранилище временно недоступно");
+        }
+    }
+
+    /**
+     * Пауза перед повтором: случайная от 0 до base * 2^(attempt - 1), но не больше max.
+     */
+    private long retryDelayNanos(int attempt) {
+        long base = settings.getRetryBaseDelay().toNanos();
+        long ceiling = Math.min(settings.getRetryMaxDelay().toNanos(), base << Math.min(attempt - 1, 20));
+        return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+    }
+
+    private static void pause(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileException("Операция прервана");
+        }
+    }
+
+    /**
+     * Запрос с дублированием: если ответа нет дольше перцентиля недавних задержек, отправляется второй
+     * такой же запрос, и берётся первый успешный ответ. Ответ проигравшего передаётся в discard.
+     * Пока задержек накоплено мало, хранилище перегружено или заняты все потоки дублирования,
+     * запрос выполняется в вызывающем потоке без дубля.
+     */
+    private <T> Optional<T> hedged(String operation, LatencyTracker latency, Supplier<Optional<T>> request,
+                                   Consumer<T> discard) {
+        hedgeBudget.onRequest();
+        long threshold = settings.isHedgeEnabled() ? latency.percentileNanos() : -1;
+        if (threshold < 0 || !hedgingAllowed()) {
+            return timed(latency, request);
+        }
+        long delay = Math.max(threshold, settings.getHedgeMinDelay().toNanos());
+        CompletableFuture<Optional<T>> primary;
+        try {
+            primary = CompletableFuture.supplyAsync(() -> timed(latency, request), hedgeExecutor);
+        } catch (RejectedExecutionException e) {
+            return timed(latency, request);
+        }
+        CompletableFuture<Optional<T>> result = primary;
+        try {
+            primary.get(delay, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (hedgingAllowed() && hedgeBudget.tryAcquire()) {
+                try {
+                    CompletableFuture<Optional<T>> backup = CompletableFuture.supplyAsync(() -> timed(latency, request), hedgeExecutor);
+                    log.debug("{} не ответил за {} мс, отправлен дублирующий запрос", operation, TimeUnit.NANOSECONDS.toMillis(delay));
+                    result = firstSuccessful(primary, backup, discard);
+                } catch (RejectedExecutionException rejected) {
+                    log.debug("Все потоки дублирования заняты, {} ждёт первого запроса", operation);
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            // Результат или ошибку вернёт await
+        }
+        return await(result, discard);
+    }
+
+    private boolean hedgingAllowed() {
+        return breaker.state() == CircuitBreaker.State.CLOSED && !storageQueueing.getAsBoolean();
+    }
+
+    private static <T> T timed(LatencyTracker latency, Supplier<T> request) {
+        long start = System.nanoTime();
+        T result = request.get();
+        latency.record(System.nanoTime() - start);
+        return result;
+    }
+
+    private static <T> CompletableFuture<Optional<T>> firstSuccessful(CompletableFuture<Optional<T>> primary,
+                                                                      CompletableFuture<Optional<T>> backup,
+                                                                      Consumer<T> discard) {
+        CompletableFuture<Optional<T>> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        BiConsumer<Optional<T>, Throwable> race = (value, error) -> {
+            if (error != null) {
+                if (failures.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            } else if (!winner.complete(value)) {
+                value.ifPresent(discard);
+            }
+        };
+        primary.whenComplete(race);
+        backup.whenComplete(race);
+        return winner;
+    }
+
+    private static <T> Optional<T> await(CompletableFuture<Optional<T>> future, Consumer<T> discard) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.thenAccept(value -> value.ifPresent(discard));
+            throw new FileException("Операция прервана");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new FileException("Ошибка при обращении к хранилищу", e.getCause());
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            log.debug("Не удалось закрыть поток дублирующего запроса: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Временный ли сбой: сетевая ошибка, 5xx или код S3 о перегрузке. Причина ищется по цепочке,
+     * потому что {@link MinioFileRepositoryImpl} оборачивает ошибки клиента в FileException.
+     */
+    static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof StorageUnavailableException) {
+                return false;
+            }
+            if (cause instanceof ErrorResponseException e) {
+                return e.errorResponse() != null && TRANSIENT_CODES.contains(e.errorResponse().code());
+            }
+            if (cause instanceof ServerException || cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,149 @@
+package com.slava.repository;
+
+import com.slava.entity.StoredObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StoredObjectRepository extends JpaRepository<StoredObject, Long> {
+
+    Optional<StoredObject> findByOwnerAndPath(String owner, String path);
+
+    List<StoredObject> findByOwnerAndParentOrderByPath(String owner, String parent);
+
+    List<StoredObject> findByOwnerAndParentAndFolderTrueOrderByPath(String owner, String parent);
+
+    // Страница диапазона [from, to) после ключа after по индексу (owner, path): все ключи с префиксом from
+    // при to = from + U+10FFFF
+    @Query("SELECT o FROM StoredObject o WHERE o.owner = :owner AND o.path >= :from AND o.path > :after " +
+            "AND o.path < :to AND o.implicit = false ORDER BY o.path")
+    List<StoredObject> findObjectsInRange(@Param("owner") String owner, @Param("from") String from,
+                                          @Param("after") String after, @Param("to") String to, Pageable pageable);
+
+    // Страницы уровня папки по размеру, дате и имени в обратном порядке: ключ страницы — пара
+    // (значение, путь) последней выданной строки, выражения совпадают с индексами idx_objects_owner_parent_*.
+    // У папок, как и у общих префиксов в листинге MinIO, нет ни размера, ни даты
+    String SIZE_ORDER = "CASE WHEN is_folder THEN 0 ELSE size END";
+    String MODIFIED_ORDER = "CASE WHEN is_folder THEN to_timestamp(0) ELSE COALESCE(modified, to_timestamp(0)) END";
+    String LEVEL = "SELECT * FROM objects WHERE owner = :owner AND parent = :parent AND is_folder IN (:kinds) ";
+
+    @Query(value = LEVEL + "AND (" + SIZE_ORDER + ", path) > (:afterSize, :afterPath) " +
+            "ORDER BY " + SIZE_ORDER + ", path LIMIT :limit", nativeQuery = true)
+    List<StoredObject> findChildrenBySize(@Param("owner") String owner, @Param("parent") String parent,
+                                          @Param("kinds") Collection<Boolean> kinds, @Param("afterSize") long afterSize,
+                                          @Param("afterPath") String afterPath, @Param("limit") int limit);
+
+    @Query(value = LEVEL + "AND (" + SIZE_ORDER + ", path) < (:beforeSize, :beforePath) " +
+            "ORDER BY " + SIZE_ORDER + " DESC, path DESC LIMIT :limit", nativeQuery = true)
+    List<StoredObject> findChildrenBySizeDesc(@Param("owner") String owner, @Param("parent") String parent,
+                                              @Param("kinds") Collection<Boolean> kinds, @Param("beforeSize") long beforeSize,
+                                              @Param("beforePath") String beforePath, @Param("limit") int limit);
+
+    @Query(value = LEVEL + "AND (" + MODIFIED_ORDER + ", path) > (:afterModified, :afterPath) " +
+            "ORDER BY " + MODIFIED_ORDER + ", path LIMIT :limit", nativeQuery = true)
+    List<StoredObject> findChildrenByModified(@Param("owner") String owner, @Param("parent") String parent,
+                                              @Param("kinds") Collection<Boolean> kinds,
+                                              @Param("afterModified") OffsetDateTime afterModified,
+                                              @Param("afterPath") String afterPath, @Param("limit") int limit);
+
+    @Query(value = LEVEL + "AND (" + MODIFIED_ORDER + ", path) < (:beforeModified, :beforePath) " +
+            "ORDER BY " + MODIFIED_ORDER + " DESC, path DESC LIMIT :limit", nativeQuery = true)
+    List<StoredObject> findChildrenByModifiedDesc(@Param("owner") String owner, @Param("parent") String parent,
+                                                  @Param("kinds") Collection<Boolean> kinds,
+                                                  @Param("beforeModified") OffsetDateTime beforeModified,
+                                                  @Param("beforePath") String beforePath, @Param("limit") int limit);
+
+    @Query(value = LEVEL + "AND path < :beforePath ORDER BY path DESC LIMIT :limit", nativeQuery = true)
+    List<StoredObject> findChildrenByPathDesc(@Param("owner") String owner, @Param("parent") String parent,
+                                              @Param("kinds") Collection<Boolean> kinds,
+                                              @Param("beforePath") String beforePath, @Param("limit") int limit);
+
+    List<StoredObject> findByOwnerAndPathGreaterThanOrderByPath(String owner, String path, Pageable pageable);
+
+    @Query(value = "SELECT * FROM objects WHERE owner = :owner AND lower(name) LIKE :pattern ESCAPE '\\' " +
+            "ORDER BY path LIMIT :limit", nativeQuery = true)
+    List<StoredObject> searchByName(@Param("owner") String owner, @Param("pattern") String pattern, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "INSERT INTO objects (owner, path, parent, name, is_folder, implicit, size, etag, content_type, modified) " +
+            "VALUES (:owner, :path, :parent, :name, :folder, FALSE, :size, :etag, :contentType, :modified) " +
+            "ON CONFLICT (owner, path) DO UPDATE SET is_folder = EXCLUDED.is_folder, implicit = FALSE, " +
+            "size = EXCLUDED.size, etag = EXCLUDED.etag, " +
+            "content_type = COALESCE(EXCLUDED.content_type, objects.content_type), modified = EXCLUDED.modified",
+            nativeQuery = true)
+    void upsert(@Param("owner") String owner, @Param("path") String path, @Param("parent") String parent,
+                @Param("name") String name, @Param("folder") boolean folder, @Param("size") long size,
+                @Param("etag") String etag, @Param("contentType") String contentType,
+                @Param("modified") OffsetDateTime modified);
+
+    // То же для сверки: ключ, удалённый после since, не возвращается в каталог
+    @Modifying
+    @Query(value = "INSERT INTO objects (owner, path, parent, name, is_folder, implicit, size, etag, content_type, modified) " +
+            "SELECT :owner, :path, :parent, :name, :folder, FALSE, :size, :etag, :contentType, :modified " +
+            "WHERE NOT EXISTS (SELECT 1 FROM object_tombstones t WHERE t.owner = :owner AND t.path = :path " +
+            "AND t.deleted_at >= :since) " +
+            "ON CONFLICT (owner, path) DO UPDATE SET is_folder = EXCLUDED.is_folder, implicit = FALSE, " +
+            "size = EXCLUDED.size, etag = EXCLUDED.etag, " +
+            "content_type = COALESCE(EXCLUDED.content_type, objects.content_type), modified = EXCLUDED.modified",
+            nativeQuery = true)
+    void upsertUnlessDeletedSince(@Param("owner") String owner, @Param("path") String path,
+                                  @Param("parent") String parent, @Param("name") String name,
+                                  @Param("folder") boolean folder, @Param("size") long size,
+                                  @Param("etag") String etag, @Param("contentType") String contentType,
+                                  @Param("modified") OffsetDateTime modified, @Param("since") OffsetDateTime since);
+
+    @Modifying
+    @Query(value = "INSERT INTO object_tombstones (owner, path, deleted_at) " +
+            "SELECT owner, path, :deletedAt FROM objects WHERE owner = :owner AND path IN (:paths) " +
+            "ON CONFLICT (owner, path) DO UPDATE SET deleted_at = EXCLUDED.deleted_at", nativeQuery = true)
+    void insertTombstones(@Param("owner") String owner, @Param("paths") Collection<String> paths,
+                          @Param("deletedAt") OffsetDateTime deletedAt);
+
+    @Modifying
+    @Query(value = "DELETE FROM object_tombstones WHERE owner = :owner AND deleted_at < :before", nativeQuery = true)
+    void deleteTombstonesBefore(@Param("owner") String owner, @Param("before") OffsetDateTime before);
+
+    @Modifying
+    @Query(value = "INSERT INTO objects (owner, path, parent, name, is_folder, implicit) " +
+            "VALUES (:owner, :path, :parent, :name, TRUE, TRUE) ON CONFLICT (owner, path) DO NOTHING",
+            nativeQuery = true)
+    void insertImplicitFolder(@Param("owner") String owner, @Param("path") String path,
+                              @Param("parent") String parent, @Param("name") String name);
+
+    @Modifying
+    @Query("DELETE FROM StoredObject o WHERE o.owner = :owner AND o.path IN :paths")
+    void deleteByOwnerAndPaths(@Param("owner") String owner, @Param("paths") Collection<String> paths);
+
+    // Неявные папки из списка, под которыми не осталось ни одного ключа
+    @Modifying
+    @Query(value = "DELETE FROM objects o WHERE o.owner = :owner AND o.implicit AND o.path IN (:paths) " +
+            "AND NOT EXISTS (SELECT 1 FROM objects c WHERE c.owner = o.owner AND c.path > o.path " +
+            "AND c.path < o.path || :maxChar)", nativeQuery = true)
+    void deleteEmptyImplicitFolders(@Param("owner") String owner, @Param("paths") Collection<String> paths,
+                                    @Param("maxChar") String maxChar);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM objects WHERE owner = :owner AND path > :path AND path < :path || :maxChar)",
+            nativeQuery = true)
+    boolean hasDescendants(@Param("owner") String owner, @Param("path") String path, @Param("maxChar") String maxChar);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM catalog_sync WHERE owner = :owner)", nativeQuery = true)
+    boolean isReconciled(@Param("owner") String owner);
+
+    @Modifying
+    @Query(value = "INSERT INTO catalog_sync (owner, reconciled_at) VALUES (:owner, now()) " +
+            "ON CONFLICT (owner) DO UPDATE SET reconciled_at = now()", nativeQuery = true)
+    void markReconciled(@Param("owner") String owner);
+
+    @Modifying
+    @Query(value = "DELETE FROM catalog_sync WHERE owner = :owner", nativeQuery = true)
+    void markUnreconciled(@Param("owner") String owner);
+}
@@ -0,0 +1,202 @@
+package com.slava.service;
+
+import com.slava.config.FilesProperties;
+import com.slava.dto.FileMetadataDto;
+import com.slava.exception.FileNotFoundException;
+import com.slava.exception.FolderDownloadException;
+import com.slava.exception.StorageOverloadedException;
+import com.slava.repository.AsyncFileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Операции для неблокирующих передач: те же проверки и инвалидации, что в {@link FileService},
+ * но результат приходит через CompletableFuture. Тело загрузки и ZIP-архив сначала пишутся
+ * во временный файл, поэтому медленный клиент не держит ни поток, ни соединение с MinIO.
+ */
+@Service
+public class AsyncFileService {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncFileService.class);
+
+    private final AsyncFileRepository asyncFileRepository;
+    private final FolderService folderService;
+    private final ExecutorService archiveSpoolExecutor;
+    private final FilesProperties filesProperties;
+    private final ListingCache listingCache;
+
+    public AsyncFileService(AsyncFileRepository asyncFileRepository, FolderService folderService,
+                            @Qualifier("archiveSpoolExecutor") ExecutorService archiveSpoolExecutor,
+                            FilesProperties filesProperties, ListingCache listingCache) {
+        this.asyncFileRepository = asyncFileRepository;
+        this.folderService = folderService;
+        this.archiveSpoolExecutor = archiveSpoolExecutor;
+        this.filesProperties = filesProperties;
+        this.listingCache = listingCache;
+    }
+
+    public CompletableFuture<FileMetadataDto> getFileMetadata(String bucketName, String objectName) {
+        return asyncFileRepository.statObject(bucketName, objectName)
+                .thenApply(metadata -> found(metadata, bucketName, objectName));
+    }
+
+    public CompletableFuture<InputStream> openFile(String bucketName, String objectName) {
+        log.debug("Асинхронная загрузка файла из бакета '{}', объект '{}'", bucketName, objectName);
+        return asyncFileRepository.downloadFile(bucketName, objectName)
+                .thenApply(stream -> found(stream, bucketName, objectName));
+    }
+
+    public CompletableFuture<InputStream> openFileRange(String bucketName, String objectName, long offset, long length) {
+        log.debug("Асинхронная загрузка диапазона {}+{} файла из бакета '{}', объект '{}'", offset, length, bucketName, objectName);
+        return asyncFileRepository.downloadFile(bucketName, objectName, offset, length)
+                .thenApply(stream -> found(stream, bucketName, objectName));
+    }
+
+    /**
+     * Загружает принятое тело запроса и удаляет временный файл.
+     */
+    public CompletableFuture<Void> uploadFile(String bucketName, String objectName, Path content, String contentType) {
+        log.info("Асинхронная загрузка файла '{}' в бакет '{}'", objectName, bucketName);
+        return asyncFileRepository.uploadFile(bucketName, objectName, content, contentType)
+                .whenComplete((ignored, error) -> {
+                    deleteSpoolFile(content);
+                    listingCache.invalidateFolders(bucketName, ListingCache.foldersOf(objectName));
+                });
+    }
+
+    /**
+     * Собирает ZIP-архив папки во временный файл со скоростью хранилища. Отмена future прерывает
+     * сборку и удаляет файл; если очередь сборки заполнена, future сразу завершается
+     * {@link StorageOverloadedException}.
+     */
+    public CompletableFuture<Path> spoolFolderZip(String bucketName, String folderPath) {
+        CompletableFuture<Path> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = archiveSpoolExecutor.submit(() -> {
+                try {
+                    Path archive = writeFolderZip(bucketName, folderPath, result);
+                    if (!result.complete(archive)) {
+                        deleteSpoolFile(archive);
+                    }
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Очередь сборки архивов заполнена, архив папки '{}' отклонён", folderPath);
+            return CompletableFuture.failedFuture(new StorageOverloadedException("Слишком много архивов в очереди"));
+        }
+        // Поток сборки может ждать предзагрузку, поэтому отмена его прерывает
+        result.whenComplete((archive, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private Path writeFolderZip(String bucketName, String folderPath, CompletableFuture<Path> result) {
+        Path archive;
+        try {
+            archive = createSpoolFile("archive-");
+        } catch (IOException e) {
+            log.error("Не удалось создать временный файл для архива папки '{}': {}", folderPath, e.getMessage(), e);
+            throw new FolderDownloadException("Ошибка при создании ZIP-архива");
+        }
+        try (OutputStream out = new CancellableOutputStream(Files.newOutputStream(archive), result)) {
+            folderService.downloadFolderAsZip(bucketName, folderPath, out);
+        } catch (IOException | RuntimeException e) {
+            deleteSpoolFile(archive);
+            if (result.isCancelled()) {
+                log.debug("Сборка архива папки '{}' отменена", folderPath);
+                throw new FolderDownloadException("Сборка ZIP-архива отменена");
+            }
+            if (e instanceof FolderDownloadException folderDownloadException) {
+                throw folderDownloadException;
+            }
+            log.error("Ошибка при записи архива папки '{}': {}", folderPath, e.getMessage(), e);
+            throw new FolderDownloadException("Ошибка при создании ZIP-архива");
+        }
+        return archive;
+    }
+
+    public Path createSpoolFile(String prefix) throws IOException {
+        String directory = filesProperties.getTransfer().getSpoolDirectory();
+        return directory == null || directory.isBlank()
+                ? Files.createTempFile(prefix, ".tmp")
+                : Files.createTempFile(Path.of(directory), prefix, ".tmp");
+    }
+
+    public void deleteSpoolFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл '{}': {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Обрывает запись архива, как только его запрос отменён.
+     */
+    private static final class CancellableOutputStream extends FilterOutputStream {
+
+        private final Future<?> request;
+
+        CancellableOutputStream(OutputStream out, Future<?> request) {
+            super(out);
+            this.request = request;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkCancelled();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            out.write(b, off, len);
+        }
+
+        private void checkCancelled() throws InterruptedIOException {
+            if (request.isCancelled()) {
+                throw new InterruptedIOException("Сборка архива отменена");
+            }
+        }
+    }
+
+    private static <T> T found(Optional<T> value, String bucketName, String objectName) {
+        return value.orElseThrow(() -> {
+            log.error("Файл '{}' не найден в бакете '{}'", objectName, bucketName);
+            return new FileNotFoundException("Файл не найден");
+        });
+    }
+
+    /**
+     * Исключение, которым завершился future, без обёрток CompletableFuture.
+     */
+    public static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
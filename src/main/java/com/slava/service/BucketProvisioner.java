@@ -0,0 +1,126 @@
+package com.slava.service;
+
+import com.slava.config.FilesProperties;
+import com.slava.repository.CustomFileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Создание бакетов пользователей. Бакеты, существование которых уже проверено, запоминаются
+ * на время TTL в ограниченном наборе в памяти и, если включено, в Redis для всех узлов, поэтому
+ * повторный вход пользователя не обращается к MinIO. Асинхронная проверка выполняется в общем
+ * пуле, и одновременные входы одного пользователя делят одну проверку.
+ */
+@Component
+public class BucketProvisioner {
+
+    private static final Logger log = LoggerFactory.getLogger(BucketProvisioner.class);
+    private static final String KEY_PREFIX = "files:buckets:known:";
+
+    private final CustomFileRepository fileRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final ExecutorService storageExecutor;
+    private final FilesProperties.Buckets settings;
+    private final ExpiringCache<String, Boolean> known;
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    public BucketProvisioner(CustomFileRepository fileRepository, StringRedisTemplate redisTemplate,
+                             @Qualifier("storageExecutor") ExecutorService storageExecutor,
+                             FilesProperties filesProperties) {
+        this.fileRepository = fileRepository;
+        this.redisTemplate = redisTemplate;
+        this.storageExecutor = storageExecutor;
+        this.settings = filesProperties.getBuckets();
+        this.known = new ExpiringCache<>(settings.getKnownTtl(), settings.getMaxEntries());
+    }
+
+    /**
+     * Проверяет бакет и создаёт его, если он отсутствует. Известный бакет не проверяется повторно.
+     */
+    public void ensureExists(String bucketName) {
+        if (isKnown(bucketName)) {
+            log.debug("Бакет '{}' уже известен, проверка пропущена", bucketName);
+            return;
+        }
+        log.info("Проверка существования бакета '{}'", bucketName);
+        if (!fileRepository.bucketExists(bucketName)) {
+            fileRepository.createBucket(bucketName);
+        }
+        remember(bucketName);
+    }
+
+    /**
+     * То же, что {@link #ensureExists}, но в общем пуле. Ошибка только логируется: бакет
+     * не запоминается, и следующий вход проверит его снова.
+     */
+    public CompletableFuture<Void> ensureExistsAsync(String bucketName) {
+        if (isKnownLocally(bucketName)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> running = inFlight.putIfAbsent(bucketName, created);
+        if (running != null) {
+            return running;
+        }
+        try {
+            storageExecutor.execute(() -> {
+                // Запись снимается до завершения, чтобы вход, дождавшийся ошибки, запустил новую проверку
+                try {
+                    ensureExists(bucketName);
+                    inFlight.remove(bucketName, created);
+                    created.complete(null);
+                } catch (RuntimeException e) {
+                    log.error("Ошибка при создании бакета '{}': {}", bucketName, e.getMessage(), e);
+                    inFlight.remove(bucketName, created);
+                    created.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(bucketName, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    private boolean isKnown(String bucketName) {
+        if (isKnownLocally(bucketName)) {
+            return true;
+        }
+        if (!settings.isShared()) {
+            return false;
+        }
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(KEY_PREFIX + bucketName))) {
+                known.put(bucketName, Boolean.TRUE);
+                return true;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Redis недоступен, бакет '{}' проверяется в MinIO: {}", bucketName, e.getMessage());
+        }
+        return false;
+    }
+
+    private boolean isKnownLocally(String bucketName) {
+        return known.get(bucketName) != null;
+    }
+
+    private void remember(String bucketName) {
+        known.put(bucketName, Boolean.TRUE);
+        if (!settings.isShared()) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + bucketName, "1", settings.getKnownTtl());
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сохранить бакет '{}' в Redis: {}", bucketName, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.slava.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Определяет, имеет ли смысл сжимать файл. Картинки, видео, аудио и архивы уже сжаты,
+ * поэтому DEFLATE для них только тратит процессор. Решение принимается по сигнатуре
+ * первых байт файла, а если она неизвестна — по расширению.
+ */
+public final class CompressionPolicy {
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "heif", "avif",
+            "mp4", "m4v", "mov", "mkv", "webm", "avi", "wmv",
+            "mp3", "m4a", "aac", "ogg", "opus", "flac",
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "zst", "jar", "apk",
+            "docx", "xlsx", "pptx", "odt", "ods", "epub");
+
+    private static final byte[][] COMPRESSED_SIGNATURES = {
+            {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF},                 // JPEG
+            {(byte) 0x89, 'P', 'N', 'G'},                            // PNG
+            {'G', 'I', 'F', '8'},                                    // GIF
+            {'P', 'K', 0x03, 0x04},                                  // ZIP и офисные форматы
+            {0x1F, (byte) 0x8B},                                     // GZIP
+            {'B', 'Z', 'h'},                                         // BZIP2
+            {(byte) 0xFD, '7', 'z', 'X', 'Z', 0x00},                 // XZ
+            {'7', 'z', (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C},        // 7-Zip
+            {'R', 'a', 'r', '!', 0x1A, 0x07},                        // RAR
+            {0x28, (byte) 0xB5, 0x2F, (byte) 0xFD},                  // Zstandard
+            {0x1A, 0x45, (byte) 0xDF, (byte) 0xA3},                  // Matroska / WebM
+            {'O', 'g', 'g', 'S'},                                    // Ogg
+            {'f', 'L', 'a', 'C'},                                    // FLAC
+            {'I', 'D', '3'},                                         // MP3
+    };
+
+    private static final byte[] FTYP = "ftyp".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RIFF = "RIFF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WEBP = "WEBP".getBytes(StandardCharsets.US_ASCII);
+
+    private CompressionPolicy() {
+    }
+
+    public static boolean isAlreadyCompressed(String objectName, byte[] head) {
+        if (head != null && hasCompressedSignature(head)) {
+            return true;
+        }
+        int dot = objectName.lastIndexOf('.');
+        if (dot == -1 || dot < objectName.lastIndexOf('/')) {
+            return false;
+        }
+        return COMPRESSED_EXTENSIONS.contains(objectName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean hasCompressedSignature(byte[] head) {
+        for (byte[] signature : COMPRESSED_SIGNATURES) {
+            if (startsWith(head, 0, signature)) {
+                return true;
+            }
+        }
+        // MP4, MOV, HEIC: "ftyp" со смещением 4; WebP: "RIFF....WEBP"
+        return startsWith(head, 4, FTYP) || (startsWith(head, 0, RIFF) && startsWith(head, 8, WEBP));
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        if (data.length < offset + prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,7 +1,5 @@
 package com.slava.service;
 
-import com.slava.config.CustomUserDetails;
-import com.slava.dto.UserDto;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -14,18 +12,20 @@ public class CustomUserDetailsService implements UserDetailsService {
 
     private static final Logger log = LoggerFactory.getLogger(CustomUserDetailsService.class);
     private final UserService userService;
+    private final UserDetailsCache userDetailsCache;
 
-    public CustomUserDetailsService(UserService userService) {
+    public CustomUserDetailsService(UserService userService, UserDetailsCache userDetailsCache) {
         this.userService = userService;
+        this.userDetailsCache = userDetailsCache;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         log.debug("Попытка загрузки пользователя по логину: {}", username);
         try {
-            UserDto userDto = userService.getUserWithName(username);
+            UserDetails userDetails = userDetailsCache.get(username, () -> userService.getUserDetails(username));
             log.debug("Пользователь '{}' успешно найден", username);
-            return new CustomUserDetails(userDto);
+            return userDetails;
         } catch (Exception e) {
             log.error("Ошибка при загрузке пользователя по логину '{}': {}", username, e.getMessage());
             throw new UsernameNotFoundException("Пользователь не найден");
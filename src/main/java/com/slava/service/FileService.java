@@ -1,26 +1,63 @@
 package com.slava.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.slava.config.FilesProperties;
 import com.slava.dto.*;
 import com.slava.exception.FileException;
 import com.slava.exception.FileNotFoundException;
 import com.slava.repository.CustomFileRepository;
+import com.slava.repository.ObjectEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class FileService {
 
     private static final Logger log = LoggerFactory.getLogger(FileService.class);
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+    // Дописанный к префиксу подпапки, даёт ключ больше любого ключа внутри неё
+    private static final String AFTER_PREFIX_SUFFIX = new String(Character.toChars(Character.MAX_CODE_POINT));
+    private static final TypeReference<FolderPageDto> FOLDER_PAGE = new TypeReference<>() {
+    };
+    private static final TypeReference<SortedLevel> SORTED_LEVEL = new TypeReference<>() {
+    };
     private final CustomFileRepository fileRepository;
+    private final FilesProperties filesProperties;
+    private final ListingCache listingCache;
 
-    public FileService(CustomFileRepository fileRepository) {
+    /**
+     * Уровень папки в порядке сортировки для кэша листингов. Неполный уровень — отметка, что уровень
+     * слишком велик для кэша.
+     */
+    record SortedLevel(List<ObjectEntry> entries, boolean complete) {
+    }
+
+    public FileService(CustomFileRepository fileRepository, FilesProperties filesProperties, ListingCache listingCache) {
         this.fileRepository = fileRepository;
+        this.filesProperties = filesProperties;
+        this.listingCache = listingCache;
     }
 
     public void moveFile(MoveFileDto fileOperationDto) {
@@ -28,6 +65,7 @@ public class FileService {
         log.info("Перемещение файла в бакете '{}': исходный путь '{}', новый путь '{}'",
                 fileOperationDto.getBucketName(), fileOperationDto.getSourcePath(), newTargetPath);
         fileRepository.moveFile(fileOperationDto.getBucketName(), fileOperationDto.getSourcePath(), newTargetPath);
+        invalidateListings(fileOperationDto.getBucketName(), fileOperationDto.getSourcePath(), newTargetPath);
     }
 
     public void renameFile(RenameFileDto fileOperationDto) {
@@ -35,11 +73,24 @@ public class FileService {
         log.info("Переименование файла в бакете '{}': с '{}' на '{}'",
                 fileOperationDto.getBucketName(), fileOperationDto.getFileName(), fileOperationDto.getNewFileName());
         fileRepository.moveFile(fileOperationDto.getBucketName(), fileOperationDto.getSourcePath(), newTargetPath);
+        invalidateListings(fileOperationDto.getBucketName(), fileOperationDto.getSourcePath(), newTargetPath);
     }
 
     public void deleteFile(DeleteFileDto deleteFileDto) {
         log.info("Удаление файла в бакете '{}', путь '{}'", deleteFileDto.getBucketName(), deleteFileDto.getSourcePath());
         fileRepository.deleteFile(deleteFileDto.getBucketName(), deleteFileDto.getSourcePath());
+        invalidateListings(deleteFileDto.getBucketName(), deleteFileDto.getSourcePath());
+    }
+
+    /**
+     * Инвалидирует листинги папок, в которых видны изменённые ключи, на всех узлах.
+     */
+    void invalidateListings(String bucketName, String... keys) {
+        Set<String> folders = new LinkedHashSet<>();
+        for (String key : keys) {
+            folders.addAll(ListingCache.foldersOf(key));
+        }
+        listingCache.invalidateFolders(bucketName, folders);
     }
 
     public byte[] downloadFile(String bucketName, String objectName) {
@@ -61,48 +112,291 @@ public class FileService {
                 });
     }
 
+    public FileMetadataDto getFileMetadata(String bucketName, String objectName) {
+        return fileRepository.statObject(bucketName, objectName)
+                .orElseThrow(() -> {
+                    log.error("Файл '{}' не найден в бакете '{}'", objectName, bucketName);
+                    return new FileNotFoundException("Файл не найден");
+                });
+    }
+
+    public void downloadFile(String bucketName, String objectName, OutputStream outputStream) throws IOException {
+        log.debug("Потоковая загрузка файла из бакета '{}', объект '{}'", bucketName, objectName);
+        transfer(bucketName, objectName, fileRepository.downloadFile(bucketName, objectName), outputStream);
+    }
+
+    public void downloadFileRange(String bucketName, String objectName, long offset, long length,
+                                  OutputStream outputStream) throws IOException {
+        log.debug("Загрузка диапазона {}+{} файла из бакета '{}', объект '{}'", offset, length, bucketName, objectName);
+        transfer(bucketName, objectName, fileRepository.downloadFile(bucketName, objectName, offset, length), outputStream);
+    }
+
+    private void transfer(String bucketName, String objectName, Optional<InputStream> source,
+                          OutputStream outputStream) throws IOException {
+        InputStream inputStream = source.orElseThrow(() -> {
+            log.error("Файл '{}' не найден в бакете '{}'", objectName, bucketName);
+            return new FileNotFoundException("Файл не найден");
+        });
+        // Закрытие потока освобождает HTTP-соединение с MinIO, в том числе если клиент оборвал загрузку
+        try (inputStream) {
+            long transferred = copy(inputStream, outputStream);
+            outputStream.flush();
+            log.debug("Файл '{}' успешно передан ({} байт)", objectName, transferred);
+        }
+    }
+
+    /**
+     * Уровень папки целиком. В кэш не попадает: размер ответа не ограничен, а запись о сотнях
+     * тысяч элементов в Redis дороже самого листинга. Кэшируются страницы {@link #listFolderPage}.
+     */
     public List<FileFolderDto> listFolderContents(String bucketName, String path) {
-        String folderPath = (path == null || path.isEmpty()) ? "" : (path.endsWith("/") ? path : path + "/");
-        log.debug("Получение содержимого папки в бакете '{}', путь '{}'", bucketName, folderPath);
-        List<String> objects = fileRepository.listObjects(bucketName, folderPath);
+        return loadFolderContents(bucketName, normalizeFolderPath(path));
+    }
 
-        List<FileFolderDto> result = objects.stream()
-                .filter(object -> {
-                    String relativePath = object.substring(folderPath.length());
-                    return !relativePath.isEmpty() &&
-                            (!relativePath.contains("/") || relativePath.indexOf('/') == relativePath.length() - 1);
-                })
-                .map(object -> {
-                    FileFolderDto dto = new FileFolderDto();
-                    dto.setName(object.equals(folderPath) ? "Root" : object.substring(folderPath.length()));
-                    dto.setPath(object);
-                    dto.setFolder(object.endsWith("/"));
-                    dto.setSize(0); // Размер для папок отсутствует, оставляем 0
-                    return dto;
-                })
-                .toList();
+    private List<FileFolderDto> loadFolderContents(String bucketName, String folderPath) {
+        log.debug("Получение содержимого папки в бакете '{}', путь '{}'", bucketName, folderPath);
+        List<FileFolderDto> result;
+        try (Stream<ObjectEntry> children = fileRepository.streamChildren(bucketName, folderPath, null,
+                filesProperties.getListing().getMaxPageSize())) {
+            result = children
+                    // Маркер самой папки приходит вместе с её содержимым
+                    .filter(entry -> entry.key().length() > folderPath.length())
+                    .map(FileService::toFileFolderDto)
+                    .toList();
+        }
         log.debug("Найдено {} элементов в папке '{}'", result.size(), folderPath);
         return result;
     }
 
+    /**
+     * Одна страница содержимого папки. Сортировка по имени по возрастанию совпадает с порядком ключей S3,
+     * поэтому страница читается из MinIO через startAfter без обхода остальной папки.
+     * Остальные сортировки для сверенного каталога читаются из PostgreSQL по индексу, начиная с позиции
+     * из токена (значение, путь). Без каталога уровень папки просматривается потоком — каждая страница
+     * стоит O(размер уровня), хотя в памяти держится только куча из pageSize + 1 элементов. Уровень
+     * не больше {@code maxCachedLevel} элементов кэшируется отсортированным, и следующие страницы
+     * берутся из кэша.
+     */
+    public FolderPageDto listFolderPage(String bucketName, ListFolderDto query) {
+        String folderPath = normalizeFolderPath(query.getPath());
+        int pageSize = resolvePageSize(query.getPageSize());
+        PageToken token = PageToken.decode(query.getPageToken());
+        String page = String.join(":", "page", query.getSort().name(), String.valueOf(query.isDescending()),
+                query.getType().name(), String.valueOf(pageSize), query.getPageToken() != null ? query.getPageToken() : "");
+        return listingCache.get(bucketName, folderPath, page, FOLDER_PAGE,
+                () -> loadFolderPage(bucketName, folderPath, pageSize, token, query));
+    }
+
+    private FolderPageDto loadFolderPage(String bucketName, String folderPath, int pageSize, PageToken token,
+                                         ListFolderDto query) {
+        log.debug("Получение страницы папки в бакете '{}', путь '{}', сортировка {}", bucketName, folderPath, query.getSort());
+
+        Predicate<ObjectEntry> matches = entry -> entry.key().length() > folderPath.length()
+                && switch (query.getType()) {
+                    case ALL -> true;
+                    case FILES -> !entry.isFolder();
+                    case FOLDERS -> entry.isFolder();
+                };
+        if (query.getSort() == ListFolderDto.SortField.NAME && !query.isDescending()) {
+            return listPageInKeyOrder(bucketName, folderPath, token, pageSize, matches);
+        }
+        return listPageSorted(bucketName, folderPath, token, pageSize, matches, query);
+    }
+
+    private FolderPageDto listPageInKeyOrder(String bucketName, String folderPath, PageToken token, int pageSize,
+                                             Predicate<ObjectEntry> matches) {
+        List<ObjectEntry> entries;
+        try (Stream<ObjectEntry> children = fileRepository.streamChildren(bucketName, folderPath,
+                token.getStartAfter(), Math.min(pageSize + 1, filesProperties.getListing().getMaxPageSize()))) {
+            entries = children.filter(matches).limit(pageSize + 1L).collect(Collectors.toCollection(ArrayList::new));
+        }
+        String nextPageToken = null;
+        if (entries.size() > pageSize) {
+            entries.remove(pageSize);
+            ObjectEntry last = entries.get(pageSize - 1);
+            // Подпапка пришла общим префиксом: продолжаем после всех ключей внутри неё
+            String startAfter = last.isFolder() ? last.key() + AFTER_PREFIX_SUFFIX : last.key();
+            nextPageToken = PageToken.afterKey(startAfter).encode();
+        }
+        return new FolderPageDto(toFileFolderDtos(entries), nextPageToken);
+    }
+
+    private FolderPageDto listPageSorted(String bucketName, String folderPath, PageToken token, int pageSize,
+                                         Predicate<ObjectEntry> matches, ListFolderDto query) {
+        ToLongFunction<ObjectEntry> sortValue = sortValue(query.getSort());
+        Comparator<ObjectEntry> order = comparator(sortValue, query.isDescending());
+        Boolean folders = switch (query.getType()) {
+            case ALL -> null;
+            case FILES -> false;
+            case FOLDERS -> true;
+        };
+        List<ObjectEntry> entries = fileRepository.sortedChildren(bucketName, folderPath, query.getSort(),
+                        query.isDescending(), folders, token.getLastSortValue(), token.getLastKey(), pageSize + 1)
+                .<List<ObjectEntry>>map(ArrayList::new)
+                .orElseGet(() -> sortedPageFromListing(bucketName, folderPath, token, pageSize + 1, matches, order, query));
+        String nextPageToken = null;
+        if (entries.size() > pageSize) {
+            entries.remove(pageSize);
+            ObjectEntry lastOnPage = entries.get(pageSize - 1);
+            nextPageToken = PageToken.afterRow(sortValue.applyAsLong(lastOnPage), lastOnPage.key()).encode();
+        }
+        return new FolderPageDto(toFileFolderDtos(entries), nextPageToken);
+    }
+
+    /**
+     * Отсортированный уровень папки из кэша листингов. Уровень не больше {@code maxCachedLevel} элементов
+     * кэшируется целиком, и страницы берутся из него; для большего уровня в кэше остаётся только отметка,
+     * и каждая страница снова просматривает уровень.
+     */
+    private List<ObjectEntry> sortedPageFromListing(String bucketName, String folderPath, PageToken token, int keep,
+                                                    Predicate<ObjectEntry> matches, Comparator<ObjectEntry> order,
+                                                    ListFolderDto query) {
+        // Строки до последней выданной уже были на предыдущих страницах
+        ObjectEntry last = token.getLastKey() == null ? null : new ObjectEntry(token.getLastKey(), false,
+                token.getLastSortValue(), token.getLastSortValue(), null, null);
+        Predicate<ObjectEntry> onPage = matches.and(entry -> last == null || order.compare(entry, last) > 0);
+        int maxCachedLevel = filesProperties.getListing().getMaxCachedLevel();
+        String levelKey = String.join(":", "level", query.getSort().name(), String.valueOf(query.isDescending()));
+        // Страница, собранная при просмотре уровня, если он читался в этом вызове
+        List<List<ObjectEntry>> scanned = new ArrayList<>(1);
+        SortedLevel level = listingCache.get(bucketName, folderPath, levelKey, SORTED_LEVEL, () -> {
+            List<ObjectEntry> all = new ArrayList<>();
+            scanned.add(scanSortedPage(bucketName, folderPath, keep, onPage, order, entry -> {
+                if (all.size() <= maxCachedLevel && entry.key().length() > folderPath.length()) {
+                    all.add(entry);
+                }
+            }));
+            if (all.size() > maxCachedLevel) {
+                return new SortedLevel(List.of(), false);
+            }
+            all.sort(order);
+            return new SortedLevel(all, true);
+        });
+        if (!scanned.isEmpty()) {
+            return scanned.get(0);
+        }
+        if (level.complete()) {
+            return level.entries().stream().filter(onPage).limit(keep).collect(Collectors.toCollection(ArrayList::new));
+        }
+        return scanSortedPage(bucketName, folderPath, keep, onPage, order, entry -> {
+        });
+    }
+
+    /**
+     * Просмотр уровня папки потоком: в памяти держится только куча из {@code keep} лучших элементов.
+     */
+    private List<ObjectEntry> scanSortedPage(String bucketName, String folderPath, int keep, Predicate<ObjectEntry> onPage,
+                                             Comparator<ObjectEntry> order, Consumer<ObjectEntry> everyEntry) {
+        // Вершина кучи — худший из отобранных элементов, он вытесняется первым
+        PriorityQueue<ObjectEntry> top = new PriorityQueue<>(order.reversed());
+        try (Stream<ObjectEntry> children = fileRepository.streamChildren(bucketName, folderPath, null,
+                filesProperties.getListing().getMaxPageSize())) {
+            children.peek(everyEntry).filter(onPage).forEach(entry -> {
+                top.add(entry);
+                if (top.size() > keep) {
+                    top.poll();
+                }
+            });
+        }
+        List<ObjectEntry> entries = new ArrayList<>(top);
+        entries.sort(order);
+        return entries;
+    }
+
+    public List<FileFolderDto> search(String bucketName, String query, Integer limit) {
+        log.debug("Поиск '{}' в бакете '{}'", query, bucketName);
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        return toFileFolderDtos(fileRepository.search(bucketName, query.trim(), resolvePageSize(limit)));
+    }
+
+    // У подпапок нет ни размера, ни даты: они оказываются в начале по возрастанию
+    private static ToLongFunction<ObjectEntry> sortValue(ListFolderDto.SortField sort) {
+        return switch (sort) {
+            case NAME -> entry -> 0;
+            case SIZE -> ObjectEntry::size;
+            case DATE -> ObjectEntry::lastModified;
+        };
+    }
+
+    private static Comparator<ObjectEntry> comparator(ToLongFunction<ObjectEntry> sortValue, boolean descending) {
+        Comparator<ObjectEntry> order = Comparator.comparingLong(sortValue).thenComparing(ObjectEntry::key);
+        return descending ? order.reversed() : order;
+    }
+
+    /**
+     * DTO строятся только для элементов страницы. Тип содержимого берётся из листинга или каталога,
+     * а если его там нет — определяется по расширению имени без обращения к MinIO.
+     */
+    private static List<FileFolderDto> toFileFolderDtos(List<ObjectEntry> entries) {
+        return entries.stream().map(FileService::toFileFolderDto).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static FileFolderDto toFileFolderDto(ObjectEntry entry) {
+        FileFolderDto dto = new FileFolderDto();
+        dto.setPath(entry.key());
+        dto.setName(nameOf(entry.key()));
+        dto.setFolder(entry.isFolder());
+        if (!entry.commonPrefix()) {
+            dto.setSize(entry.size());
+            dto.setEtag(entry.etag());
+            dto.setLastModified(entry.lastModified() > 0
+                    ? ZonedDateTime.ofInstant(Instant.ofEpochMilli(entry.lastModified()), ZoneOffset.UTC) : null);
+        }
+        if (!entry.isFolder()) {
+            dto.setContentType(entry.contentType() != null ? entry.contentType()
+                    : MediaTypeFactory.getMediaType(dto.getName()).map(MediaType::toString).orElse(null));
+        }
+        return dto;
+    }
+
+    // Имя подпапки, как и в листинге MinIO, сохраняет завершающий "/"
+    private static String nameOf(String key) {
+        return key.substring(key.lastIndexOf('/', key.length() - 2) + 1);
+    }
+
+    private int resolvePageSize(Integer requested) {
+        FilesProperties.Listing listing = filesProperties.getListing();
+        if (requested == null || requested <= 0) {
+            return listing.getDefaultPageSize();
+        }
+        return Math.min(requested, listing.getMaxPageSize());
+    }
+
+    private String normalizeFolderPath(String path) {
+        return (path == null || path.isEmpty()) ? "" : (path.endsWith("/") ? path : path + "/");
+    }
+
     public void uploadFile(UploadFileDto uploadFileDto) {
         String objectName = uploadFileDto.getSourcePath() + uploadFileDto.getFileName();
         log.info("Загрузка файла '{}' в бакет '{}'", objectName, uploadFileDto.getBucketName());
-        fileRepository.uploadFile(
-                uploadFileDto.getBucketName(),
-                objectName,
-                new ByteArrayInputStream(uploadFileDto.getContent()),
-                uploadFileDto.getContent().length,
-                uploadFileDto.getContentType()
-        );
+        try (InputStream content = uploadFileDto.getContent()) {
+            fileRepository.uploadFile(
+                    uploadFileDto.getBucketName(),
+                    objectName,
+                    content,
+                    uploadFileDto.getSize(),
+                    uploadFileDto.getContentType()
+            );
+        } catch (IOException e) {
+            log.error("Ошибка при закрытии потока файла '{}': {}", objectName, e.getMessage(), e);
+            throw new FileException("Ошибка при загрузке файла");
+        } finally {
+            // Ошибка закрытия потока возникает уже после загрузки
+            invalidateListings(uploadFileDto.getBucketName(), objectName);
+        }
     }
 
-    public void ensureBucketExists(String bucketName) {
-        log.info("Проверка существования бакета '{}'", bucketName);
-        if (!fileRepository.bucketExists(bucketName)) {
-            fileRepository.createBucket(bucketName);
-        } else {
+    private long copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+        long transferred = 0;
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+            transferred += read;
         }
+        return transferred;
     }
 
     public String getParentPathForFile(String fullPath) {
@@ -1,27 +1,45 @@
 package com.slava.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.slava.config.FilesProperties;
+import com.slava.config.StorageExecutorConfig;
 import com.slava.dto.*;
 import com.slava.exception.FolderDownloadException;
 import com.slava.repository.CustomFileRepository;
+import com.slava.repository.ObjectEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
 
 @Service
 public class FolderService {
     private static final Logger log = LoggerFactory.getLogger(FolderService.class);
+    private static final TypeReference<List<FileFolderDto>> SUBFOLDERS = new TypeReference<>() {
+    };
     private final CustomFileRepository fileRepository;
     private final FileService fileService;
+    private final ExecutorService storageExecutor;
+    private final ExecutorService compressionExecutor;
+    private final FilesProperties filesProperties;
+    private final ListingCache listingCache;
 
-    public FolderService(CustomFileRepository fileRepository, FileService fileService) {
+    public FolderService(CustomFileRepository fileRepository, FileService fileService,
+                         @Qualifier("storageExecutor") ExecutorService storageExecutor,
+                         @Qualifier("archiveCompressionExecutor") ExecutorService compressionExecutor,
+                         FilesProperties filesProperties, ListingCache listingCache) {
         this.fileRepository = fileRepository;
         this.fileService = fileService;
+        this.storageExecutor = storageExecutor;
+        this.compressionExecutor = compressionExecutor;
+        this.filesProperties = filesProperties;
+        this.listingCache = listingCache;
     }
 
     public void createFolder(CreateFolderDto createFolderDto) {
@@ -32,60 +50,107 @@ public class FolderService {
         log.info("Создание папки в бакете '{}': путь '{}'", createFolderDto.getBucketName(), finalPath);
         createFolderDto.setSourcePath(finalPath);
         fileRepository.createFolder(createFolderDto.getBucketName(), createFolderDto.getSourcePath());
+        listingCache.invalidateFolders(createFolderDto.getBucketName(), ListingCache.foldersOf(finalPath));
     }
 
     public void deleteFolder(DeleteFileDto deleteFileDto) {
         log.info("Удаление папки в бакете '{}', путь '{}'", deleteFileDto.getBucketName(), deleteFileDto.getSourcePath());
-        fileRepository.deleteFolder(deleteFileDto.getBucketName(), deleteFileDto.getSourcePath());
+        try {
+            fileRepository.deleteFolder(deleteFileDto.getBucketName(), deleteFileDto.getSourcePath());
+        } finally {
+            // Листинги всех вложенных папок тоже меняются, а при частичной ошибке часть объектов уже удалена
+            listingCache.invalidateBucket(deleteFileDto.getBucketName());
+        }
     }
 
     public void renameFolder(RenameFileDto fileOperationDto) {
         String newTargetPath = fileOperationDto.getSourcePath().replace(fileOperationDto.getFileName(), fileOperationDto.getNewFileName());
         log.info("Переименование папки в бакете '{}': с '{}' на '{}'", fileOperationDto.getBucketName(), fileOperationDto.getFileName(), fileOperationDto.getNewFileName());
-        fileRepository.moveFolder(fileOperationDto.getBucketName(), fileOperationDto.getSourcePath(), newTargetPath);
+        try {
+            fileRepository.moveFolder(fileOperationDto.getBucketName(), fileOperationDto.getSourcePath(), newTargetPath);
+        } finally {
+            listingCache.invalidateBucket(fileOperationDto.getBucketName());
+        }
     }
 
     public void moveFolder(MoveFileDto fileOperationDto) {
         String newTargetPath = fileOperationDto.getTargetPath() + fileOperationDto.getFileName();
         log.info("Перемещение папки в бакете '{}': исходный путь '{}', новый путь '{}'", fileOperationDto.getBucketName(), fileOperationDto.getSourcePath(), newTargetPath);
-        fileRepository.moveFolder(fileOperationDto.getBucketName(), fileOperationDto.getSourcePath(), newTargetPath);
+        try {
+            fileRepository.moveFolder(fileOperationDto.getBucketName(), fileOperationDto.getSourcePath(), newTargetPath);
+        } finally {
+            listingCache.invalidateBucket(fileOperationDto.getBucketName());
+        }
     }
 
-    public byte[] downloadFolderAsZip(String bucketName, String folderPath) {
+    public void downloadFolderAsZip(String bucketName, String folderPath, OutputStream outputStream) {
         log.info("Создание ZIP-архива для папки '{}' в бакете '{}'", folderPath, bucketName);
-        List<String> files = fileRepository.listObjects(bucketName, folderPath);
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zos = new ZipOutputStream(baos)) {
-            for (String filePath : files) {
-                byte[] fileData = fileService.downloadFile(bucketName, filePath);
-                ZipEntry entry = new ZipEntry(filePath.substring(folderPath.length()));
-                zos.putNextEntry(entry);
-                zos.write(fileData);
-                zos.closeEntry();
+        FilesProperties.Archive archive = filesProperties.getArchive();
+        int blocksInFlight = 2 * StorageExecutorConfig.compressionThreads(filesProperties);
+        // Листинг читается по мере записи архива: первая запись уходит клиенту до конца листинга.
+        // Следующие объекты скачиваются параллельно, пока текущий пишется в архив
+        try (Stream<ObjectEntry> objects = fileRepository.streamObjects(bucketName, folderPath);
+             ObjectPrefetcher prefetcher = new ObjectPrefetcher(fileRepository, storageExecutor, bucketName,
+                objects.map(ObjectEntry::key)
+                        .filter(filePath -> filePath.length() > folderPath.length())
+                        .iterator(),
+                archive.getPrefetchDepth(), archive.getPrefetchBufferSize());
+             ZipArchiveWriter zip = new ZipArchiveWriter(outputStream, compressionExecutor,
+                     archive.getCompressionLevel(), archive.getParallelBlockSize(), blocksInFlight)) {
+            while (prefetcher.hasNext()) {
+                try (PrefetchedObject object = prefetcher.next()) {
+                    writeZipEntry(zip, object, object.getObjectName().substring(folderPath.length()));
+                }
             }
-            zos.finish();
-            return baos.toByteArray();
+            zip.finish();
         } catch (IOException | RuntimeException ex) {
             log.error("Ошибка при создании ZIP-архива для папки '{}': {}", folderPath, ex.getMessage(), ex);
             throw new FolderDownloadException("Ошибка при создании ZIP-архива");
         }
     }
 
-    public List<FileFolderDto> listOnlyFolders(String bucketName) {
-        log.debug("Получение списка папок из бакета '{}'", bucketName);
-        List<String> objects = fileRepository.listObjects(bucketName, "");
-        List<FileFolderDto> folders = objects.stream()
-                .filter(object -> object.endsWith("/"))
+    /**
+     * Уже сжатые форматы (картинки, видео, архивы) сохраняются без сжатия.
+     * Остальное сжимается: небольшие файлы целиком в текущем потоке, крупные — блоками на всех ядрах.
+     */
+    private void writeZipEntry(ZipArchiveWriter zip, PrefetchedObject object, String entryName) throws IOException {
+        if (object.isFolder()) {
+            zip.putDirectory(entryName);
+        } else if (CompressionPolicy.isAlreadyCompressed(object.getObjectName(), object.getHead())) {
+            if (object.isComplete()) {
+                zip.putStored(entryName, object.getHead());
+            } else {
+                zip.putUncompressed(entryName, object.openStream());
+            }
+        } else if (object.isComplete()) {
+            zip.putDeflated(entryName, object.openStream());
+        } else {
+            zip.putDeflatedParallel(entryName, object.openStream());
+        }
+    }
+
+    /**
+     * Прямые подпапки одной папки для диалога выбора папки. Дерево раскрывается по уровням,
+     * поэтому стоимость запроса зависит от размера уровня, а не всего бакета.
+     */
+    public List<FileFolderDto> listSubfolders(String bucketName, String path) {
+        String folderPath = (path == null || path.isEmpty()) ? "" : (path.endsWith("/") ? path : path + "/");
+        return listingCache.get(bucketName, folderPath, "subfolders", SUBFOLDERS, () -> loadSubfolders(bucketName, folderPath));
+    }
+
+    private List<FileFolderDto> loadSubfolders(String bucketName, String folderPath) {
+        log.debug("Получение подпапок '{}' из бакета '{}'", folderPath, bucketName);
+        return fileRepository.listChildren(bucketName, folderPath).stream()
+                .filter(object -> object.endsWith("/") && object.length() > folderPath.length())
                 .map(object -> {
                     FileFolderDto dto = new FileFolderDto();
-                    dto.setName(object);
+                    dto.setName(extractFolderName(object));
                     dto.setPath(object);
                     dto.setFolder(true);
                     dto.setSize(0);
                     return dto;
                 })
                 .toList();
-        return folders;
     }
 
     public String getParentPathForFolder(String fullPath) {
@@ -0,0 +1,53 @@
+package com.slava.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Кэш листингов папок. Запись определяется бакетом, папкой и ключом страницы; изменение
+ * объекта инвалидирует листинги папок, в которых он виден.
+ */
+public interface ListingCache {
+
+    ListingCache NONE = new ListingCache() {
+        @Override
+        public <T> T get(String bucketName, String folder, String page, TypeReference<T> type, Supplier<T> loader) {
+            return loader.get();
+        }
+
+        @Override
+        public void invalidateFolders(String bucketName, Collection<String> folders) {
+        }
+
+        @Override
+        public void invalidateBucket(String bucketName) {
+        }
+    };
+
+    <T> T get(String bucketName, String folder, String page, TypeReference<T> type, Supplier<T> loader);
+
+    void invalidateFolders(String bucketName, Collection<String> folders);
+
+    /**
+     * Для операций над поддеревом: сбрасывает все листинги бакета.
+     */
+    void invalidateBucket(String bucketName);
+
+    /**
+     * Папки, листинг которых меняется вместе с объектом: все предки ключа, включая корень.
+     * Вместе с последним объектом неявной папки из листинга родителя исчезает и сама папка.
+     */
+    static List<String> foldersOf(String key) {
+        List<String> folders = new ArrayList<>();
+        folders.add("");
+        int end = key.endsWith("/") ? key.length() - 1 : key.length();
+        for (int slash = key.indexOf('/'); slash >= 0 && slash < end; slash = key.indexOf('/', slash + 1)) {
+            folders.add(key.substring(0, slash + 1));
+        }
+        return folders;
+    }
+}
@@ -0,0 +1,125 @@
+package com.slava.service;
+
+import com.slava.exception.FileException;
+import com.slava.exception.FileNotFoundException;
+import com.slava.repository.CustomFileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Скачивает следующие {@code depth} объектов параллельно, пока потребитель обрабатывает текущий,
+ * и отдаёт их строго в исходном порядке. В памяти держится не больше {@code depth * bufferSize} байт:
+ * от каждого объекта читается только начало, остаток дочитывается потребителем из открытого соединения.
+ */
+public class ObjectPrefetcher implements Iterator<PrefetchedObject>, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ObjectPrefetcher.class);
+
+    private final CustomFileRepository fileRepository;
+    private final ExecutorService executor;
+    private final String bucketName;
+    private final Iterator<String> objectNames;
+    private final int depth;
+    private final int bufferSize;
+    private final Deque<Future<PrefetchedObject>> window = new ArrayDeque<>();
+    private final Set<PrefetchedObject> unconsumed = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    public ObjectPrefetcher(CustomFileRepository fileRepository, ExecutorService executor, String bucketName,
+                            Iterator<String> objectNames, int depth, int bufferSize) {
+        this.fileRepository = fileRepository;
+        this.executor = executor;
+        this.bucketName = bucketName;
+        this.objectNames = objectNames;
+        this.depth = Math.max(1, depth);
+        this.bufferSize = bufferSize;
+        fillWindow();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !window.isEmpty();
+    }
+
+    @Override
+    public PrefetchedObject next() {
+        if (window.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        Future<PrefetchedObject> future = window.poll();
+        fillWindow();
+        try {
+            PrefetchedObject object = future.get();
+            unconsumed.remove(object);
+            return object;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileException("Загрузка файлов прервана");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new FileException("Ошибка при загрузке файла");
+        }
+    }
+
+    private void fillWindow() {
+        while (window.size() < depth && objectNames.hasNext()) {
+            String objectName = objectNames.next();
+            window.add(executor.submit(() -> fetch(objectName)));
+        }
+    }
+
+    private PrefetchedObject fetch(String objectName) throws IOException {
+        if (objectName.endsWith("/")) {
+            return new PrefetchedObject(objectName, new byte[0], null);
+        }
+        InputStream inputStream = fileRepository.downloadFile(bucketName, objectName)
+                .orElseThrow(() -> {
+                    log.error("Файл '{}' не найден в бакете '{}'", objectName, bucketName);
+                    return new FileNotFoundException("Файл не найден");
+                });
+        byte[] head;
+        try {
+            head = inputStream.readNBytes(bufferSize);
+        } catch (IOException | RuntimeException e) {
+            inputStream.close();
+            throw e;
+        }
+        PrefetchedObject object;
+        if (head.length < bufferSize) {
+            inputStream.close();
+            object = new PrefetchedObject(objectName, head, null);
+        } else {
+            object = new PrefetchedObject(objectName, head, inputStream);
+        }
+        // Если итератор уже закрыт, соединение освобождает тот, кто увидит объект первым
+        unconsumed.add(object);
+        if (closed) {
+            unconsumed.remove(object);
+            object.close();
+        }
+        return object;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        window.forEach(future -> future.cancel(true));
+        window.clear();
+        unconsumed.forEach(PrefetchedObject::close);
+        unconsumed.clear();
+    }
+}
@@ -0,0 +1,77 @@
+package com.slava.service;
+
+import com.slava.exception.FileException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Токен продолжения листинга. При сортировке по имени это последний выданный ключ,
+ * который передаётся в MinIO как startAfter. При сортировке по размеру или дате
+ * порядок S3 не помогает, и токен хранит позицию последней выданной строки: значение
+ * поля сортировки и ключ. Следующая страница берёт только строки после этой позиции,
+ * поэтому её стоимость по памяти не растёт с номером страницы.
+ */
+final class PageToken {
+
+    private static final String KEY = "k:";
+    private static final String ROW = "r:";
+
+    private final String startAfter;
+    private final long lastSortValue;
+    private final String lastKey;
+
+    private PageToken(String startAfter, long lastSortValue, String lastKey) {
+        this.startAfter = startAfter;
+        this.lastSortValue = lastSortValue;
+        this.lastKey = lastKey;
+    }
+
+    static PageToken first() {
+        return new PageToken(null, 0, null);
+    }
+
+    static PageToken afterKey(String key) {
+        return new PageToken(key, 0, null);
+    }
+
+    static PageToken afterRow(long sortValue, String key) {
+        return new PageToken(null, sortValue, key);
+    }
+
+    static PageToken decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return first();
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (value.startsWith(KEY)) {
+                return afterKey(value.substring(KEY.length()));
+            }
+            int separator = value.indexOf(':', ROW.length());
+            if (value.startsWith(ROW) && separator > 0) {
+                return afterRow(Long.parseLong(value.substring(ROW.length(), separator)), value.substring(separator + 1));
+            }
+        } catch (IllegalArgumentException e) {
+            // некорректный Base64 или число — сообщаем одной ошибкой ниже
+        }
+        throw new FileException("Некорректный токен страницы");
+    }
+
+    String encode() {
+        String value = lastKey != null ? ROW + lastSortValue + ":" + lastKey : KEY + startAfter;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    String getStartAfter() {
+        return startAfter;
+    }
+
+    long getLastSortValue() {
+        return lastSortValue;
+    }
+
+    String getLastKey() {
+        return lastKey;
+    }
+}
@@ -0,0 +1,58 @@
+package com.slava.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * Объект, начало которого уже скачано в память. Если объект больше буфера,
+ * остаток читается из открытого соединения с MinIO.
+ */
+public class PrefetchedObject implements AutoCloseable {
+
+    private final String objectName;
+    private final byte[] head;
+    private final InputStream remainder;
+
+    PrefetchedObject(String objectName, byte[] head, InputStream remainder) {
+        this.objectName = objectName;
+        this.head = head;
+        this.remainder = remainder;
+    }
+
+    public String getObjectName() {
+        return objectName;
+    }
+
+    public boolean isFolder() {
+        return objectName.endsWith("/");
+    }
+
+    /**
+     * true, если объект целиком поместился в буфер.
+     */
+    public boolean isComplete() {
+        return remainder == null;
+    }
+
+    public byte[] getHead() {
+        return head;
+    }
+
+    public InputStream openStream() {
+        InputStream headStream = new ByteArrayInputStream(head);
+        return remainder == null ? headStream : new SequenceInputStream(headStream, remainder);
+    }
+
+    @Override
+    public void close() {
+        if (remainder != null) {
+            try {
+                remainder.close();
+            } catch (IOException ignored) {
+                // соединение всё равно будет закрыто пулом
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.slava.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.slava.config.FilesProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Кэш листингов в Redis, общий для всех узлов. У бакета и у каждой папки есть счётчик версии,
+ * и версии входят в ключ записи: изменение объекта увеличивает версии его папок, после чего
+ * любой узел читает уже новый листинг, а старые записи истекают по TTL. Операции над поддеревом
+ * увеличивают версию бакета. Недоступность Redis не ломает листинг: он читается из хранилища.
+ * Записи больше {@code maxEntrySize} байт не сохраняются: такой листинг дешевле прочитать заново,
+ * чем гонять через Redis и держать в его памяти.
+ */
+@Component
+public class RedisListingCache implements ListingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisListingCache.class);
+    private static final String KEY_PREFIX = "files:listing:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final FilesProperties.Cache settings;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter errors;
+    private final Counter oversized;
+
+    public RedisListingCache(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                             FilesProperties filesProperties, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.settings = filesProperties.getCache();
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.errors = requests(meterRegistry, "error");
+        this.oversized = Counter.builder("files.listing.cache.oversized")
+                .description("Листинги, не сохранённые в кэш из-за размера")
+                .register(meterRegistry);
+        Gauge.builder("files.listing.cache.hit.ratio", this, RedisListingCache::hitRatio)
+                .description("Доля листингов, отданных из кэша")
+                .register(meterRegistry);
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("files.listing.cache.requests")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T> T get(String bucketName, String folder, String page, TypeReference<T> type, Supplier<T> loader) {
+        if (!settings.isEnabled()) {
+            return loader.get();
+        }
+        String entryKey;
+        try {
+            List<String> versions = redisTemplate.opsForValue()
+                    .multiGet(List.of(bucketVersionKey(bucketName), folderVersionKey(bucketName, folder)));
+            entryKey = KEY_PREFIX + "e:" + bucketName + ":" + versionOf(versions, 0) + ":" + versionOf(versions, 1)
+                    + ":" + page + ":" + folder;
+            String cached = redisTemplate.opsForValue().get(entryKey);
+            if (cached != null) {
+                T value = objectMapper.readValue(cached, type);
+                hits.increment();
+                return value;
+            }
+        } catch (RuntimeException | JsonProcessingException e) {
+            errors.increment();
+            log.warn("Кэш листингов недоступен, папка '{}' бакета '{}' читается из хранилища: {}", folder, bucketName, e.getMessage());
+            return loader.get();
+        }
+        misses.increment();
+        T value = loader.get();
+        try {
+            String json = objectMapper.writeValueAsString(value);
+            if (json.length() > settings.getMaxEntrySize()) {
+                oversized.increment();
+                log.debug("Листинг папки '{}' бакета '{}' не кэшируется: {} символов", folder, bucketName, json.length());
+                return value;
+            }
+            redisTemplate.opsForValue().set(entryKey, json, settings.getTtl());
+        } catch (RuntimeException | JsonProcessingException e) {
+            errors.increment();
+            log.warn("Не удалось сохранить листинг папки '{}' бакета '{}' в кэш: {}", folder, bucketName, e.getMessage());
+        }
+        return value;
+    }
+
+    @Override
+    public void invalidateFolders(String bucketName, Collection<String> folders) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        for (String folder : folders) {
+            bump(folderVersionKey(bucketName, folder));
+        }
+    }
+
+    @Override
+    public void invalidateBucket(String bucketName) {
+        if (settings.isEnabled()) {
+            bump(bucketVersionKey(bucketName));
+        }
+    }
+
+    double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    /**
+     * Счётчик версии живёт дольше записей: пока он не истёк, записи со старыми версиями
+     * уже недостижимы, а после его истечения записи, прочитанные до сброса к нулю, тоже истекли.
+     */
+    private void bump(String versionKey) {
+        try {
+            redisTemplate.opsForValue().increment(versionKey);
+            redisTemplate.expire(versionKey, versionTtl());
+        } catch (RuntimeException e) {
+            errors.increment();
+            log.error("Не удалось инвалидировать кэш листингов '{}': {}", versionKey, e.getMessage(), e);
+        }
+    }
+
+    private Duration versionTtl() {
+        return settings.getTtl().multipliedBy(2);
+    }
+
+    private static String versionOf(List<String> versions, int index) {
+        String version = versions != null ? versions.get(index) : null;
+        return version != null ? version : "0";
+    }
+
+    private static String bucketVersionKey(String bucketName) {
+        return KEY_PREFIX + "v:" + bucketName;
+    }
+
+    private static String folderVersionKey(String bucketName, String folder) {
+        return KEY_PREFIX + "v:" + bucketName + ":" + folder;
+    }
+}
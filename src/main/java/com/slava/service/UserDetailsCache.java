@@ -0,0 +1,87 @@
+package com.slava.service;
+
+import com.slava.config.CustomUserDetails;
+import com.slava.config.FilesProperties;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш снимков пользователей для аутентификации, чтобы каждый вход не выполнял JOIN FETCH
+ * пользователя с ролями. {@link UserService} сбрасывает запись после фиксации изменения ролей
+ * или удаления пользователя; смены пароля в приложении нет, и если она появится, ей тоже нужно
+ * вызывать {@link #invalidate}. Сброс рассылается остальным узлам через канал Redis
+ * {@value #CHANNEL}; если Redis недоступен, на других узлах изменение видно после TTL.
+ */
+@Component
+@Log4j2
+public class UserDetailsCache implements MessageListener {
+
+    public static final String CHANNEL = "files:users:invalidate";
+
+    private final boolean enabled;
+    private final ExpiringCache<String, CustomUserDetails> snapshots;
+    private final StringRedisTemplate redisTemplate;
+    // Увеличивается при каждом сбросе: снимок, загруженный до сброса, не попадает в кэш
+    private final AtomicLong generation = new AtomicLong();
+
+    @Autowired
+    public UserDetailsCache(FilesProperties filesProperties, StringRedisTemplate redisTemplate) {
+        FilesProperties.Users settings = filesProperties.getUsers();
+        this.enabled = settings.isCacheEnabled();
+        this.snapshots = new ExpiringCache<>(settings.getCacheTtl(), settings.getCacheMaxEntries());
+        this.redisTemplate = redisTemplate;
+    }
+
+    UserDetailsCache(FilesProperties filesProperties) {
+        this(filesProperties, null);
+    }
+
+    public CustomUserDetails get(String username, Supplier<CustomUserDetails> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        CustomUserDetails cached = snapshots.get(username);
+        if (cached != null) {
+            return cached;
+        }
+        long loadedAt = generation.get();
+        CustomUserDetails loaded = loader.get();
+        if (generation.get() == loadedAt) {
+            snapshots.put(username, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Сбрасывает запись на этом узле и рассылает сброс остальным.
+     */
+    public void invalidate(String username) {
+        evict(username);
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(CHANNEL, username);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось разослать сброс кэша пользователя {}: {}", username, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        evict(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void evict(String username) {
+        generation.incrementAndGet();
+        snapshots.invalidate(username);
+    }
+}
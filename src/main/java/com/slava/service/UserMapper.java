@@ -0,0 +1,73 @@
+package com.slava.service;
+
+import com.slava.config.CustomUserDetails;
+import com.slava.dto.RoleDto;
+import com.slava.dto.UserDto;
+import com.slava.entity.Role;
+import com.slava.entity.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Отображение пользователей и ролей без рефлексии: вызывается на каждом входе,
+ * поэтому поля копируются явно.
+ */
+public final class UserMapper {
+
+    private UserMapper() {
+    }
+
+    public static UserDto toDto(User user) {
+        UserDto userDto = new UserDto();
+        userDto.setId(user.getId());
+        userDto.setUsername(user.getUsername());
+        userDto.setPassword(user.getPassword());
+        Set<Role> roles = user.getRoles();
+        List<RoleDto> roleDtos = new ArrayList<>(roles == null ? 0 : roles.size());
+        if (roles != null) {
+            for (Role role : roles) {
+                roleDtos.add(toDto(role));
+            }
+        }
+        userDto.setRoles(roleDtos);
+        return userDto;
+    }
+
+    public static RoleDto toDto(Role role) {
+        RoleDto roleDto = new RoleDto();
+        roleDto.setId(role.getId());
+        roleDto.setName(role.getName());
+        return roleDto;
+    }
+
+    /**
+     * Новый пользователь из формы регистрации: роли назначаются отдельно, пароль кодирует вызывающий.
+     */
+    public static User toEntity(UserDto userDto) {
+        User user = new User();
+        user.setId(userDto.getId());
+        user.setUsername(userDto.getUsername());
+        user.setPassword(userDto.getPassword());
+        user.setRoles(new HashSet<>());
+        return user;
+    }
+
+    /**
+     * Снимок для аутентификации прямо из сущности, без промежуточного {@link UserDto}.
+     */
+    public static CustomUserDetails toUserDetails(User user) {
+        Set<Role> roles = user.getRoles();
+        List<GrantedAuthority> authorities = new ArrayList<>(roles == null ? 0 : roles.size());
+        if (roles != null) {
+            for (Role role : roles) {
+                authorities.add(new SimpleGrantedAuthority(role.getName()));
+            }
+        }
+        return new CustomUserDetails(user.getUsername(), user.getPassword(), authorities);
+    }
+}
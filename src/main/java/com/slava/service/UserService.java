@@ -1,18 +1,17 @@
 package com.slava.service;
 
-import com.slava.config.MinioConfig;
-import com.slava.dto.RoleDto;
+import com.slava.config.CustomUserDetails;
 import com.slava.dto.UserDto;
 import com.slava.entity.Role;
 import com.slava.entity.User;
 import com.slava.exception.UserAlreadyExists;
 import com.slava.exception.UserException;
 import com.slava.repository.UserRepository;
-import io.minio.MinioClient;
 import lombok.extern.log4j.Log4j2;
-import org.modelmapper.ModelMapper;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.Optional;
@@ -23,18 +22,17 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
-    private final ModelMapper modelMapper;
     private final RoleService roleService;
-    private final MinioConfig minioConfig;
-    private final MinioClient minioClient;
+    private final BucketProvisioner bucketProvisioner;
+    private final UserDetailsCache userDetailsCache;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, ModelMapper modelMapper, RoleService roleService, MinioConfig minioConfig, MinioClient minioClient) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, RoleService roleService,
+                       BucketProvisioner bucketProvisioner, UserDetailsCache userDetailsCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
-        this.modelMapper = modelMapper;
         this.roleService = roleService;
-        this.minioConfig = minioConfig;
-        this.minioClient = minioClient;
+        this.bucketProvisioner = bucketProvisioner;
+        this.userDetailsCache = userDetailsCache;
     }
 
     public Optional<User> findByUsername(String username) {
@@ -47,17 +45,19 @@ public class UserService {
             throw new UserAlreadyExists("User already exists");
         });
 
-        User user = modelMapper.map(userDto, User.class);
+        User user = UserMapper.toEntity(userDto);
         user.setPassword(passwordEncoder.encode(userDto.getPassword()));
 
         setDefaultRole(user);
-        minioConfig.initializeUserRootFolder(minioClient, user.getUsername());
+        // Сразу после регистрации пользователь попадает в список файлов, поэтому бакет создаётся синхронно
+        bucketProvisioner.ensureExists(user.getUsername());
         return userRepository.save(user);
     }
 
     public void assignRoleToUser(User user, Role role) {
         user.getRoles().add(role);
         userRepository.save(user);
+        invalidateAfterCommit(user.getUsername());
     }
 
     public void setDefaultRole(User user) {
@@ -69,15 +69,17 @@ public class UserService {
     public UserDto getUserWithName(String username) {
         User user = userRepository.findByUsernameWithRoles(username)
                 .orElseThrow(() -> new UserException("User not found"));
-        return modelMapper.map(user, UserDto.class);
+        return UserMapper.toDto(user);
+    }
+
+    public CustomUserDetails getUserDetails(String username) {
+        User user = userRepository.findByUsernameWithRoles(username)
+                .orElseThrow(() -> new UserException("User not found"));
+        return UserMapper.toUserDetails(user);
     }
 
     public UserDto mapToUserDto(User user) {
-        UserDto userDto = modelMapper.map(user, UserDto.class);
-        userDto.setRoles(user.getRoles().stream()
-                .map(role -> modelMapper.map(role, RoleDto.class))
-                .toList());
-        return userDto;
+        return UserMapper.toDto(user);
     }
 
     public List<UserDto> getAllUsers() {
@@ -91,6 +93,22 @@ public class UserService {
     }
 
     public void deleteUser(Long id) {
+        Optional<String> username = userRepository.findById(id).map(User::getUsername);
         userRepository.deleteById(id);
+        username.ifPresent(this::invalidateAfterCommit);
+    }
+
+    // Сброс до фиксации позволил бы параллельному входу снова закэшировать ещё не изменённую строку
+    private void invalidateAfterCommit(String username) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            userDetailsCache.invalidate(username);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                userDetailsCache.invalidate(username);
+            }
+        });
     }
 }
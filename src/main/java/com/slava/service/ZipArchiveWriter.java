@@ -0,0 +1,430 @@
+package com.slava.service;
+
+import com.slava.exception.FileException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Потоковая запись ZIP-архива (с ZIP64) без буферизации архива в памяти.
+ * <p>
+ * В отличие от {@link java.util.zip.ZipOutputStream} умеет:
+ * <ul>
+ *     <li>писать из потока без сжатия, когда размер и CRC заранее неизвестны: такие записи идут как
+ *     DEFLATED с уровнем {@link Deflater#NO_COMPRESSION}, потому что STORED-запись с data descriptor
+ *     нельзя прочитать потоково ({@link java.util.zip.ZipInputStream} не знает, где она кончается);</li>
+ *     <li>сжимать большие записи параллельно, как pigz: поток режется на независимые блоки,
+ *     каждый блок сжимается отдельным {@link Deflater} со словарём из хвоста предыдущего блока
+ *     и завершается SYNC_FLUSH, поэтому результаты можно склеить в один DEFLATE-поток.</li>
+ * </ul>
+ */
+public class ZipArchiveWriter implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int VERSION_STORED = 10;
+    private static final int VERSION_DEFLATED = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int DOS_DIRECTORY_ATTRIBUTE = 0x10;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final ExecutorService compressionExecutor;
+    private final int level;
+    private final int blockSize;
+    private final int maxBlocksInFlight;
+    private final int dosTime;
+    private final int dosDate;
+    private final List<Entry> entries = new ArrayList<>();
+    private final byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+    private final Deflater deflater;
+    private final Deflater storingDeflater;
+    private long written;
+    private boolean finished;
+
+    public ZipArchiveWriter(OutputStream out, ExecutorService compressionExecutor, int level,
+                            int blockSize, int maxBlocksInFlight) {
+        this.out = out;
+        this.compressionExecutor = compressionExecutor;
+        this.level = level;
+        this.blockSize = Math.max(blockSize, DICTIONARY_SIZE);
+        this.maxBlocksInFlight = Math.max(1, maxBlocksInFlight);
+        this.deflater = new Deflater(level, true);
+        this.storingDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
+        LocalDateTime now = LocalDateTime.now();
+        this.dosTime = (now.getHour() << 11) | (now.getMinute() << 5) | (now.getSecond() >> 1);
+        this.dosDate = ((now.getYear() - 1980) << 9) | (now.getMonthValue() << 5) | now.getDayOfMonth();
+    }
+
+    public void putDirectory(String name) throws IOException {
+        Entry entry = new Entry(name.endsWith("/") ? name : name + "/", METHOD_STORED, FLAG_UTF8);
+        entry.crc = 0;
+        writeLocalHeader(entry);
+        entries.add(entry);
+    }
+
+    /**
+     * Запись без сжатия, содержимое целиком в памяти: размер и CRC пишутся прямо в заголовок.
+     */
+    public void putStored(String name, byte[] data) throws IOException {
+        Entry entry = new Entry(name, METHOD_STORED, FLAG_UTF8);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        entry.crc = crc.getValue();
+        entry.size = data.length;
+        entry.compressedSize = data.length;
+        writeLocalHeader(entry);
+        write(data, 0, data.length);
+        entries.add(entry);
+    }
+
+    /**
+     * Запись без сжатия из потока. Данные заворачиваются в несжатые блоки DEFLATE (5 байт на 64 КБ),
+     * поэтому читатель находит конец записи без размера в заголовке.
+     */
+    public void putUncompressed(String name, InputStream data) throws IOException {
+        putDeflated(name, data, storingDeflater);
+    }
+
+    /**
+     * Сжатие в текущем потоке, для небольших записей.
+     */
+    public void putDeflated(String name, InputStream data) throws IOException {
+        putDeflated(name, data, deflater);
+    }
+
+    private void putDeflated(String name, InputStream data, Deflater deflater) throws IOException {
+        Entry entry = new Entry(name, METHOD_DEFLATED, FLAG_UTF8 | FLAG_DATA_DESCRIPTOR);
+        writeLocalHeader(entry);
+        long start = written;
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] output = new byte[COPY_BUFFER_SIZE];
+        deflater.reset();
+        int read;
+        while ((read = data.read(copyBuffer)) != -1) {
+            crc.update(copyBuffer, 0, read);
+            size += read;
+            deflater.setInput(copyBuffer, 0, read);
+            while (!deflater.needsInput()) {
+                int n = deflater.deflate(output, 0, output.length, Deflater.NO_FLUSH);
+                write(output, 0, n);
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            int n = deflater.deflate(output);
+            write(output, 0, n);
+        }
+        entry.crc = crc.getValue();
+        entry.size = size;
+        entry.compressedSize = written - start;
+        writeDataDescriptor(entry);
+        entries.add(entry);
+    }
+
+    /**
+     * Параллельное сжатие блоками. Одновременно в работе не больше {@code maxBlocksInFlight} блоков,
+     * поэтому память ограничена {@code 2 * maxBlocksInFlight * blockSize} независимо от размера записи.
+     */
+    public void putDeflatedParallel(String name, InputStream data) throws IOException {
+        Entry entry = new Entry(name, METHOD_DEFLATED, FLAG_UTF8 | FLAG_DATA_DESCRIPTOR);
+        writeLocalHeader(entry);
+        long start = written;
+        CRC32 crc = new CRC32();
+        long size = 0;
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        byte[] dictionary = null;
+        try {
+            byte[] block;
+            while ((block = data.readNBytes(blockSize)).length > 0) {
+                crc.update(block);
+                size += block.length;
+                byte[] blockDictionary = dictionary;
+                byte[] blockData = block;
+                pending.add(compressionExecutor.submit(() -> deflateBlock(blockData, blockDictionary)));
+                dictionary = Arrays.copyOfRange(block, Math.max(0, block.length - DICTIONARY_SIZE), block.length);
+                if (pending.size() >= maxBlocksInFlight) {
+                    writeBlock(pending.poll());
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeBlock(pending.poll());
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+        }
+        byte[] terminator = deflateBlock(null, null);
+        write(terminator, 0, terminator.length);
+        entry.crc = crc.getValue();
+        entry.size = size;
+        entry.compressedSize = written - start;
+        writeDataDescriptor(entry);
+        entries.add(entry);
+    }
+
+    /**
+     * Сжимает один блок в сырой DEFLATE с SYNC_FLUSH (выход выровнен по байту и не завершает поток).
+     * Без входных данных возвращает пустой финальный блок, закрывающий склеенный поток.
+     */
+    private byte[] deflateBlock(byte[] block, byte[] dictionary) {
+        Deflater blockDeflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                blockDeflater.setDictionary(dictionary);
+            }
+            ByteArrayOutput output = new ByteArrayOutput(block == null ? 16 : block.length / 2 + 64);
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            if (block == null) {
+                blockDeflater.finish();
+                while (!blockDeflater.finished()) {
+                    output.write(buffer, blockDeflater.deflate(buffer));
+                }
+            } else {
+                blockDeflater.setInput(block);
+                int n;
+                do {
+                    n = blockDeflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    output.write(buffer, n);
+                } while (n == buffer.length);
+            }
+            return output.toByteArray();
+        } finally {
+            blockDeflater.end();
+        }
+    }
+
+    private void writeBlock(Future<byte[]> future) throws IOException {
+        try {
+            byte[] compressed = future.get();
+            write(compressed, 0, compressed.length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileException("Сжатие архива прервано");
+        } catch (ExecutionException e) {
+            throw new IOException("Ошибка при сжатии блока архива", e.getCause());
+        }
+    }
+
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        long centralDirectoryOffset = written;
+        for (Entry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long centralDirectorySize = written - centralDirectoryOffset;
+        boolean zip64 = entries.size() >= ZIP64_MAGIC_COUNT
+                || centralDirectoryOffset >= ZIP64_MAGIC
+                || centralDirectorySize >= ZIP64_MAGIC;
+        if (zip64) {
+            long zip64EndOffset = written;
+            ByteBuffer end64 = buffer(56 + 20);
+            end64.putInt(ZIP64_END_SIGNATURE);
+            end64.putLong(44);
+            end64.putShort((short) VERSION_ZIP64);
+            end64.putShort((short) VERSION_ZIP64);
+            end64.putInt(0);
+            end64.putInt(0);
+            end64.putLong(entries.size());
+            end64.putLong(entries.size());
+            end64.putLong(centralDirectorySize);
+            end64.putLong(centralDirectoryOffset);
+            end64.putInt(ZIP64_LOCATOR_SIGNATURE);
+            end64.putInt(0);
+            end64.putLong(zip64EndOffset);
+            end64.putInt(1);
+            write(end64);
+        }
+        ByteBuffer end = buffer(22);
+        end.putInt(END_SIGNATURE);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        int count = zip64 ? ZIP64_MAGIC_COUNT : entries.size();
+        end.putShort((short) count);
+        end.putShort((short) count);
+        end.putInt((int) Math.min(centralDirectorySize, ZIP64_MAGIC));
+        end.putInt((int) Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+        end.putShort((short) 0);
+        write(end);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        storingDeflater.end();
+    }
+
+    private void writeLocalHeader(Entry entry) throws IOException {
+        entry.offset = written;
+        boolean sizesKnown = (entry.flags & FLAG_DATA_DESCRIPTOR) == 0;
+        ByteBuffer header = buffer(30 + entry.name.length);
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) entry.version(false));
+        header.putShort((short) entry.flags);
+        header.putShort((short) entry.method);
+        header.putShort((short) dosTime);
+        header.putShort((short) dosDate);
+        header.putInt(sizesKnown ? (int) entry.crc : 0);
+        header.putInt(sizesKnown ? (int) entry.compressedSize : 0);
+        header.putInt(sizesKnown ? (int) entry.size : 0);
+        header.putShort((short) entry.name.length);
+        header.putShort((short) 0);
+        header.put(entry.name);
+        write(header);
+    }
+
+    /**
+     * Размер записи с data descriptor известен только после данных, поэтому формат дескриптора выбирается
+     * по факту: до 4 ГБ размеры 4-байтные, больше — 8-байтные (ZIP64), а в центральном каталоге у такой
+     * записи будет extra-поле ZIP64. Так же решают потоковые читатели, в том числе {@link java.util.zip.ZipInputStream}.
+     */
+    private void writeDataDescriptor(Entry entry) throws IOException {
+        boolean zip64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+        ByteBuffer descriptor = buffer(zip64 ? 24 : 16);
+        descriptor.putInt(DATA_DESCRIPTOR_SIGNATURE);
+        descriptor.putInt((int) entry.crc);
+        if (zip64) {
+            descriptor.putLong(entry.compressedSize);
+            descriptor.putLong(entry.size);
+        } else {
+            descriptor.putInt((int) entry.compressedSize);
+            descriptor.putInt((int) entry.size);
+        }
+        write(descriptor);
+    }
+
+    private void writeCentralHeader(Entry entry) throws IOException {
+        boolean sizeZip64 = entry.size >= ZIP64_MAGIC;
+        boolean compressedZip64 = entry.compressedSize >= ZIP64_MAGIC;
+        boolean offsetZip64 = entry.offset >= ZIP64_MAGIC;
+        int extraLength = (sizeZip64 ? 8 : 0) + (compressedZip64 ? 8 : 0) + (offsetZip64 ? 8 : 0);
+        boolean zip64 = extraLength > 0;
+        ByteBuffer header = buffer(46 + entry.name.length + (zip64 ? 4 + extraLength : 0));
+        header.putInt(CENTRAL_HEADER_SIGNATURE);
+        header.putShort((short) entry.version(zip64));
+        header.putShort((short) entry.version(zip64));
+        header.putShort((short) entry.flags);
+        header.putShort((short) entry.method);
+        header.putShort((short) dosTime);
+        header.putShort((short) dosDate);
+        header.putInt((int) entry.crc);
+        header.putInt((int) (compressedZip64 ? ZIP64_MAGIC : entry.compressedSize));
+        header.putInt((int) (sizeZip64 ? ZIP64_MAGIC : entry.size));
+        header.putShort((short) entry.name.length);
+        header.putShort((short) (zip64 ? 4 + extraLength : 0));
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putInt(entry.isDirectory() ? DOS_DIRECTORY_ATTRIBUTE : 0);
+        header.putInt((int) (offsetZip64 ? ZIP64_MAGIC : entry.offset));
+        header.put(entry.name);
+        if (zip64) {
+            header.putShort((short) ZIP64_EXTRA_ID);
+            header.putShort((short) extraLength);
+            if (sizeZip64) {
+                header.putLong(entry.size);
+            }
+            if (compressedZip64) {
+                header.putLong(entry.compressedSize);
+            }
+            if (offsetZip64) {
+                header.putLong(entry.offset);
+            }
+        }
+        write(header);
+    }
+
+    private ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        write(buffer.array(), 0, buffer.position());
+    }
+
+    private void write(byte[] data, int offset, int length) throws IOException {
+        out.write(data, offset, length);
+        written += length;
+    }
+
+    private static class Entry {
+        private final byte[] name;
+        private final int method;
+        private final int flags;
+        private long crc;
+        private long size;
+        private long compressedSize;
+        private long offset;
+
+        Entry(String name, int method, int flags) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.method = method;
+            this.flags = flags;
+        }
+
+        boolean isDirectory() {
+            return name.length > 0 && name[name.length - 1] == '/';
+        }
+
+        int version(boolean zip64) {
+            if (zip64) {
+                return VERSION_ZIP64;
+            }
+            return method == METHOD_DEFLATED ? VERSION_DEFLATED : VERSION_STORED;
+        }
+    }
+
+    private static class ByteArrayOutput {
+        private byte[] data;
+        private int length;
+
+        ByteArrayOutput(int capacity) {
+            this.data = new byte[Math.max(16, capacity)];
+        }
+
+        void write(byte[] buffer, int count) {
+            if (length + count > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + count));
+            }
+            System.arraycopy(buffer, 0, data, length, count);
+            length += count;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, length);
+        }
+    }
+}
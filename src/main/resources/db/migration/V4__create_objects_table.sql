@@ -0,0 +1,28 @@
+-- Каталог метаданных объектов MinIO. Путь хранится с сортировкой "C", чтобы порядок
+-- строк совпадал с порядком ключей S3, а диапазонный поиск по префиксу шёл по индексу.
+CREATE TABLE objects (
+                         id BIGSERIAL PRIMARY KEY,
+                         owner VARCHAR(255) NOT NULL,
+                         path TEXT COLLATE "C" NOT NULL,
+                         parent TEXT COLLATE "C" NOT NULL,
+                         name TEXT NOT NULL,
+                         is_folder BOOLEAN NOT NULL,
+    -- Папка без объекта-маркера, существующая только как префикс других ключей
+                         implicit BOOLEAN NOT NULL DEFAULT FALSE,
+                         size BIGINT NOT NULL DEFAULT 0,
+                         etag VARCHAR(255),
+                         content_type VARCHAR(255),
+                         modified TIMESTAMP WITH TIME ZONE,
+                         CONSTRAINT uk_objects_owner_path UNIQUE (owner, path)
+);
+
+CREATE INDEX idx_objects_owner_parent ON objects (owner, parent, path);
+-- Страницы уровня папки по размеру и дате изменения (keyset по значению и пути); у папок их нет
+CREATE INDEX idx_objects_owner_parent_size ON objects (owner, parent, (CASE WHEN is_folder THEN 0 ELSE size END), path);
+CREATE INDEX idx_objects_owner_parent_modified ON objects (owner, parent, (CASE WHEN is_folder THEN to_timestamp(0) ELSE COALESCE(modified, to_timestamp(0)) END), path);
+
+-- Владельцы, для которых каталог хотя бы раз сверен с MinIO и может отвечать на листинги
+CREATE TABLE catalog_sync (
+                              owner VARCHAR(255) PRIMARY KEY,
+                              reconciled_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,8 @@
+-- Ключи, удалённые через приложение. Сверка не возвращает в каталог объект, который попал
+-- в её листинг MinIO, но был удалён после начала сверки
+CREATE TABLE object_tombstones (
+                                   owner VARCHAR(255) NOT NULL,
+                                   path TEXT COLLATE "C" NOT NULL,
+                                   deleted_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                                   PRIMARY KEY (owner, path)
+);
@@ -0,0 +1,46 @@
+package com.slava.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.validation.BindValidationException;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilesPropertiesTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+            .withUserConfiguration(PropertiesConfig.class);
+
+    @Test
+    void deleteBatchSize_aboveS3Limit_failsStartup() {
+        contextRunner.withPropertyValues("files.batch.delete-batch-size=5000")
+                .run(context -> {
+                    Throwable failure = context.getStartupFailure();
+                    assertNotNull(failure);
+                    while (failure.getCause() != null && !(failure instanceof BindValidationException)) {
+                        failure = failure.getCause();
+                    }
+                    assertInstanceOf(BindValidationException.class, failure);
+                    assertTrue(failure.getMessage().contains("files.batch.deleteBatchSize"), failure.getMessage());
+                });
+    }
+
+    @Test
+    void deleteBatchSize_withinLimit_isBound() {
+        contextRunner.withPropertyValues("files.batch.delete-batch-size=500")
+                .run(context -> {
+                    assertNull(context.getStartupFailure());
+                    assertEquals(500, context.getBean(FilesProperties.class).getBatch().getDeleteBatchSize());
+                });
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(FilesProperties.class)
+    static class PropertiesConfig {
+    }
+}
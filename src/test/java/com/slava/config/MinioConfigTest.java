@@ -0,0 +1,67 @@
+package com.slava.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinioConfigTest {
+
+    @Test
+    void httpClient_usesConfiguredPoolTimeoutsAndDispatcher() {
+        MinioProperties.Http http = new MinioProperties.Http();
+        http.setConnectTimeout(Duration.ofSeconds(2));
+        http.setReadTimeout(Duration.ofSeconds(30));
+        http.setMaxRequestsPerHost(64);
+
+        OkHttpClient client = MinioConfig.buildHttpClient(http);
+
+        assertEquals(2000, client.connectTimeoutMillis());
+        assertEquals(30_000, client.readTimeoutMillis());
+        assertEquals(64, client.dispatcher().getMaxRequestsPerHost());
+        assertEquals(256, client.dispatcher().getMaxRequests());
+        assertEquals(List.of(Protocol.HTTP_1_1), client.protocols());
+    }
+
+    @Test
+    void httpClient_http2_keepsHttp11Fallback() {
+        MinioProperties.Http http = new MinioProperties.Http();
+        http.setHttp2(true);
+
+        OkHttpClient client = MinioConfig.buildHttpClient(http);
+
+        assertEquals(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1), client.protocols());
+    }
+
+    @Test
+    void metrics_exposePoolAndDispatcher() {
+        MinioConfig config = new MinioConfig();
+        OkHttpClient client = config.minioHttpClient(new MinioProperties());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        config.minioHttpClientMetrics(client).bindTo(registry);
+
+        assertEquals(0, registry.get("minio.http.connections").tag("state", "idle").gauge().value());
+        assertEquals(0, registry.get("minio.http.calls").tag("state", "queued").gauge().value());
+    }
+
+    @Test
+    void metrics_exposeLimiterState() {
+        MinioProperties minioProperties = new MinioProperties();
+        MinioConfig config = new MinioConfig();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        config.minioLimiterMetrics(config.minioConcurrencyLimiter(minioProperties),
+                config.minioTransferBulkhead(minioProperties)).bindTo(registry);
+
+        assertEquals(minioProperties.getLimiter().getInitialLimit(), registry.get("minio.limiter.limit").gauge().value());
+        assertEquals(0, registry.get("minio.limiter.queued").gauge().value());
+        assertEquals(0, registry.get("minio.limiter.rejected").functionCounter().count());
+        assertEquals(0, registry.get("minio.transfers.in.flight").gauge().value());
+    }
+}
@@ -0,0 +1,49 @@
+package com.slava.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.validation.BindValidationException;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinioPropertiesTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+            .withUserConfiguration(PropertiesConfig.class);
+
+    @Test
+    void missingCredentials_failStartup() {
+        contextRunner.withPropertyValues("minio.access-key=")
+                .run(context -> {
+                    Throwable failure = context.getStartupFailure();
+                    assertNotNull(failure);
+                    while (failure.getCause() != null && !(failure instanceof BindValidationException)) {
+                        failure = failure.getCause();
+                    }
+                    assertInstanceOf(BindValidationException.class, failure);
+                    assertTrue(failure.getMessage().contains("minio.accessKey"), failure.getMessage());
+                    assertTrue(failure.getMessage().contains("minio.secretKey"), failure.getMessage());
+                });
+    }
+
+    @Test
+    void credentials_areBound() {
+        contextRunner.withPropertyValues("minio.access-key=user", "minio.secret-key=secret")
+                .run(context -> {
+                    assertNull(context.getStartupFailure());
+                    MinioProperties properties = context.getBean(MinioProperties.class);
+                    assertEquals("user", properties.getAccessKey());
+                    assertEquals("secret", properties.getSecretKey());
+                });
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(MinioProperties.class)
+    static class PropertiesConfig {
+    }
+}
@@ -0,0 +1,23 @@
+package com.slava.config;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartConfigTest {
+
+    @Test
+    void multipartLimits_followMaxUploadSize() {
+        FilesProperties filesProperties = new FilesProperties();
+        filesProperties.getTransfer().setMaxUploadSize(1024 * 1024 * 1024);
+        filesProperties.getTransfer().setSpoolDirectory("/var/spool/files");
+
+        MultipartConfigElement element = new MultipartConfig().multipartConfigElement(filesProperties);
+
+        assertEquals(0, element.getFileSizeThreshold());
+        assertEquals(1024 * 1024 * 1024, element.getMaxFileSize());
+        assertEquals(1024 * 1024 * 1024 + MultipartConfig.FORM_OVERHEAD, element.getMaxRequestSize());
+        assertEquals("/var/spool/files", element.getLocation());
+    }
+}
@@ -0,0 +1,73 @@
+package com.slava.config;
+
+import com.slava.repository.CustomFileRepository;
+import com.slava.repository.ObjectEntry;
+import com.slava.service.FileService;
+import com.slava.service.ListingCache;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Ёмкость по одновременным запросам и p99 задержки листинга папки при медленном MinIO:
+ * пул потоков Tomcat по умолчанию (200 потоков) против виртуальных потоков. Виртуальная часть
+ * выполняется только на Java 21+.
+ */
+@Tag("benchmark")
+class VirtualThreadLoadBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int CONCURRENT_REQUESTS = 2000;
+    private static final long MINIO_LATENCY_MS = 200;
+
+    @Test
+    void concurrentListingsByThreadingMode() throws Exception {
+        CustomFileRepository fileRepository = mock(CustomFileRepository.class);
+        // Имитируем медленный ответ MinIO на листинг
+        when(fileRepository.streamChildren(anyString(), anyString(), isNull(), anyInt())).thenAnswer(invocation -> {
+            Thread.sleep(MINIO_LATENCY_MS);
+            return Stream.of(new ObjectEntry("folder/file.txt", false, 1024, 0, "etag", "text/plain"));
+        });
+        FileService fileService = new FileService(fileRepository, new FilesProperties(), ListingCache.NONE);
+
+        System.out.printf("%-10s %10s %10s %12s%n", "threads", "req/s", "p50 ms", "p99 ms");
+        run("platform", Executors.newFixedThreadPool(TOMCAT_MAX_THREADS), fileService);
+        Assumptions.assumeTrue(Runtime.version().feature() >= 21, "Виртуальные потоки требуют Java 21+");
+        run("virtual", StorageExecutorConfig.virtualThreadExecutor("request-"), fileService);
+    }
+
+    private static void run(String name, ExecutorService executor, FileService fileService) throws Exception {
+        try {
+            long[] latencies = new long[CONCURRENT_REQUESTS];
+            List<CompletableFuture<Void>> requests = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                int request = i;
+                long submitted = System.nanoTime();
+                requests.add(CompletableFuture.runAsync(() -> {
+                    fileService.listFolderContents("bucket", "folder/");
+                    latencies[request] = System.nanoTime() - submitted;
+                }, executor));
+            }
+            CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).get();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(latencies);
+            double p50 = latencies[CONCURRENT_REQUESTS / 2] / 1e6;
+            double p99 = latencies[CONCURRENT_REQUESTS * 99 / 100] / 1e6;
+            System.out.printf("%-10s %10.0f %10.0f %12.0f%n", name, CONCURRENT_REQUESTS / seconds, p50, p99);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.slava.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpRangesTest {
+
+    @Test
+    void coalesce_mergesOverlappingAndAdjacentRanges() {
+        List<long[]> merged = HttpRanges.coalesce(List.of(
+                new long[]{100, 199}, new long[]{0, 49}, new long[]{50, 60}, new long[]{150, 250}, new long[]{400, 499}));
+
+        assertEquals(3, merged.size());
+        assertArrayEquals(new long[]{0, 60}, merged.get(0));
+        assertArrayEquals(new long[]{100, 250}, merged.get(1));
+        assertArrayEquals(new long[]{400, 499}, merged.get(2));
+    }
+
+    @Test
+    void coalesce_duplicateRanges_becomeOne() {
+        List<long[]> merged = HttpRanges.coalesce(List.of(new long[]{0, 9}, new long[]{0, 9}, new long[]{2, 3}));
+
+        assertEquals(1, merged.size());
+        assertArrayEquals(new long[]{0, 9}, merged.get(0));
+    }
+}
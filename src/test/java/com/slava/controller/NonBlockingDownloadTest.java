@@ -0,0 +1,76 @@
+package com.slava.controller;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NonBlockingDownloadTest {
+
+    private final AsyncContext asyncContext = mock(AsyncContext.class);
+    private final ServletOutputStream out = mock(ServletOutputStream.class);
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    // Чтения, заказанные загрузкой: выполняются вручную, как в пуле хранилища
+    private final List<Runnable> reads = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ServletResponse response = mock(ServletResponse.class);
+        when(asyncContext.getResponse()).thenReturn(response);
+        when(response.getOutputStream()).thenReturn(out);
+        when(out.isReady()).thenReturn(true);
+        doAnswer(invocation -> {
+            written.write(invocation.<byte[]>getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(out).write(any(byte[].class), anyInt(), anyInt());
+    }
+
+    @Test
+    void onWritePossible_doesNotReadSource_onlyWritesWhatReaderRead() throws Exception {
+        InputStream source = spy(new ByteArrayInputStream(new byte[10]));
+        NonBlockingDownload download = new NonBlockingDownload(asyncContext, source, reads::add, 4, null);
+        download.start();
+
+        download.onWritePossible();
+        verify(source, never()).read(any(byte[].class));
+        assertEquals(1, reads.size());
+
+        // Каждое чтение пишет свой буфер и заказывает следующее
+        while (!reads.isEmpty()) {
+            reads.remove(0).run();
+        }
+
+        assertEquals(10, written.size());
+        verify(asyncContext).complete();
+        verify(source).close();
+    }
+
+    @Test
+    void socketNotReady_bufferWaitsForNextWritePossible() throws Exception {
+        NonBlockingDownload download = new NonBlockingDownload(asyncContext, new ByteArrayInputStream(new byte[3]),
+                reads::add, 4, null);
+        download.start();
+        download.onWritePossible();
+        when(out.isReady()).thenReturn(false);
+
+        reads.remove(0).run();
+        assertEquals(0, written.size());
+        assertTrue(reads.isEmpty());
+
+        when(out.isReady()).thenReturn(true);
+        download.onWritePossible();
+        assertEquals(3, written.size());
+    }
+}
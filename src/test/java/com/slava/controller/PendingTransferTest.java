@@ -0,0 +1,42 @@
+package com.slava.controller;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PendingTransferTest {
+
+    private final AsyncContext asyncContext = mock(AsyncContext.class);
+
+    @Test
+    void timeoutBeforeResponse_abortsAndCompletes() {
+        PendingTransfer transfer = new PendingTransfer(asyncContext);
+        AtomicInteger aborted = new AtomicInteger();
+        transfer.onAbort(aborted::incrementAndGet);
+
+        transfer.onTimeout(new AsyncEvent(asyncContext));
+
+        assertEquals(1, aborted.get());
+        verify(asyncContext).complete();
+        assertFalse(transfer.settle(), "Результат, пришедший после таймаута, освобождает получатель");
+    }
+
+    @Test
+    void timeoutAfterResponse_leavesItAlone() {
+        PendingTransfer transfer = new PendingTransfer(asyncContext);
+        AtomicInteger aborted = new AtomicInteger();
+        transfer.onAbort(aborted::incrementAndGet);
+        assertTrue(transfer.settle());
+
+        transfer.onTimeout(new AsyncEvent(asyncContext));
+        transfer.onError(new AsyncEvent(asyncContext));
+
+        assertEquals(0, aborted.get());
+        verify(asyncContext, never()).complete();
+    }
+}
@@ -0,0 +1,27 @@
+package com.slava.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SizeLimitedInputStreamTest {
+
+    @Test
+    void bodyWithinLimit_isReadCompletely() throws IOException {
+        SizeLimitedInputStream in = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[10]), 10);
+
+        assertEquals(10, in.readAllBytes().length);
+        assertFalse(in.exceeded());
+    }
+
+    @Test
+    void bodyOverLimit_failsWhileReading() {
+        SizeLimitedInputStream in = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[11]), 10);
+
+        assertThrows(IOException.class, in::readAllBytes);
+        assertTrue(in.exceeded());
+    }
+}
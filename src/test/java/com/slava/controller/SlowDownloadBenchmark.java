@@ -0,0 +1,185 @@
+package com.slava.controller;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Много одновременных загрузок медленными клиентами: блокирующая выдача, как в FileController,
+ * против неблокирующей {@link NonBlockingDownload}. Для каждого режима поднимается Tomcat с пулом
+ * по умолчанию (200 потоков), клиенты читают по 4 КБ раз в 200 мс. Сравниваются число загрузок,
+ * которые реально идут, занятые потоки Tomcat и куча.
+ * Клиенты и сервер работают в одном процессе, поэтому число загрузок ограничено лимитом дескрипторов;
+ * оно задаётся -Ddownloads (по умолчанию 10 000).
+ */
+@Tag("benchmark")
+class SlowDownloadBenchmark {
+
+    private static final int PAYLOAD_SIZE = 1024 * 1024;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int CLIENT_READ_SIZE = 4 * 1024;
+    private static final long CLIENT_READ_INTERVAL_MS = 200;
+    private static final long HOLD_MS = 10_000;
+
+    // Данные общие, чтобы в куче был виден только расход на соединения
+    private static final byte[] PAYLOAD = new byte[PAYLOAD_SIZE];
+
+    @Test
+    void slowDownloadsByServletMode() throws Exception {
+        int downloads = downloadCount();
+        System.out.printf("%d медленных загрузок по %d КБ%n", downloads, PAYLOAD_SIZE / 1024);
+        System.out.printf("%-10s %12s %12s %12s %10s%n", "mode", "in progress", "pool threads", "busy threads", "heap MB");
+        run("blocking", new BlockingDownloadServlet(), downloads);
+        run("async", new NonBlockingDownloadServlet(), downloads);
+    }
+
+    private static int downloadCount() {
+        int requested = Integer.getInteger("downloads", 10_000);
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.UnixOperatingSystemMXBean os) {
+            // Каждая загрузка — два сокета в процессе: клиентский и серверный
+            int limit = (int) ((os.getMaxFileDescriptorCount() - 1000) / 2);
+            if (requested > limit) {
+                System.out.printf("Лимит дескрипторов %d: загрузок не больше %d%n", os.getMaxFileDescriptorCount(), limit);
+                return limit;
+            }
+        }
+        return requested;
+    }
+
+    private static void run(String mode, HttpServlet servlet, int downloads) throws Exception {
+        Path baseDir = Files.createTempDirectory("tomcat-benchmark");
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+        tomcat.setPort(0);
+        tomcat.getConnector().setProperty("maxThreads", "200");
+        tomcat.getConnector().setProperty("maxConnections", String.valueOf(downloads + 100));
+        tomcat.getConnector().setProperty("acceptCount", String.valueOf(downloads));
+        tomcat.getConnector().setProperty("connectionTimeout", "120000");
+        // Иначе на loopback ответ целиком уходит в буфер ядра и блокирующий поток освобождается сразу
+        tomcat.getConnector().setProperty("socket.txBufSize", String.valueOf(BUFFER_SIZE));
+        Context context = tomcat.addContext("", baseDir.toString());
+        Wrapper wrapper = Tomcat.addServlet(context, "download", servlet);
+        wrapper.setAsyncSupported(true);
+        context.addServletMappingDecoded("/download", "download");
+        tomcat.start();
+        int port = tomcat.getConnector().getLocalPort();
+
+        List<SocketChannel> clients = new ArrayList<>(downloads);
+        boolean[] started = new boolean[downloads];
+        try (Selector selector = Selector.open()) {
+            connect(selector, port, downloads, clients);
+            ByteBuffer readBuffer = ByteBuffer.allocate(CLIENT_READ_SIZE);
+            long deadline = System.currentTimeMillis() + HOLD_MS;
+            while (System.currentTimeMillis() < deadline) {
+                for (int i = 0; i < clients.size(); i++) {
+                    readBuffer.clear();
+                    if (clients.get(i).read(readBuffer) > 0) {
+                        started[i] = true;
+                    }
+                }
+                Thread.sleep(CLIENT_READ_INTERVAL_MS);
+            }
+            int inProgress = 0;
+            for (boolean clientStarted : started) {
+                inProgress += clientStarted ? 1 : 0;
+            }
+            System.gc();
+            long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) tomcat.getConnector().getProtocolHandler().getExecutor();
+            System.out.printf("%-10s %12d %12d %12d %10d%n", mode, inProgress, pool.getPoolSize(), pool.getActiveCount(),
+                    heap / (1024 * 1024));
+        } finally {
+            for (SocketChannel client : clients) {
+                client.close();
+            }
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    private static void connect(Selector selector, int port, int downloads, List<SocketChannel> clients) throws IOException {
+        byte[] request = "GET /download HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        int pending = 0;
+        int opened = 0;
+        while (opened < downloads || pending > 0) {
+            // Не больше 500 незавершённых подключений, чтобы не переполнить очередь accept
+            while (opened < downloads && pending < 500) {
+                SocketChannel channel = SocketChannel.open();
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, CLIENT_READ_SIZE);
+                channel.configureBlocking(false);
+                if (channel.connect(new InetSocketAddress("localhost", port))) {
+                    channel.write(ByteBuffer.wrap(request));
+                    clients.add(channel);
+                } else {
+                    channel.register(selector, SelectionKey.OP_CONNECT);
+                    pending++;
+                }
+                opened++;
+            }
+            selector.select(100);
+            for (SelectionKey key : selector.selectedKeys()) {
+                SocketChannel channel = (SocketChannel) key.channel();
+                if (key.isConnectable() && channel.finishConnect()) {
+                    key.cancel();
+                    channel.write(ByteBuffer.wrap(request));
+                    clients.add(channel);
+                    pending--;
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+        selector.selectNow();
+    }
+
+    /**
+     * Как FileService.transfer: поток пишет, пока клиент не дочитает.
+     */
+    private static final class BlockingDownloadServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            response.setContentLengthLong(PAYLOAD_SIZE);
+            try (InputStream source = new ByteArrayInputStream(PAYLOAD)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = source.read(buffer)) != -1) {
+                    response.getOutputStream().write(buffer, 0, read);
+                }
+            }
+        }
+    }
+
+    private static final class NonBlockingDownloadServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            response.setContentLengthLong(PAYLOAD_SIZE);
+            AsyncContext asyncContext = request.startAsync();
+            asyncContext.setTimeout(0);
+            new NonBlockingDownload(asyncContext, new ByteArrayInputStream(PAYLOAD), ForkJoinPool.commonPool(),
+                    BUFFER_SIZE, null).start();
+        }
+    }
+}
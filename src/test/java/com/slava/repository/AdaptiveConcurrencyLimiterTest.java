@@ -0,0 +1,223 @@
+package com.slava.repository;
+
+import com.slava.config.MinioProperties;
+import com.slava.exception.StorageOverloadedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final MinioProperties.Limiter settings = new MinioProperties.Limiter();
+
+    @BeforeEach
+    void setUp() {
+        settings.setInitialLimit(4);
+        settings.setMinLimit(2);
+        settings.setMaxLimit(8);
+        settings.setMaxWait(Duration.ofMillis(50));
+    }
+
+    @Test
+    void acquire_overLimit_waitsThenRejects() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings);
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+
+        assertThrows(StorageOverloadedException.class, limiter::acquire);
+        assertEquals(4, limiter.inFlight());
+        assertEquals(0, limiter.queued());
+        assertEquals(1, limiter.rejected());
+    }
+
+    @Test
+    void acquire_queueFull_rejectsImmediately() {
+        settings.setMaxQueued(0);
+        settings.setMaxWait(Duration.ofSeconds(10));
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings);
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+
+        long start = System.nanoTime();
+        assertThrows(StorageOverloadedException.class, limiter::acquire);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    void acquire_queued_proceedsWhenReleased() throws Exception {
+        settings.setMaxWait(Duration.ofSeconds(10));
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings);
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+        CompletableFuture<Void> waiter = CompletableFuture.runAsync(limiter::acquire);
+        while (limiter.queued() == 0) {
+            Thread.sleep(5);
+        }
+
+        limiter.release(AdaptiveConcurrencyLimiter.Outcome.IGNORED, 0);
+
+        waiter.get(5, TimeUnit.SECONDS);
+        assertEquals(4, limiter.inFlight());
+        assertEquals(0, limiter.rejected());
+    }
+
+    @Test
+    void callAsync_overLimit_waitsWithoutThreadAndSendsWhenReleased() throws Exception {
+        settings.setMaxWait(Duration.ofSeconds(10));
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings);
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+        CompletableFuture<String> response = new CompletableFuture<>();
+        AtomicLong sent = new AtomicLong();
+
+        CompletableFuture<String> result = limiter.callAsync(true, () -> {
+            sent.incrementAndGet();
+            return response;
+        });
+        assertEquals(0, sent.get());
+        assertEquals(1, limiter.queued());
+
+        limiter.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS, FAST);
+        assertEquals(1, sent.get());
+        assertEquals(4, limiter.inFlight());
+
+        response.complete("ok");
+        assertEquals("ok", result.get(5, TimeUnit.SECONDS));
+        assertEquals(3, limiter.inFlight());
+    }
+
+    @Test
+    void callAsync_waitExpired_rejectsAndKeepsSlotCount() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings);
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+
+        CompletableFuture<String> result = limiter.callAsync(true, () -> CompletableFuture.completedFuture("ok"));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(StorageOverloadedException.class, error.getCause());
+        limiter.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS, FAST);
+        assertEquals(3, limiter.inFlight());
+        assertEquals(0, limiter.queued());
+        assertEquals(1, limiter.rejected());
+    }
+
+    @Test
+    void release_slowResponses_shrinkLimitDownToMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings);
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire();
+            limiter.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS, FAST);
+        }
+        int before = limiter.limit();
+
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+            limiter.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS, SLOW);
+        }
+
+        assertTrue(limiter.limit() < before);
+        assertEquals(settings.getMinLimit(), limiter.limit());
+    }
+
+    @Test
+    void release_transientFailures_shrinkLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings);
+
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire();
+            limiter.release(AdaptiveConcurrencyLimiter.Outcome.DROPPED, 0);
+        }
+
+        assertEquals(settings.getMinLimit(), limiter.limit());
+    }
+
+    @Test
+    void release_fastResponsesUnderLoad_growLimitUpToMaximum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings);
+        for (int i = 0; i < 1000; i++) {
+            // Предел используется полностью
+            int permits = limiter.limit();
+            for (int p = 0; p < permits; p++) {
+                limiter.acquire();
+            }
+            for (int p = 0; p < permits; p++) {
+                limiter.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS, FAST);
+            }
+        }
+
+        assertEquals(settings.getMaxLimit(), limiter.limit());
+    }
+
+    @Test
+    void release_fastResponsesUnderLightLoad_keepLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings);
+
+        for (int i = 0; i < 1000; i++) {
+            limiter.acquire();
+            limiter.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS, FAST);
+        }
+
+        assertEquals(settings.getInitialLimit(), limiter.limit());
+    }
+
+    @Test
+    void baseline_adaptsToSustainedSlowdownAfterWindow() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings, clock::get);
+        limiter.acquire();
+        limiter.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS, FAST);
+
+        // Через два окна прежний минимум забыт, новая задержка становится обычной
+        for (int window = 0; window < 2; window++) {
+            clock.addAndGet(settings.getBaselineWindow().toNanos());
+            limiter.acquire();
+            limiter.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS, SLOW);
+        }
+
+        assertEquals(TimeUnit.NANOSECONDS.toMillis(SLOW), limiter.baselineMillis(), 0.001);
+    }
+
+    @Test
+    void call_measuresLatencyWithInjectedClock() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings, clock::get);
+
+        limiter.call(true, () -> clock.addAndGet(FAST));
+        limiter.call(false, () -> clock.addAndGet(SLOW));
+
+        // Неучитываемая операция базовую задержку не трогает
+        assertEquals(TimeUnit.NANOSECONDS.toMillis(FAST), limiter.baselineMillis(), 0.001);
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void fixed_keepsLimitRegardlessOfOutcomes() {
+        MinioProperties.Transfers transfers = new MinioProperties.Transfers();
+        transfers.setMaxConcurrent(3);
+        AdaptiveConcurrencyLimiter bulkhead = AdaptiveConcurrencyLimiter.fixed(transfers);
+
+        for (int i = 0; i < 20; i++) {
+            bulkhead.acquire();
+            bulkhead.release(AdaptiveConcurrencyLimiter.Outcome.DROPPED, 0);
+        }
+
+        assertEquals(3, bulkhead.limit());
+    }
+}
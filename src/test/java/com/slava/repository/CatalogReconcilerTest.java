@@ -0,0 +1,130 @@
+package com.slava.repository;
+
+import com.slava.config.FilesProperties;
+import com.slava.entity.StoredObject;
+import com.slava.repository.ObjectCatalog.CatalogEntry;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Item;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogReconcilerTest {
+
+    @Mock
+    private MinioClient minioClient;
+
+    @Mock
+    private ObjectCatalog objectCatalog;
+
+    @Mock
+    private AdvisoryLock lock;
+
+    @Test
+    void reconcileAll_lockHeldByAnotherNode_isSkipped() {
+        when(lock.runExclusively(anyString(), any())).thenReturn(false);
+
+        new CatalogReconciler(minioClient, objectCatalog, lock, new FilesProperties()).reconcileAll();
+
+        verifyNoInteractions(minioClient, objectCatalog);
+    }
+
+    @Test
+    void reconcile_upsertsMissingAndChangedRowsAndDeletesStaleOnes() throws Exception {
+        doReturn(items("docs/a.txt:1:e1", "docs/b.txt:2:e2", "photos/2024/cat.jpg:3:e3"))
+                .when(minioClient).listObjects(any(ListObjectsArgs.class));
+        // В каталоге: актуальная неявная папка docs/, устаревший b.txt и удалённый из MinIO old.txt
+        when(objectCatalog.page(eq("alice"), anyString(), anyInt())).thenReturn(List.of(
+                row("docs/", true, true, 0, null),
+                row("docs/a.txt", false, false, 1, "e1"),
+                row("docs/b.txt", false, false, 1, "old"),
+                row("old.txt", false, false, 5, "e5")));
+
+        FilesProperties filesProperties = new FilesProperties();
+        CatalogReconciler reconciler = new CatalogReconciler(minioClient, objectCatalog, lock, filesProperties);
+        CatalogReconciler.ReconcileResult result = reconciler.reconcile("alice");
+
+        ArgumentCaptor<List<CatalogEntry>> upserts = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<String>> deletes = ArgumentCaptor.forClass(List.class);
+        verify(objectCatalog).apply(eq("alice"), upserts.capture(), deletes.capture(), anyLong());
+        assertEquals(List.of("docs/b.txt", "photos/", "photos/2024/", "photos/2024/cat.jpg"),
+                upserts.getValue().stream().map(CatalogEntry::path).toList());
+        assertTrue(upserts.getValue().get(1).implicit());
+        assertEquals(List.of("old.txt"), deletes.getValue());
+        assertEquals(new CatalogReconciler.ReconcileResult(4, 1), result);
+        verify(objectCatalog).markReconciled("alice");
+    }
+
+    @Test
+    void reconcile_rowsWrittenDuringReconcile_areLeftAlone() throws Exception {
+        doReturn(items("a.txt:1:old", "b.txt:1:e"))
+                .when(minioClient).listObjects(any(ListObjectsArgs.class));
+        // a.txt перезаписан, c.txt загружен уже после листинга
+        StoredObject rewritten = row("a.txt", false, false, 2, "new");
+        rewritten.setModified(OffsetDateTime.now().plusSeconds(1));
+        StoredObject uploaded = row("c.txt", false, false, 2, "e");
+        uploaded.setModified(OffsetDateTime.now().plusSeconds(1));
+        when(objectCatalog.page(eq("alice"), anyString(), anyInt())).thenReturn(List.of(rewritten,
+                row("b.txt", false, false, 1, "e"), uploaded));
+
+        long before = System.currentTimeMillis();
+        new CatalogReconciler(minioClient, objectCatalog, lock, new FilesProperties()).reconcile("alice");
+
+        ArgumentCaptor<Long> since = ArgumentCaptor.forClass(Long.class);
+        verify(objectCatalog).apply(eq("alice"), eq(List.of()), eq(List.of()), since.capture());
+        assertTrue(since.getValue() >= before);
+        verify(objectCatalog).purgeTombstones("alice", since.getValue());
+    }
+
+    @Test
+    void expectedEntries_emitImplicitAncestorsInKeyOrder() throws Exception {
+        List<String> paths = new ArrayList<>();
+        new CatalogReconciler.ExpectedEntries(items("a/", "a/b/c.txt:1:e", "a/b/d.txt:1:e", "a/e/f.txt:1:e", "g.txt:1:e")
+                .iterator()).forEachRemaining(entry -> paths.add(entry.path() + (entry.implicit() ? "*" : "")));
+
+        assertEquals(List.of("a/", "a/b/*", "a/b/c.txt", "a/b/d.txt", "a/e/*", "a/e/f.txt", "g.txt"), paths);
+        assertEquals(List.of("a/", "a/b/"), ObjectCatalog.ancestorsOf("a/b/c.txt"));
+        assertEquals("a/b/", ObjectCatalog.parentOf("a/b/c/"));
+        assertEquals("c", ObjectCatalog.nameOf("a/b/c/"));
+    }
+
+    // Описание объекта: "ключ:размер:etag"
+    private List<Result<Item>> items(String... specs) throws Exception {
+        List<Result<Item>> results = new ArrayList<>();
+        for (String spec : specs) {
+            String[] parts = spec.split(":");
+            Item item = mock(Item.class, withSettings().strictness(org.mockito.quality.Strictness.LENIENT));
+            when(item.objectName()).thenReturn(parts[0]);
+            when(item.size()).thenReturn(parts.length > 1 ? Long.parseLong(parts[1]) : 0L);
+            when(item.etag()).thenReturn(parts.length > 2 ? parts[2] : null);
+            Result<Item> result = mock(Result.class);
+            when(result.get()).thenReturn(item);
+            results.add(result);
+        }
+        return results;
+    }
+
+    private StoredObject row(String path, boolean folder, boolean implicit, long size, String etag) {
+        StoredObject object = new StoredObject();
+        object.setPath(path);
+        object.setFolder(folder);
+        object.setImplicit(implicit);
+        object.setSize(size);
+        object.setEtag(etag);
+        object.setModified(OffsetDateTime.now().minusDays(1));
+        return object;
+    }
+}
@@ -0,0 +1,134 @@
+package com.slava.repository;
+
+import com.slava.config.MinioProperties;
+import com.slava.exception.FileException;
+import com.slava.exception.StorageOverloadedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitedFileRepositoryTest {
+
+    private final FaultInjectingStorage storage = new FaultInjectingStorage();
+    private final MinioProperties minioProperties = new MinioProperties();
+
+    @BeforeEach
+    void setUp() {
+        MinioProperties.Limiter limiter = minioProperties.getLimiter();
+        limiter.setInitialLimit(1);
+        limiter.setMinLimit(1);
+        limiter.setMaxWait(Duration.ofMillis(50));
+        storage.put("bucket", "file.txt", "Hello".getBytes());
+    }
+
+    @Test
+    void statObject_overLimit_isRejected() throws Exception {
+        ConcurrencyLimitedFileRepository repository = repository();
+        storage.delayNext(500);
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> repository.statObject("bucket", "file.txt"));
+        while (repository.limiter().inFlight() == 0) {
+            Thread.sleep(5);
+        }
+
+        assertThrows(StorageOverloadedException.class, () -> repository.statObject("bucket", "file.txt"));
+
+        slow.get(5, TimeUnit.SECONDS);
+        assertEquals(1, repository.limiter().rejected());
+        assertEquals(0, repository.limiter().inFlight());
+        assertEquals(1, storage.requests());
+    }
+
+    @Test
+    void failure_releasesPermit() {
+        ConcurrencyLimitedFileRepository repository = repository();
+        storage.failNext(1);
+        storage.rejectNext("AccessDenied");
+
+        assertThrows(FileException.class, () -> repository.statObject("bucket", "file.txt"));
+        assertThrows(FileException.class, () -> repository.statObject("bucket", "file.txt"));
+
+        assertEquals(0, repository.limiter().inFlight());
+        assertTrue(repository.statObject("bucket", "file.txt").isPresent());
+    }
+
+    @Test
+    void disabled_passesThroughWithoutLimit() throws Exception {
+        minioProperties.getLimiter().setEnabled(false);
+        ConcurrencyLimitedFileRepository repository = repository();
+        storage.delayNext(300);
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> repository.statObject("bucket", "file.txt"));
+        while (storage.requests() == 0) {
+            Thread.sleep(5);
+        }
+
+        assertTrue(repository.statObject("bucket", "file.txt").isPresent());
+
+        slow.get(5, TimeUnit.SECONDS);
+        assertEquals(0, repository.limiter().rejected());
+    }
+
+    @Test
+    void compositeOperations_doNotHoldSlot() throws Exception {
+        ConcurrencyLimitedFileRepository repository = repository();
+        storage.delayNext(500);
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> repository.statObject("bucket", "file.txt"));
+        while (repository.limiter().inFlight() == 0) {
+            Thread.sleep(5);
+        }
+
+        // Места занимают отдельные запросы листинга внутри MinioFileRepositoryImpl, а не вся операция
+        assertEquals(List.of("file.txt"), repository.listObjects("bucket", ""));
+
+        slow.get(5, TimeUnit.SECONDS);
+        assertEquals(0, repository.limiter().rejected());
+    }
+
+    @Test
+    void slowUploads_doNotTakeSlotsFromReads() throws Exception {
+        ConcurrencyLimitedFileRepository repository = repository();
+        storage.delayNext(500);
+        CompletableFuture<Void> upload = CompletableFuture.runAsync(() -> repository.uploadFile("bucket", "big.bin",
+                new ByteArrayInputStream(new byte[16]), 16, "application/octet-stream"));
+        while (repository.transfers().inFlight() == 0) {
+            Thread.sleep(5);
+        }
+
+        // Единственное место общего ограничителя свободно, пока загрузка держит место переборки
+        assertTrue(repository.statObject("bucket", "file.txt").isPresent());
+
+        upload.get(5, TimeUnit.SECONDS);
+        assertEquals(0, repository.limiter().rejected());
+        assertEquals(0, repository.transfers().inFlight());
+    }
+
+    @Test
+    void transfers_overLimit_areRejected() throws Exception {
+        minioProperties.getTransfers().setMaxConcurrent(1);
+        minioProperties.getTransfers().setMaxWait(Duration.ofMillis(50));
+        ConcurrencyLimitedFileRepository repository = repository();
+        storage.delayNext(500);
+        CompletableFuture<Void> copy = CompletableFuture.runAsync(() -> repository.copyFile("bucket", "file.txt", "copy.txt"));
+        while (repository.transfers().inFlight() == 0) {
+            Thread.sleep(5);
+        }
+
+        assertThrows(StorageOverloadedException.class, () -> repository.uploadFile("bucket", "new.txt",
+                new ByteArrayInputStream(new byte[1]), 1, "text/plain"));
+
+        copy.get(5, TimeUnit.SECONDS);
+        assertEquals(1, repository.transfers().rejected());
+        assertEquals(0, repository.limiter().rejected());
+    }
+
+    private ConcurrencyLimitedFileRepository repository() {
+        return new ConcurrencyLimitedFileRepository(storage, new AdaptiveConcurrencyLimiter(minioProperties.getLimiter()),
+                AdaptiveConcurrencyLimiter.fixed(minioProperties.getTransfers()));
+    }
+}
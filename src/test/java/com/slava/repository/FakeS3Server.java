@@ -0,0 +1,104 @@
+package com.slava.repository;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.minio.MinioClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+
+/**
+ * Минимальный S3 на локальном порту: принимает multipart-загрузку одного объекта и отвечает на HEAD
+ * его размером. Тела частей не хранит, а только считает, поэтому через него можно прогнать настоящий
+ * MinioClient с объёмом, которого нет в памяти. На каждую принятую часть вызывает onPart
+ * с суммой принятых байт.
+ */
+class FakeS3Server implements AutoCloseable {
+
+    private final HttpServer server;
+    private final LongConsumer onPart;
+    private final List<Long> partSizes = new CopyOnWriteArrayList<>();
+    private volatile long received;
+
+    FakeS3Server(LongConsumer onPart) throws IOException {
+        this.onPart = onPart;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    MinioClient client() {
+        return MinioClient.builder()
+                .endpoint("http://127.0.0.1:" + server.getAddress().getPort())
+                .region("us-east-1")
+                .credentials("test", "test-secret")
+                .build();
+    }
+
+    List<Long> partSizes() {
+        return partSizes;
+    }
+
+    long received() {
+        return received;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String query = exchange.getRequestURI().getQuery() == null ? "" : exchange.getRequestURI().getQuery();
+        long bodySize = drain(exchange.getRequestBody());
+        if (method.equals("POST") && query.startsWith("uploads")) {
+            respond(exchange, "<InitiateMultipartUploadResult><Bucket>bucket</Bucket><Key>key</Key>"
+                    + "<UploadId>upload-1</UploadId></InitiateMultipartUploadResult>");
+        } else if (method.equals("PUT")) {
+            partSizes.add(bodySize);
+            received += bodySize;
+            onPart.accept(received);
+            exchange.getResponseHeaders().add("ETag", "\"part-" + partSizes.size() + "\"");
+            respond(exchange, "");
+        } else if (method.equals("POST")) {
+            respond(exchange, "<CompleteMultipartUploadResult><Bucket>bucket</Bucket><Key>key</Key>"
+                    + "<ETag>\"object\"</ETag></CompleteMultipartUploadResult>");
+        } else if (method.equals("HEAD")) {
+            exchange.getResponseHeaders().add("ETag", "\"object\"");
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            exchange.getResponseHeaders().add("Last-Modified", "Sun, 18 Oct 2026 10:00:00 GMT");
+            exchange.getResponseHeaders().add("Content-Length", Long.toString(received));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        } else {
+            exchange.sendResponseHeaders(400, -1);
+            exchange.close();
+        }
+    }
+
+    private static long drain(InputStream body) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(200, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            exchange.getResponseBody().write(bytes);
+        }
+        exchange.close();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
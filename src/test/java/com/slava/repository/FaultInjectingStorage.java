@@ -0,0 +1,244 @@
+package com.slava.repository;
+
+import com.slava.dto.FileMetadataDto;
+import com.slava.dto.ListFolderDto;
+import com.slava.exception.FileException;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище в памяти вместо MinIO с внедрением сбоев: каждый запрос сначала берёт из очереди
+ * следующий сценарий (задержку или ошибку), затем выполняется над картой объектов. Ошибки
+ * обёрнуты в FileException так же, как в {@link MinioFileRepositoryImpl}.
+ */
+final class FaultInjectingStorage implements CustomFileRepository {
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Queue<Fault> faults = new ConcurrentLinkedQueue<>();
+    private final List<TrackedStream> openedStreams = new CopyOnWriteArrayList<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile long latencyMs;
+
+    private record Fault(long delayMs, RuntimeException error) {
+    }
+
+    void put(String bucketName, String objectName, byte[] content) {
+        objects.put(key(bucketName, objectName), content);
+    }
+
+    /**
+     * Следующие {@code times} запросов завершатся сетевой ошибкой.
+     */
+    void failNext(int times) {
+        for (int i = 0; i < times; i++) {
+            faults.add(new Fault(0, new FileException("Ошибка хранилища", new IOException("connection reset"))));
+        }
+    }
+
+    /**
+     * Следующий запрос получит ответ S3 с кодом ошибки.
+     */
+    void rejectNext(String code) {
+        faults.add(new Fault(0, new FileException("Ошибка хранилища", new ErrorResponseException(
+                new ErrorResponse(code, "message", "bucket", "object", "resource", "request", "host"), null, null))));
+    }
+
+    void throwNext(RuntimeException error) {
+        faults.add(new Fault(0, error));
+    }
+
+    void delayNext(long delayMs) {
+        faults.add(new Fault(delayMs, null));
+    }
+
+    void setLatency(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    int requests() {
+        return requests.get();
+    }
+
+    List<TrackedStream> openedStreams() {
+        return openedStreams;
+    }
+
+    private void request() {
+        requests.incrementAndGet();
+        Fault fault = faults.poll();
+        long delay = fault != null && fault.delayMs() > 0 ? fault.delayMs() : latencyMs;
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FileException("Операция прервана");
+            }
+        }
+        if (fault != null && fault.error() != null) {
+            throw fault.error();
+        }
+    }
+
+    @Override
+    public void uploadFile(String bucketName, String objectName, InputStream fileStream, long size, String contentType) {
+        request();
+        try {
+            objects.put(key(bucketName, objectName), fileStream.readAllBytes());
+        } catch (IOException e) {
+            throw new FileException("Ошибка при загрузке файла", e);
+        }
+    }
+
+    @Override
+    public Optional<InputStream> downloadFile(String bucketName, String objectName) {
+        request();
+        return Optional.ofNullable(objects.get(key(bucketName, objectName))).map(this::open);
+    }
+
+    @Override
+    public Optional<InputStream> downloadFile(String bucketName, String objectName, long offset, long length) {
+        request();
+        return Optional.ofNullable(objects.get(key(bucketName, objectName)))
+                .map(content -> open(Arrays.copyOfRange(content, (int) offset, (int) (offset + length))));
+    }
+
+    @Override
+    public Optional<FileMetadataDto> statObject(String bucketName, String objectName) {
+        request();
+        return Optional.ofNullable(objects.get(key(bucketName, objectName)))
+                .map(content -> new FileMetadataDto(objectName, content.length, "application/octet-stream", null, null));
+    }
+
+    @Override
+    public void deleteFile(String bucketName, String filePath) {
+        request();
+        objects.remove(key(bucketName, filePath));
+    }
+
+    @Override
+    public void copyFile(String bucketName, String sourceObjectName, String targetObjectName) {
+        request();
+        objects.put(key(bucketName, targetObjectName), objects.get(key(bucketName, sourceObjectName)));
+    }
+
+    @Override
+    public List<String> listObjects(String bucketName, String prefix) {
+        request();
+        String bucketPrefix = key(bucketName, prefix);
+        return objects.keySet().stream()
+                .filter(key -> key.startsWith(bucketPrefix))
+                .map(key -> key.substring(bucketName.length() + 1))
+                .sorted()
+                .toList();
+    }
+
+    @Override
+    public Optional<List<ObjectEntry>> sortedChildren(String bucketName, String prefix, ListFolderDto.SortField sort,
+                                                      boolean descending, Boolean folders, long afterValue,
+                                                      String afterKey, int limit) {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean bucketExists(String bucketName) {
+        request();
+        return true;
+    }
+
+    @Override
+    public void deleteFiles(String bucketName, List<String> filePaths) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void createFolder(String bucketName, String folderPath) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteFolder(String bucketName, String folderPath) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void moveFolder(String bucketName, String sourcePath, String targetPath) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void moveFolder(String bucketName, String sourcePath, String targetPath, CopyProgressListener listener) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void moveFile(String bucketName, String sourcePath, String targetPath) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Stream<ObjectEntry> streamObjects(String bucketName, String prefix) {
+        return listObjects(bucketName, prefix).stream().map(key -> new ObjectEntry(key, false, 0, 0, null, null));
+    }
+
+    @Override
+    public List<String> listChildren(String bucketName, String prefix) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Stream<ObjectEntry> streamChildren(String bucketName, String prefix, String startAfter, int pageSize) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<ObjectEntry> search(String bucketName, String query, int limit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void createBucket(String bucketName) {
+        throw new UnsupportedOperationException();
+    }
+
+    private TrackedStream open(byte[] content) {
+        TrackedStream stream = new TrackedStream(content);
+        openedStreams.add(stream);
+        return stream;
+    }
+
+    private static String key(String bucketName, String objectName) {
+        return bucketName + "/" + objectName;
+    }
+
+    static final class TrackedStream extends ByteArrayInputStream {
+        private volatile boolean closed;
+
+        TrackedStream(byte[] content) {
+            super(content);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.slava.repository;
+
+import com.slava.config.FilesProperties;
+import com.slava.config.MinioProperties;
+import io.minio.*;
+import io.minio.messages.Item;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Перемещение папки: прежний последовательный цикл copy + delete по каждому объекту
+ * против параллельного серверного копирования с пакетным удалением.
+ */
+@Tag("benchmark")
+class FolderMoveBenchmark {
+
+    private static final int OBJECT_COUNT = 500;
+    private static final long REQUEST_LATENCY_MS = 5;
+
+    @Test
+    void parallelMoveIsFasterThanSerialLoop() throws Exception {
+        MinioClient minioClient = mock(MinioClient.class);
+        List<Result<Item>> items = new ArrayList<>();
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            Item item = mock(Item.class);
+            when(item.objectName()).thenReturn("source/file" + i + ".bin");
+            when(item.size()).thenReturn(1024L * 1024);
+            Result<Item> result = mock(Result.class);
+            when(result.get()).thenReturn(item);
+            items.add(result);
+        }
+        doReturn(items).when(minioClient).listObjects(any(ListObjectsArgs.class));
+        // Имитируем задержку MinIO на каждый запрос
+        doAnswer(invocation -> {
+            Thread.sleep(REQUEST_LATENCY_MS);
+            return mock(ObjectWriteResponse.class);
+        }).when(minioClient).copyObject(any(CopyObjectArgs.class));
+        doAnswer(invocation -> {
+            Thread.sleep(REQUEST_LATENCY_MS);
+            return null;
+        }).when(minioClient).removeObject(any(RemoveObjectArgs.class));
+        doAnswer(invocation -> {
+            Thread.sleep(REQUEST_LATENCY_MS);
+            return List.of();
+        }).when(minioClient).removeObjects(any(RemoveObjectsArgs.class));
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            FilesProperties filesProperties = new FilesProperties();
+            MinioFileRepositoryImpl repository = new MinioFileRepositoryImpl(
+                    minioClient, new MinioProperties(), filesProperties, executor, executor,
+                    new AdaptiveConcurrencyLimiter(new MinioProperties().getLimiter()),
+                    AdaptiveConcurrencyLimiter.fixed(new MinioProperties().getTransfers()),
+                    new NamespaceIndex(filesProperties, new NamespaceVersions.Local(), Runnable::run), mock(ObjectCatalog.class));
+
+            long start = System.nanoTime();
+            for (String object : repository.listObjects("bucket", "source/")) {
+                repository.copyFile("bucket", object, "target/" + object.substring("source/".length()));
+                repository.deleteFile("bucket", object);
+            }
+            double serial = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            repository.moveFolder("bucket", "source/", "target/");
+            double parallel = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("%-10s %10s %12s%n", "", "ms", "objects/s");
+            System.out.printf("%-10s %10.0f %12.1f%n", "serial", serial, OBJECT_COUNT / serial * 1000);
+            System.out.printf("%-10s %10.0f %12.1f%n", "parallel", parallel, OBJECT_COUNT / parallel * 1000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.slava.repository;
+
+import com.slava.config.FilesProperties;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Задержка stat при «хвосте» хранилища: обычный ответ 5 мс, каждый двадцатый в среднем — 300 мс.
+ * Сравниваются p50 и p99 без дублирующих запросов и с ними, а также доля лишних запросов.
+ */
+@Tag("benchmark")
+class HedgedReadBenchmark {
+
+    private static final int REQUESTS = 2000;
+    private static final long FAST_MS = 5;
+    private static final long SLOW_MS = 300;
+    private static final double SLOW_SHARE = 0.05;
+
+    @Test
+    void tailLatencyWithAndWithoutHedging() {
+        System.out.printf("%-8s %8s %8s %10s%n", "hedging", "p50 ms", "p99 ms", "requests");
+        run(false);
+        run(true);
+    }
+
+    private static void run(boolean hedging) {
+        FaultInjectingStorage storage = new FaultInjectingStorage();
+        storage.put("bucket", "file.txt", new byte[1]);
+        storage.setLatency(FAST_MS);
+        FilesProperties filesProperties = new FilesProperties();
+        filesProperties.getResilience().setHedgeEnabled(hedging);
+        ExecutorService hedgeExecutor = Executors.newCachedThreadPool();
+        try {
+            ResilientFileRepository repository = new ResilientFileRepository(storage, filesProperties, hedgeExecutor,
+                    () -> false, System::nanoTime);
+            Random random = new Random(42);
+            long[] latencies = new long[REQUESTS];
+            for (int i = 0; i < REQUESTS; i++) {
+                if (random.nextDouble() < SLOW_SHARE) {
+                    storage.delayNext(SLOW_MS);
+                }
+                long start = System.nanoTime();
+                repository.statObject("bucket", "file.txt");
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            double p50 = latencies[REQUESTS / 2] / 1e6;
+            double p99 = latencies[REQUESTS * 99 / 100] / 1e6;
+            System.out.printf("%-8s %8.1f %8.1f %10d%n", hedging ? "on" : "off", p50, p99, storage.requests());
+        } finally {
+            hedgeExecutor.shutdownNow();
+        }
+    }
+}
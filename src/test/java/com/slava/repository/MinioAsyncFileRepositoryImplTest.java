@@ -0,0 +1,196 @@
+package com.slava.repository;
+
+import com.slava.config.MinioProperties;
+import com.slava.dto.FileMetadataDto;
+import com.slava.exception.FileDownLoadException;
+import com.slava.exception.FileException;
+import com.slava.exception.StorageOverloadedException;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.StatObjectArgs;
+import io.minio.UploadObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
+import okhttp3.Headers;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MinioAsyncFileRepositoryImplTest {
+
+    @Mock
+    private MinioAsyncClient minioAsyncClient;
+
+    @Mock
+    private ObjectCatalog objectCatalog;
+
+    @TempDir
+    private Path tempDir;
+
+    private ExecutorService storageExecutor;
+    private NamespaceIndex namespaceIndex;
+    private AdaptiveConcurrencyLimiter limiter;
+    private AdaptiveConcurrencyLimiter transfers;
+    private MinioAsyncFileRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        storageExecutor = Executors.newFixedThreadPool(2);
+        namespaceIndex = mock(NamespaceIndex.class);
+        limiter = new AdaptiveConcurrencyLimiter(new MinioProperties.Limiter());
+        transfers = AdaptiveConcurrencyLimiter.fixed(new MinioProperties.Transfers());
+        repository = new MinioAsyncFileRepositoryImpl(minioAsyncClient, storageExecutor, limiter, transfers,
+                namespaceIndex, objectCatalog);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageExecutor.shutdownNow();
+    }
+
+    private static ErrorResponseException errorResponse(String code) {
+        Response response = new Response.Builder()
+                .request(new Request.Builder().url("http://localhost/bucket/object").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(400)
+                .message(code)
+                .build();
+        return new ErrorResponseException(new ErrorResponse(code, "message", "bucket", "object", "resource", "request", "host"),
+                response, null);
+    }
+
+    @Test
+    void statObject_noSuchKey_returnsEmpty() throws Exception {
+        when(minioAsyncClient.statObject(any(StatObjectArgs.class)))
+                .thenReturn(CompletableFuture.failedFuture(errorResponse("NoSuchKey")));
+
+        Optional<FileMetadataDto> metadata = repository.statObject("bucket", "missing.txt").get(5, TimeUnit.SECONDS);
+
+        assertTrue(metadata.isEmpty());
+    }
+
+    @Test
+    void statObject_otherError_failsWithFileException() throws Exception {
+        when(minioAsyncClient.statObject(any(StatObjectArgs.class)))
+                .thenReturn(CompletableFuture.failedFuture(errorResponse("AccessDenied")));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> repository.statObject("bucket", "file.txt").get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(FileException.class, error.getCause());
+    }
+
+    @Test
+    void downloadFile_noSuchKey_returnsEmpty() throws Exception {
+        when(minioAsyncClient.getObject(any(GetObjectArgs.class)))
+                .thenReturn(CompletableFuture.failedFuture(errorResponse("NoSuchKey")));
+
+        assertTrue(repository.downloadFile("bucket", "missing.txt").get(5, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    void downloadFile_otherError_failsWithCause() throws Exception {
+        ErrorResponseException denied = errorResponse("AccessDenied");
+        when(minioAsyncClient.getObject(any(GetObjectArgs.class))).thenReturn(CompletableFuture.failedFuture(denied));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> repository.downloadFile("bucket", "file.txt", 0, 10).get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(FileDownLoadException.class, error.getCause());
+        assertSame(denied, error.getCause().getCause());
+    }
+
+    @Test
+    void downloadFile_holdsLimiterSlotUntilResponse() throws Exception {
+        CompletableFuture<GetObjectResponse> response = new CompletableFuture<>();
+        when(minioAsyncClient.getObject(any(GetObjectArgs.class))).thenReturn(response);
+
+        CompletableFuture<Optional<InputStream>> download = repository.downloadFile("bucket", "file.txt");
+        assertEquals(1, limiter.inFlight());
+
+        response.complete(null);
+        download.get(5, TimeUnit.SECONDS);
+        assertEquals(0, limiter.inFlight());
+        assertEquals(0, transfers.inFlight());
+    }
+
+    @Test
+    void overloadedLimiter_failsWithoutCallingMinio() {
+        MinioProperties.Limiter settings = new MinioProperties.Limiter();
+        settings.setInitialLimit(1);
+        settings.setMinLimit(1);
+        settings.setMaxQueued(0);
+        AdaptiveConcurrencyLimiter full = new AdaptiveConcurrencyLimiter(settings);
+        full.acquire();
+        repository = new MinioAsyncFileRepositoryImpl(minioAsyncClient, storageExecutor, full, transfers,
+                namespaceIndex, objectCatalog);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> repository.statObject("bucket", "file.txt").get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(StorageOverloadedException.class, error.getCause());
+        verifyNoInteractions(minioAsyncClient);
+    }
+
+    @Test
+    void uploadFile_recordsObjectInIndexAndCatalog() throws Exception {
+        Path content = Files.write(tempDir.resolve("upload.tmp"), new byte[42]);
+        ObjectWriteResponse written = new ObjectWriteResponse(Headers.of(), "bucket", null, "docs/file.txt", "\"abc\"", null);
+        when(minioAsyncClient.uploadObject(any(UploadObjectArgs.class))).thenReturn(CompletableFuture.completedFuture(written));
+
+        repository.uploadFile("bucket", "docs/file.txt", content, "text/plain").get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, transfers.inFlight());
+        verify(namespaceIndex).recordPut(eq("bucket"), argThat(entry ->
+                entry.key().equals("docs/file.txt") && entry.size() == 42 && "abc".equals(entry.etag())));
+        verify(objectCatalog).recordPut(eq("bucket"), eq("docs/file.txt"), eq(42L), eq("abc"), eq("text/plain"), anyLong());
+    }
+
+    @Test
+    void uploadFile_takesTransferSlot_notLimiterSlot() throws Exception {
+        Path content = Files.write(tempDir.resolve("upload.tmp"), new byte[1]);
+        when(minioAsyncClient.uploadObject(any(UploadObjectArgs.class))).thenReturn(new CompletableFuture<>());
+
+        repository.uploadFile("bucket", "file.txt", content, "text/plain");
+
+        assertEquals(1, transfers.inFlight());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void uploadFile_failure_leavesIndexUntouched() throws Exception {
+        Path content = Files.write(tempDir.resolve("upload.tmp"), new byte[1]);
+        when(minioAsyncClient.uploadObject(any(UploadObjectArgs.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("connection reset")));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> repository.uploadFile("bucket", "file.txt", content, "text/plain").get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(FileException.class, error.getCause());
+        verifyNoInteractions(namespaceIndex, objectCatalog);
+    }
+}
@@ -1,21 +1,34 @@
 package com.slava.repository;
 
+import com.slava.config.FilesProperties;
+import com.slava.config.MinioProperties;
+import com.slava.dto.FileMetadataDto;
+import com.slava.exception.BatchDeleteException;
+import com.slava.exception.FileDownLoadException;
 import com.slava.exception.FileException;
 import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
 import io.minio.messages.Item;
-import io.minio.messages.DeleteObject;
+import io.minio.messages.DeleteError;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -29,9 +42,38 @@ class MinioFileRepositoryImplTest {
     @Mock
     private MinioClient minioClient;
 
-    @InjectMocks
+    @Mock
+    private ObjectCatalog objectCatalog;
+
+    private final MinioProperties minioProperties = new MinioProperties();
+
+    private final FilesProperties filesProperties = new FilesProperties();
+
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(minioProperties.getLimiter());
+
+    private ExecutorService storageExecutor;
+
+    private ExecutorService listingExecutor;
+
     private MinioFileRepositoryImpl fileRepository;
 
+    @BeforeEach
+    void setUp() {
+        storageExecutor = Executors.newFixedThreadPool(4);
+        listingExecutor = Executors.newFixedThreadPool(4);
+        // Здесь проверяются запросы к MinIO; индекс включается в отдельных тестах
+        filesProperties.getIndex().setEnabled(false);
+        fileRepository = new MinioFileRepositoryImpl(minioClient, minioProperties, filesProperties, storageExecutor,
+                listingExecutor, limiter, AdaptiveConcurrencyLimiter.fixed(minioProperties.getTransfers()), new NamespaceIndex(filesProperties, new NamespaceVersions.Local(), Runnable::run),
+                objectCatalog);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageExecutor.shutdownNow();
+        listingExecutor.shutdownNow();
+    }
+
     // -------------------------
     // UPLOAD FILE
     // -------------------------
@@ -59,6 +101,74 @@ class MinioFileRepositoryImplTest {
         assertEquals(contentType, args.contentType());
     }
 
+    @Test
+    void uploadFile_unknownSize_usesConfiguredPartSize() throws Exception {
+        doReturn(mock(ObjectWriteResponse.class)).when(minioClient).putObject(any(PutObjectArgs.class));
+
+        fileRepository.uploadFile("bucket", "file.bin",
+                new ByteArrayInputStream(new byte[0]), -1, "application/octet-stream");
+
+        ArgumentCaptor<PutObjectArgs> captor = ArgumentCaptor.forClass(PutObjectArgs.class);
+        verify(minioClient).putObject(captor.capture());
+        assertEquals(minioProperties.getUpload().getPartSize(), captor.getValue().partSize());
+    }
+
+    @Test
+    void uploadFile_hugeFile_partSizeStaysBounded() throws Exception {
+        doReturn(mock(ObjectWriteResponse.class)).when(minioClient).putObject(any(PutObjectArgs.class));
+        long size = 200L * 1024 * 1024 * 1024; // 200 ГБ
+
+        fileRepository.uploadFile("bucket", "file.bin",
+                new ByteArrayInputStream(new byte[0]), size, "application/octet-stream");
+
+        ArgumentCaptor<PutObjectArgs> captor = ArgumentCaptor.forClass(PutObjectArgs.class);
+        verify(minioClient).putObject(captor.capture());
+        PutObjectArgs args = captor.getValue();
+        // Часть увеличивается только до минимума, нужного для лимита в 10 000 частей
+        assertTrue(args.partSize() < 32L * 1024 * 1024);
+        assertTrue(args.partCount() <= 10_000);
+    }
+
+    @Test
+    void uploadFile_unknownSize_realClientHoldsOnePartAtATime() throws Exception {
+        long partSize = 5L * 1024 * 1024;
+        long size = 4 * partSize + 123;
+        minioProperties.getUpload().setPartSize(partSize);
+        AtomicLong produced = new AtomicLong();
+        AtomicLong maxAhead = new AtomicLong();
+        InputStream source = new InputStream() {
+            @Override
+            public int read() {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) == -1 ? -1 : 0;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                int n = (int) Math.min(len, size - produced.get());
+                if (n <= 0) {
+                    return -1;
+                }
+                produced.addAndGet(n);
+                return n;
+            }
+        };
+
+        try (FakeS3Server s3 = new FakeS3Server(received -> maxAhead.accumulateAndGet(produced.get() - received, Math::max))) {
+            MinioFileRepositoryImpl repository = new MinioFileRepositoryImpl(s3.client(), minioProperties, filesProperties,
+                    storageExecutor, listingExecutor, limiter, AdaptiveConcurrencyLimiter.fixed(minioProperties.getTransfers()),
+                    new NamespaceIndex(filesProperties, new NamespaceVersions.Local(), Runnable::run), objectCatalog);
+
+            repository.uploadFile("bucket", "big.bin", source, -1, "application/octet-stream");
+
+            // Настоящий клиент MinIO режет тело неизвестной длины на части и читает источник
+            // не дальше одной части вперёд отправленного: память на загрузку — O(part-size), а не O(файла)
+            assertEquals(List.of(partSize, partSize, partSize, partSize, 123L), s3.partSizes());
+            assertTrue(maxAhead.get() <= partSize, "Прочитано наперёд " + maxAhead.get() + " байт");
+            verify(objectCatalog).recordPut(eq("bucket"), eq("big.bin"), eq(size), any(), eq("application/octet-stream"), anyLong());
+        }
+    }
+
     @Test
     void uploadFile_failure_throwsFileException() throws Exception {
         // Если метод не декларирует Exception, лучше использовать RuntimeException
@@ -86,13 +196,67 @@ class MinioFileRepositoryImplTest {
     }
 
     @Test
-    void downloadFile_failure_returnsEmptyOptional() throws Exception {
-        doThrow(new RuntimeException("Error")).when(minioClient).getObject(any(GetObjectArgs.class));
+    void downloadFile_range_passesOffsetAndLength() throws Exception {
+        GetObjectResponse mockResponse = mock(GetObjectResponse.class);
+        doReturn(mockResponse).when(minioClient).getObject(any(GetObjectArgs.class));
+
+        Optional<InputStream> result = fileRepository.downloadFile("bucket", "file.txt", 100, 50);
+
+        assertTrue(result.isPresent());
+        ArgumentCaptor<GetObjectArgs> captor = ArgumentCaptor.forClass(GetObjectArgs.class);
+        verify(minioClient).getObject(captor.capture());
+        assertEquals(100L, captor.getValue().offset());
+        assertEquals(50L, captor.getValue().length());
+    }
+
+    @Test
+    void downloadFile_noSuchKey_returnsEmptyOptional() throws Exception {
+        doThrow(new ErrorResponseException(new ErrorResponse("NoSuchKey", "message", "bucket", "file.txt",
+                "resource", "request", "host"), null, null)).when(minioClient).getObject(any(GetObjectArgs.class));
 
         Optional<InputStream> result = fileRepository.downloadFile("bucket", "file.txt");
         assertFalse(result.isPresent());
     }
 
+    @Test
+    void downloadFile_failure_throwsWithCause() throws Exception {
+        IOException failure = new IOException("connection reset");
+        doThrow(failure).when(minioClient).getObject(any(GetObjectArgs.class));
+
+        FileDownLoadException exception = assertThrows(FileDownLoadException.class, () ->
+                fileRepository.downloadFile("bucket", "file.txt"));
+        // Причина нужна ResilientFileRepository, чтобы отличить временный сбой
+        assertSame(failure, exception.getCause());
+    }
+
+    // -------------------------
+    // STAT OBJECT
+    // -------------------------
+    @Test
+    void statObject_success() throws Exception {
+        StatObjectResponse stat = mock(StatObjectResponse.class);
+        when(stat.size()).thenReturn(42L);
+        when(stat.contentType()).thenReturn("text/plain");
+        when(stat.etag()).thenReturn("etag");
+        doReturn(stat).when(minioClient).statObject(any(StatObjectArgs.class));
+
+        Optional<FileMetadataDto> result = fileRepository.statObject("bucket", "file.txt");
+
+        assertTrue(result.isPresent());
+        assertEquals("file.txt", result.get().getPath());
+        assertEquals(42L, result.get().getSize());
+        assertEquals("text/plain", result.get().getContentType());
+        assertEquals("etag", result.get().getEtag());
+    }
+
+    @Test
+    void statObject_failure_throwsFileException() throws Exception {
+        doThrow(new RuntimeException("Error")).when(minioClient).statObject(any(StatObjectArgs.class));
+
+        assertThrows(FileException.class, () ->
+                fileRepository.statObject("bucket", "file.txt"));
+    }
+
     // -------------------------
     // DELETE FILE
     // -------------------------
@@ -188,6 +352,127 @@ class MinioFileRepositoryImplTest {
                 fileRepository.listObjects("bucket", "prefix/"));
     }
 
+    @Test
+    void listChildren_listsSingleLevelWithDelimiter() throws Exception {
+        Item file = mock(Item.class);
+        when(file.objectName()).thenReturn("prefix/file1.txt");
+        Item folder = mock(Item.class);
+        when(folder.objectName()).thenReturn("prefix/sub/");
+        Result<Item> result1 = mock(Result.class);
+        when(result1.get()).thenReturn(file);
+        Result<Item> result2 = mock(Result.class);
+        when(result2.get()).thenReturn(folder);
+        doReturn(List.of(result1, result2)).when(minioClient).listObjects(any(ListObjectsArgs.class));
+
+        List<String> children = fileRepository.listChildren("bucket", "prefix/");
+
+        assertEquals(List.of("prefix/file1.txt", "prefix/sub/"), children);
+        ArgumentCaptor<ListObjectsArgs> captor = ArgumentCaptor.forClass(ListObjectsArgs.class);
+        verify(minioClient).listObjects(captor.capture());
+        assertEquals("/", captor.getValue().delimiter());
+        assertFalse(captor.getValue().recursive());
+    }
+
+    @Test
+    void streamChildren_mapsFilesAndPrefixesWithStartAfter() throws Exception {
+        Item file = mock(Item.class);
+        when(file.objectName()).thenReturn("prefix/file1.txt");
+        when(file.size()).thenReturn(42L);
+        when(file.lastModified()).thenReturn(java.time.ZonedDateTime.now());
+        when(file.etag()).thenReturn("\"abc\"");
+        when(file.userMetadata()).thenReturn(java.util.Map.of("content-type", "text/plain"));
+        Item folder = mock(Item.class);
+        when(folder.objectName()).thenReturn("prefix/sub/");
+        when(folder.isDir()).thenReturn(true);
+        Result<Item> result1 = mock(Result.class);
+        when(result1.get()).thenReturn(file);
+        Result<Item> result2 = mock(Result.class);
+        when(result2.get()).thenReturn(folder);
+        doReturn(List.of(result1, result2)).when(minioClient).listObjects(any(ListObjectsArgs.class));
+
+        List<ObjectEntry> children =
+                fileRepository.streamChildren("bucket", "prefix/", "prefix/a.txt", 50).toList();
+
+        assertEquals("prefix/file1.txt", children.get(0).key());
+        assertEquals(42L, children.get(0).size());
+        assertTrue(children.get(0).lastModified() > 0);
+        assertEquals("abc", children.get(0).etag());
+        assertEquals("text/plain", children.get(0).contentType());
+        assertTrue(children.get(1).commonPrefix());
+        ArgumentCaptor<ListObjectsArgs> captor = ArgumentCaptor.forClass(ListObjectsArgs.class);
+        verify(minioClient).listObjects(captor.capture());
+        assertEquals("prefix/a.txt", captor.getValue().startAfter());
+        assertEquals(50, captor.getValue().maxKeys());
+        assertTrue(captor.getValue().includeUserMetadata());
+        verify(folder, never()).lastModified();
+        verify(minioClient, never()).statObject(any(StatObjectArgs.class));
+    }
+
+    @Test
+    void namespaceIndex_servesListingsAfterSingleScanAndTracksMutations() throws Exception {
+        filesProperties.getIndex().setEnabled(true);
+        doReturn(itemResults("docs/", 1L, 2L)).when(minioClient).listObjects(any(ListObjectsArgs.class));
+        doReturn(mock(ObjectWriteResponse.class)).when(minioClient).putObject(any(PutObjectArgs.class));
+
+        assertEquals(List.of("docs/"), fileRepository.listChildren("bucket", ""));
+        fileRepository.uploadFile("bucket", "docs/sub/new.txt", new ByteArrayInputStream(new byte[3]), 3, "text/plain");
+        fileRepository.deleteFile("bucket", "docs/file0.txt");
+
+        assertEquals(List.of("docs/file1.txt", "docs/sub/"), fileRepository.listChildren("bucket", "docs/"));
+        assertEquals(List.of("docs/file1.txt", "docs/sub/new.txt"), fileRepository.listObjects("bucket", "docs/"));
+        // Весь бакет прочитан из MinIO один раз
+        verify(minioClient, times(1)).listObjects(any(ListObjectsArgs.class));
+    }
+
+    @Test
+    void deleteFolder_listsMinioEvenWithWarmIndex() throws Exception {
+        filesProperties.getIndex().setEnabled(true);
+        doReturn(itemResults("docs/", 1L, 2L)).when(minioClient).listObjects(any(ListObjectsArgs.class));
+        doReturn(List.of()).when(minioClient).removeObjects(any(RemoveObjectsArgs.class));
+        fileRepository.listChildren("bucket", "");
+
+        fileRepository.deleteFolder("bucket", "docs/");
+
+        // Индекс прочитан один раз, удаляемые ключи перечислены по MinIO
+        verify(minioClient, times(2)).listObjects(any(ListObjectsArgs.class));
+    }
+
+    @Test
+    void reconciledCatalog_servesListingsAndSearchWithoutMinio() {
+        when(objectCatalog.isReconciled("bucket")).thenReturn(true);
+        com.slava.entity.StoredObject folder = new com.slava.entity.StoredObject();
+        folder.setPath("docs/sub/");
+        folder.setName("sub");
+        folder.setFolder(true);
+        com.slava.entity.StoredObject file = new com.slava.entity.StoredObject();
+        file.setPath("docs/report.pdf");
+        file.setName("report.pdf");
+        file.setSize(10);
+        file.setContentType("application/pdf");
+        when(objectCatalog.children("bucket", "docs/")).thenReturn(List.of(file, folder));
+        when(objectCatalog.search("bucket", "rep", 20)).thenReturn(List.of(file));
+
+        assertEquals(List.of("docs/report.pdf", "docs/sub/"), fileRepository.listChildren("bucket", "docs/"));
+        List<ObjectEntry> found = fileRepository.search("bucket", "rep", 20);
+
+        assertEquals("application/pdf", found.get(0).contentType());
+        verifyNoInteractions(minioClient);
+    }
+
+    @Test
+    void mutations_areWrittenThroughToCatalog() throws Exception {
+        ObjectWriteResponse response = mock(ObjectWriteResponse.class);
+        when(response.etag()).thenReturn("\"abc\"");
+        doReturn(response).when(minioClient).putObject(any(PutObjectArgs.class));
+        doReturn(List.of()).when(minioClient).removeObjects(any(RemoveObjectsArgs.class));
+
+        fileRepository.uploadFile("bucket", "docs/a.txt", new ByteArrayInputStream(new byte[4]), 4, "text/plain");
+        fileRepository.deleteFiles("bucket", List.of("docs/a.txt"));
+
+        verify(objectCatalog).recordPut(eq("bucket"), eq("docs/a.txt"), eq(4L), eq("abc"), eq("text/plain"), anyLong());
+        verify(objectCatalog).recordDelete("bucket", List.of("docs/a.txt"));
+    }
+
     // -------------------------
     // BUCKET EXISTS
     // -------------------------
@@ -256,60 +541,197 @@ class MinioFileRepositoryImplTest {
     // DELETE FOLDER
     // -------------------------
     @Test
-    void deleteFolder_callsDeleteFileForEachObject() throws Exception {
+    void deleteFolder_removesObjectsInBatches() throws Exception {
+        filesProperties.getBatch().setDeleteBatchSize(2);
         String bucket = "bucket";
         String folderPath = "folder/";
 
-        // Мокаем объекты
-        Item item1 = mock(Item.class);
-        when(item1.objectName()).thenReturn("folder/file1.txt");
-        Item item2 = mock(Item.class);
-        when(item2.objectName()).thenReturn("folder/file2.txt");
+        List<Result<Item>> items = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Item item = mock(Item.class);
+            when(item.objectName()).thenReturn("folder/file" + i + ".txt");
+            Result<Item> result = mock(Result.class);
+            when(result.get()).thenReturn(item);
+            items.add(result);
+        }
+        doReturn(items).when(minioClient).listObjects(any(ListObjectsArgs.class));
+        doReturn(List.of()).when(minioClient).removeObjects(any(RemoveObjectsArgs.class));
 
-        Result<Item> res1 = mock(Result.class);
-        when(res1.get()).thenReturn(item1);
-        Result<Item> res2 = mock(Result.class);
-        when(res2.get()).thenReturn(item2);
+        fileRepository.deleteFolder(bucket, folderPath);
 
-        doReturn(List.of(res1, res2)).when(minioClient).listObjects(any(ListObjectsArgs.class));
-        doNothing().when(minioClient).removeObject(any(RemoveObjectArgs.class));
+        // 5 объектов пачками по 2 => 3 запроса multi-delete, ни одного одиночного удаления
+        verify(minioClient, times(3)).removeObjects(any(RemoveObjectsArgs.class));
+        verify(minioClient, never()).removeObject(any(RemoveObjectArgs.class));
+    }
 
-        fileRepository.deleteFolder(bucket, folderPath);
+    @Test
+    void deleteFolder_startsDeletingBeforeListingIsExhausted() throws Exception {
+        // Последовательный листинг страницами по 2: при параллельном ключи читаются наперёд пачками
+        filesProperties.getListing().setFanOutParallelism(1);
+        filesProperties.getListing().setMaxPageSize(2);
+        filesProperties.getBatch().setDeleteBatchSize(2);
+        filesProperties.getBatch().setDeleteConcurrency(1);
+        List<Result<Item>> results = itemResults("folder/", 1L, 1L, 1L, 1L, 1L, 1L);
+        java.util.concurrent.atomic.AtomicInteger listed = new java.util.concurrent.atomic.AtomicInteger();
+        doAnswer(invocation -> {
+            Iterable<Result<Item>> page = () -> afterStartAfter(results, invocation.getArgument(0))
+                    .peek(result -> listed.incrementAndGet()).iterator();
+            return page;
+        }).when(minioClient).listObjects(any(ListObjectsArgs.class));
+        List<Integer> listedAtDelete = new ArrayList<>();
+        doAnswer(invocation -> {
+            listedAtDelete.add(listed.get());
+            return List.of();
+        }).when(minioClient).removeObjects(any(RemoveObjectsArgs.class));
+
+        fileRepository.deleteFolder("bucket", "folder/");
+
+        // Первая пачка удаляется, когда из листинга прочитаны только её ключи
+        assertEquals(List.of(2, 4, 6), listedAtDelete);
+    }
 
-        // Ожидаем 2 вызова removeObject
-        verify(minioClient, times(2)).removeObject(any(RemoveObjectArgs.class));
+    @Test
+    void deleteFiles_reportsFailedKeysInAggregate() throws Exception {
+        filesProperties.getBatch().setDeleteBatchSize(2);
+        filesProperties.getBatch().setDeleteConcurrency(1);
+        DeleteError error = mock(DeleteError.class);
+        when(error.objectName()).thenReturn("b.txt");
+        Result<DeleteError> errorResult = mock(Result.class);
+        when(errorResult.get()).thenReturn(error);
+
+        // Пачки по очереди: [a, b] — ошибка по ключу b, [c, d] — сбой запроса целиком, [e] — успех
+        doReturn(List.of(errorResult))
+                .doThrow(new RuntimeException("Connection reset"))
+                .doReturn(List.of())
+                .when(minioClient).removeObjects(any(RemoveObjectsArgs.class));
+
+        BatchDeleteException exception = assertThrows(BatchDeleteException.class, () ->
+                fileRepository.deleteFiles("bucket", List.of("a.txt", "b.txt", "c.txt", "d.txt", "e.txt")));
+
+        // Все пачки отправлены, несмотря на ошибки в первых двух
+        verify(minioClient, times(3)).removeObjects(any(RemoveObjectsArgs.class));
+        assertEquals(List.of("b.txt", "c.txt", "d.txt"), exception.getFailedObjects());
     }
 
     // -------------------------
     // MOVE FOLDER
     // -------------------------
     @Test
-    void moveFolder_callsCopyAndDeleteForEachObject() throws Exception {
+    void moveFolder_copiesInParallelAndDeletesSourcesInBatch() throws Exception {
         String bucket = "bucket";
         String sourcePath = "source/";
         String targetPath = "target/";
 
-        // Два объекта в папке
-        Item item1 = mock(Item.class);
-        when(item1.objectName()).thenReturn("source/file1.txt");
-        Item item2 = mock(Item.class);
-        when(item2.objectName()).thenReturn("source/file2.txt");
+        doReturn(itemResults(sourcePath, 1L, 2L)).when(minioClient).listObjects(any(ListObjectsArgs.class));
+        doReturn(mock(ObjectWriteResponse.class)).when(minioClient).copyObject(any(CopyObjectArgs.class));
+        doReturn(List.of()).when(minioClient).removeObjects(any(RemoveObjectsArgs.class));
 
-        Result<Item> res1 = mock(Result.class);
-        when(res1.get()).thenReturn(item1);
-        Result<Item> res2 = mock(Result.class);
-        when(res2.get()).thenReturn(item2);
+        List<long[]> progress = new ArrayList<>();
+        fileRepository.moveFolder(bucket, sourcePath, targetPath,
+                (copiedObjects, totalObjects, copiedBytes, totalBytes) ->
+                        progress.add(new long[]{copiedObjects, totalObjects, copiedBytes, totalBytes}));
 
-        doReturn(List.of(res1, res2)).when(minioClient).listObjects(any(ListObjectsArgs.class));
+        ArgumentCaptor<CopyObjectArgs> captor = ArgumentCaptor.forClass(CopyObjectArgs.class);
+        verify(minioClient, times(2)).copyObject(captor.capture());
+        assertEquals(java.util.Set.of("target/file0.txt", "target/file1.txt"),
+                captor.getAllValues().stream().map(CopyObjectArgs::object).collect(java.util.stream.Collectors.toSet()));
+        // Исходники удаляются одним запросом multi-delete
+        verify(minioClient).removeObjects(any(RemoveObjectsArgs.class));
+        verify(minioClient, never()).removeObject(any(RemoveObjectArgs.class));
+        assertArrayEquals(new long[]{2, 2, 3, 3}, progress.get(progress.size() - 1));
+    }
 
-        // copyObject возвращает ObjectWriteResponse
-        doReturn(mock(ObjectWriteResponse.class)).when(minioClient).copyObject(any(CopyObjectArgs.class));
-        doNothing().when(minioClient).removeObject(any(RemoveObjectArgs.class));
+    @Test
+    void moveFolder_usesComposeForObjectsLargerThanCopyLimit() throws Exception {
+        doReturn(itemResults("source/", 6L * 1024 * 1024 * 1024)).when(minioClient).listObjects(any(ListObjectsArgs.class));
+        doReturn(mock(ObjectWriteResponse.class)).when(minioClient).composeObject(any(ComposeObjectArgs.class));
+        doReturn(List.of()).when(minioClient).removeObjects(any(RemoveObjectsArgs.class));
 
-        fileRepository.moveFolder(bucket, sourcePath, targetPath);
+        fileRepository.moveFolder("bucket", "source/", "target/");
+
+        verify(minioClient).composeObject(any(ComposeObjectArgs.class));
+        verify(minioClient, never()).copyObject(any(CopyObjectArgs.class));
+    }
+
+    @Test
+    void moveFolder_keepsSourcesThatFailedToCopy() throws Exception {
+        filesProperties.getBatch().setCopyConcurrency(1);
+        doReturn(itemResults("source/", 1L, 1L)).when(minioClient).listObjects(any(ListObjectsArgs.class));
+        doReturn(mock(ObjectWriteResponse.class))
+                .doThrow(new RuntimeException("Connection reset"))
+                .when(minioClient).copyObject(any(CopyObjectArgs.class));
+        doReturn(List.of()).when(minioClient).removeObjects(any(RemoveObjectsArgs.class));
+
+        assertThrows(FileException.class, () -> fileRepository.moveFolder("bucket", "source/", "target/"));
+
+        // Удаляется только успешно скопированный объект
+        ArgumentCaptor<RemoveObjectsArgs> captor = ArgumentCaptor.forClass(RemoveObjectsArgs.class);
+        verify(minioClient).removeObjects(captor.capture());
+        int deleted = 0;
+        for (Object ignored : captor.getValue().objects()) {
+            deleted++;
+        }
+        assertEquals(1, deleted);
+    }
+
+    @Test
+    void streamChildren_requestsEachPageSeparately() throws Exception {
+        List<Result<Item>> results = itemResults("docs/", 1L, 1L, 1L, 1L, 1L);
+        doAnswer(invocation -> afterStartAfter(results, invocation.getArgument(0)).toList())
+                .when(minioClient).listObjects(any(ListObjectsArgs.class));
+
+        List<String> keys = fileRepository.streamChildren("bucket", "docs/", null, 2).map(ObjectEntry::key).toList();
+
+        assertEquals(List.of("docs/file0.txt", "docs/file1.txt", "docs/file2.txt", "docs/file3.txt", "docs/file4.txt"), keys);
+        ArgumentCaptor<ListObjectsArgs> captor = ArgumentCaptor.forClass(ListObjectsArgs.class);
+        verify(minioClient, times(3)).listObjects(captor.capture());
+        assertEquals("docs/file1.txt", captor.getAllValues().get(1).startAfter());
+        assertEquals("docs/file3.txt", captor.getAllValues().get(2).startAfter());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    private static java.util.stream.Stream<Result<Item>> afterStartAfter(List<Result<Item>> results, ListObjectsArgs args) {
+        String startAfter = args.startAfter();
+        return results.stream().filter(result -> {
+            try {
+                return startAfter == null || startAfter.isEmpty() || result.get().objectName().compareTo(startAfter) > 0;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    void streamObjects_readerPaced_doesNotFanOutOnListingPool() throws Exception {
+        ExecutorService listingPool = mock(ExecutorService.class);
+        MinioFileRepositoryImpl repository = new MinioFileRepositoryImpl(minioClient, minioProperties, filesProperties,
+                storageExecutor, listingPool, limiter, AdaptiveConcurrencyLimiter.fixed(minioProperties.getTransfers()),
+                new NamespaceIndex(filesProperties, new NamespaceVersions.Local(), Runnable::run), objectCatalog);
+        doReturn(itemResults("docs/", 1L, 2L)).when(minioClient).listObjects(any(ListObjectsArgs.class));
+
+        List<String> keys;
+        try (java.util.stream.Stream<ObjectEntry> objects = repository.streamObjects("bucket", "docs/")) {
+            keys = objects.map(ObjectEntry::key).toList();
+        }
+
+        assertEquals(List.of("docs/file0.txt", "docs/file1.txt"), keys);
+        ArgumentCaptor<ListObjectsArgs> captor = ArgumentCaptor.forClass(ListObjectsArgs.class);
+        verify(minioClient).listObjects(captor.capture());
+        assertTrue(captor.getValue().recursive());
+        verifyNoInteractions(listingPool);
+    }
 
-        verify(minioClient, times(2)).copyObject(any(CopyObjectArgs.class));
-        verify(minioClient, times(2)).removeObject(any(RemoveObjectArgs.class));
+    private List<Result<Item>> itemResults(String prefix, long... sizes) throws Exception {
+        List<Result<Item>> results = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            Item item = mock(Item.class);
+            when(item.objectName()).thenReturn(prefix + "file" + i + ".txt");
+            when(item.size()).thenReturn(sizes[i]);
+            Result<Item> result = mock(Result.class);
+            when(result.get()).thenReturn(item);
+            results.add(result);
+        }
+        return results;
     }
 
     // -------------------------
@@ -0,0 +1,214 @@
+package com.slava.repository;
+
+import com.slava.config.FilesProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NamespaceIndexTest {
+
+    @Test
+    void leastRecentlyUsedBucketIsEvictedOverBudget() {
+        FilesProperties filesProperties = new FilesProperties();
+        filesProperties.getIndex().setMemoryBudget(150_000);
+        NamespaceIndex index = new NamespaceIndex(filesProperties, new NamespaceVersions.Local(), Runnable::run);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Stream<ObjectEntry>> loader = () -> {
+            loads.incrementAndGet();
+            return objects(1000);
+        };
+
+        assertTrue(index.get("alice", loader).isPresent());
+        assertTrue(index.get("bob", loader).isPresent());
+        assertTrue(index.estimatedBytes() <= 150_000);
+        // alice вытеснена и строится заново, bob остался в памяти
+        index.get("alice", loader);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void bucketLargerThanBudgetIsNotIndexed() {
+        FilesProperties filesProperties = new FilesProperties();
+        filesProperties.getIndex().setMemoryBudget(10_000);
+        NamespaceIndex index = new NamespaceIndex(filesProperties, new NamespaceVersions.Local(), Runnable::run);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Stream<ObjectEntry>> loader = () -> {
+            loads.incrementAndGet();
+            return objects(1000);
+        };
+
+        assertTrue(index.get("alice", loader).isEmpty());
+        assertTrue(index.get("alice", loader).isEmpty());
+        assertEquals(0, index.estimatedBytes());
+        // Бакет запомнен как слишком большой и повторно не сканируется
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void indexIsBuiltInBackground_requestDoesNotWait() {
+        List<Runnable> builds = new ArrayList<>();
+        NamespaceIndex index = new NamespaceIndex(new FilesProperties(), new NamespaceVersions.Local(), builds::add);
+
+        assertTrue(index.get("alice", () -> objects(2)).isEmpty());
+        assertTrue(index.get("alice", () -> objects(2)).isEmpty());
+        assertEquals(1, builds.size());
+
+        builds.get(0).run();
+
+        assertEquals(2, index.get("alice", () -> objects(2)).orElseThrow().size());
+    }
+
+    @Test
+    void mutationsOfUnindexedBucketAreIgnored() {
+        NamespaceIndex index = new NamespaceIndex(new FilesProperties(), new NamespaceVersions.Local(), Runnable::run);
+        index.recordPut("alice", new ObjectEntry("a.txt", false, 1, 1, null, null));
+
+        NamespaceTrie trie = index.get("alice", () -> objects(2)).orElseThrow();
+        index.recordCopy("alice", "file0.txt", "copy.txt", null, 5);
+
+        assertEquals(3, trie.size());
+        assertEquals(0, trie.get("copy.txt").size());
+        assertNull(trie.get("a.txt"));
+    }
+
+    @Test
+    void changeOnAnotherNode_isAppliedFromLog_withoutRebuild() {
+        NamespaceVersions versions = new NamespaceVersions.Local();
+        NamespaceIndex node = new NamespaceIndex(eagerVersionCheck(), versions, Runnable::run);
+        NamespaceIndex otherNode = new NamespaceIndex(eagerVersionCheck(), versions, Runnable::run);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Stream<ObjectEntry>> loader = () -> {
+            loads.incrementAndGet();
+            return objects(2);
+        };
+        node.get("alice", loader).orElseThrow();
+        otherNode.get("alice", loader).orElseThrow();
+
+        node.recordPut("alice", new ObjectEntry("own.txt", false, 1, 1, null, null));
+        otherNode.recordDelete("alice", List.of("file0.txt"));
+        otherNode.recordCopy("alice", "file1.txt", "copy.txt", null, 7);
+
+        NamespaceTrie trie = node.get("alice", loader).orElseThrow();
+        assertNotNull(trie.get("own.txt"));
+        assertNull(trie.get("file0.txt"));
+        assertEquals(1, trie.get("copy.txt").size());
+        assertNotNull(otherNode.get("alice", loader).orElseThrow().get("own.txt"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void changesTrimmedFromLog_rebuildIndex() {
+        NamespaceVersions versions = new NamespaceVersions.Local(1);
+        NamespaceIndex node = new NamespaceIndex(eagerVersionCheck(), versions, Runnable::run);
+        NamespaceIndex otherNode = new NamespaceIndex(eagerVersionCheck(), versions, Runnable::run);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Stream<ObjectEntry>> loader = () -> {
+            loads.incrementAndGet();
+            return objects(2);
+        };
+        node.get("alice", loader).orElseThrow();
+
+        otherNode.recordDelete("alice", List.of("file0.txt"));
+        otherNode.recordDelete("alice", List.of("file1.txt"));
+
+        assertTrue(node.get("alice", loader).isEmpty());
+        node.get("alice", loader).orElseThrow();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void changesDuringBuild_areReplayedAfterListing() {
+        NamespaceVersions versions = new NamespaceVersions.Local();
+        NamespaceIndex otherNode = new NamespaceIndex(new FilesProperties(), versions, Runnable::run);
+        List<Runnable> builds = new ArrayList<>();
+        NamespaceIndex node = new NamespaceIndex(new FilesProperties(), versions, builds::add);
+        Supplier<Stream<ObjectEntry>> loader = () -> {
+            // Листинг идёт, пока другой узел удаляет уже прочитанный ключ
+            otherNode.recordDelete("alice", List.of("file0.txt"));
+            return objects(2);
+        };
+
+        node.get("alice", loader);
+        builds.get(0).run();
+
+        NamespaceTrie trie = node.get("alice", loader).orElseThrow();
+        assertNull(trie.get("file0.txt"));
+        assertNotNull(trie.get("file1.txt"));
+    }
+
+    @Test
+    void versionCheck_isCachedForInterval() {
+        AtomicInteger checks = new AtomicInteger();
+        NamespaceVersions.Local local = new NamespaceVersions.Local();
+        NamespaceVersions counting = new NamespaceVersions() {
+            @Override
+            public long current(String bucketName) {
+                checks.incrementAndGet();
+                return local.current(bucketName);
+            }
+
+            @Override
+            public long publish(String bucketName, NamespaceChange change) {
+                return local.publish(bucketName, change);
+            }
+
+            @Override
+            public List<NamespaceChange> changesSince(String bucketName, long afterVersion, long latestVersion) {
+                return local.changesSince(bucketName, afterVersion, latestVersion);
+            }
+        };
+        FilesProperties filesProperties = new FilesProperties();
+        filesProperties.getIndex().setVersionCheckInterval(Duration.ofHours(1));
+        NamespaceIndex index = new NamespaceIndex(filesProperties, counting, Runnable::run);
+
+        index.get("alice", () -> objects(2)).orElseThrow();
+        int afterBuild = checks.get();
+        for (int i = 0; i < 10; i++) {
+            index.get("alice", () -> objects(2)).orElseThrow();
+        }
+
+        assertEquals(afterBuild, checks.get());
+    }
+
+    @Test
+    void unavailableVersions_bypassIndex() {
+        NamespaceVersions broken = new NamespaceVersions() {
+            @Override
+            public long current(String bucketName) {
+                throw new IllegalStateException("Redis недоступен");
+            }
+
+            @Override
+            public long publish(String bucketName, NamespaceChange change) {
+                throw new IllegalStateException("Redis недоступен");
+            }
+
+            @Override
+            public List<NamespaceChange> changesSince(String bucketName, long afterVersion, long latestVersion) {
+                throw new IllegalStateException("Redis недоступен");
+            }
+        };
+        NamespaceIndex index = new NamespaceIndex(new FilesProperties(), broken, Runnable::run);
+
+        assertTrue(index.get("alice", () -> objects(2)).isEmpty());
+        index.recordPut("alice", new ObjectEntry("a.txt", false, 1, 1, null, null));
+    }
+
+    private FilesProperties eagerVersionCheck() {
+        FilesProperties filesProperties = new FilesProperties();
+        filesProperties.getIndex().setVersionCheckInterval(Duration.ZERO);
+        return filesProperties;
+    }
+
+    private Stream<ObjectEntry> objects(int count) {
+        return IntStream.range(0, count).mapToObj(i -> new ObjectEntry("file" + i + ".txt", false, i, i, "etag" + i, "text/plain"));
+    }
+}
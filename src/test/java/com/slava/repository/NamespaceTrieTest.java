@@ -0,0 +1,105 @@
+package com.slava.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NamespaceTrieTest {
+
+    @Test
+    void children_returnsObjectsAndCommonPrefixesOfOneLevel() {
+        NamespaceTrie trie = new NamespaceTrie();
+        trie.put(new ObjectEntry("docs/", false, 0, 1, null, null));
+        trie.put(new ObjectEntry("docs/a.txt", false, 10, 2, null, null));
+        trie.put(new ObjectEntry("docs/archive/2024/report.pdf", false, 20, 3, null, null));
+        trie.put(new ObjectEntry("docs/archive/readme.md", false, 30, 4, null, null));
+        trie.put(new ObjectEntry("docs/b.txt", false, 40, 5, null, null));
+        trie.put(new ObjectEntry("photos/cat.jpg", false, 50, 6, null, null));
+
+        List<ObjectEntry> children = trie.children("docs/");
+
+        assertEquals(List.of("docs/", "docs/a.txt", "docs/archive/", "docs/b.txt"),
+                children.stream().map(ObjectEntry::key).toList());
+        assertTrue(children.get(2).commonPrefix());
+        assertEquals(40, children.get(3).size());
+        // Папка без объекта-маркера тоже видна как общий префикс
+        assertEquals(List.of("docs/", "photos/"), trie.children("").stream().map(ObjectEntry::key).toList());
+        assertEquals(List.of("docs/archive/2024/report.pdf", "docs/archive/readme.md"),
+                keys(trie.subtree("docs/arch", 1000)));
+        assertTrue(trie.children("missing/").isEmpty());
+    }
+
+    @Test
+    void putAndRemove_keepKeysInS3Order() {
+        Random random = new Random(3);
+        TreeSet<String> expected = new TreeSet<>(NamespaceTrie::compareKeys);
+        NamespaceTrie trie = new NamespaceTrie();
+        String[] segments = {"a", "ab", "abc", "b", "файл", "", "😀", "/"};
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int j = random.nextInt(5) + 1; j > 0; j--) {
+                key.append(segments[random.nextInt(segments.length)]);
+            }
+            keys.add(key.toString());
+            trie.put(new ObjectEntry(key.toString(), false, i, i, null, null));
+            expected.add(key.toString());
+        }
+        for (int i = 0; i < keys.size(); i += 3) {
+            trie.remove(keys.get(i));
+            expected.remove(keys.get(i));
+        }
+
+        assertEquals(new ArrayList<>(expected), keys(trie.subtree("", 1000)));
+        // Постраничный обход выдаёт те же ключи в том же порядке
+        assertEquals(new ArrayList<>(expected), keys(trie.subtree("", 7)));
+        assertEquals(expected.size(), trie.size());
+        assertNull(trie.get(keys.get(0)));
+    }
+
+    @Test
+    void estimatedBytes_shrinksWhenKeysAreRemoved() {
+        NamespaceTrie trie = new NamespaceTrie();
+        for (int i = 0; i < 1000; i++) {
+            trie.put(new ObjectEntry("users/alice/photos/2024/img" + i + ".jpg", false, i, i, null, null));
+        }
+        long full = trie.estimatedBytes();
+        for (int i = 0; i < 1000; i++) {
+            trie.remove("users/alice/photos/2024/img" + i + ".jpg");
+        }
+
+        assertTrue(full > 0);
+        assertEquals(0, trie.estimatedBytes());
+        assertEquals(0, trie.size());
+    }
+
+    @Test
+    void subtree_isReadLazilyPageByPage() {
+        NamespaceTrie trie = new NamespaceTrie();
+        for (String key : List.of("docs/a", "docs/b", "docs/c", "docs/d", "photos/e")) {
+            trie.put(new ObjectEntry(key, false, 1, 1, null, null));
+        }
+
+        Iterator<ObjectEntry> subtree = trie.subtree("docs/", 2);
+        assertEquals("docs/a", subtree.next().key());
+        // Ключи, добавленные в ещё не прочитанную часть, попадают в обход, удалённые — нет
+        trie.put(new ObjectEntry("docs/bb", false, 1, 1, null, null));
+        trie.remove("docs/c");
+
+        List<String> rest = new ArrayList<>();
+        subtree.forEachRemaining(entry -> rest.add(entry.key()));
+        assertEquals(List.of("docs/b", "docs/bb", "docs/d"), rest);
+    }
+
+    private static List<String> keys(Iterator<ObjectEntry> entries) {
+        List<String> keys = new ArrayList<>();
+        entries.forEachRemaining(entry -> keys.add(entry.key()));
+        return keys;
+    }
+}
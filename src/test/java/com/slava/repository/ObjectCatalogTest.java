@@ -0,0 +1,101 @@
+package com.slava.repository;
+
+import com.slava.config.FilesProperties;
+import com.slava.dto.ListFolderDto;
+import com.slava.entity.StoredObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ObjectCatalogTest {
+
+    @Mock
+    private StoredObjectRepository storedObjectRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final FilesProperties filesProperties = new FilesProperties();
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void isReconciled_rereadsSyncStateAfterTtl() {
+        ObjectCatalog catalog = new ObjectCatalog(storedObjectRepository, transactionManager, filesProperties, clock::get);
+        when(storedObjectRepository.isReconciled("alice")).thenReturn(true, false);
+
+        assertTrue(catalog.isReconciled("alice"));
+        assertTrue(catalog.isReconciled("alice"));
+        verify(storedObjectRepository, times(1)).isReconciled("alice");
+
+        // Другой узел пометил владельца несверенным: после TTL это видно и здесь
+        clock.addAndGet(filesProperties.getCatalog().getSyncCacheTtl().toNanos());
+        assertFalse(catalog.isReconciled("alice"));
+        verify(storedObjectRepository, times(2)).isReconciled("alice");
+    }
+
+    @Test
+    void recordDelete_leavesTombstoneBeforeDeletingRow() {
+        ObjectCatalog catalog = new ObjectCatalog(storedObjectRepository, transactionManager, filesProperties, clock::get);
+
+        catalog.recordDelete("alice", List.of("docs/a.txt"));
+
+        InOrder order = inOrder(storedObjectRepository);
+        order.verify(storedObjectRepository).insertTombstones(eq("alice"), eq(List.of("docs/a.txt")), any());
+        order.verify(storedObjectRepository).deleteByOwnerAndPaths("alice", List.of("docs/a.txt"));
+    }
+
+    @Test
+    void subtree_readsPagesByKeysetInSeparateTransactions() {
+        ObjectCatalog catalog = new ObjectCatalog(storedObjectRepository, transactionManager, filesProperties, clock::get);
+        String to = "docs/" + ObjectCatalog.MAX_CHAR;
+        when(storedObjectRepository.findObjectsInRange(eq("alice"), eq("docs/"), eq(""), eq(to), any()))
+                .thenReturn(List.of(row("docs/a"), row("docs/b")));
+        when(storedObjectRepository.findObjectsInRange(eq("alice"), eq("docs/"), eq("docs/b"), eq(to), any()))
+                .thenReturn(List.of(row("docs/c")));
+
+        Iterator<StoredObject> subtree = catalog.subtree("alice", "docs/", 2).iterator();
+        assertEquals("docs/a", subtree.next().getPath());
+        // Вторая страница запрашивается, только когда до неё дошло чтение
+        verify(storedObjectRepository, times(1)).findObjectsInRange(any(), any(), any(), any(), any());
+
+        List<String> rest = new ArrayList<>();
+        subtree.forEachRemaining(row -> rest.add(row.getPath()));
+        assertEquals(List.of("docs/b", "docs/c"), rest);
+        verify(transactionManager, times(2)).getTransaction(argThat(definition ->
+                definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW && definition.isReadOnly()));
+    }
+
+    private static StoredObject row(String path) {
+        StoredObject row = new StoredObject();
+        row.setPath(path);
+        return row;
+    }
+
+    @Test
+    void sortedChildren_firstPageStartsBeforeAllRows_nextPageAfterTokenRow() {
+        ObjectCatalog catalog = new ObjectCatalog(storedObjectRepository, transactionManager, filesProperties, clock::get);
+
+        catalog.sortedChildren("alice", "docs/", ListFolderDto.SortField.SIZE, true, null, 0, null, 11);
+        catalog.sortedChildren("alice", "docs/", ListFolderDto.SortField.SIZE, true, false, 42, "docs/b.txt", 11);
+
+        verify(storedObjectRepository).findChildrenBySizeDesc("alice", "docs/", List.of(true, false),
+                Long.MAX_VALUE, ObjectCatalog.MAX_CHAR, 11);
+        verify(storedObjectRepository).findChildrenBySizeDesc("alice", "docs/", List.of(false), 42, "docs/b.txt", 11);
+    }
+}
@@ -0,0 +1,62 @@
+package com.slava.repository;
+
+import com.slava.config.FilesProperties;
+import com.slava.config.MinioProperties;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Рекурсивный листинг синтетического дерева из 1 000 000 ключей (100 × 100 × 100):
+ * последовательная цепочка страниц против параллельного обхода подпапок первого уровня.
+ */
+@Tag("benchmark")
+class ParallelListingBenchmark {
+
+    private static final int WIDTH = 100;
+    private static final long PAGE_LATENCY_MS = 5;
+
+    @Test
+    void parallelListingIsFasterThanSequential() {
+        SyntheticBucket bucket = new SyntheticBucket(WIDTH, PAGE_LATENCY_MS);
+        MinioClient minioClient = mock(MinioClient.class);
+        doAnswer(invocation -> bucket.list(invocation.getArgument(0))).when(minioClient).listObjects(any(ListObjectsArgs.class));
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            double sequential = measure(repository(minioClient, executor, 1), bucket.keyCount());
+            double parallel = measure(repository(minioClient, executor, 8), bucket.keyCount());
+
+            System.out.printf("%-12s %10s %12s%n", "", "ms", "keys/s");
+            System.out.printf("%-12s %10.0f %12.0f%n", "sequential", sequential, bucket.keyCount() / sequential * 1000);
+            System.out.printf("%-12s %10.0f %12.0f%n", "fan-out x8", parallel, bucket.keyCount() / parallel * 1000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private MinioFileRepositoryImpl repository(MinioClient minioClient, ExecutorService executor, int fanOut) {
+        FilesProperties filesProperties = new FilesProperties();
+        filesProperties.getIndex().setEnabled(false);
+        filesProperties.getListing().setFanOutParallelism(fanOut);
+        return new MinioFileRepositoryImpl(minioClient, new MinioProperties(), filesProperties, executor, executor,
+                new AdaptiveConcurrencyLimiter(new MinioProperties().getLimiter()),
+                AdaptiveConcurrencyLimiter.fixed(new MinioProperties().getTransfers()),
+                new NamespaceIndex(filesProperties, new NamespaceVersions.Local(), Runnable::run), mock(ObjectCatalog.class));
+    }
+
+    private double measure(MinioFileRepositoryImpl repository, long expected) {
+        long start = System.nanoTime();
+        // Параллельный обход остался только у листингов со скоростью хранилища
+        assertEquals(expected, repository.listObjects("bucket", SyntheticBucket.ROOT).size());
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
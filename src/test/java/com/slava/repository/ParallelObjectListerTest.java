@@ -0,0 +1,185 @@
+package com.slava.repository;
+
+import com.slava.config.MinioProperties;
+import com.slava.exception.FileException;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ParallelObjectListerTest {
+
+    private ExecutorService executor;
+    private MinioClient minioClient;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(8);
+        minioClient = mock(MinioClient.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void list_returnsEveryKeyOnceAndListsSubfoldersRecursively() {
+        SyntheticBucket bucket = new SyntheticBucket(12, 0);
+        doAnswer(invocation -> bucket.list(invocation.getArgument(0))).when(minioClient).listObjects(any(ListObjectsArgs.class));
+
+        List<String> keys;
+        try (Stream<ObjectEntry> objects = lister(executor, 4).list("bucket", SyntheticBucket.ROOT)) {
+            keys = objects.map(ObjectEntry::key).toList();
+        }
+
+        assertEquals(bucket.keyCount(), keys.size());
+        assertEquals(bucket.keyCount(), Set.copyOf(keys).size());
+        assertTrue(keys.stream().allMatch(key -> key.startsWith(SyntheticBucket.ROOT) && key.endsWith(".bin")));
+        // Один листинг уровня с delimiter и по рекурсивному листингу на каждую подпапку первого уровня
+        verify(minioClient, times(1 + 12)).listObjects(any(ListObjectsArgs.class));
+    }
+
+    @Test
+    void list_requestsPagesOnLimiterWithoutHoldingSlots() {
+        SyntheticBucket bucket = new SyntheticBucket(12, 0);
+        doAnswer(invocation -> bucket.list(invocation.getArgument(0))).when(minioClient).listObjects(any(ListObjectsArgs.class));
+        MinioProperties.Limiter settings = new MinioProperties().getLimiter();
+        settings.setInitialLimit(1);
+        settings.setMinLimit(1);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings);
+
+        List<String> keys;
+        try (Stream<ObjectEntry> objects = new ParallelObjectLister(minioClient, limiter, executor, 4, 50)
+                .list("bucket", SyntheticBucket.ROOT)) {
+            keys = objects.map(ObjectEntry::key).toList();
+        }
+
+        assertEquals(bucket.keyCount(), Set.copyOf(keys).size());
+        assertEquals(bucket.keyCount(), keys.size());
+        // 144 ключа подпапки — три страницы по 50, каждая на своём месте единственного слота
+        verify(minioClient, times(1 + 12 * 3)).listObjects(any(ListObjectsArgs.class));
+        assertEquals(0, limiter.inFlight());
+        assertEquals(0, limiter.rejected());
+    }
+
+    @Test
+    void list_descendsIntoSingleSubfolder() {
+        SyntheticBucket bucket = new SyntheticBucket(3, 0);
+        doAnswer(invocation -> bucket.list(invocation.getArgument(0))).when(minioClient).listObjects(any(ListObjectsArgs.class));
+
+        Set<String> keys;
+        try (Stream<ObjectEntry> objects = lister(executor, 4).list("bucket", "root/f001/")) {
+            keys = objects.map(ObjectEntry::key).collect(Collectors.toSet());
+        }
+
+        assertEquals(9, keys.size());
+        assertTrue(keys.stream().allMatch(key -> key.startsWith("root/f001/")));
+    }
+
+    @Test
+    void list_singleThreadPool_moreFoldersThanParallelism_completes() {
+        SyntheticBucket bucket = new SyntheticBucket(12, 0);
+        doAnswer(invocation -> bucket.list(invocation.getArgument(0))).when(minioClient).listObjects(any(ListObjectsArgs.class));
+        ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        try {
+            // Листинг уровня не держит поток в ожидании слота: иначе единственный поток ждал бы сам себя
+            long count = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                try (Stream<ObjectEntry> objects = lister(singleThread, 4).list("bucket", SyntheticBucket.ROOT)) {
+                    return objects.count();
+                }
+            });
+            assertEquals(bucket.keyCount(), count);
+        } finally {
+            singleThread.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentListingsWithPrefetch_onSmallPools_complete() throws Exception {
+        SyntheticBucket bucket = new SyntheticBucket(12, 0);
+        doAnswer(invocation -> bucket.list(invocation.getArgument(0))).when(minioClient).listObjects(any(ListObjectsArgs.class));
+        ExecutorService listingExecutor = Executors.newFixedThreadPool(2);
+        ExecutorService storageExecutor = Executors.newFixedThreadPool(2);
+        ExecutorService readers = Executors.newFixedThreadPool(6);
+        ParallelObjectLister lister = lister(listingExecutor, 4);
+        try {
+            // Читатель, как сборка архива, на каждый ключ ждёт задачу предзагрузки в общем пуле
+            List<Future<Long>> listings = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                listings.add(readers.submit(() -> {
+                    try (Stream<ObjectEntry> objects = lister.list("bucket", SyntheticBucket.ROOT)) {
+                        return objects.map(object -> storageExecutor.submit(object::key))
+                                .filter(prefetch -> !getQuietly(prefetch).isEmpty())
+                                .count();
+                    }
+                }));
+            }
+            for (Future<Long> listing : listings) {
+                assertEquals(bucket.keyCount(), listing.get(20, TimeUnit.SECONDS));
+            }
+        } finally {
+            readers.shutdownNow();
+            storageExecutor.shutdownNow();
+            listingExecutor.shutdownNow();
+        }
+    }
+
+    private ParallelObjectLister lister(ExecutorService listingExecutor, int parallelism) {
+        return new ParallelObjectLister(minioClient, new AdaptiveConcurrencyLimiter(new MinioProperties().getLimiter()),
+                listingExecutor, parallelism, 1000);
+    }
+
+    private static String getQuietly(Future<String> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void list_propagatesListingFailure() {
+        SyntheticBucket bucket = new SyntheticBucket(4, 0);
+        doAnswer(invocation -> {
+            ListObjectsArgs args = invocation.getArgument(0);
+            if (args.prefix().equals("root/f002/")) {
+                throw new IllegalStateException("Connection reset");
+            }
+            return bucket.list(args);
+        }).when(minioClient).listObjects(any(ListObjectsArgs.class));
+
+        try (Stream<ObjectEntry> objects = lister(executor, 2).list("bucket", SyntheticBucket.ROOT)) {
+            assertThrows(FileException.class, objects::count);
+        }
+    }
+
+    @Test
+    void close_stopsUnfinishedListings() throws Exception {
+        SyntheticBucket bucket = new SyntheticBucket(40, 1);
+        doAnswer(invocation -> bucket.list(invocation.getArgument(0))).when(minioClient).listObjects(any(ListObjectsArgs.class));
+
+        try (Stream<ObjectEntry> objects = lister(executor, 4).list("bucket", SyntheticBucket.ROOT)) {
+            assertTrue(objects.findFirst().isPresent());
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
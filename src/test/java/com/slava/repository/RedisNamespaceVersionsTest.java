@@ -0,0 +1,75 @@
+package com.slava.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.slava.config.FilesProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisNamespaceVersionsTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ListOperations<String, String> listOperations;
+
+    // Журнал бакета так, как его пишет скрипт публикации
+    private final List<String> log = new ArrayList<>();
+    private RedisNamespaceVersions versions;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForList()).thenReturn(listOperations);
+        lenient().when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any())).thenAnswer(invocation -> {
+            long version = log.size() + 1;
+            log.add(version + ":" + invocation.getArgument(2));
+            return version;
+        });
+        lenient().when(listOperations.range(anyString(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            long count = -invocation.<Long>getArgument(1);
+            return log.subList((int) Math.max(log.size() - count, 0), log.size());
+        });
+        versions = new RedisNamespaceVersions(redisTemplate, new ObjectMapper(), new FilesProperties());
+    }
+
+    @Test
+    void publishedChanges_areReadBackInOrder() {
+        ObjectEntry put = new ObjectEntry("docs/a.txt", false, 5, 10, "etag", "text/plain");
+        versions.publish("alice", NamespaceChange.put(put));
+        versions.publish("alice", NamespaceChange.delete(List.of("docs/b.txt")));
+        versions.publish("alice", NamespaceChange.copy("docs/a.txt", new ObjectEntry("c.txt", false, 0, 20, null, null)));
+
+        List<NamespaceChange> changes = versions.changesSince("alice", 0, 3);
+
+        assertEquals(List.of(1L, 2L, 3L), changes.stream().map(NamespaceChange::version).toList());
+        assertEquals(put, changes.get(0).entry());
+        assertEquals(List.of("docs/b.txt"), changes.get(1).keys());
+        assertEquals("docs/a.txt", changes.get(2).sourceKey());
+    }
+
+    @Test
+    void changesSince_readsOnlyTheMissingTail() {
+        for (int i = 0; i < 5; i++) {
+            versions.publish("alice", NamespaceChange.delete(List.of("file" + i)));
+        }
+
+        List<NamespaceChange> changes = versions.changesSince("alice", 3, 5);
+
+        assertEquals(List.of(4L, 5L), changes.stream().map(NamespaceChange::version).toList());
+        verify(listOperations).range("files:namespace:log:alice", -2, -1);
+    }
+}
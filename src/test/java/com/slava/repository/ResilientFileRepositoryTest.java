@@ -0,0 +1,281 @@
+package com.slava.repository;
+
+import com.slava.config.FilesProperties;
+import com.slava.exception.FileException;
+import com.slava.exception.StorageOverloadedException;
+import com.slava.exception.StorageUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResilientFileRepositoryTest {
+
+    private static final byte[] CONTENT = "Hello".getBytes();
+
+    private final FaultInjectingStorage storage = new FaultInjectingStorage();
+    private final FilesProperties filesProperties = new FilesProperties();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicBoolean storageQueueing = new AtomicBoolean();
+    private ExecutorService hedgeExecutor;
+
+    @BeforeEach
+    void setUp() {
+        hedgeExecutor = Executors.newCachedThreadPool();
+        FilesProperties.Resilience resilience = filesProperties.getResilience();
+        resilience.setRetryBaseDelay(Duration.ofMillis(1));
+        resilience.setRetryMaxDelay(Duration.ofMillis(5));
+        resilience.setHedgeEnabled(false);
+        storage.put("bucket", "file.txt", CONTENT);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    private ResilientFileRepository repository() {
+        return new ResilientFileRepository(storage, filesProperties, hedgeExecutor, storageQueueing::get, clock::get);
+    }
+
+    @Test
+    void downloadFile_transientFailure_isRetried() throws Exception {
+        ResilientFileRepository repository = repository();
+        storage.failNext(2);
+
+        Optional<InputStream> result = repository.downloadFile("bucket", "file.txt");
+
+        assertArrayEquals(CONTENT, result.orElseThrow().readAllBytes());
+        assertEquals(3, storage.requests());
+    }
+
+    @Test
+    void statObject_retriesExhausted_throwsLastError() {
+        ResilientFileRepository repository = repository();
+        storage.failNext(5);
+
+        assertThrows(FileException.class, () -> repository.statObject("bucket", "file.txt"));
+        assertEquals(3, storage.requests());
+    }
+
+    @Test
+    void statObject_slowDown_isRetried() {
+        ResilientFileRepository repository = repository();
+        storage.rejectNext("SlowDown");
+
+        assertTrue(repository.statObject("bucket", "file.txt").isPresent());
+        assertEquals(2, storage.requests());
+    }
+
+    @Test
+    void statObject_accessDenied_isNotRetried() {
+        ResilientFileRepository repository = repository();
+        storage.rejectNext("AccessDenied");
+
+        assertThrows(FileException.class, () -> repository.statObject("bucket", "file.txt"));
+        assertEquals(1, storage.requests());
+    }
+
+    @Test
+    void downloadFile_missingObject_returnsEmptyWithoutRetry() {
+        assertTrue(repository().downloadFile("bucket", "missing.txt").isEmpty());
+        assertEquals(1, storage.requests());
+    }
+
+    @Test
+    void uploadFile_transientFailure_isNotRetried() {
+        ResilientFileRepository repository = repository();
+        storage.failNext(1);
+
+        assertThrows(FileException.class, () -> repository.uploadFile("bucket", "new.txt",
+                new ByteArrayInputStream(CONTENT), CONTENT.length, "text/plain"));
+        assertEquals(1, storage.requests());
+    }
+
+    @Test
+    void breaker_opensAfterConsecutiveFailures_andFailsFast() {
+        filesProperties.getResilience().setMaxAttempts(1);
+        filesProperties.getResilience().setBreakerFailureThreshold(3);
+        ResilientFileRepository repository = repository();
+        storage.failNext(3);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(FileException.class, () -> repository.bucketExists("bucket"));
+        }
+
+        assertThrows(StorageUnavailableException.class, () -> repository.bucketExists("bucket"));
+        assertThrows(StorageUnavailableException.class, () -> repository.streamObjects("bucket", ""));
+        assertEquals(3, storage.requests());
+        assertEquals(CircuitBreaker.State.OPEN, repository.breakerState());
+    }
+
+    @Test
+    void breaker_afterOpenDuration_trialSuccessCloses() {
+        filesProperties.getResilience().setMaxAttempts(1);
+        filesProperties.getResilience().setBreakerFailureThreshold(2);
+        ResilientFileRepository repository = repository();
+        storage.failNext(2);
+        assertThrows(FileException.class, () -> repository.bucketExists("bucket"));
+        assertThrows(FileException.class, () -> repository.bucketExists("bucket"));
+
+        clock.addAndGet(filesProperties.getResilience().getBreakerOpenDuration().toNanos());
+
+        assertTrue(repository.bucketExists("bucket"));
+        assertEquals(CircuitBreaker.State.CLOSED, repository.breakerState());
+    }
+
+    @Test
+    void breaker_trialFailure_reopens() {
+        filesProperties.getResilience().setMaxAttempts(1);
+        filesProperties.getResilience().setBreakerFailureThreshold(2);
+        ResilientFileRepository repository = repository();
+        storage.failNext(3);
+        assertThrows(FileException.class, () -> repository.bucketExists("bucket"));
+        assertThrows(FileException.class, () -> repository.bucketExists("bucket"));
+        clock.addAndGet(filesProperties.getResilience().getBreakerOpenDuration().toNanos());
+
+        assertThrows(FileException.class, () -> repository.bucketExists("bucket"));
+
+        assertEquals(CircuitBreaker.State.OPEN, repository.breakerState());
+        assertThrows(StorageUnavailableException.class, () -> repository.bucketExists("bucket"));
+    }
+
+    @Test
+    void breaker_clientErrors_doNotCount() {
+        filesProperties.getResilience().setBreakerFailureThreshold(2);
+        ResilientFileRepository repository = repository();
+        for (int i = 0; i < 5; i++) {
+            storage.rejectNext("AccessDenied");
+            assertThrows(FileException.class, () -> repository.statObject("bucket", "file.txt"));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, repository.breakerState());
+    }
+
+    @Test
+    void overload_isNotRetried_andDoesNotTripBreaker() {
+        filesProperties.getResilience().setBreakerFailureThreshold(1);
+        ResilientFileRepository repository = repository();
+        storage.throwNext(new StorageOverloadedException("Хранилище перегружено"));
+
+        assertThrows(StorageOverloadedException.class, () -> repository.statObject("bucket", "file.txt"));
+
+        assertEquals(1, storage.requests());
+        assertEquals(CircuitBreaker.State.CLOSED, repository.breakerState());
+    }
+
+    @Test
+    void breaker_overloadedTrial_letsNextCallTry() {
+        filesProperties.getResilience().setMaxAttempts(1);
+        filesProperties.getResilience().setBreakerFailureThreshold(1);
+        ResilientFileRepository repository = repository();
+        storage.failNext(1);
+        assertThrows(FileException.class, () -> repository.bucketExists("bucket"));
+        clock.addAndGet(filesProperties.getResilience().getBreakerOpenDuration().toNanos());
+        storage.throwNext(new StorageOverloadedException("Хранилище перегружено"));
+
+        assertThrows(StorageOverloadedException.class, () -> repository.bucketExists("bucket"));
+
+        assertTrue(repository.bucketExists("bucket"));
+        assertEquals(CircuitBreaker.State.CLOSED, repository.breakerState());
+    }
+
+    @Test
+    void downloadFile_slowRequest_isHedged_andLoserClosed() throws Exception {
+        filesProperties.getResilience().setHedgeEnabled(true);
+        filesProperties.getResilience().setHedgeMinDelay(Duration.ofMillis(50));
+        ResilientFileRepository repository = repository();
+        // Накапливаем быстрые замеры, чтобы появился перцентиль
+        for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+            repository.downloadFile("bucket", "file.txt").orElseThrow().close();
+        }
+        int warmupRequests = storage.requests();
+        storage.delayNext(1000);
+
+        long start = System.nanoTime();
+        Optional<InputStream> result = repository.downloadFile("bucket", "file.txt");
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertArrayEquals(CONTENT, result.orElseThrow().readAllBytes());
+        assertTrue(elapsedMs < 500, "Ответ должен прийти от дублирующего запроса, прошло " + elapsedMs + " мс");
+        assertEquals(warmupRequests + 2, storage.requests());
+        // Медленный запрос завершится позже, и его поток должен закрыть сам репозиторий
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!slowStreamClosed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(slowStreamClosed());
+        assertFalse(storage.openedStreams().get(LatencyTracker.MIN_SAMPLES).isClosed());
+    }
+
+    @Test
+    void statObject_hedgeBudgetExhausted_waitsForFirstRequest() {
+        filesProperties.getResilience().setHedgeEnabled(true);
+        filesProperties.getResilience().setHedgeMinDelay(Duration.ofMillis(20));
+        filesProperties.getResilience().setHedgeBudgetBurst(1);
+        ResilientFileRepository repository = warmedUp();
+        int warmupRequests = storage.requests();
+
+        storage.delayNext(200);
+        repository.statObject("bucket", "file.txt");
+        storage.delayNext(200);
+        repository.statObject("bucket", "file.txt");
+
+        // Прогрев накопил один токен: дубль получает только первый медленный запрос
+        assertEquals(warmupRequests + 3, storage.requests());
+    }
+
+    @Test
+    void statObject_limiterQueueing_isNotHedged() {
+        filesProperties.getResilience().setHedgeEnabled(true);
+        filesProperties.getResilience().setHedgeMinDelay(Duration.ofMillis(20));
+        ResilientFileRepository repository = warmedUp();
+        int warmupRequests = storage.requests();
+        storageQueueing.set(true);
+
+        storage.delayNext(200);
+        repository.statObject("bucket", "file.txt");
+
+        assertEquals(warmupRequests + 1, storage.requests());
+    }
+
+    @Test
+    void statObject_hedgeExecutorSaturated_runsWithoutHedge() {
+        filesProperties.getResilience().setHedgeEnabled(true);
+        ResilientFileRepository repository = warmedUp();
+        hedgeExecutor.shutdown();
+
+        assertTrue(repository.statObject("bucket", "file.txt").isPresent());
+    }
+
+    private ResilientFileRepository warmedUp() {
+        ResilientFileRepository repository = repository();
+        for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+            repository.statObject("bucket", "file.txt");
+        }
+        return repository;
+    }
+
+    private boolean slowStreamClosed() {
+        return storage.openedStreams().size() == LatencyTracker.MIN_SAMPLES + 2
+                && storage.openedStreams().get(LatencyTracker.MIN_SAMPLES + 1).isClosed();
+    }
+
+    @Test
+    void isTransient_followsCauseChain() {
+        assertTrue(ResilientFileRepository.isTransient(new FileException("x", new SocketTimeoutException())));
+        assertFalse(ResilientFileRepository.isTransient(new FileException("x")));
+        assertFalse(ResilientFileRepository.isTransient(new StorageUnavailableException("x")));
+    }
+}
@@ -0,0 +1,99 @@
+package com.slava.repository;
+
+import com.slava.config.MinioProperties;
+import com.slava.dto.FileMetadataDto;
+import com.slava.exception.StorageOverloadedException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Перегрузка MinIO: хранилище обслуживает 16 запросов одновременно по 5 мс, остальные ждут у него
+ * в очереди, а 200 клиентов шлют stat без пауз. Сравниваются задержка на стороне MinIO, число запросов
+ * в нём и отказы без ограничителя и с {@link AdaptiveConcurrencyLimiter}.
+ */
+@Tag("benchmark")
+class StorageOverloadBenchmark {
+
+    private static final int CLIENTS = 200;
+    private static final int STORAGE_CAPACITY = 16;
+    private static final long SERVICE_MS = 5;
+    private static final long DURATION_MS = 5_000;
+
+    @Test
+    void storageLatencyWithAndWithoutLimiter() throws Exception {
+        System.out.printf("%-8s %8s %14s %16s %10s %8s%n",
+                "limiter", "ops/s", "minio p99 ms", "minio in flight", "rejected", "limit");
+        run(false);
+        run(true);
+    }
+
+    private static void run(boolean limiterEnabled) throws Exception {
+        Semaphore capacity = new Semaphore(STORAGE_CAPACITY, true);
+        AtomicInteger storageInFlight = new AtomicInteger();
+        AtomicLong inFlightSum = new AtomicLong();
+        List<Long> storageLatencies = Collections.synchronizedList(new ArrayList<>());
+        CustomFileRepository minio = mock(CustomFileRepository.class);
+        when(minio.statObject(anyString(), anyString())).thenAnswer(invocation -> {
+            long start = System.nanoTime();
+            inFlightSum.addAndGet(storageInFlight.incrementAndGet());
+            try {
+                capacity.acquire();
+                try {
+                    Thread.sleep(SERVICE_MS);
+                } finally {
+                    capacity.release();
+                }
+            } finally {
+                storageInFlight.decrementAndGet();
+            }
+            storageLatencies.add(System.nanoTime() - start);
+            return Optional.of(new FileMetadataDto("file.txt", 1, "text/plain", null, null));
+        });
+        MinioProperties minioProperties = new MinioProperties();
+        minioProperties.getLimiter().setEnabled(limiterEnabled);
+        ConcurrencyLimitedFileRepository repository = new ConcurrencyLimitedFileRepository(minio,
+                new AdaptiveConcurrencyLimiter(minioProperties.getLimiter()),
+                AdaptiveConcurrencyLimiter.fixed(minioProperties.getTransfers()));
+
+        AtomicLong completed = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        long deadline = System.currentTimeMillis() + DURATION_MS;
+        for (int i = 0; i < CLIENTS; i++) {
+            clients.execute(() -> {
+                while (System.currentTimeMillis() < deadline) {
+                    try {
+                        repository.statObject("bucket", "file.txt");
+                        completed.incrementAndGet();
+                    } catch (StorageOverloadedException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(DURATION_MS + 10_000, TimeUnit.MILLISECONDS);
+
+        List<Long> latencies = new ArrayList<>(storageLatencies);
+        Collections.sort(latencies);
+        double p99 = latencies.get(latencies.size() * 99 / 100) / 1e6;
+        double avgInFlight = (double) inFlightSum.get() / latencies.size();
+        System.out.printf("%-8s %8.0f %14.1f %16.1f %10d %8s%n", limiterEnabled ? "on" : "off",
+                completed.get() * 1000.0 / DURATION_MS, p99, avgInFlight, rejected.get(),
+                limiterEnabled ? String.valueOf(repository.limiter().limit()) : "-");
+    }
+}
@@ -0,0 +1,102 @@
+package com.slava.repository;
+
+import io.minio.ListObjectsArgs;
+import io.minio.Result;
+import io.minio.messages.Contents;
+import io.minio.messages.Item;
+
+import java.util.Iterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Синтетическое дерево root/fNNN/sNNN/fileNNN.bin для mock MinioClient. Ключи генерируются
+ * по запросу в порядке S3, каждая страница из 1000 ключей «стоит» pageLatencyMs, как запрос к MinIO.
+ */
+final class SyntheticBucket {
+
+    static final String ROOT = "root/";
+    private static final int PAGE_SIZE = 1000;
+
+    private final int width;
+    private final long pageLatencyMs;
+
+    SyntheticBucket(int width, long pageLatencyMs) {
+        this.width = width;
+        this.pageLatencyMs = pageLatencyMs;
+    }
+
+    long keyCount() {
+        return (long) width * width * width;
+    }
+
+    Iterable<Result<Item>> list(ListObjectsArgs args) {
+        String prefix = args.prefix();
+        int level = (int) prefix.chars().filter(c -> c == '/').count() - 1;
+        Stream<Item> items = args.recursive() || level == 2
+                ? keys(prefix, level).map(SyntheticBucket::file)
+                : IntStream.range(0, width).mapToObj(i -> (Item) new Contents(prefix + name(level, i) + "/"));
+        // Продолжение листинга после последнего ключа предыдущей страницы
+        String startAfter = args.startAfter();
+        if (startAfter != null && !startAfter.isEmpty()) {
+            items = items.filter(item -> item.objectName().compareTo(startAfter) > 0);
+        }
+        Iterator<Item> iterator = items.iterator();
+        return () -> new Iterator<>() {
+            private int served;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Result<Item> next() {
+                if (served++ % PAGE_SIZE == 0) {
+                    pause();
+                }
+                return new Result<>(iterator.next());
+            }
+        };
+    }
+
+    private Stream<String> keys(String prefix, int level) {
+        if (level == 2) {
+            return IntStream.range(0, width).mapToObj(i -> prefix + name(level, i));
+        }
+        return IntStream.range(0, width).boxed().flatMap(i -> keys(prefix + name(level, i) + "/", level + 1));
+    }
+
+    private static String name(int level, int index) {
+        return switch (level) {
+            case 0 -> String.format("f%03d", index);
+            case 1 -> String.format("s%03d", index);
+            default -> String.format("file%03d.bin", index);
+        };
+    }
+
+    private static Item file(String key) {
+        return new Item() {
+            @Override
+            public String objectName() {
+                return key;
+            }
+
+            @Override
+            public long size() {
+                return 1024;
+            }
+        };
+    }
+
+    private void pause() {
+        if (pageLatencyMs == 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pageLatencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.slava.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+
+/**
+ * Сравнение однопоточного ZipOutputStream (DEFLATE для всего) с ZipArchiveWriter
+ * (STORED для сжатых форматов, параллельный DEFLATE для крупных файлов) по времени и CPU.
+ */
+@Tag("benchmark")
+class ArchiveCompressionBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    @Test
+    void parallelArchiveIsFasterThanZipOutputStream() throws Exception {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 4; i++) {
+            files.put("logs/app" + i + ".log", logContent(random, 32 * 1024 * 1024));
+            byte[] media = new byte[16 * 1024 * 1024];
+            random.nextBytes(media);
+            files.put("media/photo" + i + ".jpg", media);
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // прогрев
+            zipOutputStream(files);
+            archiveWriter(files, executor, threads);
+
+            double[] baseline = measure(() -> zipOutputStream(files));
+            double[] parallel = measure(() -> archiveWriter(files, executor, threads));
+            System.out.printf("%-20s %10s %10s%n", "", "wall, ms", "cpu, ms");
+            System.out.printf("%-20s %10.0f %10.0f%n", "ZipOutputStream", baseline[0], baseline[1]);
+            System.out.printf("%-20s %10.0f %10.0f%n", "ZipArchiveWriter", parallel[0], parallel[1]);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double[] measure(ArchiveTask task) throws IOException {
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        long cpuStart = os.getProcessCpuTime();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            task.run();
+        }
+        double wall = (System.nanoTime() - start) / 1e6 / ROUNDS;
+        double cpu = (os.getProcessCpuTime() - cpuStart) / 1e6 / ROUNDS;
+        return new double[]{wall, cpu};
+    }
+
+    private void zipOutputStream(Map<String, byte[]> files) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(OutputStream.nullOutputStream())) {
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                zos.putNextEntry(new ZipEntry(file.getKey()));
+                zos.write(file.getValue());
+                zos.closeEntry();
+            }
+        }
+    }
+
+    private void archiveWriter(Map<String, byte[]> files, ExecutorService executor, int threads) throws IOException {
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(OutputStream.nullOutputStream(), executor, 6, 256 * 1024, 2 * threads)) {
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                if (CompressionPolicy.isAlreadyCompressed(file.getKey(), file.getValue())) {
+                    zip.putUncompressed(file.getKey(), new ByteArrayInputStream(file.getValue()));
+                } else {
+                    zip.putDeflatedParallel(file.getKey(), new ByteArrayInputStream(file.getValue()));
+                }
+            }
+            zip.finish();
+        }
+    }
+
+    private byte[] logContent(Random random, int size) {
+        StringBuilder builder = new StringBuilder(size + 100);
+        while (builder.length() < size) {
+            builder.append("2025-01-01T12:00:00 INFO  [storage-").append(random.nextInt(32))
+                    .append("] request ").append(random.nextInt(1_000_000)).append(" completed in ")
+                    .append(random.nextInt(500)).append(" ms\n");
+        }
+        return builder.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @FunctionalInterface
+    private interface ArchiveTask {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,68 @@
+package com.slava.service;
+
+import com.slava.config.FilesProperties;
+import com.slava.repository.CustomFileRepository;
+import com.slava.repository.ObjectEntry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Пропускная способность сборки ZIP-архива в зависимости от глубины предзагрузки.
+ */
+@Tag("benchmark")
+class ArchivePrefetchBenchmark {
+
+    private static final int OBJECT_COUNT = 400;
+    private static final int OBJECT_SIZE = 16 * 1024;
+    private static final long GET_LATENCY_MS = 5;
+
+    @Test
+    void archiveThroughputByPrefetchDepth() {
+        CustomFileRepository fileRepository = mock(CustomFileRepository.class);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            names.add("folder/file" + i + ".bin");
+        }
+        byte[] content = new byte[OBJECT_SIZE];
+        when(fileRepository.streamObjects("bucket", "folder/")).thenAnswer(invocation -> names.stream()
+                .map(name -> new ObjectEntry(name, false, OBJECT_SIZE, 0, null, null)));
+        // Имитируем задержку MinIO на каждый GET
+        when(fileRepository.downloadFile(eq("bucket"), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(GET_LATENCY_MS);
+            return Optional.of(new ByteArrayInputStream(content));
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        try {
+            System.out.printf("%-8s %12s %12s%n", "depth", "objects/s", "MB/s");
+            for (int depth : new int[]{1, 2, 4, 8, 16, 32}) {
+                FilesProperties filesProperties = new FilesProperties();
+                filesProperties.getArchive().setPrefetchDepth(depth);
+                FolderService folderService = new FolderService(fileRepository, mock(FileService.class), executor, executor, filesProperties,
+                        ListingCache.NONE);
+
+                long start = System.nanoTime();
+                folderService.downloadFolderAsZip("bucket", "folder/", OutputStream.nullOutputStream());
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                double objectsPerSecond = OBJECT_COUNT / seconds;
+                double megabytesPerSecond = (double) OBJECT_COUNT * OBJECT_SIZE / seconds / (1024 * 1024);
+                System.out.printf("%-8d %12.1f %12.2f%n", depth, objectsPerSecond, megabytesPerSecond);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.slava.service;
+
+import com.slava.config.FilesProperties;
+import com.slava.exception.FileNotFoundException;
+import com.slava.exception.FolderDownloadException;
+import com.slava.exception.StorageOverloadedException;
+import com.slava.repository.AsyncFileRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncFileServiceTest {
+
+    @Mock
+    private AsyncFileRepository asyncFileRepository;
+
+    @Mock
+    private FolderService folderService;
+
+    @Mock
+    private ListingCache listingCache;
+
+    @TempDir
+    private Path spoolDirectory;
+
+    private final FilesProperties filesProperties = new FilesProperties();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private AsyncFileService asyncFileService;
+
+    @BeforeEach
+    void setUp() {
+        filesProperties.getTransfer().setSpoolDirectory(spoolDirectory.toString());
+        asyncFileService = new AsyncFileService(asyncFileRepository, folderService, executor, filesProperties, listingCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void openFile_missingObject_failsWithFileNotFound() {
+        when(asyncFileRepository.downloadFile("bucket", "missing.txt"))
+                .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> asyncFileService.openFile("bucket", "missing.txt").get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(FileNotFoundException.class, error.getCause());
+    }
+
+    @Test
+    void uploadFile_deletesSpoolFileAndInvalidatesListings() throws Exception {
+        Path content = asyncFileService.createSpoolFile("upload-");
+        when(asyncFileRepository.uploadFile("bucket", "docs/file.txt", content, "text/plain"))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        asyncFileService.uploadFile("bucket", "docs/file.txt", content, "text/plain").get(5, TimeUnit.SECONDS);
+
+        assertFalse(Files.exists(content));
+        verify(listingCache).invalidateFolders("bucket", List.of("", "docs/"));
+    }
+
+    @Test
+    void uploadFile_failure_stillDeletesSpoolFile() throws Exception {
+        Path content = asyncFileService.createSpoolFile("upload-");
+        when(asyncFileRepository.uploadFile(anyString(), anyString(), any(Path.class), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("minio down")));
+
+        assertThrows(ExecutionException.class,
+                () -> asyncFileService.uploadFile("bucket", "file.txt", content, "text/plain").get(5, TimeUnit.SECONDS));
+
+        assertFalse(Files.exists(content));
+    }
+
+    @Test
+    void spoolFolderZip_writesArchiveToSpoolDirectory() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(2).write(new byte[]{1, 2, 3});
+            return null;
+        }).when(folderService).downloadFolderAsZip(eq("bucket"), eq("docs/"), any(OutputStream.class));
+
+        Path archive = asyncFileService.spoolFolderZip("bucket", "docs/").get(5, TimeUnit.SECONDS);
+
+        assertEquals(spoolDirectory, archive.getParent());
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(archive));
+    }
+
+    @Test
+    void spoolFolderZip_failure_removesPartialArchive() throws Exception {
+        doThrow(new FolderDownloadException("Ошибка при создании ZIP-архива"))
+                .when(folderService).downloadFolderAsZip(eq("bucket"), eq("docs/"), any(OutputStream.class));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> asyncFileService.spoolFolderZip("bucket", "docs/").get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(FolderDownloadException.class, error.getCause());
+        try (var files = Files.list(spoolDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void spoolFolderZip_queueFull_failsWithOverloaded() throws Exception {
+        ThreadPoolExecutor bounded = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            bounded.execute(() -> awaitQuietly(release));
+            bounded.execute(() -> { });
+            AsyncFileService service = new AsyncFileService(asyncFileRepository, folderService, bounded,
+                    filesProperties, listingCache);
+
+            ExecutionException error = assertThrows(ExecutionException.class,
+                    () -> service.spoolFolderZip("bucket", "docs/").get(5, TimeUnit.SECONDS));
+
+            assertInstanceOf(StorageOverloadedException.class, error.getCause());
+            verifyNoInteractions(folderService);
+        } finally {
+            release.countDown();
+            bounded.shutdownNow();
+        }
+    }
+
+    @Test
+    void spoolFolderZip_cancelled_stopsWritingAndRemovesArchive() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            try {
+                while (true) {
+                    out.write(new byte[1024]);
+                    writing.countDown();
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                }
+            } finally {
+                stopped.countDown();
+            }
+        }).when(folderService).downloadFolderAsZip(eq("bucket"), eq("docs/"), any(OutputStream.class));
+
+        CompletableFuture<Path> archive = asyncFileService.spoolFolderZip("bucket", "docs/");
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        archive.cancel(true);
+
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        try (var files = Files.list(spoolDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.slava.service;
+
+import com.slava.config.FilesProperties;
+import com.slava.repository.CustomFileRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BucketProvisionerTest {
+
+    @Mock
+    private CustomFileRepository fileRepository;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final FilesProperties filesProperties = new FilesProperties();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private BucketProvisioner provisioner;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        provisioner = provisioner();
+    }
+
+    private BucketProvisioner provisioner() {
+        return new BucketProvisioner(fileRepository, redisTemplate, executor, filesProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void ensureExists_bucketDoesNotExist_createsBucket() {
+        when(fileRepository.bucketExists("test-bucket")).thenReturn(false);
+
+        provisioner.ensureExists("test-bucket");
+
+        verify(fileRepository).createBucket("test-bucket");
+        verify(valueOperations).set(eq("files:buckets:known:test-bucket"), eq("1"), any(Duration.class));
+    }
+
+    @Test
+    void ensureExists_bucketExists_noCreateBucketCall() {
+        when(fileRepository.bucketExists("test-bucket")).thenReturn(true);
+
+        provisioner.ensureExists("test-bucket");
+
+        verify(fileRepository, never()).createBucket("test-bucket");
+    }
+
+    @Test
+    void ensureExists_knownBucket_skipsMinio() {
+        when(fileRepository.bucketExists("test-bucket")).thenReturn(true);
+
+        provisioner.ensureExists("test-bucket");
+        provisioner.ensureExists("test-bucket");
+
+        verify(fileRepository, times(1)).bucketExists("test-bucket");
+    }
+
+    @Test
+    void ensureExists_bucketKnownToAnotherNode_skipsMinio() {
+        when(redisTemplate.hasKey("files:buckets:known:test-bucket")).thenReturn(true);
+
+        provisioner.ensureExists("test-bucket");
+        provisioner.ensureExists("test-bucket");
+
+        verify(fileRepository, never()).bucketExists(anyString());
+        verify(redisTemplate, times(1)).hasKey(anyString());
+    }
+
+    @Test
+    void ensureExists_redisDown_checksMinio() {
+        when(redisTemplate.hasKey(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+        doThrow(new RedisConnectionFailureException("down"))
+                .when(valueOperations).set(anyString(), anyString(), any(Duration.class));
+        when(fileRepository.bucketExists("test-bucket")).thenReturn(true);
+
+        provisioner.ensureExists("test-bucket");
+        provisioner.ensureExists("test-bucket");
+
+        verify(fileRepository, times(1)).bucketExists("test-bucket");
+    }
+
+    @Test
+    void ensureExists_expiredEntry_checksAgain() {
+        filesProperties.getBuckets().setShared(false);
+        filesProperties.getBuckets().setKnownTtl(Duration.ofMillis(-1));
+        provisioner = provisioner();
+        when(fileRepository.bucketExists("test-bucket")).thenReturn(true);
+
+        provisioner.ensureExists("test-bucket");
+        provisioner.ensureExists("test-bucket");
+
+        verify(fileRepository, times(2)).bucketExists("test-bucket");
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void ensureExists_fullSet_evictsInsteadOfGrowing() {
+        filesProperties.getBuckets().setShared(false);
+        filesProperties.getBuckets().setMaxEntries(2);
+        provisioner = provisioner();
+        when(fileRepository.bucketExists(anyString())).thenReturn(true);
+
+        provisioner.ensureExists("a");
+        provisioner.ensureExists("b");
+        provisioner.ensureExists("c");
+        provisioner.ensureExists("c");
+
+        verify(fileRepository, times(1)).bucketExists("c");
+    }
+
+    @Test
+    void ensureExistsAsync_concurrentLogins_shareOneCheck() throws Exception {
+        filesProperties.getBuckets().setShared(false);
+        provisioner = provisioner();
+        CountDownLatch release = new CountDownLatch(1);
+        when(fileRepository.bucketExists("test-bucket")).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return false;
+        });
+
+        CompletableFuture<Void> first = provisioner.ensureExistsAsync("test-bucket");
+        CompletableFuture<Void> second = provisioner.ensureExistsAsync("test-bucket");
+        assertSame(first, second);
+        assertFalse(first.isDone());
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        assertTrue(provisioner.ensureExistsAsync("test-bucket").isDone());
+        verify(fileRepository, times(1)).bucketExists("test-bucket");
+        verify(fileRepository, times(1)).createBucket("test-bucket");
+    }
+
+    @Test
+    void ensureExistsAsync_failure_isRetriedOnNextLogin() throws Exception {
+        filesProperties.getBuckets().setShared(false);
+        provisioner = provisioner();
+        when(fileRepository.bucketExists("test-bucket"))
+                .thenThrow(new RuntimeException("minio down"))
+                .thenReturn(true);
+
+        CompletableFuture<Void> failed = provisioner.ensureExistsAsync("test-bucket");
+        assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+
+        provisioner.ensureExistsAsync("test-bucket").get(5, TimeUnit.SECONDS);
+
+        verify(fileRepository, times(2)).bucketExists("test-bucket");
+    }
+}
@@ -1,19 +1,36 @@
 package com.slava.service;
 
+import com.slava.config.FilesProperties;
 import com.slava.dto.*;
+import com.slava.exception.FileException;
 import com.slava.exception.FileNotFoundException;
 import com.slava.repository.CustomFileRepository;
+import com.slava.repository.ObjectEntry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -22,9 +39,22 @@ class FileServiceTest {
     @Mock
     private CustomFileRepository fileRepository;
 
+    @Spy
+    private FilesProperties filesProperties = new FilesProperties();
+
+    @Mock
+    private ListingCache listingCache;
+
     @InjectMocks
     private FileService fileService;
 
+    @BeforeEach
+    void setUp() {
+        // Кэш пропускает листинги к репозиторию
+        lenient().when(listingCache.get(anyString(), anyString(), anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(4).get());
+    }
+
     @Test
     void moveFile_callsRepositoryWithCorrectArgs() {
         MoveFileDto dto = new MoveFileDto();
@@ -62,6 +92,7 @@ class FileServiceTest {
         fileService.deleteFile(dto);
 
         verify(fileRepository).deleteFile("test-bucket", "some/path/file.txt");
+        verify(listingCache).invalidateFolders("test-bucket", Set.of("", "some/", "some/path/"));
     }
 
     @Test
@@ -88,27 +119,234 @@ class FileServiceTest {
                 () -> fileService.downloadFile("test-bucket", "missing/file.txt"));
     }
 
+    @Test
+    void downloadFile_toOutputStream_copiesAndClosesSource() throws Exception {
+        byte[] fileContent = new byte[200 * 1024];
+        Arrays.fill(fileContent, (byte) 7);
+        boolean[] closed = new boolean[1];
+        InputStream source = new ByteArrayInputStream(fileContent) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        when(fileRepository.downloadFile("test-bucket", "file.bin")).thenReturn(Optional.of(source));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fileService.downloadFile("test-bucket", "file.bin", out);
+
+        assertArrayEquals(fileContent, out.toByteArray());
+        assertTrue(closed[0]);
+    }
+
+    @Test
+    void downloadFile_toOutputStream_clientAbort_closesSource() {
+        boolean[] closed = new boolean[1];
+        InputStream source = new ByteArrayInputStream(new byte[1024]) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        when(fileRepository.downloadFile("test-bucket", "file.bin")).thenReturn(Optional.of(source));
+        OutputStream brokenOut = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Connection reset by peer");
+            }
+        };
+
+        assertThrows(IOException.class, () -> fileService.downloadFile("test-bucket", "file.bin", brokenOut));
+        assertTrue(closed[0]);
+    }
+
+    @Test
+    void downloadFileRange_requestsOnlyTheRange() throws Exception {
+        when(fileRepository.downloadFile("test-bucket", "file.bin", 10, 5))
+                .thenReturn(Optional.of(new ByteArrayInputStream("range".getBytes())));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fileService.downloadFileRange("test-bucket", "file.bin", 10, 5, out);
+
+        assertEquals("range", out.toString());
+        verify(fileRepository, never()).downloadFile("test-bucket", "file.bin");
+    }
+
+    @Test
+    void getFileMetadata_fileNotFound_throwsException() {
+        when(fileRepository.statObject("test-bucket", "missing/file.txt")).thenReturn(Optional.empty());
+
+        assertThrows(FileNotFoundException.class,
+                () -> fileService.getFileMetadata("test-bucket", "missing/file.txt"));
+    }
+
+    @Test
+    void listFolderPage_byName_continuesAfterLastKeyAndSkipsSubfolderContents() {
+        when(fileRepository.streamChildren(eq("test-bucket"), eq("folder/"), isNull(), anyInt()))
+                .thenReturn(Stream.of(entry("folder/", true, 0), entry("folder/a/", true, 0),
+                        entry("folder/b.txt", false, 5), entry("folder/c.txt", false, 7)));
+
+        ListFolderDto query = new ListFolderDto();
+        query.setPath("folder");
+        query.setPageSize(1);
+        FolderPageDto first = fileService.listFolderPage("test-bucket", query);
+
+        assertEquals(List.of("folder/a/"), first.getItems().stream().map(FileFolderDto::getPath).toList());
+        assertNotNull(first.getNextPageToken());
+
+        // Следующая страница начинается после всех ключей подпапки a/
+        when(fileRepository.streamChildren(eq("test-bucket"), eq("folder/"), startsWith("folder/a/"), anyInt()))
+                .thenReturn(Stream.of(entry("folder/b.txt", false, 5), entry("folder/c.txt", false, 7)));
+        query.setPageToken(first.getNextPageToken());
+        FolderPageDto second = fileService.listFolderPage("test-bucket", query);
+
+        assertEquals(List.of("folder/b.txt"), second.getItems().stream().map(FileFolderDto::getPath).toList());
+        verify(fileRepository).streamChildren(eq("test-bucket"), eq("folder/"),
+                argThat(startAfter -> startAfter != null && startAfter.compareTo("folder/a/zzz") > 0
+                        && startAfter.compareTo("folder/b.txt") < 0), anyInt());
+    }
+
+    @Test
+    void listFolderPage_bySizeDescending_pagesAfterLastRowAndFiltersType() {
+        when(fileRepository.streamChildren(eq("test-bucket"), eq(""), isNull(), anyInt()))
+                .thenAnswer(invocation -> Stream.of(entry("a.txt", false, 10), entry("dir/", true, 0),
+                        entry("b.txt", false, 30), entry("c.txt", false, 20)));
+
+        ListFolderDto query = new ListFolderDto();
+        query.setSort(ListFolderDto.SortField.SIZE);
+        query.setDescending(true);
+        query.setType(ListFolderDto.EntryType.FILES);
+        query.setPageSize(2);
+        FolderPageDto first = fileService.listFolderPage("test-bucket", query);
+        query.setPageToken(first.getNextPageToken());
+        FolderPageDto second = fileService.listFolderPage("test-bucket", query);
+
+        assertEquals(List.of("b.txt", "c.txt"), first.getItems().stream().map(FileFolderDto::getPath).toList());
+        assertEquals(List.of("a.txt"), second.getItems().stream().map(FileFolderDto::getPath).toList());
+        assertNull(second.getNextPageToken());
+    }
+
+    @Test
+    void listFolderPage_byDate_equalValuesAndInsertBetweenPages_noDuplicates() {
+        when(fileRepository.streamChildren(eq("test-bucket"), eq(""), isNull(), anyInt()))
+                .thenReturn(Stream.of(dated("a.txt", 100), dated("b.txt", 100), dated("c.txt", 100), dated("d.txt", 200)));
+
+        ListFolderDto query = new ListFolderDto();
+        query.setSort(ListFolderDto.SortField.DATE);
+        query.setPageSize(2);
+        FolderPageDto first = fileService.listFolderPage("test-bucket", query);
+
+        // Между страницами в начало порядка добавился файл: смещение показало бы b.txt повторно
+        when(fileRepository.streamChildren(eq("test-bucket"), eq(""), isNull(), anyInt()))
+                .thenReturn(Stream.of(dated("0.txt", 50), dated("a.txt", 100), dated("b.txt", 100),
+                        dated("c.txt", 100), dated("d.txt", 200)));
+        query.setPageToken(first.getNextPageToken());
+        FolderPageDto second = fileService.listFolderPage("test-bucket", query);
+
+        assertEquals(List.of("a.txt", "b.txt"), first.getItems().stream().map(FileFolderDto::getPath).toList());
+        assertEquals(List.of("c.txt", "d.txt"), second.getItems().stream().map(FileFolderDto::getPath).toList());
+        assertNull(second.getNextPageToken());
+    }
+
+    @Test
+    void listFolderPage_bySize_reconciledCatalog_readsPageByKeysetWithoutListing() {
+        when(fileRepository.sortedChildren("test-bucket", "docs/", ListFolderDto.SortField.SIZE, false, false,
+                0, null, 3)).thenReturn(Optional.of(List.of(entry("docs/a.txt", false, 1),
+                entry("docs/b.txt", false, 2), entry("docs/c.txt", false, 3))));
+        when(fileRepository.sortedChildren("test-bucket", "docs/", ListFolderDto.SortField.SIZE, false, false,
+                2, "docs/b.txt", 3)).thenReturn(Optional.of(List.of(entry("docs/c.txt", false, 3))));
+
+        ListFolderDto query = new ListFolderDto();
+        query.setPath("docs");
+        query.setSort(ListFolderDto.SortField.SIZE);
+        query.setType(ListFolderDto.EntryType.FILES);
+        query.setPageSize(2);
+        FolderPageDto first = fileService.listFolderPage("test-bucket", query);
+        query.setPageToken(first.getNextPageToken());
+        FolderPageDto second = fileService.listFolderPage("test-bucket", query);
+
+        assertEquals(List.of("docs/a.txt", "docs/b.txt"), first.getItems().stream().map(FileFolderDto::getPath).toList());
+        assertEquals(List.of("docs/c.txt"), second.getItems().stream().map(FileFolderDto::getPath).toList());
+        verify(fileRepository, never()).streamChildren(anyString(), anyString(), any(), anyInt());
+    }
+
+    @Test
+    void listFolderPage_withoutCatalog_cachesSortedLevelForNextPages() {
+        Map<String, Object> cached = new HashMap<>();
+        when(listingCache.get(eq("test-bucket"), eq(""), startsWith("level:"), any(), any()))
+                .thenAnswer(invocation -> cached.computeIfAbsent(invocation.getArgument(2),
+                        key -> invocation.<Supplier<?>>getArgument(4).get()));
+        when(fileRepository.streamChildren(eq("test-bucket"), eq(""), isNull(), anyInt()))
+                .thenAnswer(invocation -> Stream.of(entry("a.txt", false, 10), entry("b.txt", false, 30),
+                        entry("c.txt", false, 20)));
+
+        ListFolderDto query = new ListFolderDto();
+        query.setSort(ListFolderDto.SortField.SIZE);
+        query.setDescending(true);
+        query.setPageSize(1);
+        List<String> paths = new ArrayList<>();
+        do {
+            FolderPageDto page = fileService.listFolderPage("test-bucket", query);
+            page.getItems().forEach(item -> paths.add(item.getPath()));
+            query.setPageToken(page.getNextPageToken());
+        } while (query.getPageToken() != null);
+
+        assertEquals(List.of("b.txt", "c.txt", "a.txt"), paths);
+        verify(fileRepository, times(1)).streamChildren(eq("test-bucket"), eq(""), isNull(), anyInt());
+    }
+
+    @Test
+    void listFolderPage_levelLargerThanCacheLimit_scansEveryPage() {
+        filesProperties.getListing().setMaxCachedLevel(2);
+        Map<String, Object> cached = new HashMap<>();
+        when(listingCache.get(eq("test-bucket"), eq(""), startsWith("level:"), any(), any()))
+                .thenAnswer(invocation -> cached.computeIfAbsent(invocation.getArgument(2),
+                        key -> invocation.<Supplier<?>>getArgument(4).get()));
+        when(fileRepository.streamChildren(eq("test-bucket"), eq(""), isNull(), anyInt()))
+                .thenAnswer(invocation -> Stream.of(entry("a.txt", false, 10), entry("b.txt", false, 30),
+                        entry("c.txt", false, 20)));
+
+        ListFolderDto query = new ListFolderDto();
+        query.setSort(ListFolderDto.SortField.SIZE);
+        query.setPageSize(2);
+        FolderPageDto first = fileService.listFolderPage("test-bucket", query);
+        query.setPageToken(first.getNextPageToken());
+        FolderPageDto second = fileService.listFolderPage("test-bucket", query);
+
+        assertEquals(List.of("a.txt", "c.txt"), first.getItems().stream().map(FileFolderDto::getPath).toList());
+        assertEquals(List.of("b.txt"), second.getItems().stream().map(FileFolderDto::getPath).toList());
+        verify(fileRepository, times(2)).streamChildren(eq("test-bucket"), eq(""), isNull(), anyInt());
+    }
+
+    @Test
+    void listFolderPage_invalidToken_throwsException() {
+        ListFolderDto query = new ListFolderDto();
+        query.setPageToken("not a token!");
+
+        assertThrows(FileException.class, () -> fileService.listFolderPage("test-bucket", query));
+    }
+
+    private ObjectEntry dated(String path, long lastModified) {
+        return new ObjectEntry(path, false, 1, lastModified, null, null);
+    }
+
+    private ObjectEntry entry(String path, boolean folder, long size) {
+        return folder ? ObjectEntry.ofPrefix(path) : new ObjectEntry(path, false, size, 0, null, null);
+    }
+
     @Test
     void listFolderContents_filtersAndMapsObjects() {
-        when(fileRepository.listObjects("test-bucket", "folder/"))
-                .thenReturn(List.of(
-                        "folder/",               // Папка, совпадает с префиксом
-                        "folder/subfolder/",     // Папка внутри folder
-                        "folder/file1.txt",      // Файл внутри folder
-                        "folder/subfolder/file2.txt" // Файл внутри subfolder
+        // Листинг с delimiter: файлы уровня и префиксы подпапок, без вложенных объектов
+        when(fileRepository.streamChildren(eq("test-bucket"), eq("folder/"), isNull(), anyInt()))
+                .thenReturn(Stream.of(
+                        new ObjectEntry("folder/", false, 0, 1, "m", null),         // Маркер самой папки
+                        ObjectEntry.ofPrefix("folder/subfolder/"),                  // Подпапка
+                        new ObjectEntry("folder/file1.txt", false, 42, 1_700_000_000_000L, "abc", null)
                 ));
 
         List<FileFolderDto> result = fileService.listFolderContents("test-bucket", "folder/");
 
-        // Согласно логике:
-        // - "folder/" => relativePath = "" -> отфильтровывается (empty)
-        // - "folder/subfolder/" => relativePath = "subfolder/" -> папка (т.к. заканчивается на "/")
-        //   и она проходит фильтр, т.к. индекс '/' == length-1
-        // - "folder/file1.txt" => relativePath = "file1.txt" -> файл (не содержит "/")
-        // - "folder/subfolder/file2.txt" => relativePath = "subfolder/file2.txt"
-        //   содержит "/", индекс = 9, length-1 = 16 -> не проходит
-        //
-        // Итого останутся "folder/subfolder/" и "folder/file1.txt"
+        // Маркер самой папки отфильтровывается, остаются "folder/subfolder/" и "folder/file1.txt"
         assertEquals(2, result.size());
 
         FileFolderDto folderDto = result.stream()
@@ -125,6 +363,12 @@ class FileServiceTest {
         assertEquals("file1.txt", fileDto.getName());
         assertEquals("folder/file1.txt", fileDto.getPath());
         assertFalse(fileDto.isFolder());
+        // Метаданные из листинга; тип содержимого без statObject определяется по расширению
+        assertEquals(42, fileDto.getSize());
+        assertEquals("abc", fileDto.getEtag());
+        assertNotNull(fileDto.getLastModified());
+        assertEquals("text/plain", fileDto.getContentType());
+        verify(fileRepository, never()).statObject(anyString(), anyString());
     }
 
     @Test
@@ -133,7 +377,8 @@ class FileServiceTest {
         dto.setBucketName("test-bucket");
         dto.setSourcePath("folder/");
         dto.setFileName("file.txt");
-        dto.setContent("Hello".getBytes());
+        dto.setContent(new ByteArrayInputStream("Hello".getBytes()));
+        dto.setSize("Hello".getBytes().length);
         dto.setContentType("text/plain");
 
         fileService.uploadFile(dto);
@@ -148,21 +393,33 @@ class FileServiceTest {
     }
 
     @Test
-    void ensureBucketExists_bucketDoesNotExist_createsBucket() {
-        when(fileRepository.bucketExists("test-bucket")).thenReturn(false);
-
-        fileService.ensureBucketExists("test-bucket");
-
-        verify(fileRepository).createBucket("test-bucket");
-    }
-
-    @Test
-    void ensureBucketExists_bucketExists_noCreateBucketCall() {
-        when(fileRepository.bucketExists("test-bucket")).thenReturn(true);
+    void uploadFile_largerThanHeap_passesStreamThroughWithoutBuffering() {
+        long size = Runtime.getRuntime().maxMemory() + 1024 * 1024;
+        UploadFileDto dto = new UploadFileDto();
+        dto.setBucketName("test-bucket");
+        dto.setSourcePath("folder/");
+        dto.setFileName("huge.bin");
+        dto.setContent(new ZeroInputStream(size));
+        dto.setSize(size);
+        dto.setContentType("application/octet-stream");
+
+        // Проверяется только сервис: он отдаёт поток репозиторию, не читая его в память. Буферизацию
+        // частей в клиенте MinIO проверяет MinioFileRepositoryImplTest с настоящим клиентом
+        // Репозиторий вычитывает поток до конца, как это делает MinIO-клиент
+        long[] transferred = new long[1];
+        doAnswer(invocation -> {
+            InputStream stream = invocation.getArgument(2);
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                transferred[0] += read;
+            }
+            return null;
+        }).when(fileRepository).uploadFile(eq("test-bucket"), eq("folder/huge.bin"), any(InputStream.class), eq(size), anyString());
 
-        fileService.ensureBucketExists("test-bucket");
+        fileService.uploadFile(dto);
 
-        verify(fileRepository, never()).createBucket("test-bucket");
+        assertEquals(size, transferred[0]);
     }
 
     @Test
@@ -195,4 +452,32 @@ class FileServiceTest {
 
         assertArrayEquals(new String[] {"some", "path", "to", "file.txt"}, segments);
     }
+
+    private static class ZeroInputStream extends InputStream {
+        private long remaining;
+
+        ZeroInputStream(long size) {
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() {
+            if (remaining <= 0) {
+                return -1;
+            }
+            remaining--;
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = (int) Math.min(len, remaining);
+            Arrays.fill(b, off, off + n, (byte) 0);
+            remaining -= n;
+            return n;
+        }
+    }
 }
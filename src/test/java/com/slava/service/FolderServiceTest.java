@@ -1,17 +1,36 @@
 package com.slava.service;
 
+import com.slava.config.FilesProperties;
 import com.slava.dto.*;
 import com.slava.exception.FolderDownloadException;
 import com.slava.repository.CustomFileRepository;
+import com.slava.repository.ObjectEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -23,9 +42,24 @@ class FolderServiceTest {
     @Mock
     private FileService fileService;
 
-    @InjectMocks
+    @Mock
+    private ListingCache listingCache;
+
+    private ExecutorService storageExecutor;
+
     private FolderService folderService;
 
+    @BeforeEach
+    void setUp() {
+        storageExecutor = Executors.newFixedThreadPool(4);
+        folderService = new FolderService(fileRepository, fileService, storageExecutor, storageExecutor, new FilesProperties(), listingCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageExecutor.shutdownNow();
+    }
+
     @Test
     void createFolder_callsRepositoryCreateFolder() {
         CreateFolderDto dto = new CreateFolderDto();
@@ -37,6 +71,7 @@ class FolderServiceTest {
 
         // createFolderDto.setSourcePath(...) => "some/path/newFolder"
         verify(fileRepository).createFolder("test-bucket", "some/path/newFolder");
+        verify(listingCache).invalidateFolders("test-bucket", List.of("", "some/", "some/path/"));
     }
 
     @Test
@@ -48,6 +83,8 @@ class FolderServiceTest {
         folderService.deleteFolder(dto);
 
         verify(fileRepository).deleteFolder("test-bucket", "some/path/folder/");
+        // Меняются листинги всего поддерева
+        verify(listingCache).invalidateBucket("test-bucket");
     }
 
     @Test
@@ -79,51 +116,96 @@ class FolderServiceTest {
     }
 
     @Test
-    void downloadFolderAsZip_returnsZipBytes() {
-        when(fileRepository.listObjects("test-bucket", "folder/"))
-                .thenReturn(List.of("folder/file1.txt", "folder/file2.txt"));
-
-        // Имитируем, что FileService скачивает файлы
-        when(fileService.downloadFile("test-bucket", "folder/file1.txt"))
-                .thenReturn("file1 content".getBytes());
-        when(fileService.downloadFile("test-bucket", "folder/file2.txt"))
-                .thenReturn("file2 content".getBytes());
-
-        byte[] zipBytes = folderService.downloadFolderAsZip("test-bucket", "folder/");
-
-        assertNotNull(zipBytes);
-        assertTrue(zipBytes.length > 0);
+    void downloadFolderAsZip_streamsEntriesToOutput() throws Exception {
+        when(fileRepository.streamObjects("test-bucket", "folder/"))
+                .thenReturn(objects(List.of("folder/", "folder/file1.txt", "folder/sub/", "folder/sub/file2.txt")));
+
+        when(fileRepository.downloadFile("test-bucket", "folder/file1.txt"))
+                .thenReturn(Optional.of(new ByteArrayInputStream("file1 content".getBytes())));
+        when(fileRepository.downloadFile("test-bucket", "folder/sub/file2.txt"))
+                .thenReturn(Optional.of(new ByteArrayInputStream("file2 content".getBytes())));
+
+        ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        folderService.downloadFolderAsZip("test-bucket", "folder/", zipBytes);
+
+        Map<String, String> entries = readZip(zipBytes.toByteArray());
+        // Сама папка в архив не попадает, вложенная папка — как запись каталога без загрузки
+        assertEquals(List.of("file1.txt", "sub/", "sub/file2.txt"), List.copyOf(entries.keySet()));
+        assertEquals("file1 content", entries.get("file1.txt"));
+        assertEquals("file2 content", entries.get("sub/file2.txt"));
+        verify(fileRepository, never()).downloadFile("test-bucket", "folder/sub/");
+    }
 
-        // При желании можно распаковать zipBytes и проверить состав архива подробнее
+    @Test
+    void downloadFolderAsZip_objectsLargerThanPrefetchBuffer_areStreamedInOrder() throws Exception {
+        FilesProperties filesProperties = new FilesProperties();
+        filesProperties.getArchive().setPrefetchDepth(3);
+        filesProperties.getArchive().setPrefetchBufferSize(16);
+        folderService = new FolderService(fileRepository, fileService, storageExecutor, storageExecutor, filesProperties, listingCache);
+
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String name = "folder/file" + i + ".txt";
+            names.add(name);
+            String content = ("content of file number " + i).repeat(i + 1);
+            when(fileRepository.downloadFile("test-bucket", name))
+                    .thenReturn(Optional.of(new ByteArrayInputStream(content.getBytes())));
+        }
+        when(fileRepository.streamObjects("test-bucket", "folder/")).thenReturn(objects(names));
+
+        ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        folderService.downloadFolderAsZip("test-bucket", "folder/", zipBytes);
+
+        Map<String, String> entries = readZip(zipBytes.toByteArray());
+        assertEquals(10, entries.size());
+        int i = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            assertEquals("file" + i + ".txt", entry.getKey());
+            assertEquals(("content of file number " + i).repeat(i + 1), entry.getValue());
+            i++;
+        }
     }
 
     @Test
-    void downloadFolderAsZip_throwsFolderDownloadException_onIOException() {
-        // Если внутри цикла или при записи в ZipOutputStream возникнет исключение,
-        // мы ожидаем FolderDownloadException. Упростим: пусть fileService выбросит RuntimeException,
-        // а FolderService "поймает" IOException при записи в ZIP (симуляция).
-        when(fileRepository.listObjects("test-bucket", "folder/"))
-                .thenReturn(List.of("folder/file1.txt"));
+    void downloadFolderAsZip_throwsFolderDownloadException_whenFileMissing() {
+        when(fileRepository.streamObjects("test-bucket", "folder/"))
+                .thenReturn(objects(List.of("folder/file1.txt")));
 
-        when(fileService.downloadFile("test-bucket", "folder/file1.txt"))
-                .thenThrow(new RuntimeException("Simulated IO error"));
+        when(fileRepository.downloadFile("test-bucket", "folder/file1.txt"))
+                .thenReturn(Optional.empty());
 
         assertThrows(FolderDownloadException.class, () ->
-                folderService.downloadFolderAsZip("test-bucket", "folder/"));
+                folderService.downloadFolderAsZip("test-bucket", "folder/", new ByteArrayOutputStream()));
     }
 
-    @Test
-    void listOnlyFolders_filtersOutNonFolders() {
-        // Возвращаем набор объектов, часть из которых не заканчивается на "/"
-        when(fileRepository.listObjects("test-bucket", ""))
-                .thenReturn(List.of("folder1/", "folder2/", "folder2/file.txt", "file2.txt"));
+    private Stream<ObjectEntry> objects(List<String> keys) {
+        return keys.stream().map(key -> new ObjectEntry(key, false, 0, 0, null, null));
+    }
 
-        List<FileFolderDto> result = folderService.listOnlyFolders("test-bucket");
+    private Map<String, String> readZip(byte[] zipBytes) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zis.readAllBytes()));
+            }
+        }
+        return entries;
+    }
 
-        // Ожидаем, что в результате только folder1/ и folder2/
-        assertEquals(2, result.size());
-        assertTrue(result.stream().anyMatch(dto -> "folder1/".equals(dto.getName())));
-        assertTrue(result.stream().anyMatch(dto -> "folder2/".equals(dto.getName())));
+    @Test
+    void listSubfolders_returnsDirectSubfoldersOnly() {
+        when(listingCache.get(eq("test-bucket"), eq("docs/"), eq("subfolders"), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(4).get());
+        // Один уровень: маркер самой папки, подпапки и файл
+        when(fileRepository.listChildren("test-bucket", "docs/"))
+                .thenReturn(List.of("docs/", "docs/folder1/", "docs/folder2/", "docs/file2.txt"));
+
+        List<FileFolderDto> result = folderService.listSubfolders("test-bucket", "docs");
+
+        assertEquals(List.of("docs/folder1/", "docs/folder2/"), result.stream().map(FileFolderDto::getPath).toList());
+        assertEquals("folder1", result.get(0).getName());
+        verify(fileRepository, never()).streamObjects(anyString(), anyString());
     }
 
     @Test
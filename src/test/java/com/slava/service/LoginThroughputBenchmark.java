@@ -0,0 +1,85 @@
+package com.slava.service;
+
+import com.slava.config.FilesProperties;
+import com.slava.entity.Role;
+import com.slava.entity.User;
+import com.slava.repository.UserRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Пропускная способность загрузки пользователя при входе с кэшем снимков и без него.
+ * Запрос с JOIN FETCH имитируется задержкой.
+ */
+@Tag("benchmark")
+class LoginThroughputBenchmark {
+
+    private static final int USERS = 500;
+    private static final int LOGINS = 20_000;
+    private static final int THREADS = 16;
+    private static final long QUERY_LATENCY_MICROS = 500;
+
+    @Test
+    void loginThroughputWithAndWithoutCache() throws Exception {
+        UserRepository userRepository = mock(UserRepository.class);
+        Role role = new Role();
+        role.setName("ROLE_USER");
+        when(userRepository.findByUsernameWithRoles(anyString())).thenAnswer(invocation -> {
+            long deadline = System.nanoTime() + QUERY_LATENCY_MICROS * 1000;
+            while (System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            User user = new User();
+            user.setUsername(invocation.getArgument(0));
+            user.setPassword("{noop}secret");
+            user.setRoles(new HashSet<>(Set.of(role)));
+            return Optional.of(user);
+        });
+
+        double uncached = measure(userRepository, false);
+        double cached = measure(userRepository, true);
+        System.out.printf("%-10s %12s%n", "cache", "logins/s");
+        System.out.printf("%-10s %12.0f%n", "off", uncached);
+        System.out.printf("%-10s %12.0f%n", "on", cached);
+    }
+
+    private double measure(UserRepository userRepository, boolean cacheEnabled) throws Exception {
+        FilesProperties filesProperties = new FilesProperties();
+        filesProperties.getUsers().setCacheEnabled(cacheEnabled);
+        UserDetailsCache userDetailsCache = new UserDetailsCache(filesProperties);
+        UserService userService = new UserService(userRepository, null, null, null, userDetailsCache);
+        CustomUserDetailsService userDetailsService = new CustomUserDetailsService(userService, userDetailsCache);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < LOGINS / THREADS; i++) {
+                        userDetailsService.loadUserByUsername("user" + ThreadLocalRandom.current().nextInt(USERS));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return LOGINS / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.slava.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.slava.config.FilesProperties;
+import com.slava.dto.FileFolderDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisListingCacheTest {
+
+    private static final TypeReference<List<FileFolderDto>> LISTING = new TypeReference<>() {
+    };
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final Map<String, String> redis = new HashMap<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RedisListingCache cache;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        // Значения и счётчики версий хранятся в обычной карте
+        lenient().when(valueOperations.multiGet(anyList()))
+                .thenAnswer(invocation -> invocation.<List<String>>getArgument(0).stream().map(redis::get).toList());
+        lenient().when(valueOperations.get(anyString())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        lenient().doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), anyString(), any(Duration.class));
+        lenient().when(valueOperations.increment(anyString())).thenAnswer(invocation ->
+                Long.valueOf(redis.merge(invocation.getArgument(0), "1", (old, one) -> String.valueOf(Long.parseLong(old) + 1))));
+        cache = new RedisListingCache(redisTemplate, new ObjectMapper().findAndRegisterModules(), new FilesProperties(), meterRegistry);
+    }
+
+    @Test
+    void secondRead_isServedFromRedis() {
+        AtomicInteger loads = new AtomicInteger();
+
+        List<FileFolderDto> first = cache.get("alice", "docs/", "contents", LISTING, () -> listing(loads));
+        List<FileFolderDto> second = cache.get("alice", "docs/", "contents", LISTING, () -> listing(loads));
+
+        assertEquals(1, loads.get());
+        assertEquals(first, second);
+        assertEquals(1, meterRegistry.get("files.listing.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(0.5, meterRegistry.get("files.listing.cache.hit.ratio").gauge().value());
+    }
+
+    @Test
+    void folderInvalidation_forcesReloadOfThatFolderOnly() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("alice", "docs/", "contents", LISTING, () -> listing(loads));
+        cache.get("alice", "photos/", "contents", LISTING, () -> listing(loads));
+
+        cache.invalidateFolders("alice", List.of("", "docs/"));
+        cache.get("alice", "docs/", "contents", LISTING, () -> listing(loads));
+        cache.get("alice", "photos/", "contents", LISTING, () -> listing(loads));
+
+        assertEquals(3, loads.get());
+        verify(redisTemplate).expire(eq("files:listing:v:alice:docs/"), any(Duration.class));
+    }
+
+    @Test
+    void bucketInvalidation_forcesReloadOfEveryFolder() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("alice", "docs/", "contents", LISTING, () -> listing(loads));
+        cache.get("alice", "docs/a/", "contents", LISTING, () -> listing(loads));
+
+        cache.invalidateBucket("alice");
+        cache.get("alice", "docs/", "contents", LISTING, () -> listing(loads));
+        cache.get("alice", "docs/a/", "contents", LISTING, () -> listing(loads));
+
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void oversizedListing_isNotStored() {
+        FilesProperties filesProperties = new FilesProperties();
+        filesProperties.getCache().setMaxEntrySize(50);
+        cache = new RedisListingCache(redisTemplate, new ObjectMapper().findAndRegisterModules(), filesProperties, meterRegistry);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("alice", "docs/", "contents", LISTING, () -> listing(loads));
+        cache.get("alice", "docs/", "contents", LISTING, () -> listing(loads));
+
+        assertEquals(2, loads.get());
+        verify(valueOperations, never()).set(anyString(), anyString(), any(Duration.class));
+        assertEquals(2, meterRegistry.get("files.listing.cache.oversized").counter().count());
+    }
+
+    @Test
+    void redisFailure_fallsBackToLoader() {
+        when(valueOperations.multiGet(anyList())).thenThrow(new RedisConnectionFailureException("Connection refused"));
+        AtomicInteger loads = new AtomicInteger();
+
+        List<FileFolderDto> result = cache.get("alice", "docs/", "contents", LISTING, () -> listing(loads));
+
+        assertEquals(1, result.size());
+        assertEquals(1, meterRegistry.get("files.listing.cache.requests").tag("result", "error").counter().count());
+    }
+
+    @Test
+    void foldersOf_listsEveryAncestor() {
+        assertEquals(List.of("", "a/", "a/b/"), ListingCache.foldersOf("a/b/c.txt"));
+        assertEquals(List.of("", "a/"), ListingCache.foldersOf("a/b/"));
+        assertEquals(List.of(""), ListingCache.foldersOf("c.txt"));
+    }
+
+    private List<FileFolderDto> listing(AtomicInteger loads) {
+        loads.incrementAndGet();
+        FileFolderDto dto = new FileFolderDto();
+        dto.setPath("docs/report.pdf");
+        dto.setName("report.pdf");
+        dto.setSize(10);
+        dto.setLastModified(ZonedDateTime.of(2025, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC));
+        return List.of(dto);
+    }
+}
@@ -0,0 +1,130 @@
+package com.slava.service;
+
+import com.slava.config.CustomUserDetails;
+import com.slava.config.FilesProperties;
+import com.slava.dto.RoleDto;
+import com.slava.dto.UserDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class UserDetailsCacheTest {
+
+    private final FilesProperties filesProperties = new FilesProperties();
+
+    private static CustomUserDetails snapshot(String username, String role) {
+        RoleDto roleDto = new RoleDto();
+        roleDto.setName(role);
+        UserDto userDto = new UserDto();
+        userDto.setUsername(username);
+        userDto.setPassword("encoded");
+        userDto.setRoles(new ArrayList<>(List.of(roleDto)));
+        return new CustomUserDetails(userDto);
+    }
+
+    @Test
+    void secondLogin_isServedFromCache() {
+        UserDetailsCache cache = new UserDetailsCache(filesProperties);
+        AtomicInteger loads = new AtomicInteger();
+
+        CustomUserDetails first = cache.get("user", () -> {
+            loads.incrementAndGet();
+            return snapshot("user", "ROLE_USER");
+        });
+        CustomUserDetails second = cache.get("user", () -> {
+            loads.incrementAndGet();
+            return snapshot("user", "ROLE_USER");
+        });
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidate_reloadsChangedRoles() {
+        UserDetailsCache cache = new UserDetailsCache(filesProperties);
+        cache.get("user", () -> snapshot("user", "ROLE_USER"));
+
+        cache.invalidate("user");
+        CustomUserDetails reloaded = cache.get("user", () -> snapshot("user", "ROLE_ADMIN"));
+
+        assertEquals("ROLE_ADMIN", reloaded.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    void invalidateDuringLoad_doesNotCacheStaleSnapshot() {
+        UserDetailsCache cache = new UserDetailsCache(filesProperties);
+
+        cache.get("user", () -> {
+            cache.invalidate("user");
+            return snapshot("user", "ROLE_USER");
+        });
+        CustomUserDetails reloaded = cache.get("user", () -> snapshot("user", "ROLE_ADMIN"));
+
+        assertEquals("ROLE_ADMIN", reloaded.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    void invalidationFromAnotherNode_evictsLocalSnapshot() {
+        UserDetailsCache cache = new UserDetailsCache(filesProperties);
+        cache.get("user", () -> snapshot("user", "ROLE_USER"));
+
+        cache.onMessage(new DefaultMessage(UserDetailsCache.CHANNEL.getBytes(), "user".getBytes()), null);
+        CustomUserDetails reloaded = cache.get("user", () -> snapshot("user", "ROLE_ADMIN"));
+
+        assertEquals("ROLE_ADMIN", reloaded.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    void invalidate_isBroadcastToOtherNodes() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        UserDetailsCache cache = new UserDetailsCache(filesProperties, redisTemplate);
+
+        cache.invalidate("user");
+
+        verify(redisTemplate).convertAndSend(UserDetailsCache.CHANNEL, "user");
+    }
+
+    @Test
+    void disabledCache_alwaysLoads() {
+        filesProperties.getUsers().setCacheEnabled(false);
+        UserDetailsCache cache = new UserDetailsCache(filesProperties);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("user", () -> {
+            loads.incrementAndGet();
+            return snapshot("user", "ROLE_USER");
+        });
+        cache.get("user", () -> {
+            loads.incrementAndGet();
+            return snapshot("user", "ROLE_USER");
+        });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void snapshot_isNotAffectedBySourceDto() {
+        RoleDto roleDto = new RoleDto();
+        roleDto.setName("ROLE_USER");
+        UserDto userDto = new UserDto();
+        userDto.setUsername("user");
+        userDto.setPassword("encoded");
+        userDto.setRoles(new ArrayList<>(List.of(roleDto)));
+        CustomUserDetails details = new CustomUserDetails(userDto);
+
+        userDto.setPassword("changed");
+        userDto.getRoles().clear();
+
+        assertEquals("encoded", details.getPassword());
+        assertEquals(1, details.getAuthorities().size());
+    }
+}
@@ -0,0 +1,69 @@
+package com.slava.service;
+
+import com.slava.config.CustomUserDetails;
+import com.slava.dto.UserDto;
+import com.slava.entity.Role;
+import com.slava.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserMapperTest {
+
+    private static User user() {
+        Role role = new Role("ROLE_USER");
+        role.setId(2L);
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("user");
+        user.setPassword("encoded");
+        user.setRoles(new HashSet<>(Set.of(role)));
+        return user;
+    }
+
+    @Test
+    void toDto_copiesUserAndRoles() {
+        UserDto userDto = UserMapper.toDto(user());
+
+        assertEquals(1L, userDto.getId());
+        assertEquals("user", userDto.getUsername());
+        assertEquals("encoded", userDto.getPassword());
+        assertEquals(1, userDto.getRoles().size());
+        assertEquals(2L, userDto.getRoles().get(0).getId());
+        assertEquals("ROLE_USER", userDto.getRoles().get(0).getName());
+    }
+
+    @Test
+    void toEntity_startsWithoutRoles() {
+        UserDto userDto = new UserDto();
+        userDto.setUsername("user");
+        userDto.setPassword("raw");
+
+        User user = UserMapper.toEntity(userDto);
+
+        assertEquals("user", user.getUsername());
+        assertEquals("raw", user.getPassword());
+        assertTrue(user.getRoles().isEmpty());
+    }
+
+    @Test
+    void toUserDetails_matchesDtoBasedSnapshot() {
+        User user = user();
+
+        CustomUserDetails direct = UserMapper.toUserDetails(user);
+        CustomUserDetails viaDto = new CustomUserDetails(UserMapper.toDto(user));
+
+        assertEquals(viaDto.getUsername(), direct.getUsername());
+        assertEquals(viaDto.getPassword(), direct.getPassword());
+        assertEquals(authorities(viaDto), authorities(direct));
+    }
+
+    private static List<String> authorities(CustomUserDetails details) {
+        return details.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+    }
+}
@@ -0,0 +1,79 @@
+package com.slava.service;
+
+import com.slava.config.CustomUserDetails;
+import com.slava.dto.RoleDto;
+import com.slava.dto.UserDto;
+import com.slava.entity.Role;
+import com.slava.entity.User;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время и объём выделенной памяти на одно отображение пользователя в снимок для входа:
+ * прежний путь через ModelMapper против {@link UserMapper}. Замеряется JMH в отдельной JVM,
+ * байты на операцию — gc.alloc.rate.norm из профилировщика GC.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMappingBenchmark {
+
+    private User user;
+    private ModelMapper modelMapper;
+
+    @Setup
+    public void setUp() {
+        user = new User();
+        user.setId(1L);
+        user.setUsername("user");
+        user.setPassword("{bcrypt}$2a$10$abcdefghijklmnopqrstuv");
+        user.setRoles(new HashSet<>(Set.of(new Role("ROLE_USER"), new Role("ROLE_ADMIN"))));
+        modelMapper = new ModelMapper();
+    }
+
+    // Прежний путь mapToUserDto: ModelMapper, затем снимок из DTO
+    @Benchmark
+    public CustomUserDetails modelMapper() {
+        UserDto userDto = modelMapper.map(user, UserDto.class);
+        userDto.setRoles(user.getRoles().stream()
+                .map(role -> modelMapper.map(role, RoleDto.class))
+                .toList());
+        return new CustomUserDetails(userDto);
+    }
+
+    @Benchmark
+    public CustomUserDetails userMapper() {
+        return UserMapper.toUserDetails(user);
+    }
+
+    @Test
+    void mappingLatencyAndAllocation() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UserMappingBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
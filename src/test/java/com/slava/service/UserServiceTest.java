@@ -1,21 +1,21 @@
 package com.slava.service;
 
-import com.slava.config.MinioConfig;
 import com.slava.dto.UserDto;
 import com.slava.entity.Role;
 import com.slava.entity.User;
 import com.slava.exception.UserAlreadyExists;
 import com.slava.exception.UserException;
 import com.slava.repository.UserRepository;
-import io.minio.MinioClient;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Arrays;
 import java.util.HashSet;
@@ -35,17 +35,14 @@ class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
-    @Mock
-    private ModelMapper modelMapper;
-
     @Mock
     private RoleService roleService;
 
     @Mock
-    private MinioConfig minioConfig;
+    private BucketProvisioner bucketProvisioner;
 
     @Mock
-    private MinioClient minioClient;
+    private UserDetailsCache userDetailsCache;
 
     @InjectMocks
     private UserService userService;
@@ -71,24 +68,18 @@ class UserServiceTest {
 
         when(userRepository.findByUsername("newUser")).thenReturn(Optional.empty());
 
-        User mappedUser = new User();
-        mappedUser.setUsername("newUser");
-        mappedUser.setRoles(new HashSet<>());
-        mappedUser.setPassword("pass");
-        when(modelMapper.map(userDto, User.class)).thenReturn(mappedUser);
-
         when(passwordEncoder.encode("pass")).thenReturn("encodedPass");
 
         Role defaultRole = new Role();
         defaultRole.setName("ROLE_USER");
         when(roleService.findByName("ROLE_USER")).thenReturn(Optional.of(defaultRole));
 
-        when(userRepository.save(mappedUser)).thenReturn(mappedUser);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         User registeredUser = userService.registerUser(userDto);
 
-        verify(minioConfig).initializeUserRootFolder(minioClient, "newUser");
-        verify(userRepository).save(mappedUser);
+        verify(bucketProvisioner).ensureExists("newUser");
+        verify(userRepository).save(any(User.class));
 
         assertEquals("newUser", registeredUser.getUsername());
         assertEquals("encodedPass", registeredUser.getPassword());
@@ -127,11 +118,7 @@ class UserServiceTest {
         user.setUsername("userTest");
         user.setRoles(new HashSet<>());
 
-        UserDto expectedDto = new UserDto();
-        expectedDto.setUsername("userTest");
-
         when(userRepository.findByUsernameWithRoles("userTest")).thenReturn(Optional.of(user));
-        when(modelMapper.map(user, UserDto.class)).thenReturn(expectedDto);
 
         UserDto result = userService.getUserWithName("userTest");
         assertEquals("userTest", result.getUsername());
@@ -150,6 +137,7 @@ class UserServiceTest {
 
         assertTrue(user.getRoles().contains(role));
         verify(userRepository).save(user);
+        verify(userDetailsCache).invalidate("testUser");
     }
 
     @Test
@@ -164,14 +152,6 @@ class UserServiceTest {
         List<User> userList = Arrays.asList(user1, user2);
         when(userRepository.findAll()).thenReturn(userList);
 
-        UserDto userDto1 = new UserDto();
-        userDto1.setUsername("user1");
-        UserDto userDto2 = new UserDto();
-        userDto2.setUsername("user2");
-
-        when(modelMapper.map(user1, UserDto.class)).thenReturn(userDto1);
-        when(modelMapper.map(user2, UserDto.class)).thenReturn(userDto2);
-
         List<UserDto> result = userService.getAllUsers();
         assertEquals(2, result.size());
         assertTrue(result.stream().anyMatch(dto -> "user1".equals(dto.getUsername())));
@@ -195,4 +175,34 @@ class UserServiceTest {
         userService.deleteUser(userId);
         verify(userRepository).deleteById(userId);
     }
+
+    @Test
+    void deleteUser_InvalidatesCachedUserDetails() {
+        User user = new User();
+        user.setUsername("testUser");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        userService.deleteUser(1L);
+
+        InOrder inOrder = inOrder(userRepository, userDetailsCache);
+        inOrder.verify(userRepository).deleteById(1L);
+        inOrder.verify(userDetailsCache).invalidate("testUser");
+    }
+
+    @Test
+    void deleteUser_insideTransaction_invalidatesAfterCommit() {
+        User user = new User();
+        user.setUsername("testUser");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userService.deleteUser(1L);
+
+            verify(userDetailsCache, never()).invalidate(any());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(userDetailsCache).invalidate("testUser");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
 }
@@ -0,0 +1,244 @@
+package com.slava.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipArchiveWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService compressionExecutor;
+
+    @BeforeEach
+    void setUp() {
+        compressionExecutor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        compressionExecutor.shutdownNow();
+    }
+
+    @Test
+    void allEntryKinds_areReadableThroughCentralDirectory() throws Exception {
+        byte[] text = "Привет, мир! ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        byte[] large = largeCompressibleContent(3 * 1024 * 1024 + 123);
+        byte[] random = new byte[100_000];
+        new Random(42).nextBytes(random);
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(archive, compressionExecutor, 6, 64 * 1024, 4)) {
+            zip.putDirectory("папка/");
+            zip.putDeflated("папка/text.txt", new ByteArrayInputStream(text));
+            zip.putDeflatedParallel("large.log", new ByteArrayInputStream(large));
+            zip.putStored("photo.jpg", random);
+            zip.putUncompressed("video.mp4", new ByteArrayInputStream(random));
+            zip.putDeflatedParallel("empty.txt", new ByteArrayInputStream(new byte[0]));
+            zip.finish();
+        }
+
+        Path file = tempDir.resolve("archive.zip");
+        Files.write(file, archive.toByteArray());
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            assertEquals(6, zipFile.size());
+            assertTrue(zipFile.getEntry("папка/").isDirectory());
+            assertArrayEquals(text, zipFile.getInputStream(zipFile.getEntry("папка/text.txt")).readAllBytes());
+            assertArrayEquals(large, zipFile.getInputStream(zipFile.getEntry("large.log")).readAllBytes());
+            assertArrayEquals(random, zipFile.getInputStream(zipFile.getEntry("photo.jpg")).readAllBytes());
+            assertArrayEquals(random, zipFile.getInputStream(zipFile.getEntry("video.mp4")).readAllBytes());
+            assertEquals(0, zipFile.getInputStream(zipFile.getEntry("empty.txt")).readAllBytes().length);
+
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("photo.jpg").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("video.mp4").getMethod());
+            assertTrue(zipFile.getEntry("video.mp4").getCompressedSize() < random.length + 100);
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("large.log").getMethod());
+            assertTrue(zipFile.getEntry("large.log").getCompressedSize() < large.length / 4);
+        }
+    }
+
+    @Test
+    void deflatedEntries_areReadableAsStream() throws Exception {
+        byte[] large = largeCompressibleContent(1024 * 1024);
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(archive, compressionExecutor, 6, 32 * 1024, 2)) {
+            zip.putDeflatedParallel("a.txt", new ByteArrayInputStream(large));
+            zip.putDeflated("b.txt", new ByteArrayInputStream("b".getBytes()));
+            zip.finish();
+        }
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            assertEquals("a.txt", zis.getNextEntry().getName());
+            assertArrayEquals(large, zis.readAllBytes());
+            assertEquals("b.txt", zis.getNextEntry().getName());
+            assertArrayEquals("b".getBytes(), zis.readAllBytes());
+            assertNull(zis.getNextEntry());
+        }
+    }
+
+    @Test
+    void uncompressedStreamEntries_areReadableAsStream() throws Exception {
+        byte[] random = new byte[300_000];
+        new Random(42).nextBytes(random);
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(archive, compressionExecutor, 6, 64 * 1024, 2)) {
+            zip.putUncompressed("video.mp4", new ByteArrayInputStream(random));
+            zip.putStored("photo.jpg", random);
+            zip.putUncompressed("empty.bin", new ByteArrayInputStream(new byte[0]));
+            zip.finish();
+        }
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            assertEquals("video.mp4", zis.getNextEntry().getName());
+            assertArrayEquals(random, zis.readAllBytes());
+            assertEquals("photo.jpg", zis.getNextEntry().getName());
+            assertArrayEquals(random, zis.readAllBytes());
+            assertEquals("empty.bin", zis.getNextEntry().getName());
+            assertEquals(0, zis.readAllBytes().length);
+            assertNull(zis.getNextEntry());
+        }
+    }
+
+    @Test
+    void entryOver4Gb_writesZip64DataDescriptor() throws Exception {
+        long size = 0x1_0000_0000L + 1000;
+        TailOutputStream tail = new TailOutputStream(256);
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(tail, compressionExecutor, 6, 64 * 1024, 2)) {
+            zip.putUncompressed("huge.bin", new ZeroInputStream(size));
+            zip.finish();
+        }
+
+        ByteBuffer archiveTail = ByteBuffer.wrap(tail.bytes()).order(ByteOrder.LITTLE_ENDIAN);
+        int descriptor = indexOf(archiveTail, 0x08074b50);
+        assertTrue(descriptor >= 0, "Data descriptor не найден");
+        long compressedSize = archiveTail.getLong(descriptor + 8);
+        assertEquals(size, archiveTail.getLong(descriptor + 16));
+        assertTrue(compressedSize > size);
+        int central = indexOf(archiveTail, 0x02014b50);
+        assertEquals(0xFFFFFFFFL, Integer.toUnsignedLong(archiveTail.getInt(central + 20)));
+        assertEquals(0xFFFFFFFFL, Integer.toUnsignedLong(archiveTail.getInt(central + 24)));
+        int extra = central + 46 + "huge.bin".length();
+        assertEquals(0x0001, archiveTail.getShort(extra));
+        assertEquals(size, archiveTail.getLong(extra + 4));
+        assertEquals(compressedSize, archiveTail.getLong(extra + 12));
+    }
+
+    private int indexOf(ByteBuffer buffer, int signature) {
+        for (int i = 0; i + 4 <= buffer.limit(); i++) {
+            if (buffer.getInt(i) == signature) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Хранит только последние байты: архив на 4 ГБ не нужно держать в памяти, чтобы проверить его конец.
+     */
+    private static class TailOutputStream extends OutputStream {
+        private final byte[] ring;
+        private long count;
+
+        TailOutputStream(int capacity) {
+            this.ring = new byte[capacity];
+        }
+
+        @Override
+        public void write(int b) {
+            ring[(int) (count++ % ring.length)] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            int skip = Math.max(0, len - ring.length);
+            count += skip;
+            for (int i = off + skip; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        byte[] bytes() {
+            int length = (int) Math.min(count, ring.length);
+            byte[] result = new byte[length];
+            for (int i = 0; i < length; i++) {
+                result[i] = ring[(int) ((count - length + i) % ring.length)];
+            }
+            return result;
+        }
+    }
+
+    private static class ZeroInputStream extends InputStream {
+        private long remaining;
+
+        ZeroInputStream(long size) {
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() {
+            if (remaining == 0) {
+                return -1;
+            }
+            remaining--;
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining == 0) {
+                return -1;
+            }
+            int n = (int) Math.min(len, remaining);
+            Arrays.fill(b, off, off + n, (byte) 0);
+            remaining -= n;
+            return n;
+        }
+    }
+
+    @Test
+    void compressionPolicy_detectsCompressedContent() {
+        byte[] jpeg = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 0};
+        byte[] mp4 = {0, 0, 0, 0x18, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm'};
+        byte[] text = "plain text".getBytes();
+
+        assertTrue(CompressionPolicy.isAlreadyCompressed("photo", jpeg));
+        assertTrue(CompressionPolicy.isAlreadyCompressed("clip.bin", mp4));
+        assertTrue(CompressionPolicy.isAlreadyCompressed("backup.ZIP", text));
+        assertFalse(CompressionPolicy.isAlreadyCompressed("notes.txt", text));
+        assertFalse(CompressionPolicy.isAlreadyCompressed("dir.jpg/notes", text));
+    }
+
+    private byte[] largeCompressibleContent(int size) {
+        StringBuilder builder = new StringBuilder(size);
+        Random random = new Random(7);
+        int line = 0;
+        while (builder.length() < size) {
+            builder.append("2025-01-01 12:00:").append(line++ % 60).append(" INFO request ")
+                    .append(random.nextInt(1000)).append(" processed\n");
+        }
+        return builder.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+    }
+}